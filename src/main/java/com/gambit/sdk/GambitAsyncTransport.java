@@ -0,0 +1,869 @@
+package com.gambit.sdk;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChain;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.http.HttpClientFilter;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Protocol;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.nio.transport.TCPNIOConnectorHandler;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.ssl.SSLEngineConfigurator;
+import org.glassfish.grizzly.ssl.SSLFilter;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+
+/**
+ * Sends {@link GambitRequest}s without blocking a thread per request. Requests are written over a few keep-alive
+ * connections per host on a Grizzly NIO transport, each connection carrying one request at a time; requests beyond
+ * that wait for the next free connection. The number of threads stays the same however many requests are in
+ * flight: the selector and worker threads of the transport, and one timer thread for request timeouts.
+ *
+ * Connections are kept in a pool per host: the most recently used idle connection is reused first, connections
+ * idle longer than the idle timeout are closed, and {@link #warmUp(URL, int)} opens connections ahead of the first
+ * request. Pool hits and misses are counted.
+ */
+public class GambitAsyncTransport {
+
+    /**
+     * Configures and builds a {@link GambitAsyncTransport}
+     */
+    public static class Builder {
+
+        /**
+         * Connections opened to a host at most
+         */
+        protected int mMaxConnectionsPerHost = 4;
+
+        /**
+         * Number of selector (I/O) threads
+         */
+        protected int mSelectorThreads = 1;
+
+        /**
+         * Number of worker threads, which parse responses and complete the futures
+         */
+        protected int mWorkerThreads = 2;
+
+        /**
+         * Milliseconds a request may take, waiting for a connection included
+         */
+        protected long mRequestTimeoutMillis = 30000;
+
+        /**
+         * Milliseconds a connection is kept open without carrying a request
+         */
+        protected long mIdleTimeoutMillis = 60000;
+
+        /**
+         * Connections opened to the event endpoint as soon as the transport is started by {@link GambitSDKService}
+         */
+        protected int mWarmupConnections = 0;
+
+        /**
+         * Set the number of connections opened to a host at most
+         * @param connections Maximum connections per host (Default: 4)
+         * @return The same instance
+         */
+        public Builder setMaxConnectionsPerHost(int connections) {
+            this.mMaxConnectionsPerHost = connections;
+            return this;
+        }
+
+        /**
+         * Get the number of connections opened to a host at most
+         * @return Maximum connections per host
+         */
+        public int getMaxConnectionsPerHost() {
+            return mMaxConnectionsPerHost;
+        }
+
+        /**
+         * Set the number of selector (I/O) threads
+         * @param threads The number of selector threads (Default: 1)
+         * @return The same instance
+         */
+        public Builder setSelectorThreads(int threads) {
+            this.mSelectorThreads = threads;
+            return this;
+        }
+
+        /**
+         * Get the number of selector (I/O) threads
+         * @return The number of selector threads
+         */
+        public int getSelectorThreads() {
+            return mSelectorThreads;
+        }
+
+        /**
+         * Set the number of worker threads, which parse responses and complete the futures
+         * @param threads The number of worker threads (Default: 2)
+         * @return The same instance
+         */
+        public Builder setWorkerThreads(int threads) {
+            this.mWorkerThreads = threads;
+            return this;
+        }
+
+        /**
+         * Get the number of worker threads
+         * @return The number of worker threads
+         */
+        public int getWorkerThreads() {
+            return mWorkerThreads;
+        }
+
+        /**
+         * Set how long a request may take, waiting for a free connection included, before it fails with a
+         * {@link TimeoutException}
+         * @param millis Request timeout in milliseconds (Default: 30000)
+         * @return The same instance
+         */
+        public Builder setRequestTimeoutMillis(long millis) {
+            this.mRequestTimeoutMillis = millis;
+            return this;
+        }
+
+        /**
+         * Get how long a request may take
+         * @return Request timeout in milliseconds
+         */
+        public long getRequestTimeoutMillis() {
+            return mRequestTimeoutMillis;
+        }
+
+        /**
+         * Set how long a connection is kept open without carrying a request before it is closed
+         * @param millis Idle timeout in milliseconds (Default: 60000)
+         * @return The same instance
+         */
+        public Builder setIdleTimeoutMillis(long millis) {
+            this.mIdleTimeoutMillis = millis;
+            return this;
+        }
+
+        /**
+         * Get how long a connection is kept open without carrying a request
+         * @return Idle timeout in milliseconds
+         */
+        public long getIdleTimeoutMillis() {
+            return mIdleTimeoutMillis;
+        }
+
+        /**
+         * Set the number of connections {@link GambitSDKService} opens to the event endpoint as soon as it starts
+         * the transport, so that the first events don't pay for the TCP and TLS handshakes. At most the maximum
+         * connections per host are opened.
+         * @param connections Connections to open in advance (Default: 0)
+         * @return The same instance
+         */
+        public Builder setWarmupConnections(int connections) {
+            this.mWarmupConnections = connections;
+            return this;
+        }
+
+        /**
+         * Get the number of connections opened to the event endpoint in advance
+         * @return Connections to open in advance
+         */
+        public int getWarmupConnections() {
+            return mWarmupConnections;
+        }
+
+        /**
+         * Build and start the transport
+         * @return A running {@link GambitAsyncTransport}
+         * @throws IOException If the transport fails to start
+         */
+        public GambitAsyncTransport build() throws IOException {
+            validate();
+            return new GambitAsyncTransport(this);
+        }
+
+        /**
+         * Validate the builder integrity before proceeding with object creation
+         * @throws IllegalArgumentException If any of the settings is out of range
+         */
+        protected void validate() {
+            if (mMaxConnectionsPerHost < 1 || mSelectorThreads < 1 || mWorkerThreads < 1 || mRequestTimeoutMillis < 1 || mIdleTimeoutMillis < 1) {
+                throw new IllegalArgumentException("Connection and thread counts and the timeouts must be positive.");
+            }
+
+            if (mWarmupConnections < 0) {
+                throw new IllegalArgumentException("The number of warm-up connections may not be negative.");
+            }
+        }
+    }
+
+    /**
+     * A request along with its future and the response read so far
+     */
+    protected static class Exchange {
+        protected final GambitRequest mRequest;
+        protected final Host mHost;
+        protected final String mPath;
+        protected final byte[] mBody;
+        protected final Map<String, String> mHeaders;
+        protected final CompletableFuture<GambitResponse> mFuture = new CompletableFuture<>();
+        protected final ByteArrayOutputStream mResponse = new ByteArrayOutputStream();
+        protected ScheduledFuture<?> mTimeout;
+        protected Connection<?> mConnection;
+
+        protected Exchange(GambitRequest request, Host host, String path, byte[] body, Map<String, String> headers) {
+            mRequest = request;
+            mHost = host;
+            mPath = path;
+            mBody = body;
+            mHeaders = headers;
+        }
+    }
+
+    /**
+     * The connections to one host and the requests waiting for one of them
+     */
+    protected static class Host {
+        protected final String mName;
+        protected final int mPort;
+        protected final boolean mSecure;
+        /**
+         * Idle connections, the most recently used first
+         */
+        protected final ArrayDeque<Connection<?>> mIdle = new ArrayDeque<>();
+        protected final Map<Connection<?>, Long> mIdleSince = new HashMap<>();
+        protected final Set<Connection<?>> mOpen = new HashSet<>();
+        protected final ArrayDeque<Exchange> mWaiting = new ArrayDeque<>();
+        protected int mConnecting;
+
+        protected Host(String name, int port, boolean secure) {
+            mName = name;
+            mPort = port;
+            mSecure = secure;
+        }
+
+        protected void idle(Connection<?> connection) {
+            mIdle.push(connection);
+            mIdleSince.put(connection, System.nanoTime());
+        }
+
+        protected Connection<?> takeIdle() {
+            Connection<?> connection = mIdle.pop();
+            mIdleSince.remove(connection);
+            return connection;
+        }
+
+        protected void forget(Connection<?> connection) {
+            mOpen.remove(connection);
+            mIdle.remove(connection);
+            mIdleSince.remove(connection);
+        }
+    }
+
+    protected final int mMaxConnectionsPerHost;
+    protected final long mRequestTimeoutMillis;
+    protected final long mIdleTimeoutNanos;
+    protected final int mWarmupConnections;
+    protected final TCPNIOTransport mTransport;
+    protected final FilterChain mPlainChain;
+    protected final FilterChain mSecureChain;
+    protected final ScheduledExecutorService mTimer;
+
+    /**
+     * Hosts by scheme, name and port
+     */
+    protected final Map<String, Host> mHosts = new ConcurrentHashMap<>();
+
+    /**
+     * The exchange each busy connection is carrying
+     */
+    protected final Map<Connection<?>, Exchange> mActive = new ConcurrentHashMap<>();
+
+    /**
+     * Requests sent on a connection that was already open
+     */
+    protected final AtomicLong mHits = new AtomicLong();
+
+    /**
+     * Requests that had to wait for a new connection
+     */
+    protected final AtomicLong mMisses = new AtomicLong();
+
+    /**
+     * Connections closed for being idle too long
+     */
+    protected final AtomicLong mEvicted = new AtomicLong();
+
+    /**
+     * Create and start the transport using its {@link Builder}
+     * @param builder The {@link Builder} object
+     * @throws IOException If the transport fails to start
+     */
+    protected GambitAsyncTransport(Builder builder) throws IOException {
+        mMaxConnectionsPerHost = builder.getMaxConnectionsPerHost();
+        mRequestTimeoutMillis = builder.getRequestTimeoutMillis();
+        mIdleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.getIdleTimeoutMillis());
+        mWarmupConnections = builder.getWarmupConnections();
+
+        mPlainChain = FilterChainBuilder.stateless()
+                .add(new TransportFilter())
+                .add(new HttpClientFilter())
+                .add(new ResponseFilter())
+                .build();
+
+        mSecureChain = FilterChainBuilder.stateless()
+                .add(new TransportFilter())
+                .add(new SSLFilter(null, createSslConfigurator()))
+                .add(new HttpClientFilter())
+                .add(new ResponseFilter())
+                .build();
+
+        mTransport = TCPNIOTransportBuilder.newInstance()
+                .setSelectorThreadPoolConfig(ThreadPoolConfig.defaultConfig()
+                        .setPoolName("cogs-http-selector")
+                        .setCorePoolSize(builder.getSelectorThreads())
+                        .setMaxPoolSize(builder.getSelectorThreads())
+                        .setDaemon(true))
+                .setSelectorRunnersCount(builder.getSelectorThreads())
+                .setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig()
+                        .setPoolName("cogs-http-worker")
+                        .setCorePoolSize(builder.getWorkerThreads())
+                        .setMaxPoolSize(builder.getWorkerThreads())
+                        .setDaemon(true))
+                .setTcpNoDelay(true)
+                .setKeepAlive(true)
+                .build();
+        mTransport.setProcessor(mPlainChain);
+        mTransport.start();
+
+        mTimer = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "cogs-http-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long evictEvery = Math.max(1, builder.getIdleTimeoutMillis() / 2);
+        mTimer.scheduleWithFixedDelay(this::evictIdle, evictEvery, evictEvery, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send a request without blocking.
+     * @param request The request to send
+     * @return Promised response; fails with an {@link IOException} if the request could not be sent or the
+     *         connection was lost, or a {@link TimeoutException} if it took too long
+     */
+    public CompletableFuture<GambitResponse> send(GambitRequest request) {
+        Exchange exchange;
+
+        try {
+            URL url = request.getUrl();
+            String path = url.getFile().isEmpty() ? "/" : url.getFile();
+
+            exchange = new Exchange(request, host(url), path, request.getBodyBytes(), request.getHeaders());
+        } catch (Exception e) {
+            CompletableFuture<GambitResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        Exchange timed = exchange;
+        exchange.mTimeout = mTimer.schedule(() -> expire(timed), mRequestTimeoutMillis, TimeUnit.MILLISECONDS);
+
+        synchronized (exchange.mHost) {
+            exchange.mHost.mWaiting.add(exchange);
+        }
+
+        dispatch(exchange.mHost);
+
+        return exchange.mFuture;
+    }
+
+    /**
+     * Open connections to the host of a URL ahead of the first request, so that it doesn't pay for the TCP and TLS
+     * handshakes. No more connections are opened than the maximum per host.
+     * @param url Any URL on the host
+     * @param connections The number of connections the host should have open
+     * @return Promise completed once all the connections were attempted, with the number that were opened
+     */
+    public CompletableFuture<Integer> warmUp(URL url, int connections) {
+        Host host = host(url);
+        int count;
+
+        synchronized (host) {
+            count = Math.max(0, Math.min(connections, mMaxConnectionsPerHost) - host.mOpen.size() - host.mConnecting);
+            host.mConnecting += count;
+        }
+
+        List<CompletableFuture<Boolean>> attempts = new ArrayList<>();
+
+        for (int i = 0; i < count; ++i) {
+            CompletableFuture<Boolean> attempt = new CompletableFuture<>();
+            attempts.add(attempt);
+            connect(host, attempt);
+        }
+
+        return CompletableFuture.allOf(attempts.toArray(new CompletableFuture<?>[0])).thenApply((done) -> {
+            int opened = 0;
+
+            for (CompletableFuture<Boolean> attempt : attempts) {
+                opened += attempt.join() ? 1 : 0;
+            }
+
+            return opened;
+        });
+    }
+
+    /**
+     * Get the number of connections to open to the event endpoint in advance, as configured on the {@link Builder}
+     * @return Connections to open in advance
+     */
+    public int getWarmupConnections() {
+        return mWarmupConnections;
+    }
+
+    /**
+     * Stop the transport, closing all connections. Requests in flight fail.
+     */
+    public void shutdown() {
+        mTimer.shutdownNow();
+
+        try {
+            mTransport.shutdownNow();
+        } catch (IOException e) {
+            // The connections are being closed regardless
+        }
+    }
+
+    /**
+     * Get the number of connections open to all hosts
+     * @return Open connections
+     */
+    public int getOpenConnections() {
+        int open = 0;
+
+        for (Host host : mHosts.values()) {
+            synchronized (host) {
+                open += host.mOpen.size();
+            }
+        }
+
+        return open;
+    }
+
+    /**
+     * Get the number of open connections not carrying a request
+     * @return Idle connections
+     */
+    public int getIdleConnections() {
+        int idle = 0;
+
+        for (Host host : mHosts.values()) {
+            synchronized (host) {
+                idle += host.mIdle.size();
+            }
+        }
+
+        return idle;
+    }
+
+    /**
+     * Get the number of requests sent on a connection that was already open
+     * @return Connection pool hits
+     */
+    public long getPoolHits() {
+        return mHits.get();
+    }
+
+    /**
+     * Get the number of requests that had to wait for a new connection
+     * @return Connection pool misses
+     */
+    public long getPoolMisses() {
+        return mMisses.get();
+    }
+
+    /**
+     * Get the number of connections closed for being idle longer than the idle timeout
+     * @return Evicted connections
+     */
+    public long getEvictedConnections() {
+        return mEvicted.get();
+    }
+
+    /**
+     * Get the number of requests waiting for a free connection
+     * @return Waiting requests
+     */
+    public int getWaitingRequests() {
+        int waiting = 0;
+
+        for (Host host : mHosts.values()) {
+            synchronized (host) {
+                waiting += host.mWaiting.size();
+            }
+        }
+
+        return waiting;
+    }
+
+    /**
+     * Client side TLS settings: the default trust store, and the host name checked against the certificate.
+     * @return The configurator creating the client {@link SSLEngine}s
+     */
+    protected SSLEngineConfigurator createSslConfigurator() {
+        try {
+            return new SSLEngineConfigurator(SSLContext.getDefault(), true, false, false) {
+                @Override
+                public SSLEngine createSSLEngine(String peerHost, int peerPort) {
+                    SSLEngine engine = super.createSSLEngine(peerHost, peerPort);
+                    SSLParameters parameters = engine.getSSLParameters();
+                    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                    engine.setSSLParameters(parameters);
+                    return engine;
+                }
+            };
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("TLS is not available.", e);
+        }
+    }
+
+    /**
+     * Pair waiting requests with idle connections, opening new connections while below the per-host maximum.
+     * @param host The host whose requests to send
+     */
+    protected void dispatch(Host host) {
+        List<Exchange> ready = new ArrayList<>();
+        int connect = 0;
+
+        synchronized (host) {
+            while (!host.mWaiting.isEmpty()) {
+                if (!host.mIdle.isEmpty()) {
+                    Exchange exchange = host.mWaiting.poll();
+                    exchange.mConnection = host.takeIdle();
+                    ready.add(exchange);
+                    mHits.incrementAndGet();
+                } else if (host.mOpen.size() + host.mConnecting + connect < mMaxConnectionsPerHost
+                        && host.mConnecting + connect < host.mWaiting.size()) {
+                    ++connect;
+                } else {
+                    break;
+                }
+            }
+
+            host.mConnecting += connect;
+        }
+
+        for (Exchange exchange : ready) {
+            write(exchange);
+        }
+
+        for (int i = 0; i < connect; ++i) {
+            connect(host, null);
+        }
+    }
+
+    /**
+     * Get the connections of the host of a URL
+     * @param url Any URL on the host
+     * @return The {@link Host}
+     */
+    protected Host host(URL url) {
+        boolean secure = "https".equalsIgnoreCase(url.getProtocol());
+        int port = (url.getPort() == -1) ? url.getDefaultPort() : url.getPort();
+
+        return mHosts.computeIfAbsent(url.getProtocol() + "://" + url.getHost() + ":" + port,
+                (key) -> new Host(url.getHost(), port, secure));
+    }
+
+    /**
+     * Open a new connection to a host, which then takes the next waiting request
+     * @param host The host to connect to
+     * @param warmup Completed with whether the connection was opened when warming up; null when a waiting request
+     *               needs the connection, in which case that request fails if connecting fails
+     */
+    protected void connect(Host host, CompletableFuture<Boolean> warmup) {
+        TCPNIOConnectorHandler connector = TCPNIOConnectorHandler.builder(mTransport)
+                .processor(host.mSecure ? mSecureChain : mPlainChain)
+                .build();
+
+        connector.connect(new InetSocketAddress(host.mName, host.mPort), null, new CompletionHandler<Connection>() {
+            @Override
+            public void completed(Connection connection) {
+                Exchange exchange;
+
+                synchronized (host) {
+                    --host.mConnecting;
+                    host.mOpen.add(connection);
+                    exchange = host.mWaiting.poll();
+
+                    if (exchange == null) {
+                        host.idle(connection);
+                    } else {
+                        exchange.mConnection = connection;
+                        mMisses.incrementAndGet();
+                    }
+                }
+
+                if (exchange != null) {
+                    write(exchange);
+                }
+
+                if (warmup != null) {
+                    warmup.complete(true);
+                }
+
+                dispatch(host);
+            }
+
+            @Override
+            public void failed(Throwable error) {
+                Exchange exchange = null;
+
+                synchronized (host) {
+                    --host.mConnecting;
+
+                    if (warmup == null) {
+                        exchange = host.mWaiting.poll();
+                    }
+                }
+
+                if (warmup != null) {
+                    warmup.complete(false);
+                }
+
+                if (exchange != null) {
+                    fail(exchange, new IOException("Unable to connect to " + host.mName + ":" + host.mPort, error));
+                }
+
+                dispatch(host);
+            }
+
+            @Override
+            public void cancelled() {
+                failed(new IOException("Connecting was cancelled."));
+            }
+
+            @Override
+            public void updated(Connection connection) {
+            }
+        });
+    }
+
+    /**
+     * Write a request on the connection it was paired with
+     * @param exchange The request and its connection
+     */
+    @SuppressWarnings("unchecked")
+    protected void write(Exchange exchange) {
+        Connection<?> connection = exchange.mConnection;
+
+        if (exchange.mFuture.isDone()) {
+            release(exchange.mHost, connection, true); // timed out while waiting
+            return;
+        }
+
+        mActive.put(connection, exchange);
+
+        HttpRequestPacket.Builder request = HttpRequestPacket.builder()
+                .method(exchange.mRequest.getMethod())
+                .uri(exchange.mPath)
+                .protocol(Protocol.HTTP_1_1)
+                .host(exchange.mHost.mName)
+                .contentLength(exchange.mBody.length);
+
+        for (Map.Entry<String, String> header : exchange.mHeaders.entrySet()) {
+            request.header(header.getKey(), header.getValue());
+        }
+
+        HttpRequestPacket packet = request.build();
+        Buffer body = Buffers.wrap(mTransport.getMemoryManager(), exchange.mBody);
+
+        ((Connection<Object>) connection).write(HttpContent.builder(packet).content(body).last(true).build());
+    }
+
+    /**
+     * Return a connection to its host once its exchange is over, or close it if it can't be reused.
+     * @param host The host of the connection
+     * @param connection The connection
+     * @param keepAlive Whether the connection may carry another request
+     */
+    protected void release(Host host, Connection<?> connection, boolean keepAlive) {
+        synchronized (host) {
+            if (keepAlive && host.mOpen.contains(connection)) {
+                host.idle(connection);
+            } else {
+                host.forget(connection);
+            }
+        }
+
+        if (!keepAlive) {
+            connection.closeSilently();
+        }
+
+        dispatch(host);
+    }
+
+    /**
+     * Forget a closed connection, failing the request it carried
+     * @param connection The closed connection
+     */
+    protected void closed(Connection<?> connection) {
+        Exchange exchange = mActive.remove(connection);
+
+        for (Host host : mHosts.values()) {
+            boolean removed;
+
+            synchronized (host) {
+                removed = host.mOpen.contains(connection);
+                host.forget(connection);
+            }
+
+            if (removed) {
+                dispatch(host);
+                break;
+            }
+        }
+
+        if (exchange != null) {
+            fail(exchange, new IOException("The connection was closed before a response was received."));
+        }
+    }
+
+    /**
+     * Fail a request that took longer than the timeout; if it was on a connection, the connection is closed since
+     * its response can no longer be told apart from the next one.
+     * @param exchange The request
+     */
+    protected void expire(Exchange exchange) {
+        boolean waiting;
+
+        synchronized (exchange.mHost) {
+            waiting = exchange.mHost.mWaiting.remove(exchange);
+        }
+
+        fail(exchange, new TimeoutException("No response within " + mRequestTimeoutMillis + " ms."));
+
+        if (!waiting && exchange.mConnection != null && mActive.remove(exchange.mConnection, exchange)) {
+            release(exchange.mHost, exchange.mConnection, false);
+        }
+    }
+
+    /**
+     * Close the connections that have been idle longer than the idle timeout. The least recently used connections
+     * are at the end of the idle list, so only those are looked at.
+     */
+    protected void evictIdle() {
+        long now = System.nanoTime();
+
+        for (Host host : mHosts.values()) {
+            List<Connection<?>> evicted = new ArrayList<>();
+
+            synchronized (host) {
+                while (!host.mIdle.isEmpty() && now - host.mIdleSince.get(host.mIdle.peekLast()) > mIdleTimeoutNanos) {
+                    Connection<?> connection = host.mIdle.peekLast();
+                    host.forget(connection);
+                    evicted.add(connection);
+                }
+            }
+
+            for (Connection<?> connection : evicted) {
+                mEvicted.incrementAndGet();
+                connection.closeSilently();
+            }
+        }
+    }
+
+    protected void fail(Exchange exchange, Throwable error) {
+        if (exchange.mTimeout != null) {
+            exchange.mTimeout.cancel(false);
+        }
+
+        exchange.mFuture.completeExceptionally(error);
+    }
+
+    /**
+     * Last filter of the chain: collects the response of the exchange carried by the connection
+     */
+    protected class ResponseFilter extends BaseFilter {
+
+        @Override
+        public NextAction handleRead(FilterChainContext ctx) throws IOException {
+            Connection<?> connection = ctx.getConnection();
+            HttpContent content = ctx.getMessage();
+            Exchange exchange = mActive.get(connection);
+
+            if (exchange == null) {
+                return ctx.getStopAction();
+            }
+
+            Buffer buffer = content.getContent();
+
+            if (buffer.hasRemaining()) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                exchange.mResponse.write(bytes, 0, bytes.length);
+            }
+
+            if (content.isLast() && mActive.remove(connection, exchange)) {
+                HttpResponsePacket response = (HttpResponsePacket) content.getHttpHeader();
+                boolean keepAlive = response.getProtocol() == Protocol.HTTP_1_1
+                        && !"close".equalsIgnoreCase(response.getHeader("Connection"));
+
+                if (exchange.mTimeout != null) {
+                    exchange.mTimeout.cancel(false);
+                }
+
+                try {
+                    String body = new String(exchange.mResponse.toByteArray(), StandardCharsets.UTF_8);
+                    exchange.mFuture.complete(exchange.mRequest.getResponse(body, response.getStatus()));
+                } catch (Throwable e) {
+                    exchange.mFuture.completeExceptionally(e);
+                }
+
+                release(exchange.mHost, connection, keepAlive);
+            }
+
+            return ctx.getStopAction();
+        }
+
+        @Override
+        public NextAction handleClose(FilterChainContext ctx) throws IOException {
+            closed(ctx.getConnection());
+            return ctx.getStopAction();
+        }
+    }
+}
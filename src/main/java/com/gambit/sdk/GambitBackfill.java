@@ -0,0 +1,830 @@
+package com.gambit.sdk;
+
+import com.gambit.sdk.request.GambitRequestEvent;
+import com.gambit.sdk.response.GambitResponseEvent;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends the events of an NDJSON file, one JSON object per line, to the event endpoint. Each line holds the fields
+ * of one event as sent to the endpoint, without the keys: {@code event_name}, {@code namespace} (optional if a
+ * default is set), {@code timestamp} (optional, the time of sending by default), {@code attributes}, and
+ * optionally {@code tags}, {@code campaign_id}, {@code debug_directive} and {@code forward_as_message}.
+ *
+ * The file is memory-mapped a chunk of lines at a time. Signer threads parse, validate and sign the events of
+ * their chunk, then send them over the non-blocking transport; at most a fixed number of events are in flight, so
+ * signing waits for the endpoint rather than piling events up in memory.
+ *
+ * The position up to which every event was taken is written to a checkpoint file after each chunk, and a later
+ * run resumes from there. Events the endpoint rejects, and lines that aren't valid events, are written to a reject
+ * file and don't stop the backfill. An event the endpoint fails to take, through an I/O error or a server error,
+ * stops it: the events in flight complete, and running it again resumes at the chunk of the failed event, sending
+ * the events of that chunk that were already taken once more.
+ */
+public class GambitBackfill {
+
+    /**
+     * Configures and builds a {@link GambitBackfill}
+     */
+    public static class Builder {
+
+        /**
+         * The NDJSON file holding the events
+         */
+        protected final File mFile;
+
+        /**
+         * Obtained through Gambit UI
+         */
+        protected final String mAccessKey;
+
+        /**
+         * Obtained through GambitToolsSDK
+         */
+        protected final String mClientSalt;
+
+        /**
+         * Obtained through GambitToolsSDK
+         */
+        protected final String mClientSecret;
+
+        /**
+         * Namespace of the events whose line doesn't name one
+         */
+        protected String mNamespace;
+
+        /**
+         * File holding the position to resume from; the events file with ".checkpoint" appended by default
+         */
+        protected File mCheckpointFile;
+
+        /**
+         * File the rejected lines are appended to; null only counts them
+         */
+        protected File mRejectFile;
+
+        /**
+         * Threads parsing, validating and signing events
+         */
+        protected int mSignerThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Events sent and not yet answered at most
+         */
+        protected int mMaxInFlight = 64;
+
+        /**
+         * Bytes of the file mapped and handed to a signer thread at a time
+         */
+        protected int mChunkBytes = 1024 * 1024;
+
+        /**
+         * Create the builder of a backfill of the given file
+         * @param file The NDJSON file holding the events
+         * @param access_key The access key obtained through Gambit UI
+         * @param client_salt The client salt obtained from GambitToolsSDK
+         * @param client_secret The client secret obtained from GambitToolsSDK
+         */
+        public Builder(File file, String access_key, String client_salt, String client_secret) {
+            this.mFile = file;
+            this.mAccessKey = access_key;
+            this.mClientSalt = client_salt;
+            this.mClientSecret = client_secret;
+        }
+
+        /**
+         * Get the NDJSON file holding the events
+         * @return The events file
+         */
+        public File getFile() {
+            return mFile;
+        }
+
+        /**
+         * Get the access key the events are sent with
+         * @return The access key
+         */
+        public String getAccessKey() {
+            return mAccessKey;
+        }
+
+        /**
+         * Get the client salt the events are sent with
+         * @return The client salt
+         */
+        public String getClientSalt() {
+            return mClientSalt;
+        }
+
+        /**
+         * Get the client secret the events are signed with
+         * @return The client secret
+         */
+        public String getClientSecret() {
+            return mClientSecret;
+        }
+
+        /**
+         * Set the namespace of the events whose line doesn't name one
+         * @param namespace The default namespace
+         * @return The same instance
+         */
+        public Builder setNamespace(String namespace) {
+            this.mNamespace = namespace;
+            return this;
+        }
+
+        /**
+         * Get the namespace of the events whose line doesn't name one
+         * @return The default namespace, or null
+         */
+        public String getNamespace() {
+            return mNamespace;
+        }
+
+        /**
+         * Set the file holding the position to resume from
+         * @param file The checkpoint file (default: the events file with ".checkpoint" appended)
+         * @return The same instance
+         */
+        public Builder setCheckpointFile(File file) {
+            this.mCheckpointFile = file;
+            return this;
+        }
+
+        /**
+         * Get the file holding the position to resume from
+         * @return The checkpoint file
+         */
+        public File getCheckpointFile() {
+            return (mCheckpointFile != null) ? mCheckpointFile : new File(mFile.getPath() + ".checkpoint");
+        }
+
+        /**
+         * Set the file the rejected lines are appended to, to fix and send them later
+         * @param file The reject file (default: none, rejected lines are only counted)
+         * @return The same instance
+         */
+        public Builder setRejectFile(File file) {
+            this.mRejectFile = file;
+            return this;
+        }
+
+        /**
+         * Get the file the rejected lines are appended to
+         * @return The reject file, or null
+         */
+        public File getRejectFile() {
+            return mRejectFile;
+        }
+
+        /**
+         * Set the number of threads parsing, validating and signing events
+         * @param threads Number of signer threads (default: the number of processors)
+         * @return The same instance
+         */
+        public Builder setSignerThreads(int threads) {
+            this.mSignerThreads = threads;
+            return this;
+        }
+
+        /**
+         * Get the number of threads parsing, validating and signing events
+         * @return Number of signer threads
+         */
+        public int getSignerThreads() {
+            return mSignerThreads;
+        }
+
+        /**
+         * Set the number of events sent and not yet answered at most. The transport needs as many connections to
+         * the endpoint to send them all at once.
+         * @param events Maximum events in flight (default 64)
+         * @return The same instance
+         */
+        public Builder setMaxInFlight(int events) {
+            this.mMaxInFlight = events;
+            return this;
+        }
+
+        /**
+         * Get the number of events sent and not yet answered at most
+         * @return Maximum events in flight
+         */
+        public int getMaxInFlight() {
+            return mMaxInFlight;
+        }
+
+        /**
+         * Set the number of bytes of the file mapped and handed to a signer thread at a time. A chunk is extended to
+         * the end of its last line, and the checkpoint moves a whole chunk at a time.
+         * @param bytes Chunk size in bytes (default 1 MiB)
+         * @return The same instance
+         */
+        public Builder setChunkBytes(int bytes) {
+            this.mChunkBytes = bytes;
+            return this;
+        }
+
+        /**
+         * Get the number of bytes of the file mapped and handed to a signer thread at a time
+         * @return Chunk size in bytes
+         */
+        public int getChunkBytes() {
+            return mChunkBytes;
+        }
+
+        /**
+         * Build the backfill
+         * @return A new {@link GambitBackfill}, ready to {@link GambitBackfill#run()}
+         */
+        public GambitBackfill build() {
+            validate();
+            return new GambitBackfill(this);
+        }
+
+        /**
+         * Validate the builder integrity before proceeding with object creation
+         */
+        protected void validate() {
+            if (mFile == null || mAccessKey == null || mClientSalt == null || mClientSecret == null) {
+                throw new IllegalArgumentException("The events file, access key, client salt and client secret are required.");
+            }
+
+            if (mSignerThreads < 1 || mMaxInFlight < 1 || mChunkBytes < 1) {
+                throw new IllegalArgumentException("Signer threads, events in flight and chunk size must be positive.");
+            }
+        }
+    }
+
+    /**
+     * A run of whole lines of the file, mapped into memory
+     */
+    protected static class Chunk {
+        protected final long mStart;
+        protected final long mEnd;
+        protected final ByteBuffer mBuffer;
+
+        /**
+         * Events of the chunk not yet answered, plus one while the chunk is being signed
+         */
+        protected final AtomicInteger mPending = new AtomicInteger(1);
+
+        /**
+         * Whether the endpoint failed an event of the chunk, which keeps the checkpoint before it
+         */
+        protected volatile boolean mFailed;
+
+        protected boolean mDone;
+
+        protected Chunk(long start, long end, ByteBuffer buffer) {
+            mStart = start;
+            mEnd = end;
+            mBuffer = buffer;
+        }
+    }
+
+    /**
+     * An event that was signed ahead of sending
+     */
+    protected static class SignedEvent extends GambitRequest {
+        protected final URL mUrl;
+        protected final byte[] mBody;
+        protected final String mSignature;
+
+        protected SignedEvent(URL url, byte[] body, String signature) {
+            mUrl = url;
+            mBody = body;
+            mSignature = signature;
+        }
+
+        @Override
+        protected String getMethod() {
+            return "POST";
+        }
+
+        @Override
+        protected URL getUrl() {
+            return mUrl;
+        }
+
+        @Override
+        protected String getBody() {
+            return new String(mBody, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        protected byte[] getBodyBytes() {
+            return mBody;
+        }
+
+        @Override
+        protected Map<String, String> getHeaders() {
+            Map<String, String> headers = super.getHeaders();
+            headers.put("Payload-HMAC", mSignature);
+            return headers;
+        }
+
+        @Override
+        protected void setRequestParams(HttpURLConnection connection) {
+        }
+
+        @Override
+        protected GambitResponse getResponse(String response, int code) {
+            return new GambitResponseEvent(response, code);
+        }
+    }
+
+    protected final File mFile;
+    protected final String mAccessKey;
+    protected final String mClientSalt;
+    protected final String mClientSecret;
+    protected final String mNamespace;
+    protected final File mCheckpointFile;
+    protected final File mRejectFile;
+    protected final int mSignerThreads;
+    protected final int mMaxInFlight;
+    protected final int mChunkBytes;
+
+    /**
+     * Permits for the events in flight
+     */
+    protected final Semaphore mWindow;
+
+    /**
+     * Chunks handed to the signer threads and not yet done, by start position
+     */
+    protected final TreeMap<Long, Chunk> mChunks = new TreeMap<>();
+
+    /**
+     * Position up to which every event was taken
+     */
+    protected final AtomicLong mCheckpoint = new AtomicLong();
+
+    /**
+     * Position last written to the checkpoint file
+     */
+    protected long mWrittenCheckpoint = -1;
+
+    /**
+     * The first failure of the endpoint, which stops the backfill
+     */
+    protected final AtomicReference<Throwable> mFailure = new AtomicReference<>();
+
+    protected final AtomicLong mSent = new AtomicLong();
+    protected final AtomicLong mRejected = new AtomicLong();
+    protected volatile long mFileBytes;
+
+    protected URL mUrl;
+    protected OutputStream mRejects;
+
+    /**
+     * Create the backfill using its {@link Builder}
+     * @param builder The {@link Builder} object
+     */
+    protected GambitBackfill(Builder builder) {
+        mFile = builder.getFile();
+        mAccessKey = builder.getAccessKey();
+        mClientSalt = builder.getClientSalt();
+        mClientSecret = builder.getClientSecret();
+        mNamespace = builder.getNamespace();
+        mCheckpointFile = builder.getCheckpointFile();
+        mRejectFile = builder.getRejectFile();
+        mSignerThreads = builder.getSignerThreads();
+        mMaxInFlight = builder.getMaxInFlight();
+        mChunkBytes = builder.getChunkBytes();
+        mWindow = new Semaphore(mMaxInFlight);
+    }
+
+    /**
+     * Send the events of the file from the checkpoint on, and wait until all were answered. A backfill runs once;
+     * build a new one to resume after a failure.
+     * @throws IOException If the file can't be read, or the endpoint failed an event; the checkpoint is written
+     * either way
+     * @throws InterruptedException If interrupted while waiting; the events in flight are still answered
+     */
+    public void run() throws IOException, InterruptedException {
+        mUrl = getEventUrl();
+        mCheckpoint.set(readCheckpoint());
+
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService signers = Executors.newFixedThreadPool(mSignerThreads, (runnable) -> {
+            Thread thread = new Thread(runnable, "cogs-backfill-signer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Two chunks per thread, so a thread finds the next one mapped when it is done with its own
+        Semaphore chunks = new Semaphore(2 * mSignerThreads);
+
+        try (FileChannel channel = FileChannel.open(mFile.toPath(), StandardOpenOption.READ)) {
+            mFileBytes = channel.size();
+
+            if (mCheckpoint.get() > mFileBytes) {
+                throw new IOException("The checkpoint " + mCheckpointFile + " is past the end of " + mFile + "; it belongs to another file.");
+            }
+
+            if (mRejectFile != null) {
+                mRejects = new BufferedOutputStream(new FileOutputStream(mRejectFile, true));
+            }
+
+            long position = mCheckpoint.get();
+
+            try {
+                while (position < mFileBytes && mFailure.get() == null) {
+                    chunks.acquire();
+
+                    Chunk chunk = map(channel, position);
+
+                    synchronized (mChunks) {
+                        mChunks.put(chunk.mStart, chunk);
+                    }
+
+                    signers.execute(() -> {
+                        try {
+                            sign(chunk);
+                        } finally {
+                            chunks.release();
+                        }
+                    });
+
+                    position = chunk.mEnd;
+                }
+            } finally {
+                signers.shutdown();
+
+                while (!signers.awaitTermination(1, TimeUnit.SECONDS)) {
+                    // Signing threads wait for the window, which empties as the endpoint answers
+                }
+
+                mWindow.acquireUninterruptibly(mMaxInFlight);
+                mWindow.release(mMaxInFlight);
+
+                if (mRejects != null) {
+                    synchronized (mRejects) {
+                        mRejects.close();
+                    }
+                }
+
+                writeCheckpoint();
+            }
+        }
+
+        Throwable failure = mFailure.get();
+
+        if (failure != null) {
+            throw new IOException("The endpoint failed an event; the backfill stopped at byte " + mCheckpoint.get()
+                    + " of " + mFileBytes + " and resumes there when run again.", failure);
+        }
+    }
+
+    /**
+     * Get the number of events the endpoint took
+     * @return Number of sent events
+     */
+    public long getSentCount() {
+        return mSent.get();
+    }
+
+    /**
+     * Get the number of lines that weren't valid events or that the endpoint rejected
+     * @return Number of rejected lines
+     */
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    /**
+     * Get the position up to which every event was taken
+     * @return Checkpoint in bytes from the start of the file
+     */
+    public long getCheckpoint() {
+        return mCheckpoint.get();
+    }
+
+    /**
+     * Get the size of the file, once the backfill is running
+     * @return File size in bytes
+     */
+    public long getFileBytes() {
+        return mFileBytes;
+    }
+
+    /**
+     * Get the number of events sent and not yet answered
+     * @return Events in flight
+     */
+    public int getInFlight() {
+        return mMaxInFlight - mWindow.availablePermits();
+    }
+
+    /**
+     * The URL the events are sent to
+     * @return The event endpoint of {@link GambitSDKService}
+     * @throws IOException If the endpoint hostname isn't valid
+     */
+    protected URL getEventUrl() throws IOException {
+        try {
+            return new URL("https://" + GambitSDKService.getInstance().getEndpointHostname() + "/event");
+        } catch (MalformedURLException e) {
+            throw new IOException("Invalid API endpoint.", e);
+        }
+    }
+
+    /**
+     * Send one signed event. Runs on a signer thread and mustn't block; override to change how an event reaches
+     * the endpoint.
+     * @param request The event to send
+     * @return Promised response to the event
+     * @throws IOException If the transport can't be started
+     */
+    protected CompletableFuture<GambitResponse> send(GambitRequest request) throws IOException {
+        return GambitSDKService.getInstance().getAsyncTransport().send(request);
+    }
+
+    /**
+     * Parse, validate and sign the event of one line
+     * @param line The line, without its line break
+     * @return The signed event, ready to send
+     * @throws Exception If the line isn't a valid event
+     */
+    protected GambitRequest prepare(String line) throws Exception {
+        JSONObject json = new JSONObject(line);
+
+        GambitRequestEvent.Builder builder = new GambitRequestEvent.Builder(mAccessKey, mClientSalt, mClientSecret)
+                .setEventName(json.optString("event_name", null))
+                .setNamespace(json.optString("namespace", mNamespace))
+                .setTimestamp(json.optString("timestamp", null))
+                .setCampaignId(json.optInt("campaign_id", 0))
+                .setDebugDirective(json.optString("debug_directive", null))
+                .setForwardAsMessage(json.optBoolean("forward_as_message", false));
+
+        JSONObject attributes = json.optJSONObject("attributes");
+
+        if (attributes != null) {
+            LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+
+            for (String key : attributes.keySet()) {
+                map.put(key, attributes.get(key));
+            }
+
+            builder.setAttributes(map);
+        }
+
+        JSONArray tags = json.optJSONArray("tags");
+
+        if (tags != null) {
+            ArrayList<String> list = new ArrayList<>();
+
+            for (int i = 0; i < tags.length(); ++i) {
+                list.add(tags.getString(i));
+            }
+
+            builder.setTags(list);
+        }
+
+        GambitRequest event = builder.build();
+        byte[] body = event.getBodyBytes();
+
+        return new SignedEvent(mUrl, body, GambitRequest.getHmac(body, mClientSecret));
+    }
+
+    /**
+     * Sign the events of a chunk and send them as the window allows. Runs on a signer thread.
+     * @param chunk The chunk
+     */
+    protected void sign(Chunk chunk) {
+        ByteBuffer buffer = chunk.mBuffer;
+        int start = 0;
+
+        try {
+            for (int i = 0; i <= buffer.limit() && mFailure.get() == null; ++i) {
+                if (i < buffer.limit() && buffer.get(i) != '\n') {
+                    continue;
+                }
+
+                int end = (i > start && buffer.get(i - 1) == '\r') ? i - 1 : i;
+                byte[] line = new byte[end - start];
+
+                buffer.position(start);
+                buffer.get(line);
+                start = i + 1;
+
+                send(chunk, new String(line, StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(chunk, e);
+        }
+
+        release(chunk);
+    }
+
+    /**
+     * Sign and send the event of one line, once there is room in the window
+     * @param chunk The chunk holding the line
+     * @param line The line
+     * @throws InterruptedException If interrupted while waiting for the window
+     */
+    protected void send(Chunk chunk, String line) throws InterruptedException {
+        if (line.trim().isEmpty()) {
+            return;
+        }
+
+        GambitRequest request;
+
+        try {
+            request = prepare(line);
+        } catch (Exception e) {
+            reject(line, e.getMessage());
+            return;
+        }
+
+        mWindow.acquire();
+        chunk.mPending.incrementAndGet();
+
+        CompletableFuture<GambitResponse> future;
+
+        try {
+            future = send(request);
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        future.whenComplete((response, error) -> {
+            try {
+                if (error != null || response.getRawCode() >= 500) {
+                    fail(chunk, (error != null) ? error : new IOException("The endpoint answered " + response.getRawCode() + "."));
+                } else if (response.getRawCode() >= 400) {
+                    reject(line, "The endpoint answered " + response.getRawCode() + ": " + response.getRawBody());
+                } else {
+                    mSent.incrementAndGet();
+                }
+
+                release(chunk);
+            } finally {
+                // Last, so that run() sees the outcome once it got all the permits back
+                mWindow.release();
+            }
+        });
+    }
+
+    /**
+     * Record that the endpoint failed an event, which stops the backfill
+     * @param chunk The chunk of the event
+     * @param error Why the event failed
+     */
+    protected void fail(Chunk chunk, Throwable error) {
+        chunk.mFailed = true;
+        mFailure.compareAndSet(null, error);
+    }
+
+    /**
+     * Record a line that isn't a valid event or that the endpoint rejected, appending it to the reject file
+     * @param line The line
+     * @param reason Why it was rejected
+     */
+    protected void reject(String line, String reason) {
+        mRejected.incrementAndGet();
+
+        if (mRejects == null) {
+            return;
+        }
+
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+
+        synchronized (mRejects) {
+            try {
+                mRejects.write(bytes);
+            } catch (IOException e) {
+                mFailure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    /**
+     * Count one answered event, or the end of signing, of a chunk, and move the checkpoint past the chunks all of
+     * whose events were taken
+     * @param chunk The chunk
+     */
+    protected void release(Chunk chunk) {
+        if (chunk.mPending.decrementAndGet() > 0 || chunk.mFailed) {
+            return;
+        }
+
+        synchronized (mChunks) {
+            chunk.mDone = true;
+
+            while (!mChunks.isEmpty() && mChunks.firstEntry().getValue().mDone) {
+                mCheckpoint.set(mChunks.pollFirstEntry().getValue().mEnd);
+            }
+        }
+
+        try {
+            writeCheckpoint();
+        } catch (IOException e) {
+            mFailure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Map the chunk of whole lines starting at a position, extending it past the chunk size if a line is longer
+     * @param channel The file
+     * @param position Start of the chunk
+     * @return The chunk
+     * @throws IOException If the file can't be mapped
+     */
+    protected Chunk map(FileChannel channel, long position) throws IOException {
+        long size = mChunkBytes;
+
+        while (true) {
+            long length = Math.min(size, mFileBytes - position);
+
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("The line at byte " + position + " of " + mFile + " is too long.");
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            if (position + length == mFileBytes) {
+                return new Chunk(position, position + length, buffer);
+            }
+
+            for (int i = (int) length - 1; i >= 0; --i) {
+                if (buffer.get(i) == '\n') {
+                    buffer.limit(i + 1);
+                    return new Chunk(position, position + i + 1, buffer);
+                }
+            }
+
+            size *= 2;
+        }
+    }
+
+    /**
+     * Read the position to resume from
+     * @return The checkpoint, or 0 if there is none
+     * @throws IOException If the checkpoint file can't be read
+     */
+    protected long readCheckpoint() throws IOException {
+        if (!mCheckpointFile.exists()) {
+            return 0;
+        }
+
+        String text = new String(Files.readAllBytes(mCheckpointFile.toPath()), StandardCharsets.US_ASCII).trim();
+
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("The checkpoint " + mCheckpointFile + " is not valid.", e);
+        }
+    }
+
+    /**
+     * Write the checkpoint if it moved, replacing the checkpoint file at once so a crash leaves the old or the new one
+     * @throws IOException If the checkpoint file can't be written
+     */
+    protected synchronized void writeCheckpoint() throws IOException {
+        long checkpoint = mCheckpoint.get();
+
+        if (checkpoint == mWrittenCheckpoint) {
+            return;
+        }
+
+        File temporary = new File(mCheckpointFile.getPath() + ".tmp");
+
+        Files.write(temporary.toPath(), Long.toString(checkpoint).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temporary.toPath(), mCheckpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        mWrittenCheckpoint = checkpoint;
+    }
+}
@@ -0,0 +1,174 @@
+package com.gambit.sdk;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line front end of {@link GambitBackfill}. The keys are read from the COGS_ACCESS_KEY, COGS_CLIENT_SALT
+ * and COGS_CLIENT_SECRET environment variables, so they don't show in the process list:
+ *
+ * <pre>
+ * java -cp cogs-java-client-sdk.jar:... com.gambit.sdk.GambitBackfillTool [options] events.ndjson
+ * </pre>
+ *
+ * Exits with 0 once every event was sent or rejected, 1 if the backfill stopped (run it again to resume) and 2 on
+ * invalid arguments.
+ */
+public class GambitBackfillTool {
+
+    protected static final String USAGE = "Usage: GambitBackfillTool [options] <events.ndjson>\n"
+            + "  --namespace <name>      namespace of events whose line doesn't name one\n"
+            + "  --host <hostname>       event endpoint hostname (default api.cogswell.io)\n"
+            + "  --in-flight <n>         events sent and not yet answered at most (default 64)\n"
+            + "  --threads <n>           threads parsing and signing events (default: processors)\n"
+            + "  --chunk-bytes <n>       bytes mapped at a time (default 1048576)\n"
+            + "  --checkpoint <file>     position to resume from (default <events.ndjson>.checkpoint)\n"
+            + "  --rejects <file>        file the rejected lines are appended to\n"
+            + "Keys are read from COGS_ACCESS_KEY, COGS_CLIENT_SALT and COGS_CLIENT_SECRET.";
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Run a backfill as described by command line arguments
+     * @param args The command line arguments
+     * @return The exit status
+     */
+    protected static int run(String[] args) {
+        GambitBackfill.Builder builder;
+        String host = null;
+        int inFlight = 64;
+
+        try {
+            String file = null;
+            String namespace = null;
+            String checkpoint = null;
+            String rejects = null;
+            Integer threads = null;
+            Integer chunkBytes = null;
+
+            for (int i = 0; i < args.length; ++i) {
+                String arg = args[i];
+
+                if (!arg.startsWith("--")) {
+                    if (file != null) {
+                        throw new IllegalArgumentException("Only one events file may be given.");
+                    }
+
+                    file = arg;
+                    continue;
+                }
+
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value of " + arg + ".");
+                }
+
+                String value = args[++i];
+
+                switch (arg) {
+                    case "--namespace": namespace = value; break;
+                    case "--host": host = value; break;
+                    case "--in-flight": inFlight = Integer.parseInt(value); break;
+                    case "--threads": threads = Integer.parseInt(value); break;
+                    case "--chunk-bytes": chunkBytes = Integer.parseInt(value); break;
+                    case "--checkpoint": checkpoint = value; break;
+                    case "--rejects": rejects = value; break;
+                    default: throw new IllegalArgumentException("Unknown option " + arg + ".");
+                }
+            }
+
+            if (file == null) {
+                throw new IllegalArgumentException("No events file given.");
+            }
+
+            builder = new GambitBackfill.Builder(new File(file), System.getenv("COGS_ACCESS_KEY"),
+                    System.getenv("COGS_CLIENT_SALT"), System.getenv("COGS_CLIENT_SECRET"))
+                    .setNamespace(namespace)
+                    .setMaxInFlight(inFlight);
+
+            if (threads != null) {
+                builder.setSignerThreads(threads);
+            }
+
+            if (chunkBytes != null) {
+                builder.setChunkBytes(chunkBytes);
+            }
+
+            if (checkpoint != null) {
+                builder.setCheckpointFile(new File(checkpoint));
+            }
+
+            if (rejects != null) {
+                builder.setRejectFile(new File(rejects));
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        GambitSDKService service = GambitSDKService.getInstance();
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "cogs-backfill-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            GambitBackfill backfill = builder.build();
+
+            if (host != null) {
+                service.setEndpointUrl(host);
+            }
+
+            // One connection per event in flight, so the window isn't spent waiting for a connection
+            service.setAsyncTransport(new GambitAsyncTransport.Builder()
+                    .setMaxConnectionsPerHost(inFlight)
+                    .setWarmupConnections(Math.min(inFlight, 8)));
+
+            long start = System.nanoTime();
+
+            progress.scheduleAtFixedRate(() -> report(backfill, start), 5, 5, TimeUnit.SECONDS);
+
+            try {
+                backfill.run();
+            } finally {
+                report(backfill, start);
+            }
+
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+
+            if (e.getCause() != null) {
+                System.err.println("Caused by: " + e.getCause());
+            }
+
+            return 1;
+        } finally {
+            progress.shutdownNow();
+            service.finish();
+        }
+    }
+
+    /**
+     * Print how far the backfill got
+     * @param backfill The backfill
+     * @param start When it started, from {@link System#nanoTime()}
+     */
+    protected static void report(GambitBackfill backfill, long start) {
+        double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        long total = Math.max(1, backfill.getFileBytes());
+
+        System.out.println(String.format("%.1f%% done: %d sent (%.0f/s), %d rejected, %d in flight",
+                100.0 * backfill.getCheckpoint() / total, backfill.getSentCount(), backfill.getSentCount() / seconds,
+                backfill.getRejectedCount(), backfill.getInFlight()));
+    }
+}
@@ -0,0 +1,245 @@
+package com.gambit.sdk;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool with a bounded number of threads and a bounded queue, used by {@link GambitSDKService} to run the
+ * blocking API calls. When both are full, further tasks are either rejected or run by the submitting thread,
+ * which slows the caller down to the pace of the endpoint instead of creating a thread per waiting request.
+ */
+public class GambitBoundedExecutor extends ThreadPoolExecutor {
+
+    /**
+     * What to do with a task when all threads are busy and the queue is full
+     */
+    public enum RejectionPolicy {
+        /**
+         * Throw a {@link RejectedExecutionException} to the submitting thread
+         */
+        REJECT,
+
+        /**
+         * Run the task on the submitting thread
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * Configures and builds a {@link GambitBoundedExecutor}
+     */
+    public static class Builder {
+
+        /**
+         * Threads kept while tasks keep arriving; like the others, they end once idle for the keep alive time
+         */
+        protected int mCoreThreads = 4;
+
+        /**
+         * Threads created at most, once the queue is full
+         */
+        protected int mMaxThreads = 16;
+
+        /**
+         * Tasks waiting for a thread at most
+         */
+        protected int mQueueCapacity = 1000;
+
+        /**
+         * Seconds an idle thread is kept
+         */
+        protected long mKeepAliveSeconds = 60;
+
+        /**
+         * What happens to tasks that don't fit
+         */
+        protected RejectionPolicy mRejectionPolicy = RejectionPolicy.CALLER_RUNS;
+
+        /**
+         * Set the number of threads kept while tasks keep arriving. Idle threads end after the keep alive time, so
+         * an idle executor doesn't keep the JVM from exiting.
+         * @param threads Number of core threads (default 4)
+         * @return The same instance
+         */
+        public Builder setCoreThreads(int threads) {
+            this.mCoreThreads = threads;
+            return this;
+        }
+
+        /**
+         * Get the number of threads kept while tasks keep arriving
+         * @return Number of core threads
+         */
+        public int getCoreThreads() {
+            return mCoreThreads;
+        }
+
+        /**
+         * Set the number of threads created at most. Threads above the core count are only created once the queue
+         * is full.
+         * @param threads Maximum number of threads (default 16)
+         * @return The same instance
+         */
+        public Builder setMaxThreads(int threads) {
+            this.mMaxThreads = threads;
+            return this;
+        }
+
+        /**
+         * Get the number of threads created at most
+         * @return Maximum number of threads
+         */
+        public int getMaxThreads() {
+            return mMaxThreads;
+        }
+
+        /**
+         * Set the number of tasks that may wait for a thread
+         * @param capacity Queue capacity (default 1000)
+         * @return The same instance
+         */
+        public Builder setQueueCapacity(int capacity) {
+            this.mQueueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Get the number of tasks that may wait for a thread
+         * @return Queue capacity
+         */
+        public int getQueueCapacity() {
+            return mQueueCapacity;
+        }
+
+        /**
+         * Set how long an idle thread is kept
+         * @param seconds Keep alive time in seconds, at least 1 (default 60)
+         * @return The same instance
+         */
+        public Builder setKeepAliveSeconds(long seconds) {
+            this.mKeepAliveSeconds = seconds;
+            return this;
+        }
+
+        /**
+         * Get how long an idle thread is kept
+         * @return Keep alive time in seconds
+         */
+        public long getKeepAliveSeconds() {
+            return mKeepAliveSeconds;
+        }
+
+        /**
+         * Set what happens to a task when all threads are busy and the queue is full
+         * @param policy The {@link RejectionPolicy} (default CALLER_RUNS)
+         * @return The same instance
+         */
+        public Builder setRejectionPolicy(RejectionPolicy policy) {
+            this.mRejectionPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Get what happens to a task when all threads are busy and the queue is full
+         * @return The {@link RejectionPolicy}
+         */
+        public RejectionPolicy getRejectionPolicy() {
+            return mRejectionPolicy;
+        }
+
+        /**
+         * Build the executor
+         * @return A new {@link GambitBoundedExecutor}
+         */
+        public GambitBoundedExecutor build() {
+            validate();
+            return new GambitBoundedExecutor(this);
+        }
+
+        /**
+         * Validate the builder integrity before proceeding with object creation
+         */
+        protected void validate() {
+            if (mCoreThreads < 0 || mMaxThreads < 1 || mMaxThreads < mCoreThreads || mQueueCapacity < 1 || mKeepAliveSeconds < 1) {
+                throw new IllegalArgumentException("Thread counts, queue capacity and keep alive time must be positive, with at least as many maximum threads as core threads.");
+            }
+
+            if (mRejectionPolicy == null) {
+                throw new IllegalArgumentException("A rejection policy is required.");
+            }
+        }
+    }
+
+    /**
+     * Tasks rejected with an exception
+     */
+    protected final AtomicLong mRejected = new AtomicLong();
+
+    /**
+     * Tasks run by the submitting thread
+     */
+    protected final AtomicLong mCallerRuns = new AtomicLong();
+
+    /**
+     * Create the executor using its {@link Builder}
+     * @param builder The {@link Builder} object
+     */
+    protected GambitBoundedExecutor(Builder builder) {
+        super(builder.getCoreThreads(), builder.getMaxThreads(), builder.getKeepAliveSeconds(), TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(builder.getQueueCapacity()), namedThreads("cogs-request-"));
+
+        // Like the cached pool this replaced, an idle executor must not keep the JVM alive
+        allowCoreThreadTimeOut(true);
+
+        RejectionPolicy policy = builder.getRejectionPolicy();
+
+        setRejectedExecutionHandler((task, executor) -> {
+            if (policy == RejectionPolicy.CALLER_RUNS && !executor.isShutdown()) {
+                mCallerRuns.incrementAndGet();
+                task.run();
+            } else if (executor.isShutdown()) {
+                mRejected.incrementAndGet();
+                throw new RejectedExecutionException("The request executor has been shut down.");
+            } else {
+                mRejected.incrementAndGet();
+                throw new RejectedExecutionException("All " + executor.getMaximumPoolSize() + " request threads are busy and "
+                        + executor.getQueue().size() + " requests are waiting.");
+            }
+        });
+    }
+
+    /**
+     * Get the number of tasks waiting for a thread
+     * @return Current queue depth
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * Get the number of tasks rejected with a {@link RejectedExecutionException}
+     * @return Number of rejected tasks
+     */
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    /**
+     * Get the number of tasks run by the submitting thread because the executor was full
+     * @return Number of tasks run by callers
+     */
+    public long getCallerRunsCount() {
+        return mCallerRuns.get();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+
+        return (runnable) -> new Thread(runnable, prefix + count.incrementAndGet());
+    }
+}
@@ -0,0 +1,246 @@
+package com.gambit.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending events to an endpoint that keeps failing. After a number of consecutive failures the breaker
+ * opens, and events are refused right away instead of each tying up a thread and a socket until it fails too.
+ * Once the open time is up the breaker lets a few probe events through: if they succeed it closes again, if one
+ * fails it opens for another round.
+ *
+ * Failures are what {@link GambitSDKService} counts as the endpoint failing: an I/O error or a server error
+ * response. Other responses, including rejections of the event itself, show the endpoint is up.
+ */
+public class GambitCircuitBreaker {
+
+    /**
+     * Whether events are let through
+     */
+    public enum State {
+        /**
+         * Every event is let through
+         */
+        CLOSED,
+
+        /**
+         * Events are refused until the open time is up
+         */
+        OPEN,
+
+        /**
+         * A few probe events are let through to find out whether the endpoint is back
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Configures and builds a {@link GambitCircuitBreaker}
+     */
+    public static class Builder {
+
+        /**
+         * Consecutive failures that open the breaker
+         */
+        protected int mFailureThreshold = 5;
+
+        /**
+         * How long, in milliseconds, the breaker stays open before probing the endpoint
+         */
+        protected long mOpenMillis = 30000;
+
+        /**
+         * Probe events let through at the same time while half open
+         */
+        protected int mHalfOpenProbes = 1;
+
+        /**
+         * Set the number of consecutive failures that open the breaker
+         * @param failures Failure threshold (default 5)
+         * @return The same instance
+         */
+        public Builder setFailureThreshold(int failures) {
+            this.mFailureThreshold = failures;
+            return this;
+        }
+
+        /**
+         * Get the number of consecutive failures that open the breaker
+         * @return Failure threshold
+         */
+        public int getFailureThreshold() {
+            return mFailureThreshold;
+        }
+
+        /**
+         * Set how long the breaker stays open before probing the endpoint
+         * @param millis Open time in milliseconds (default 30000)
+         * @return The same instance
+         */
+        public Builder setOpenMillis(long millis) {
+            this.mOpenMillis = millis;
+            return this;
+        }
+
+        /**
+         * Get how long the breaker stays open before probing the endpoint
+         * @return Open time in milliseconds
+         */
+        public long getOpenMillis() {
+            return mOpenMillis;
+        }
+
+        /**
+         * Set the number of probe events let through at the same time while half open
+         * @param probes Number of probes (default 1)
+         * @return The same instance
+         */
+        public Builder setHalfOpenProbes(int probes) {
+            this.mHalfOpenProbes = probes;
+            return this;
+        }
+
+        /**
+         * Get the number of probe events let through at the same time while half open
+         * @return Number of probes
+         */
+        public int getHalfOpenProbes() {
+            return mHalfOpenProbes;
+        }
+
+        /**
+         * Build the breaker, initially closed
+         * @return A new {@link GambitCircuitBreaker}
+         */
+        public GambitCircuitBreaker build() {
+            validate();
+            return new GambitCircuitBreaker(this);
+        }
+
+        /**
+         * Validate the builder integrity before proceeding with object creation
+         */
+        protected void validate() {
+            if (mFailureThreshold < 1 || mHalfOpenProbes < 1 || mOpenMillis < 0) {
+                throw new IllegalArgumentException("Failure threshold and probes must be positive, and open time must not be negative.");
+            }
+        }
+    }
+
+    protected final int mFailureThreshold;
+    protected final long mOpenNanos;
+    protected final int mHalfOpenProbes;
+
+    protected State mState = State.CLOSED;
+    protected int mConsecutiveFailures;
+    protected long mOpenedAt;
+
+    /**
+     * Probe events in flight while half open
+     */
+    protected int mProbes;
+
+    protected long mOpenedCount;
+    protected long mRejectedCount;
+
+    /**
+     * Create the breaker using its {@link Builder}
+     * @param builder The {@link Builder} object
+     */
+    protected GambitCircuitBreaker(Builder builder) {
+        mFailureThreshold = builder.getFailureThreshold();
+        mOpenNanos = TimeUnit.MILLISECONDS.toNanos(builder.getOpenMillis());
+        mHalfOpenProbes = builder.getHalfOpenProbes();
+    }
+
+    /**
+     * Ask to send an event. Every event let through must be followed by {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #onIgnored()}.
+     * @return true if the event may be sent, false if it should be refused
+     */
+    public synchronized boolean tryAcquire() {
+        if (mState == State.OPEN) {
+            if (System.nanoTime() - mOpenedAt < mOpenNanos) {
+                mRejectedCount++;
+                return false;
+            }
+
+            mState = State.HALF_OPEN;
+            mProbes = 0;
+        }
+
+        if (mState == State.HALF_OPEN) {
+            if (mProbes >= mHalfOpenProbes) {
+                mRejectedCount++;
+                return false;
+            }
+
+            mProbes++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Record that the endpoint took an event
+     */
+    public synchronized void onSuccess() {
+        mConsecutiveFailures = 0;
+
+        if (mState == State.HALF_OPEN) {
+            mState = State.CLOSED;
+        }
+    }
+
+    /**
+     * Record that the endpoint failed an event
+     */
+    public synchronized void onFailure() {
+        if (mState == State.HALF_OPEN || ++mConsecutiveFailures >= mFailureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * Record that an event let through was not sent after all, so it tells nothing about the endpoint
+     */
+    public synchronized void onIgnored() {
+        if (mState == State.HALF_OPEN && mProbes > 0) {
+            mProbes--;
+        }
+    }
+
+    /**
+     * Get whether events are let through. An open breaker only turns half open when the next event is sent.
+     * @return The {@link State}
+     */
+    public synchronized State getState() {
+        return mState;
+    }
+
+    /**
+     * Get the number of times the breaker opened
+     * @return Number of openings
+     */
+    public synchronized long getOpenedCount() {
+        return mOpenedCount;
+    }
+
+    /**
+     * Get the number of events refused
+     * @return Number of refused events
+     */
+    public synchronized long getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    private void open() {
+        if (mState != State.OPEN) {
+            mOpenedCount++;
+        }
+
+        mState = State.OPEN;
+        mOpenedAt = System.nanoTime();
+        mConsecutiveFailures = 0;
+        mProbes = 0;
+    }
+}
@@ -0,0 +1,313 @@
+package com.gambit.sdk;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of events in flight to what the endpoint handles without queueing, finding that number from
+ * the observed latency the way TCP Vegas finds a congestion window. The lowest latency seen is taken as the
+ * latency of an idle endpoint; from the latency of each event, the limit and that minimum it estimates how many
+ * events are waiting at the endpoint. While few are waiting the limit grows, when many are or an event fails it
+ * shrinks. Events over the limit are refused instead of piling up on threads and sockets.
+ *
+ * The minimum latency is measured again every {@link #RTT_RESET_SAMPLES} events, so the limit follows an endpoint
+ * that became slower for good.
+ */
+public class GambitConcurrencyLimit {
+
+    /**
+     * Events after which the minimum latency is measured again
+     */
+    protected static final int RTT_RESET_SAMPLES = 1000;
+
+    /**
+     * Configures and builds a {@link GambitConcurrencyLimit}
+     */
+    public static class Builder {
+
+        /**
+         * Limit before any latency was observed
+         */
+        protected int mInitialLimit = 20;
+
+        /**
+         * Lowest the limit may go
+         */
+        protected int mMinLimit = 1;
+
+        /**
+         * Highest the limit may go
+         */
+        protected int mMaxLimit = 200;
+
+        /**
+         * Estimated waiting events below which the limit grows, per digit of the limit
+         */
+        protected int mAlpha = 3;
+
+        /**
+         * Estimated waiting events above which the limit shrinks, per digit of the limit
+         */
+        protected int mBeta = 6;
+
+        /**
+         * Set the limit used before any latency was observed
+         * @param limit Initial limit (default 20)
+         * @return The same instance
+         */
+        public Builder setInitialLimit(int limit) {
+            this.mInitialLimit = limit;
+            return this;
+        }
+
+        /**
+         * Get the limit used before any latency was observed
+         * @return Initial limit
+         */
+        public int getInitialLimit() {
+            return mInitialLimit;
+        }
+
+        /**
+         * Set the lowest the limit may go
+         * @param limit Minimum limit (default 1)
+         * @return The same instance
+         */
+        public Builder setMinLimit(int limit) {
+            this.mMinLimit = limit;
+            return this;
+        }
+
+        /**
+         * Get the lowest the limit may go
+         * @return Minimum limit
+         */
+        public int getMinLimit() {
+            return mMinLimit;
+        }
+
+        /**
+         * Set the highest the limit may go
+         * @param limit Maximum limit (default 200)
+         * @return The same instance
+         */
+        public Builder setMaxLimit(int limit) {
+            this.mMaxLimit = limit;
+            return this;
+        }
+
+        /**
+         * Get the highest the limit may go
+         * @return Maximum limit
+         */
+        public int getMaxLimit() {
+            return mMaxLimit;
+        }
+
+        /**
+         * Set the number of events estimated to be waiting at the endpoint below which the limit grows
+         * @param alpha Growth threshold (default 3)
+         * @return The same instance
+         */
+        public Builder setAlpha(int alpha) {
+            this.mAlpha = alpha;
+            return this;
+        }
+
+        /**
+         * Get the number of events estimated to be waiting at the endpoint below which the limit grows
+         * @return Growth threshold
+         */
+        public int getAlpha() {
+            return mAlpha;
+        }
+
+        /**
+         * Set the number of events estimated to be waiting at the endpoint above which the limit shrinks
+         * @param beta Shrink threshold (default 6)
+         * @return The same instance
+         */
+        public Builder setBeta(int beta) {
+            this.mBeta = beta;
+            return this;
+        }
+
+        /**
+         * Get the number of events estimated to be waiting at the endpoint above which the limit shrinks
+         * @return Shrink threshold
+         */
+        public int getBeta() {
+            return mBeta;
+        }
+
+        /**
+         * Build the limit
+         * @return A new {@link GambitConcurrencyLimit}
+         */
+        public GambitConcurrencyLimit build() {
+            validate();
+            return new GambitConcurrencyLimit(this);
+        }
+
+        /**
+         * Validate the builder integrity before proceeding with object creation
+         */
+        protected void validate() {
+            if (mMinLimit < 1 || mMaxLimit < mMinLimit || mInitialLimit < mMinLimit || mInitialLimit > mMaxLimit) {
+                throw new IllegalArgumentException("Limits must be positive, with the initial limit between the minimum and the maximum.");
+            }
+
+            if (mAlpha < 1 || mBeta <= mAlpha) {
+                throw new IllegalArgumentException("Alpha must be positive and beta greater than alpha.");
+            }
+        }
+    }
+
+    protected final int mMinLimit;
+    protected final int mMaxLimit;
+    protected final int mAlpha;
+    protected final int mBeta;
+
+    protected volatile int mLimit;
+    protected final AtomicInteger mInFlight = new AtomicInteger();
+    protected final AtomicLong mRejected = new AtomicLong();
+
+    /**
+     * Lowest latency observed since the last reset, in nanoseconds; 0 before the first sample
+     */
+    protected long mMinRttNanos;
+
+    /**
+     * Samples until the minimum latency is reset
+     */
+    protected int mSamplesToReset = RTT_RESET_SAMPLES;
+
+    /**
+     * Create the limit using its {@link Builder}
+     * @param builder The {@link Builder} object
+     */
+    protected GambitConcurrencyLimit(Builder builder) {
+        mMinLimit = builder.getMinLimit();
+        mMaxLimit = builder.getMaxLimit();
+        mAlpha = builder.getAlpha();
+        mBeta = builder.getBeta();
+        mLimit = builder.getInitialLimit();
+    }
+
+    /**
+     * Ask to send an event. Every event let through must be followed by {@link #release(long, boolean)} or
+     * {@link #release()}.
+     * @return true if the event may be sent, false if as many events as the limit are in flight
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int inFlight = mInFlight.get();
+
+            if (inFlight >= mLimit) {
+                mRejected.incrementAndGet();
+                return false;
+            }
+
+            if (mInFlight.compareAndSet(inFlight, inFlight + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Record that an event was sent, and adjust the limit to its latency
+     * @param rttNanos How long the event took, in nanoseconds
+     * @param failed Whether the endpoint failed the event
+     */
+    public void release(long rttNanos, boolean failed) {
+        int inFlight = mInFlight.getAndDecrement();
+
+        sample(rttNanos, inFlight, failed);
+    }
+
+    /**
+     * Record that an event let through was not sent after all, without adjusting the limit
+     */
+    public void release() {
+        mInFlight.decrementAndGet();
+    }
+
+    /**
+     * Get the number of events that may be in flight
+     * @return Current limit
+     */
+    public int getLimit() {
+        return mLimit;
+    }
+
+    /**
+     * Get the number of events in flight
+     * @return Events in flight
+     */
+    public int getInFlight() {
+        return mInFlight.get();
+    }
+
+    /**
+     * Get the number of events refused because the limit was reached
+     * @return Number of refused events
+     */
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    /**
+     * Get the lowest latency observed since it was last reset
+     * @return Minimum latency in milliseconds, or 0 before the first event
+     */
+    public synchronized double getMinRttMillis() {
+        return mMinRttNanos / 1e6;
+    }
+
+    /**
+     * Adjust the limit to one observed event
+     * @param rttNanos How long the event took, in nanoseconds
+     * @param inFlight Events in flight when it finished, itself included
+     * @param failed Whether the endpoint failed the event
+     */
+    protected synchronized void sample(long rttNanos, int inFlight, boolean failed) {
+        int limit = mLimit;
+        int step = Math.max(1, (int) Math.log10(limit));
+
+        if (failed) {
+            mLimit = clamp(limit - step);
+            return;
+        }
+
+        if (rttNanos <= 0) {
+            return;
+        }
+
+        if (--mSamplesToReset <= 0) {
+            mSamplesToReset = RTT_RESET_SAMPLES;
+            mMinRttNanos = rttNanos;
+            return;
+        }
+
+        if (mMinRttNanos == 0 || rttNanos < mMinRttNanos) {
+            mMinRttNanos = rttNanos;
+        }
+
+        // Far below the limit, latency says nothing about whether the limit is too low
+        if (inFlight * 2 < limit) {
+            return;
+        }
+
+        double waiting = limit * (1 - (double) mMinRttNanos / rttNanos);
+
+        if (waiting < mAlpha * step) {
+            mLimit = clamp(limit + step);
+        } else if (waiting > mBeta * step) {
+            mLimit = clamp(limit - step);
+        }
+    }
+
+    private int clamp(int limit) {
+        return Math.max(mMinLimit, Math.min(mMaxLimit, limit));
+    }
+}
@@ -0,0 +1,477 @@
+package com.gambit.sdk;
+
+import com.gambit.sdk.exceptions.CogsException;
+
+import javax.websocket.Extension;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+
+/**
+ * The permessage-deflate websocket extension (RFC 7692). Add it to a connection through
+ * {@link com.gambit.sdk.pubsub.PubSubOptions.Builder#setCompression} or {@link GambitPushService.Builder#setCompression}.
+ * When the server accepts the extension, every outgoing message at least as long as the configured threshold is
+ * compressed, and compressed messages from the server are inflated before they reach the message handlers.
+ *
+ * Note: {@link Deflater} always compresses with a 15 bit window, so the window bits setting only limits the window
+ * the server compresses with. Client context takeover is controlled by {@link Builder#setClientContextTakeover}.
+ */
+public class GambitDeflateExtension implements ExtendedExtension {
+
+    public static class Builder {
+
+        /**
+         * Deflate compression level, from 0 (none) to 9 (best)
+         */
+        protected int mCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+        /**
+         * Messages shorter than this, in bytes, are sent uncompressed
+         */
+        protected int mThreshold = 256;
+
+        /**
+         * Whether the client keeps its compression context between messages
+         */
+        protected boolean mClientContextTakeover = true;
+
+        /**
+         * Whether the server is allowed to keep its compression context between messages
+         */
+        protected boolean mServerContextTakeover = true;
+
+        /**
+         * The largest window, as a power of two from 8 to 15, that the server may compress with
+         */
+        protected int mServerMaxWindowBits = 15;
+
+        /**
+         * Deflate compression level, from 0 (none) to 9 (best).
+         *
+         * @param level The compression level (Default: {@link Deflater#DEFAULT_COMPRESSION})
+         * @return The same instance
+         */
+        public Builder setCompressionLevel(int level) {
+            this.mCompressionLevel = level;
+
+            return this;
+        }
+
+        public int getCompressionLevel() {
+            return mCompressionLevel;
+        }
+
+        /**
+         * Messages shorter than this, in bytes, are sent uncompressed.
+         *
+         * @param bytes The smallest message size that is compressed (Default: 256)
+         * @return The same instance
+         */
+        public Builder setThreshold(int bytes) {
+            this.mThreshold = bytes;
+
+            return this;
+        }
+
+        public int getThreshold() {
+            return mThreshold;
+        }
+
+        /**
+         * Whether the client keeps its compression context between messages. Keeping it compresses better,
+         * dropping it saves the memory of the context between messages.
+         *
+         * @param takeover True to keep the context (Default: true)
+         * @return The same instance
+         */
+        public Builder setClientContextTakeover(boolean takeover) {
+            this.mClientContextTakeover = takeover;
+
+            return this;
+        }
+
+        public boolean getClientContextTakeover() {
+            return mClientContextTakeover;
+        }
+
+        /**
+         * Whether the server is allowed to keep its compression context between messages.
+         *
+         * @param takeover True to allow the server to keep the context (Default: true)
+         * @return The same instance
+         */
+        public Builder setServerContextTakeover(boolean takeover) {
+            this.mServerContextTakeover = takeover;
+
+            return this;
+        }
+
+        public boolean getServerContextTakeover() {
+            return mServerContextTakeover;
+        }
+
+        /**
+         * The largest window, as a power of two from 8 to 15, that the server may compress with.
+         *
+         * @param bits The window bits (Default: 15)
+         * @return The same instance
+         */
+        public Builder setServerMaxWindowBits(int bits) {
+            this.mServerMaxWindowBits = bits;
+
+            return this;
+        }
+
+        public int getServerMaxWindowBits() {
+            return mServerMaxWindowBits;
+        }
+
+        /**
+         * Build extension object
+         *
+         * @return A {@link GambitDeflateExtension} instance
+         * @throws IllegalArgumentException if validation fails
+         */
+        public GambitDeflateExtension build() {
+            validate();
+
+            return new GambitDeflateExtension(this);
+        }
+
+        /**
+         * Validate the builder integrity before proceeding with object creation
+         * @throws IllegalArgumentException If any of the settings is out of range
+         */
+        protected void validate() {
+            if (mCompressionLevel != Deflater.DEFAULT_COMPRESSION && (mCompressionLevel < 0 || mCompressionLevel > 9)) {
+                throw new IllegalArgumentException("The compression level must be between 0 and 9.");
+            }
+
+            if (mServerMaxWindowBits < 8 || mServerMaxWindowBits > 15) {
+                throw new IllegalArgumentException("The window bits must be between 8 and 15.");
+            }
+
+            if (mThreshold < 0) {
+                throw new IllegalArgumentException("The threshold may not be negative.");
+            }
+        }
+    }
+
+    /**
+     * The trailer that every flushed deflate block ends with, removed from sent messages and restored on receipt
+     */
+    protected static final byte[] TAIL = { 0x00, 0x00, (byte) 0xFF, (byte) 0xFF };
+
+    protected static final byte OPCODE_CONTINUATION = 0x00;
+    protected static final byte OPCODE_TEXT = 0x01;
+    protected static final byte OPCODE_BINARY = 0x02;
+
+    /**
+     * Extension context properties holding the per-session compression state
+     */
+    protected static final String DEFLATER = GambitDeflateExtension.class.getName() + ".deflater";
+    protected static final String INFLATER = GambitDeflateExtension.class.getName() + ".inflater";
+    protected static final String RESET_DEFLATER = GambitDeflateExtension.class.getName() + ".resetDeflater";
+    protected static final String RESET_INFLATER = GambitDeflateExtension.class.getName() + ".resetInflater";
+    protected static final String INFLATING = GambitDeflateExtension.class.getName() + ".inflating";
+    protected static final String SERVER_MAX_WINDOW_BITS = GambitDeflateExtension.class.getName() + ".serverMaxWindowBits";
+
+    protected final int mCompressionLevel;
+    protected final int mThreshold;
+    protected final boolean mClientContextTakeover;
+    protected final boolean mServerContextTakeover;
+    protected final int mServerMaxWindowBits;
+
+    /**
+     * Construct the extension using it's own {@link Builder} object
+     * @param builder The {@link Builder} object
+     */
+    protected GambitDeflateExtension(Builder builder) {
+        mCompressionLevel = builder.getCompressionLevel();
+        mThreshold = builder.getThreshold();
+        mClientContextTakeover = builder.getClientContextTakeover();
+        mServerContextTakeover = builder.getServerContextTakeover();
+        mServerMaxWindowBits = builder.getServerMaxWindowBits();
+    }
+
+    @Override
+    public String getName() {
+        return "permessage-deflate";
+    }
+
+    /**
+     * The parameters offered to the server in the handshake request.
+     * @return The extension parameters
+     */
+    @Override
+    public List<Extension.Parameter> getParameters() {
+        List<Extension.Parameter> parameters = new ArrayList<>();
+
+        if (!mClientContextTakeover) {
+            parameters.add(new Parameter("client_no_context_takeover", null));
+        }
+
+        if (!mServerContextTakeover) {
+            parameters.add(new Parameter("server_no_context_takeover", null));
+        }
+
+        if (mServerMaxWindowBits < 15) {
+            parameters.add(new Parameter("server_max_window_bits", Integer.toString(mServerMaxWindowBits)));
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Only called on the server side of a connection, which this SDK never is.
+     */
+    @Override
+    public List<Extension.Parameter> onExtensionNegotiation(ExtensionContext context, List<Extension.Parameter> requestedParameters) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Sets up the compression state of a session once the server has accepted the extension.
+     * @param context The per-session extension context
+     * @param responseParameters The parameters the server accepted the extension with
+     * @throws CogsException If the server accepted the extension with an invalid window size
+     */
+    @Override
+    public void onHandshakeResponse(ExtensionContext context, List<Extension.Parameter> responseParameters) {
+        boolean resetDeflater = !mClientContextTakeover;
+        boolean resetInflater = !mServerContextTakeover;
+        int serverMaxWindowBits = 15;
+
+        for (Extension.Parameter parameter : responseParameters) {
+            if ("client_no_context_takeover".equals(parameter.getName())) {
+                resetDeflater = true;
+            }
+            else if ("server_no_context_takeover".equals(parameter.getName())) {
+                resetInflater = true;
+            }
+            else if ("server_max_window_bits".equals(parameter.getName())) {
+                serverMaxWindowBits = parseWindowBits(parameter.getValue());
+            }
+        }
+
+        Map<String, Object> properties = context.getProperties();
+        properties.put(DEFLATER, new Deflater(mCompressionLevel, true));
+        properties.put(INFLATER, new Inflater(true));
+        properties.put(RESET_DEFLATER, resetDeflater);
+        properties.put(RESET_INFLATER, resetInflater);
+        properties.put(INFLATING, false);
+        properties.put(SERVER_MAX_WINDOW_BITS, serverMaxWindowBits);
+    }
+
+    /**
+     * Read the window size the server compresses with. The {@link Inflater} accepts any window up to 15 bits, so it
+     * only needs to be valid.
+     * @param value The value of the window bits parameter
+     * @return The window bits
+     * @throws CogsException If the value is not a window size from 8 to 15
+     */
+    protected static int parseWindowBits(String value) {
+        try {
+            int bits = Integer.parseInt(value == null ? "" : value.trim());
+
+            if (bits >= 8 && bits <= 15) {
+                return bits;
+            }
+        }
+        catch (NumberFormatException e) {
+            // reported below
+        }
+
+        throw new CogsException("Invalid permessage-deflate window bits: " + value);
+    }
+
+    /**
+     * Compresses outgoing messages of at least the threshold size. Only messages sent in a single frame are
+     * compressed; fragmented messages are sent as they are.
+     * @param context The per-session extension context
+     * @param frame The frame about to be sent
+     * @return The frame to send
+     */
+    @Override
+    public Frame processOutgoing(ExtensionContext context, Frame frame) {
+        Deflater deflater = (Deflater) context.getProperties().get(DEFLATER);
+
+        if (deflater == null || frame.isControlFrame() || !frame.isFin()
+                || frame.getOpcode() == OPCODE_CONTINUATION || frame.getPayloadLength() < mThreshold) {
+            return frame;
+        }
+
+        byte[] compressed = deflate(deflater, frame.getPayloadData());
+
+        if (Boolean.TRUE.equals(context.getProperties().get(RESET_DEFLATER))) {
+            deflater.reset();
+        }
+
+        return Frame.builder(frame)
+                .rsv1(true)
+                .payloadData(compressed)
+                .payloadLength(compressed.length)
+                .build();
+    }
+
+    /**
+     * Inflates incoming compressed messages, including messages fragmented over several frames.
+     * @param context The per-session extension context
+     * @param frame The frame that was received
+     * @return The frame to pass on
+     */
+    @Override
+    public Frame processIncoming(ExtensionContext context, Frame frame) {
+        Map<String, Object> properties = context.getProperties();
+        Inflater inflater = (Inflater) properties.get(INFLATER);
+
+        if (inflater == null || frame.isControlFrame()) {
+            return frame;
+        }
+
+        boolean inflating = Boolean.TRUE.equals(properties.get(INFLATING));
+
+        if (frame.getOpcode() == OPCODE_TEXT || frame.getOpcode() == OPCODE_BINARY) {
+            inflating = frame.isRsv1();
+        }
+
+        if (!inflating) {
+            return frame;
+        }
+
+        properties.put(INFLATING, !frame.isFin());
+
+        byte[] inflated;
+
+        try {
+            inflated = inflate(inflater, frame.getPayloadData(), frame.isFin());
+        }
+        catch (DataFormatException e) {
+            throw new CogsException("Could not inflate compressed websocket message.", e);
+        }
+
+        if (frame.isFin() && Boolean.TRUE.equals(properties.get(RESET_INFLATER))) {
+            inflater.reset();
+        }
+
+        return Frame.builder(frame)
+                .rsv1(false)
+                .payloadData(inflated)
+                .payloadLength(inflated.length)
+                .build();
+    }
+
+    /**
+     * Releases the compression state of a closed session.
+     * @param context The per-session extension context
+     */
+    @Override
+    public void destroy(ExtensionContext context) {
+        Deflater deflater = (Deflater) context.getProperties().remove(DEFLATER);
+        Inflater inflater = (Inflater) context.getProperties().remove(INFLATER);
+
+        if (deflater != null) {
+            deflater.end();
+        }
+
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Compress a complete message, dropping the trailing empty block as required by RFC 7692.
+     * @param deflater The session's deflater
+     * @param data The message payload
+     * @return The compressed payload
+     */
+    protected static byte[] deflate(Deflater deflater, byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        byte[] chunk = new byte[Math.max(64, Math.min(data.length, 16384))];
+
+        deflater.setInput(data);
+
+        int count;
+
+        do {
+            count = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+            out.write(chunk, 0, count);
+        } while (count == chunk.length);
+
+        byte[] compressed = out.toByteArray();
+        int length = compressed.length;
+
+        if (length >= TAIL.length && compressed[length - 4] == TAIL[0] && compressed[length - 3] == TAIL[1]
+                && compressed[length - 2] == TAIL[2] && compressed[length - 1] == TAIL[3]) {
+            length -= TAIL.length;
+        }
+
+        byte[] result = new byte[length];
+        System.arraycopy(compressed, 0, result, 0, length);
+
+        return result;
+    }
+
+    /**
+     * Inflate one frame of a compressed message, restoring the trailing empty block after the last frame.
+     * @param inflater The session's inflater
+     * @param data The frame payload
+     * @param last True if this frame ends the message
+     * @return The inflated payload
+     * @throws DataFormatException If the payload is not valid deflate data
+     */
+    protected static byte[] inflate(Inflater inflater, byte[] data, boolean last) throws DataFormatException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4 + 16);
+        byte[] chunk = new byte[Math.max(256, Math.min(data.length * 4, 65536))];
+
+        inflater.setInput(data);
+        drain(inflater, chunk, out);
+
+        if (last) {
+            inflater.setInput(TAIL);
+            drain(inflater, chunk, out);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void drain(Inflater inflater, byte[] chunk, ByteArrayOutputStream out) throws DataFormatException {
+        int count;
+
+        while ((count = inflater.inflate(chunk)) > 0) {
+            out.write(chunk, 0, count);
+        }
+    }
+
+    /**
+     * A single extension parameter offered in the handshake request
+     */
+    protected static class Parameter implements Extension.Parameter {
+        protected final String mName;
+        protected final String mValue;
+
+        protected Parameter(String name, String value) {
+            mName = name;
+            mValue = value;
+        }
+
+        @Override
+        public String getName() {
+            return mName;
+        }
+
+        @Override
+        public String getValue() {
+            return mValue;
+        }
+    }
+}
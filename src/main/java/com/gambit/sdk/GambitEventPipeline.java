@@ -0,0 +1,464 @@
+package com.gambit.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends events in batches instead of one thread and one connection per event. Events are queued without blocking
+ * the caller, grouped into batches of up to a maximum size or whatever arrived within the linger time, and each
+ * batch is sent by one of a bounded number of sender threads. The events of a batch are sent back to back by the
+ * same thread, so they reuse the same keep-alive connection instead of each paying for its own handshake.
+ *
+ * Every event still gets its own future, completed with the response to that event alone.
+ */
+public class GambitEventPipeline {
+
+    /**
+     * Configures and builds a {@link GambitEventPipeline}
+     */
+    public static class Builder {
+
+        /**
+         * Maximum number of events waiting to be sent
+         */
+        protected int mQueueCapacity = 10000;
+
+        /**
+         * Maximum number of events in one batch
+         */
+        protected int mMaxBatchSize = 100;
+
+        /**
+         * How long, in milliseconds, a batch waits for more events before it is sent
+         */
+        protected long mLingerMillis = 10;
+
+        /**
+         * Maximum number of batches being sent at the same time
+         */
+        protected int mMaxConcurrentBatches = 4;
+
+        /**
+         * Set the number of events that may wait to be sent. Events submitted while the queue is full are rejected.
+         * @param capacity Maximum number of waiting events (default 10000)
+         * @return The same instance
+         */
+        public Builder setQueueCapacity(int capacity) {
+            this.mQueueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Get the number of events that may wait to be sent
+         * @return Maximum number of waiting events
+         */
+        public int getQueueCapacity() {
+            return mQueueCapacity;
+        }
+
+        /**
+         * Set the number of events after which a batch is sent without waiting any longer
+         * @param size Maximum number of events in one batch (default 100)
+         * @return The same instance
+         */
+        public Builder setMaxBatchSize(int size) {
+            this.mMaxBatchSize = size;
+            return this;
+        }
+
+        /**
+         * Get the number of events after which a batch is sent without waiting any longer
+         * @return Maximum number of events in one batch
+         */
+        public int getMaxBatchSize() {
+            return mMaxBatchSize;
+        }
+
+        /**
+         * Set how long a batch waits for more events once its first event has arrived
+         * @param millis Linger time in milliseconds (default 10); 0 sends whatever is queued right away
+         * @return The same instance
+         */
+        public Builder setLingerMillis(long millis) {
+            this.mLingerMillis = millis;
+            return this;
+        }
+
+        /**
+         * Get how long a batch waits for more events once its first event has arrived
+         * @return Linger time in milliseconds
+         */
+        public long getLingerMillis() {
+            return mLingerMillis;
+        }
+
+        /**
+         * Set the number of batches that may be sent at the same time, which is also the number of sender threads
+         * @param count Maximum number of concurrent batches (default 4)
+         * @return The same instance
+         */
+        public Builder setMaxConcurrentBatches(int count) {
+            this.mMaxConcurrentBatches = count;
+            return this;
+        }
+
+        /**
+         * Get the number of batches that may be sent at the same time
+         * @return Maximum number of concurrent batches
+         */
+        public int getMaxConcurrentBatches() {
+            return mMaxConcurrentBatches;
+        }
+
+        /**
+         * Build and start the pipeline
+         * @return A running {@link GambitEventPipeline}
+         */
+        public GambitEventPipeline build() {
+            validate();
+            return new GambitEventPipeline(this);
+        }
+
+        /**
+         * Validate the builder integrity before proceeding with object creation
+         */
+        protected void validate() {
+            if (mQueueCapacity < 1 || mMaxBatchSize < 1 || mMaxConcurrentBatches < 1 || mLingerMillis < 0) {
+                throw new IllegalArgumentException("Queue capacity, batch size and concurrency must be positive, and linger time must not be negative.");
+            }
+        }
+    }
+
+    /**
+     * An event waiting to be sent, along with the future of its caller
+     */
+    protected static class Pending {
+        protected final GambitRequest mRequest;
+        protected final CompletableFuture<GambitResponse> mFuture = new CompletableFuture<>();
+
+        protected Pending(GambitRequest request) {
+            mRequest = request;
+        }
+    }
+
+    protected final int mMaxBatchSize;
+    protected final long mLingerNanos;
+    protected final int mMaxConcurrentBatches;
+
+    /**
+     * Events waiting to be batched
+     */
+    protected final BlockingQueue<Pending> mQueue;
+
+    /**
+     * Limits the number of batches being sent; the batcher waits for a permit, so a slow endpoint fills the queue
+     * instead of the thread pool
+     */
+    protected final Semaphore mSendPermits;
+
+    /**
+     * Threads sending the batches
+     */
+    protected final ExecutorService mSenders;
+
+    /**
+     * Thread grouping queued events into batches
+     */
+    protected final Thread mBatcher;
+
+    protected volatile boolean mRunning = true;
+
+    protected final AtomicLong mSubmitted = new AtomicLong();
+    protected final AtomicLong mRejected = new AtomicLong();
+    protected final AtomicLong mSent = new AtomicLong();
+    protected final AtomicLong mFailed = new AtomicLong();
+    protected final AtomicLong mBatches = new AtomicLong();
+    protected final AtomicLong mBatchedEvents = new AtomicLong();
+    protected final AtomicLong mLargestBatch = new AtomicLong();
+    protected final AtomicLong mSendNanos = new AtomicLong();
+    protected final AtomicLong mMaxSendNanos = new AtomicLong();
+
+    /**
+     * Create and start a pipeline using its {@link Builder}
+     * @param builder The {@link Builder} object
+     */
+    protected GambitEventPipeline(Builder builder) {
+        mMaxBatchSize = builder.getMaxBatchSize();
+        mLingerNanos = TimeUnit.MILLISECONDS.toNanos(builder.getLingerMillis());
+        mMaxConcurrentBatches = builder.getMaxConcurrentBatches();
+
+        mQueue = new ArrayBlockingQueue<>(builder.getQueueCapacity());
+        mSendPermits = new Semaphore(mMaxConcurrentBatches);
+
+        AtomicInteger count = new AtomicInteger();
+        mSenders = Executors.newFixedThreadPool(mMaxConcurrentBatches, (runnable) -> {
+            Thread thread = new Thread(runnable, "cogs-event-sender-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        mBatcher = new Thread(this::batch, "cogs-event-batcher");
+        mBatcher.setDaemon(true);
+        mBatcher.start();
+    }
+
+    /**
+     * Queue an event to be sent with the next batch. Never blocks: when the queue is full, or the pipeline has been
+     * shut down, the returned future fails with a {@link RejectedExecutionException}.
+     *
+     * @param request The event to send
+     * @return Promised response to this event
+     */
+    public CompletableFuture<GambitResponse> submit(GambitRequest request) {
+        Pending pending = new Pending(request);
+
+        if (!mRunning || !mQueue.offer(pending)) {
+            mRejected.incrementAndGet();
+            pending.mFuture.completeExceptionally(new RejectedExecutionException(
+                    mRunning ? "The event queue is full." : "The event pipeline has been shut down."));
+        } else {
+            mSubmitted.incrementAndGet();
+        }
+
+        return pending.mFuture;
+    }
+
+    /**
+     * Stop accepting events. Events already queued are still sent.
+     */
+    public void shutdown() {
+        mRunning = false;
+        mBatcher.interrupt();
+    }
+
+    /**
+     * Wait for the queued events to be sent after {@link #shutdown()}
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return true if all events were sent, false if the timeout elapsed first
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        mBatcher.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+
+        return !mBatcher.isAlive() && mSenders.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of events waiting to be batched
+     * @return Current queue depth
+     */
+    public int getQueueDepth() {
+        return mQueue.size();
+    }
+
+    /**
+     * Get the number of batches being sent right now
+     * @return Number of batches in flight
+     */
+    public int getBatchesInFlight() {
+        return mMaxConcurrentBatches - mSendPermits.availablePermits();
+    }
+
+    /**
+     * Get the number of events accepted into the queue
+     * @return Number of accepted events
+     */
+    public long getSubmittedCount() {
+        return mSubmitted.get();
+    }
+
+    /**
+     * Get the number of events rejected because the queue was full or the pipeline was shut down
+     * @return Number of rejected events
+     */
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    /**
+     * Get the number of events that received a response
+     * @return Number of sent events
+     */
+    public long getSentCount() {
+        return mSent.get();
+    }
+
+    /**
+     * Get the number of events whose request failed without a response
+     * @return Number of failed events
+     */
+    public long getFailedCount() {
+        return mFailed.get();
+    }
+
+    /**
+     * Get the number of batches handed to the senders
+     * @return Number of batches
+     */
+    public long getBatchCount() {
+        return mBatches.get();
+    }
+
+    /**
+     * Get the average number of events per batch
+     * @return Average batch size, or 0 if no batch was sent yet
+     */
+    public double getAverageBatchSize() {
+        long batches = mBatches.get();
+        return (batches == 0) ? 0 : (double) mBatchedEvents.get() / batches;
+    }
+
+    /**
+     * Get the number of events in the largest batch so far
+     * @return Largest batch size
+     */
+    public long getLargestBatchSize() {
+        return mLargestBatch.get();
+    }
+
+    /**
+     * Get the average time it took to send one event and read its response
+     * @return Average send latency in milliseconds, or 0 if nothing was sent yet
+     */
+    public double getAverageSendMillis() {
+        long count = mSent.get() + mFailed.get();
+        return (count == 0) ? 0 : mSendNanos.get() / (count * 1e6);
+    }
+
+    /**
+     * Get the longest time it took to send one event and read its response
+     * @return Maximum send latency in milliseconds
+     */
+    public double getMaxSendMillis() {
+        return mMaxSendNanos.get() / 1e6;
+    }
+
+    /**
+     * Send one event. Runs on a sender thread; override to change how an event reaches the endpoint.
+     * @param request The event to send
+     * @return The response to the event
+     * @throws Exception If the request fails
+     */
+    protected GambitResponse send(GambitRequest request) throws Exception {
+        return request.call();
+    }
+
+    /**
+     * Batcher loop: waits for a first event, gathers more until the batch is full or the linger time is up, then
+     * hands the batch to a sender once one is free. Exits once shut down and the queue is empty.
+     */
+    protected void batch() {
+        while (mRunning || !mQueue.isEmpty()) {
+            try {
+                Pending first = mQueue.poll(100, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                List<Pending> batch = new ArrayList<>(Math.min(mMaxBatchSize, 1024));
+                batch.add(first);
+
+                long deadline = System.nanoTime() + mLingerNanos;
+
+                while (batch.size() < mMaxBatchSize) {
+                    mQueue.drainTo(batch, mMaxBatchSize - batch.size());
+
+                    long remaining = deadline - System.nanoTime();
+
+                    if (batch.size() >= mMaxBatchSize || remaining <= 0 || !mRunning) {
+                        break;
+                    }
+
+                    Pending next = mQueue.poll(remaining, TimeUnit.NANOSECONDS);
+
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                }
+
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                // shutdown() interrupts a waiting batcher; keep going until the queue is drained
+            }
+        }
+
+        mSenders.shutdown();
+    }
+
+    /**
+     * Hand a batch to a sender, waiting until fewer than the maximum number of batches are in flight
+     * @param batch The events to send together
+     */
+    protected void dispatch(List<Pending> batch) {
+        mSendPermits.acquireUninterruptibly();
+
+        mBatches.incrementAndGet();
+        mBatchedEvents.addAndGet(batch.size());
+        mLargestBatch.accumulateAndGet(batch.size(), Math::max);
+
+        try {
+            mSenders.execute(() -> {
+                try {
+                    sendBatch(batch);
+                } finally {
+                    mSendPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            mSendPermits.release();
+
+            for (Pending pending : batch) {
+                mFailed.incrementAndGet();
+                pending.mFuture.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Send the events of a batch one after the other, completing the future of each
+     * @param batch The events to send
+     */
+    protected void sendBatch(List<Pending> batch) {
+        for (Pending pending : batch) {
+            if (pending.mFuture.isDone()) {
+                continue; // cancelled by the caller while queued
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                GambitResponse response = send(pending.mRequest);
+                record(start);
+                mSent.incrementAndGet();
+                pending.mFuture.complete(response);
+            } catch (Throwable e) {
+                record(start);
+                mFailed.incrementAndGet();
+                pending.mFuture.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void record(long start) {
+        long elapsed = System.nanoTime() - start;
+
+        mSendNanos.addAndGet(elapsed);
+        mMaxSendNanos.accumulateAndGet(elapsed, Math::max);
+    }
+}
@@ -0,0 +1,880 @@
+package com.gambit.sdk;
+
+import com.gambit.sdk.request.GambitRequestEvent;
+import com.gambit.sdk.response.GambitResponseEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps events that could not be delivered on disk and sends them again once the endpoint is back. Events are
+ * appended to a journal of memory-mapped segment files, each holding the signed body of many events; a full
+ * segment is closed and a new one started. Appending copies the body into the mapped file, so it neither waits
+ * for the disk nor for the endpoint.
+ *
+ * Spooled events are replayed in the order they were spooled, a bounded number at a time, every few seconds and
+ * whenever {@link #replay()} is called. A replay stops at the first event the endpoint fails to take and resumes
+ * from there the next time. A segment is deleted once every event in it was acknowledged. Events acknowledged
+ * while the process stopped without closing the spool may be sent again after a restart.
+ */
+public class GambitEventSpool {
+
+    /**
+     * When spooled events are forced from the mapped files to the disk
+     */
+    public enum FsyncPolicy {
+        /**
+         * Leave it to the operating system. Spooled events survive the process crashing, but not the machine.
+         */
+        NEVER,
+
+        /**
+         * Every few milliseconds, as set with {@link Builder#setFsyncIntervalMillis(long)}
+         */
+        INTERVAL,
+
+        /**
+         * After every event, before {@link #append(GambitRequestEvent)} returns
+         */
+        EVERY_APPEND
+    }
+
+    /**
+     * Configures and builds a {@link GambitEventSpool}
+     */
+    public static class Builder {
+
+        /**
+         * Directory holding the segment files
+         */
+        protected File mDirectory;
+
+        /**
+         * Size of each segment file in bytes
+         */
+        protected int mSegmentBytes = 16 * 1024 * 1024;
+
+        /**
+         * When spooled events are forced to the disk
+         */
+        protected FsyncPolicy mFsyncPolicy = FsyncPolicy.INTERVAL;
+
+        /**
+         * Milliseconds between forcing spooled events to the disk with {@link FsyncPolicy#INTERVAL}
+         */
+        protected long mFsyncIntervalMillis = 1000;
+
+        /**
+         * Maximum number of spooled events being sent at the same time
+         */
+        protected int mMaxConcurrentReplays = 4;
+
+        /**
+         * Milliseconds between attempts to replay spooled events
+         */
+        protected long mReplayIntervalMillis = 5000;
+
+        /**
+         * Create a spool builder
+         * @param directory The directory holding the segment files; created if missing, and used by one spool only
+         */
+        public Builder(File directory) {
+            mDirectory = directory;
+        }
+
+        /**
+         * Get the directory holding the segment files
+         * @return The spool directory
+         */
+        public File getDirectory() {
+            return mDirectory;
+        }
+
+        /**
+         * Set the size of each segment file. Events bigger than a segment get a segment of their own.
+         * @param bytes Segment size in bytes (default 16 MiB)
+         * @return The same instance
+         */
+        public Builder setSegmentBytes(int bytes) {
+            this.mSegmentBytes = bytes;
+            return this;
+        }
+
+        /**
+         * Get the size of each segment file
+         * @return Segment size in bytes
+         */
+        public int getSegmentBytes() {
+            return mSegmentBytes;
+        }
+
+        /**
+         * Set when spooled events are forced to the disk
+         * @param policy The {@link FsyncPolicy} (default INTERVAL)
+         * @return The same instance
+         */
+        public Builder setFsyncPolicy(FsyncPolicy policy) {
+            this.mFsyncPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Get when spooled events are forced to the disk
+         * @return The {@link FsyncPolicy}
+         */
+        public FsyncPolicy getFsyncPolicy() {
+            return mFsyncPolicy;
+        }
+
+        /**
+         * Set how often spooled events are forced to the disk with {@link FsyncPolicy#INTERVAL}
+         * @param millis Interval in milliseconds (default 1000)
+         * @return The same instance
+         */
+        public Builder setFsyncIntervalMillis(long millis) {
+            this.mFsyncIntervalMillis = millis;
+            return this;
+        }
+
+        /**
+         * Get how often spooled events are forced to the disk with {@link FsyncPolicy#INTERVAL}
+         * @return Interval in milliseconds
+         */
+        public long getFsyncIntervalMillis() {
+            return mFsyncIntervalMillis;
+        }
+
+        /**
+         * Set the number of spooled events that may be sent at the same time during a replay
+         * @param count Maximum number of concurrent replays (default 4)
+         * @return The same instance
+         */
+        public Builder setMaxConcurrentReplays(int count) {
+            this.mMaxConcurrentReplays = count;
+            return this;
+        }
+
+        /**
+         * Get the number of spooled events that may be sent at the same time during a replay
+         * @return Maximum number of concurrent replays
+         */
+        public int getMaxConcurrentReplays() {
+            return mMaxConcurrentReplays;
+        }
+
+        /**
+         * Set how often spooled events are replayed
+         * @param millis Interval in milliseconds (default 5000)
+         * @return The same instance
+         */
+        public Builder setReplayIntervalMillis(long millis) {
+            this.mReplayIntervalMillis = millis;
+            return this;
+        }
+
+        /**
+         * Get how often spooled events are replayed
+         * @return Interval in milliseconds
+         */
+        public long getReplayIntervalMillis() {
+            return mReplayIntervalMillis;
+        }
+
+        /**
+         * Build the spool, recovering the events spooled by an earlier spool on the same directory
+         * @return A new {@link GambitEventSpool}
+         * @throws IOException If the directory or its segments can't be opened
+         */
+        public GambitEventSpool build() throws IOException {
+            validate();
+            return new GambitEventSpool(this);
+        }
+
+        /**
+         * Validate the builder integrity before proceeding with object creation
+         */
+        protected void validate() {
+            if (mDirectory == null) {
+                throw new IllegalArgumentException("A spool directory is required.");
+            }
+
+            if (mSegmentBytes < 4096 || mMaxConcurrentReplays < 1 || mReplayIntervalMillis < 1 || mFsyncIntervalMillis < 1) {
+                throw new IllegalArgumentException("Segments must hold at least 4096 bytes, and concurrency and intervals must be positive.");
+            }
+
+            if (mFsyncPolicy == null) {
+                throw new IllegalArgumentException("An fsync policy is required.");
+            }
+        }
+    }
+
+    /**
+     * Length of the hex HMAC-SHA256 signature stored with each event
+     */
+    protected static final int SIGNATURE_LENGTH = 64;
+
+    /**
+     * Bytes before the body of each event: body length, CRC-32 of signature and body, and the signature
+     */
+    protected static final int HEADER_LENGTH = 4 + 4 + SIGNATURE_LENGTH;
+
+    protected static final String SEGMENT_PREFIX = "events-";
+    protected static final String SEGMENT_SUFFIX = ".spool";
+
+    /**
+     * One memory-mapped segment file
+     */
+    protected static class Segment {
+        protected final long mSequence;
+        protected final File mFile;
+        protected final MappedByteBuffer mBuffer;
+
+        /**
+         * Bytes holding events; the next event is written here
+         */
+        protected int mEnd;
+
+        /**
+         * Events in the segment
+         */
+        protected int mEvents;
+
+        /**
+         * Whether the segment is full and no more events are written to it
+         */
+        protected boolean mSealed;
+
+        protected Segment(long sequence, File file, MappedByteBuffer buffer) {
+            mSequence = sequence;
+            mFile = file;
+            mBuffer = buffer;
+        }
+    }
+
+    /**
+     * A spooled event, sent again with the signature it was spooled with
+     */
+    protected static class SpooledEvent extends GambitRequest {
+        protected final long mPosition;
+        protected final byte[] mBody;
+        protected final String mSignature;
+
+        protected SpooledEvent(long position, byte[] body, String signature) {
+            mPosition = position;
+            mBody = body;
+            mSignature = signature;
+        }
+
+        @Override
+        protected String getMethod() {
+            return "POST";
+        }
+
+        @Override
+        protected URL getUrl() throws IOException {
+            try {
+                return new URL(getBaseUrl() + "event");
+            } catch (MalformedURLException e) {
+                throw new IOException("Invalid API endpoint.", e);
+            }
+        }
+
+        @Override
+        protected String getBody() {
+            return new String(mBody, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        protected byte[] getBodyBytes() {
+            return mBody;
+        }
+
+        @Override
+        protected Map<String, String> getHeaders() {
+            Map<String, String> headers = super.getHeaders();
+            headers.put("Payload-HMAC", mSignature);
+            return headers;
+        }
+
+        @Override
+        protected void setRequestParams(HttpURLConnection connection) {
+        }
+
+        @Override
+        protected GambitResponse getResponse(String response, int code) {
+            return new GambitResponseEvent(response, code);
+        }
+    }
+
+    protected final File mDirectory;
+    protected final int mSegmentBytes;
+    protected final FsyncPolicy mFsyncPolicy;
+    protected final int mMaxConcurrentReplays;
+
+    /**
+     * The segments by sequence number, oldest first; the last one is written to unless it is sealed
+     */
+    protected final TreeMap<Long, Segment> mSegments = new TreeMap<>();
+
+    /**
+     * Position of the next event to replay
+     */
+    protected long mCursor;
+
+    /**
+     * Positions of the events being replayed
+     */
+    protected final TreeSet<Long> mInFlight = new TreeSet<>();
+
+    /**
+     * Positions of events acknowledged while an earlier event was still in flight, skipped if a replay resumes
+     * before them
+     */
+    protected final TreeSet<Long> mAckedAhead = new TreeSet<>();
+
+    /**
+     * Position of the earliest event that failed in the current replay, or -1
+     */
+    protected long mFailedPosition = -1;
+
+    /**
+     * Spooled events not acknowledged yet
+     */
+    protected long mPending;
+
+    protected final AtomicBoolean mReplaying = new AtomicBoolean();
+    protected final Semaphore mReplayPermits;
+    protected final ExecutorService mReplayers;
+    protected final ScheduledExecutorService mScheduler;
+    protected volatile boolean mRunning = true;
+
+    protected final AtomicLong mAppended = new AtomicLong();
+    protected final AtomicLong mReplayed = new AtomicLong();
+    protected final AtomicLong mReplayFailures = new AtomicLong();
+    protected final AtomicLong mDeletedSegments = new AtomicLong();
+
+    /**
+     * Open a spool using its {@link Builder}
+     * @param builder The {@link Builder} object
+     * @throws IOException If the directory or its segments can't be opened
+     */
+    protected GambitEventSpool(Builder builder) throws IOException {
+        mDirectory = builder.getDirectory();
+        mSegmentBytes = builder.getSegmentBytes();
+        mFsyncPolicy = builder.getFsyncPolicy();
+        mMaxConcurrentReplays = builder.getMaxConcurrentReplays();
+
+        Files.createDirectories(mDirectory.toPath());
+        recover();
+
+        mReplayPermits = new Semaphore(mMaxConcurrentReplays);
+
+        AtomicInteger count = new AtomicInteger();
+        mReplayers = Executors.newFixedThreadPool(mMaxConcurrentReplays, (runnable) -> {
+            Thread thread = new Thread(runnable, "cogs-spool-replay-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Two threads, so forcing segments to disk goes on while a replay waits for the endpoint
+        mScheduler = Executors.newScheduledThreadPool(2, (runnable) -> {
+            Thread thread = new Thread(runnable, "cogs-spool");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        mScheduler.scheduleWithFixedDelay(this::replayRound, builder.getReplayIntervalMillis(),
+                builder.getReplayIntervalMillis(), TimeUnit.MILLISECONDS);
+
+        if (mFsyncPolicy == FsyncPolicy.INTERVAL) {
+            mScheduler.scheduleWithFixedDelay(this::force, builder.getFsyncIntervalMillis(),
+                    builder.getFsyncIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Spool an event to be sent later
+     * @param request The event
+     * @throws IOException If the spool is closed, or the event can't be written
+     */
+    public void append(GambitRequestEvent request) throws IOException {
+        GambitRequest signed = request; // the overrides of the event are protected in its own package
+        byte[] body = signed.getBodyBytes();
+        String signature = signed.getHeaders().get("Payload-HMAC");
+
+        if (signature == null || signature.length() != SIGNATURE_LENGTH) {
+            throw new IOException("The event is not signed.");
+        }
+
+        byte[] signatureBytes = signature.getBytes(StandardCharsets.US_ASCII);
+
+        CRC32 crc = new CRC32();
+        crc.update(signatureBytes);
+        crc.update(body);
+
+        int length = HEADER_LENGTH + body.length;
+
+        synchronized (this) {
+            if (!mRunning) {
+                throw new IOException("The event spool has been closed.");
+            }
+
+            Segment segment = writable(length);
+            ByteBuffer out = segment.mBuffer.duplicate();
+
+            out.position(segment.mEnd);
+            out.putInt(body.length);
+            out.putInt((int) crc.getValue());
+            out.put(signatureBytes);
+            out.put(body);
+
+            if (out.remaining() >= 4) {
+                out.putInt(0);
+            }
+
+            segment.mEnd += length;
+            segment.mEvents++;
+            mPending++;
+
+            if (mFsyncPolicy == FsyncPolicy.EVERY_APPEND) {
+                segment.mBuffer.force();
+            }
+        }
+
+        mAppended.incrementAndGet();
+    }
+
+    /**
+     * Start replaying spooled events now instead of at the next interval. Does nothing if a replay is running.
+     */
+    public void replay() {
+        try {
+            mScheduler.execute(this::replayRound);
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Stop replaying, force the spooled events to the disk and release the segments. Events still spooled are
+     * replayed by the next spool opened on the same directory.
+     * @throws InterruptedException If interrupted while waiting for replays in flight
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            mRunning = false;
+        }
+
+        mScheduler.shutdown();
+        mScheduler.awaitTermination(30, TimeUnit.SECONDS);
+        mReplayers.shutdown();
+        mReplayers.awaitTermination(30, TimeUnit.SECONDS);
+
+        force();
+    }
+
+    /**
+     * Get the number of spooled events not acknowledged yet, including those recovered from an earlier spool
+     * @return Number of pending events
+     */
+    public synchronized long getPendingCount() {
+        return mPending;
+    }
+
+    /**
+     * Get the number of segment files
+     * @return Number of segments
+     */
+    public synchronized int getSegmentCount() {
+        return mSegments.size();
+    }
+
+    /**
+     * Get the number of events spooled by this spool
+     * @return Number of appended events
+     */
+    public long getAppendedCount() {
+        return mAppended.get();
+    }
+
+    /**
+     * Get the number of spooled events acknowledged by the endpoint
+     * @return Number of replayed events
+     */
+    public long getReplayedCount() {
+        return mReplayed.get();
+    }
+
+    /**
+     * Get the number of replay attempts the endpoint failed
+     * @return Number of failed replays
+     */
+    public long getReplayFailureCount() {
+        return mReplayFailures.get();
+    }
+
+    /**
+     * Get the number of segment files deleted after all their events were acknowledged
+     * @return Number of deleted segments
+     */
+    public long getDeletedSegmentCount() {
+        return mDeletedSegments.get();
+    }
+
+    /**
+     * Send one spooled event. Runs on a replay thread; override to change how an event reaches the endpoint.
+     * @param request The event to send
+     * @return The response to the event
+     * @throws Exception If the request fails
+     */
+    protected GambitResponse send(GambitRequest request) throws Exception {
+        return request.call();
+    }
+
+    /**
+     * Whether the endpoint took an event. Server errors mean it should be sent again later; other responses,
+     * including rejections of the event itself, acknowledge it.
+     * @param response The response to the event
+     * @return true if the event is acknowledged
+     */
+    protected boolean isAcknowledged(GambitResponse response) {
+        return response.getRawCode() < 500;
+    }
+
+    /**
+     * Send the spooled events in order, at most the configured number at a time, until all were sent or one failed
+     */
+    protected void replayRound() {
+        if (!mReplaying.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            while (mRunning) {
+                mReplayPermits.acquireUninterruptibly();
+
+                SpooledEvent event;
+
+                synchronized (this) {
+                    event = (mFailedPosition < 0) ? next() : null;
+
+                    if (event != null) {
+                        mInFlight.add(event.mPosition);
+                    }
+                }
+
+                if (event == null) {
+                    mReplayPermits.release();
+                    break;
+                }
+
+                try {
+                    mReplayers.execute(() -> {
+                        boolean acknowledged;
+
+                        try {
+                            acknowledged = isAcknowledged(send(event));
+                        } catch (Exception e) {
+                            acknowledged = false;
+                        }
+
+                        try {
+                            complete(event, acknowledged);
+                        } finally {
+                            mReplayPermits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    mReplayPermits.release();
+                    complete(event, false);
+                    break;
+                }
+            }
+
+            mReplayPermits.acquireUninterruptibly(mMaxConcurrentReplays);
+            mReplayPermits.release(mMaxConcurrentReplays);
+
+            synchronized (this) {
+                if (mFailedPosition >= 0) {
+                    mCursor = mFailedPosition;
+                    mFailedPosition = -1;
+                }
+
+                deleteAcknowledged();
+            }
+        } catch (IOException e) {
+            // a segment could not be deleted; it is tried again after the next replay
+        } finally {
+            mReplaying.set(false);
+        }
+    }
+
+    /**
+     * Record the outcome of replaying an event
+     * @param event The event
+     * @param acknowledged Whether the endpoint took it
+     */
+    protected synchronized void complete(SpooledEvent event, boolean acknowledged) {
+        mInFlight.remove(event.mPosition);
+
+        if (acknowledged) {
+            mReplayed.incrementAndGet();
+            mPending--;
+
+            long lowest = lowestUnacknowledged();
+
+            if (event.mPosition > lowest) {
+                mAckedAhead.add(event.mPosition);
+            }
+
+            mAckedAhead.headSet(lowest).clear();
+        } else {
+            mReplayFailures.incrementAndGet();
+
+            if (mFailedPosition < 0 || event.mPosition < mFailedPosition) {
+                mFailedPosition = event.mPosition;
+            }
+        }
+    }
+
+    /**
+     * Read the event at the cursor and move the cursor past it, skipping events already acknowledged
+     * @return The event, or null if all spooled events were read
+     */
+    protected SpooledEvent next() {
+        while (true) {
+            Map.Entry<Long, Segment> entry = mSegments.ceilingEntry(sequence(mCursor));
+
+            if (entry == null) {
+                return null;
+            }
+
+            Segment segment = entry.getValue();
+
+            if (segment.mSequence != sequence(mCursor)) {
+                mCursor = position(segment.mSequence, 0);
+            }
+
+            int offset = offset(mCursor);
+
+            if (offset >= segment.mEnd) {
+                if (!segment.mSealed) {
+                    return null;
+                }
+
+                mCursor = position(segment.mSequence + 1, 0);
+                continue;
+            }
+
+            ByteBuffer in = segment.mBuffer.duplicate();
+            in.position(offset);
+
+            byte[] body = new byte[in.getInt()];
+            in.getInt();
+
+            byte[] signature = new byte[SIGNATURE_LENGTH];
+            in.get(signature);
+            in.get(body);
+
+            long position = mCursor;
+            mCursor = position(segment.mSequence, offset + HEADER_LENGTH + body.length);
+
+            if (!mAckedAhead.remove(position)) {
+                return new SpooledEvent(position, body, new String(signature, StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    /**
+     * Delete the segments whose events were all acknowledged. The segment being written is deleted too once all
+     * its events were acknowledged, so they aren't sent again after a restart; the next event starts a new one.
+     * @throws IOException If a segment can't be deleted
+     */
+    protected void deleteAcknowledged() throws IOException {
+        long lowest = lowestUnacknowledged();
+
+        while (!mSegments.isEmpty()) {
+            Segment oldest = mSegments.firstEntry().getValue();
+
+            if (lowest < position(oldest.mSequence, oldest.mEnd)) {
+                return;
+            }
+
+            if (!oldest.mSealed && (!mInFlight.isEmpty() || mFailedPosition >= 0)) {
+                return;
+            }
+
+            mSegments.remove(oldest.mSequence);
+            oldest.mSealed = true;
+            mDeletedSegments.incrementAndGet();
+
+            if (!oldest.mFile.delete()) {
+                // a mapped file can't be deleted on some platforms until the mapping is collected
+                oldest.mFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Force the spooled events to the disk
+     */
+    protected void force() {
+        Segment last;
+
+        synchronized (this) {
+            last = mSegments.isEmpty() ? null : mSegments.lastEntry().getValue();
+        }
+
+        if (last != null && !last.mSealed) {
+            last.mBuffer.force();
+        }
+    }
+
+    /**
+     * Get the segment to write an event to, rolling over to a new one if the current one is full
+     * @param length Bytes needed for the event
+     * @return The segment
+     * @throws IOException If a new segment can't be created
+     */
+    protected Segment writable(int length) throws IOException {
+        Segment last = mSegments.isEmpty() ? null : mSegments.lastEntry().getValue();
+
+        if (last != null && !last.mSealed && last.mEnd + length <= last.mBuffer.capacity()) {
+            return last;
+        }
+
+        if (last != null && !last.mSealed) {
+            last.mSealed = true;
+
+            if (mFsyncPolicy != FsyncPolicy.NEVER) {
+                last.mBuffer.force();
+            }
+        }
+
+        long sequence = ((last == null) ? sequence(mCursor) : last.mSequence) + 1;
+        File file = new File(mDirectory, String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+
+        Segment segment = new Segment(sequence, file, map(file, Math.max(mSegmentBytes, length)));
+        mSegments.put(sequence, segment);
+
+        return segment;
+    }
+
+    /**
+     * Open the segments left by an earlier spool and find where the events in each end. A torn or corrupt event
+     * ends its segment.
+     * @throws IOException If a segment can't be opened
+     */
+    protected void recover() throws IOException {
+        File[] files = mDirectory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+
+        if (files == null) {
+            throw new IOException("Unable to list the spool directory " + mDirectory + ".");
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+            long sequence;
+
+            try {
+                sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            Segment segment = new Segment(sequence, file, map(file, (int) file.length()));
+            segment.mSealed = true;
+
+            ByteBuffer in = segment.mBuffer.duplicate();
+            byte[] signature = new byte[SIGNATURE_LENGTH];
+
+            while (in.remaining() >= HEADER_LENGTH) {
+                int start = in.position();
+                int length = in.getInt();
+                int expected = in.getInt();
+
+                if (length <= 0 || length > in.remaining() - SIGNATURE_LENGTH) {
+                    in.position(start);
+                    break;
+                }
+
+                byte[] body = new byte[length];
+                in.get(signature);
+                in.get(body);
+
+                CRC32 crc = new CRC32();
+                crc.update(signature);
+                crc.update(body);
+
+                if ((int) crc.getValue() != expected) {
+                    in.position(start);
+                    break;
+                }
+
+                segment.mEvents++;
+            }
+
+            segment.mEnd = in.position();
+            mPending += segment.mEvents;
+            mSegments.put(sequence, segment);
+        }
+
+        if (!mSegments.isEmpty()) {
+            mCursor = position(mSegments.firstKey(), 0);
+        }
+    }
+
+    private long lowestUnacknowledged() {
+        long lowest = mCursor;
+
+        if (!mInFlight.isEmpty()) {
+            lowest = Math.min(lowest, mInFlight.first());
+        }
+
+        if (mFailedPosition >= 0) {
+            lowest = Math.min(lowest, mFailedPosition);
+        }
+
+        return lowest;
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static long position(long sequence, int offset) {
+        return (sequence << 32) | offset;
+    }
+
+    private static long sequence(long position) {
+        return position >>> 32;
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+}
@@ -0,0 +1,126 @@
+package com.gambit.sdk;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Signs request payloads with HMAC-SHA256 under one client secret. Parsing the secret and looking up and
+ * initializing a {@link Mac} happens once per secret instead of once per request: each thread gets its own
+ * initialized {@link Mac}, cloned from the first one, and writes the hex digest into its own reusable buffer.
+ *
+ * Signers are cached by secret; {@link #forKey(String)} returns the same signer for the same secret.
+ */
+public class GambitHmacSigner {
+
+    protected static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * Signers of at most this many secrets are cached; more than that are created for each use
+     */
+    protected static final int MAX_CACHED_KEYS = 64;
+
+    protected static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * The cached signers by hex encoded secret
+     */
+    protected static final Map<String, GambitHmacSigner> mSigners = new ConcurrentHashMap<>();
+
+    /**
+     * The first initialized {@link Mac}, cloned for each thread
+     */
+    protected final Mac mPrototype;
+
+    /**
+     * The {@link Mac} of each thread
+     */
+    protected final ThreadLocal<Mac> mMacs;
+
+    /**
+     * Hex output buffer of each thread
+     */
+    protected final ThreadLocal<char[]> mHex;
+
+    /**
+     * Get the signer of a secret, creating it on first use
+     * @param key The hex encoded signing key (client secret)
+     * @return The signer
+     * @throws NoSuchAlgorithmException If HMAC-SHA256 isn't available
+     * @throws InvalidKeyException If the key is not valid
+     */
+    public static GambitHmacSigner forKey(String key) throws NoSuchAlgorithmException, InvalidKeyException {
+        GambitHmacSigner signer = mSigners.get(key);
+
+        if (signer == null) {
+            signer = new GambitHmacSigner(key);
+
+            if (mSigners.size() < MAX_CACHED_KEYS) {
+                GambitHmacSigner existing = mSigners.putIfAbsent(key, signer);
+
+                if (existing != null) {
+                    signer = existing;
+                }
+            }
+        }
+
+        return signer;
+    }
+
+    /**
+     * Create a signer for a secret. Prefer {@link #forKey(String)}, which reuses signers.
+     * @param key The hex encoded signing key (client secret)
+     * @throws NoSuchAlgorithmException If HMAC-SHA256 isn't available
+     * @throws InvalidKeyException If the key is not valid
+     */
+    public GambitHmacSigner(String key) throws NoSuchAlgorithmException, InvalidKeyException {
+        SecretKeySpec secret = new SecretKeySpec(DatatypeConverter.parseHexBinary(key), ALGORITHM);
+
+        mPrototype = Mac.getInstance(ALGORITHM);
+        mPrototype.init(secret);
+
+        mMacs = ThreadLocal.withInitial(() -> copy(secret));
+        mHex = ThreadLocal.withInitial(() -> new char[2 * mPrototype.getMacLength()]);
+    }
+
+    /**
+     * Sign a payload
+     * @param content The payload bytes
+     * @return HMAC-SHA256 of the payload as upper case hex
+     */
+    public String sign(byte[] content) {
+        byte[] raw = mMacs.get().doFinal(content);
+        char[] hex = mHex.get();
+
+        for (int i = 0; i < raw.length; ++i) {
+            hex[2 * i] = HEX[(raw[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[raw[i] & 0xF];
+        }
+
+        return new String(hex, 0, 2 * raw.length);
+    }
+
+    /**
+     * Create the {@link Mac} of a thread: a clone of the prototype where the provider supports it, otherwise a
+     * new one initialized with the secret.
+     */
+    private Mac copy(SecretKeySpec secret) {
+        try {
+            synchronized (mPrototype) {
+                return (Mac) mPrototype.clone();
+            }
+        } catch (CloneNotSupportedException e) {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(secret);
+                return mac;
+            } catch (NoSuchAlgorithmException | InvalidKeyException ex) {
+                throw new IllegalStateException("Unable to create HMAC-SHA256 for a key that was accepted before.", ex);
+            }
+        }
+    }
+}
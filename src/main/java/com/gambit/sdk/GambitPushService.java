@@ -1,7 +1,10 @@
 package com.gambit.sdk;
 
+import com.gambit.sdk.attributes.GambitAttributeWriters;
+import com.gambit.sdk.attributes.GambitAttributes;
 import com.gambit.sdk.message.GambitMessage;
 import org.json.JSONObject;
+import org.json.JSONString;
 
 import javax.websocket.CloseReason;
 import javax.websocket.MessageHandler;
@@ -50,6 +53,11 @@ public class GambitPushService {
          */
         protected LinkedHashMap<String, Object> mAttributes;
 
+        /**
+         * Object of a {@link GambitAttributes} class holding the attributes, used instead of {@link #mAttributes}
+         */
+        protected Object mTypedAttributes;
+
         /**
          * The namespace for with which this request is associated. The
          * attributes must either be defined for the specified namespace, or
@@ -63,6 +71,16 @@ public class GambitPushService {
          */
         protected String mTopicDescription;
 
+        /**
+         * Settings of the shared websocket container the push connection is made with.
+         */
+        protected GambitWebsocketContainer mContainer = GambitWebsocketContainer.DEFAULT;
+
+        /**
+         * The permessage-deflate compression to offer to the server, null for none.
+         */
+        protected GambitDeflateExtension mCompression;
+
         /**
          * Create push service builder with keys obtained through Gambit UI and
          * Gambit Tools SDK
@@ -130,6 +148,29 @@ public class GambitPushService {
             return mAttributes;
         }
 
+        /**
+         * Set the attributes from an object of a class annotated with {@link GambitAttributes}. The attributes are
+         * written by the writer generated for that class instead of being copied into a map, and take the place of
+         * any set with {@link #setAttributes(LinkedHashMap)}.
+         *
+         * @param attributes Object holding the namespace specific attributes
+         * @return The same instance
+         */
+        public Builder setTypedAttributes(Object attributes) {
+            this.mTypedAttributes = attributes;
+
+            return this;
+        }
+
+        /**
+         * Object of a {@link GambitAttributes} class holding the attributes
+         *
+         * @return The typed attributes; may be null as well
+         */
+        public Object getTypedAttributes() {
+            return mTypedAttributes;
+        }
+
         /**
          * Obtained through Gambit UI (public key)
          *
@@ -166,6 +207,48 @@ public class GambitPushService {
             return mTopicDescription;
         }
 
+        /**
+         * Settings of the shared websocket container the push connection is made with.
+         *
+         * @param container The websocket container settings (Default: {@link GambitWebsocketContainer#DEFAULT})
+         * @return The same instance
+         */
+        public Builder setContainer(GambitWebsocketContainer container) {
+            this.mContainer = container;
+
+            return this;
+        }
+
+        /**
+         * Settings of the shared websocket container the push connection is made with.
+         *
+         * @return The websocket container settings
+         */
+        public GambitWebsocketContainer getContainer() {
+            return mContainer;
+        }
+
+        /**
+         * The permessage-deflate compression to offer to the server.
+         *
+         * @param compression The compression settings, or null to disable compression (Default: null)
+         * @return The same instance
+         */
+        public Builder setCompression(GambitDeflateExtension compression) {
+            this.mCompression = compression;
+
+            return this;
+        }
+
+        /**
+         * The permessage-deflate compression to offer to the server.
+         *
+         * @return The compression settings; may be null as well
+         */
+        public GambitDeflateExtension getCompression() {
+            return mCompression;
+        }
+
         /**
          * Build request object
          *
@@ -183,13 +266,19 @@ public class GambitPushService {
          * @throws Exception If anything crucial is missing
          */
         protected void validate() throws Exception {
-            if (mAttributes == null || mAttributes.isEmpty()) {
+            if (mTypedAttributes != null) {
+                GambitAttributeWriters.forType(mTypedAttributes.getClass());
+            } else if (mAttributes == null || mAttributes.isEmpty()) {
                 throw new Exception("Missing mandatory parameter of Builder: attributes");
             }
 
             if (mNamespace == null || mNamespace.isEmpty()) {
                 throw new Exception("Missing mandatory parameter of Builder: namespace");
             }
+
+            if (mContainer == null) {
+                throw new Exception("Missing mandatory parameter of Builder: container");
+            }
         }
     }
 
@@ -282,7 +371,9 @@ public class GambitPushService {
 
         payload.put("timestamp", timestamp);
 
-        if (builder.getAttributes() != null) {
+        if (builder.getTypedAttributes() != null) {
+            payload.put("attributes", (JSONString) () -> GambitAttributeWriters.toJson(builder.getTypedAttributes()));
+        } else if (builder.getAttributes() != null) {
             payload.put("attributes", builder.getAttributes());
         }
 
@@ -339,7 +430,7 @@ public class GambitPushService {
         builder.append(":443"); //port
         builder.append("/push"); //websocket endpoint
 
-        mEndpoint = new GambitWebsocketEndpoint(URI.create(builder.toString()), mPayload, mSignature, mMessageHandler, mPingPongHandler);
+        mEndpoint = new GambitWebsocketEndpoint(URI.create(builder.toString()), mPayload, mSignature, mMessageHandler, mPingPongHandler, mBuilder.getContainer(), mBuilder.getCompression());
     }
 
     /**
@@ -1,13 +1,13 @@
 package com.gambit.sdk;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.xml.bind.DatatypeConverter;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 public abstract class GambitRequest implements Callable<GambitResponse> {
@@ -36,19 +36,21 @@ public abstract class GambitRequest implements Callable<GambitResponse> {
      * @throws InvalidKeyException
      */
     public static String getHmac(String content, String key) throws NoSuchAlgorithmException, UnsupportedEncodingException, InvalidKeyException {
-        Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-        
-        byte[] key_hex = DatatypeConverter.parseHexBinary(key);
-        
-        SecretKeySpec secret_key = new SecretKeySpec(key_hex, "HmacSHA256");
-        
-        sha256_HMAC.init(secret_key);
-        
-        byte[] raw = sha256_HMAC.doFinal(content.getBytes("UTF-8"));
-        
-        String hmac = DatatypeConverter.printHexBinary(raw);
+        return getHmac(content.getBytes(StandardCharsets.UTF_8), key);
+    }
 
-        return hmac;
+    /**
+     * Calculate HMAC-SHA256 hash for already encoded content and a signing key, using the cached
+     * {@link GambitHmacSigner} of the key.
+     *
+     * @param content The content to be signed
+     * @param key The key used for signing
+     * @return HMAC-SHA256 HEX Encoded ASCII String
+     * @throws NoSuchAlgorithmException
+     * @throws InvalidKeyException
+     */
+    public static String getHmac(byte[] content, String key) throws NoSuchAlgorithmException, InvalidKeyException {
+        return GambitHmacSigner.forKey(key).sign(content);
     }
 
     /**
@@ -83,54 +85,76 @@ public abstract class GambitRequest implements Callable<GambitResponse> {
         
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod(getMethod());
-        connection.setRequestProperty("User-Agent", API_USER_AGENT);
-        connection.setRequestProperty("Content-Type", "application/json"); //;charset=UTF-8
-        connection.setRequestProperty("Accept", "application/json");
+
+        for (Map.Entry<String, String> header : getHeaders().entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
         
         setRequestParams(connection); //allow adapter to set more stuff
         
-        String body = getBody();
+        byte[] body = getBodyBytes();
         
-        if (body.length() > 0)
+        if (body.length > 0)
         {
-            connection.setRequestProperty("Content-Length", Integer.toString(body.getBytes().length));
+            connection.setRequestProperty("Content-Length", Integer.toString(body.length));
             
             connection.setDoOutput(true);
-            DataOutputStream wr = new DataOutputStream(connection.getOutputStream());
-            wr.writeBytes(body);
-            wr.flush();
-            wr.close();
+            OutputStream out = connection.getOutputStream();
+            out.write(body);
+            out.close();
         }
         
-        int responseCode;
-        StringBuilder response = new StringBuilder();
+        int responseCode = connection.getResponseCode();
+        InputStream in = (responseCode < 400) ? connection.getInputStream() : connection.getErrorStream();
         
-        try {
-            responseCode = connection.getResponseCode();
-            
-            BufferedReader in = new BufferedReader(
-		        new InputStreamReader(connection.getInputStream()));
-            String inputLine;
+        return getResponse(readBody(in), responseCode);
+    }
 
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
+    /**
+     * Read a whole response body as UTF-8 text.
+     * @param in The response stream; may be null when the response has no body
+     * @return The response body
+     * @throws IOException If reading fails
+     */
+    protected static String readBody(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
         }
-        catch (IOException e) {
-            responseCode = 400;
-            
-            BufferedReader in = new BufferedReader(
-		        new InputStreamReader(connection.getErrorStream()));
-            String inputLine;
 
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
+        StringBuilder response = new StringBuilder();
+
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[4096];
+            int read;
+
+            while ((read = reader.read(buffer)) != -1) {
+                response.append(buffer, 0, read);
             }
-            in.close();
         }
-        
-        return getResponse(response.toString(), responseCode);
+
+        return response.toString();
+    }
+
+    /**
+     * The headers sent with the request, whichever transport sends it. Adapters may add their own.
+     * @return The request headers by name
+     */
+    protected Map<String, String> getHeaders() {
+        Map<String, String> headers = new LinkedHashMap<>();
+
+        headers.put("User-Agent", API_USER_AGENT);
+        headers.put("Content-Type", "application/json;charset=UTF-8");
+        headers.put("Accept", "application/json");
+
+        return headers;
+    }
+
+    /**
+     * The request body as sent: {@link #getBody()} encoded as UTF-8.
+     * @return The request body bytes
+     */
+    protected byte[] getBodyBytes() {
+        return getBody().getBytes(StandardCharsets.UTF_8);
     }
 
     /**
@@ -152,7 +176,8 @@ public abstract class GambitRequest implements Callable<GambitResponse> {
     abstract protected String getBody();
 
     /**
-     * Use this method to add any additional headers or HTTP connection properties, before making an API call.
+     * Use this method to set any additional HTTP connection properties, before making an API call with
+     * {@link #call()}. Headers that every transport should send belong in {@link #getHeaders()}.
      * @param connection The {@link HttpURLConnection} object that is going to execute the API call.
      */
     abstract protected void setRequestParams(HttpURLConnection connection);
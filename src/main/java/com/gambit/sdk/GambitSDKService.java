@@ -1,12 +1,16 @@
 package com.gambit.sdk;
 
+import com.gambit.sdk.exceptions.GambitSpooledException;
 import com.gambit.sdk.request.GambitRequestEvent;
 
+import java.io.IOException;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * The main class that all SDK users will use to work with the Gambit SDK.
@@ -19,9 +23,14 @@ public class GambitSDKService {
     protected static GambitSDKService mInstance;
 
     /**
-     * Thread loop
+     * Bounded thread pool running the API calls
      */
-    protected final ExecutorService mExecutor;
+    protected volatile GambitBoundedExecutor mExecutor;
+
+    /**
+     * Non-blocking transport used by {@link #sendGambitEventAsync(GambitRequestEvent.Builder)}; created on first use
+     */
+    protected GambitAsyncTransport mAsyncTransport;
 
     /**
      * Gambit Push Services
@@ -38,11 +47,31 @@ public class GambitSDKService {
      */
     protected String mEndpointHostname = "api.cogswell.io";
 
+    /**
+     * Batches events sent through {@link #sendGambitEvent(GambitRequestEvent.Builder)}; null sends each event on its own
+     */
+    protected volatile GambitEventPipeline mEventPipeline;
+
+    /**
+     * Keeps events that could not be delivered, to send them again later; null drops them
+     */
+    protected volatile GambitEventSpool mEventSpool;
+
+    /**
+     * Refuses events while the event endpoint keeps failing; null sends every event
+     */
+    protected volatile GambitCircuitBreaker mCircuitBreaker;
+
+    /**
+     * Limits the events in flight when no pipeline is configured; null sends every event
+     */
+    protected volatile GambitConcurrencyLimit mConcurrencyLimit;
+
     /**
      * Singleton constructor
      */
     protected GambitSDKService() throws RuntimeException {
-        mExecutor = Executors.newCachedThreadPool();
+        mExecutor = new GambitBoundedExecutor.Builder().build();
 
         mPushInstances = new HashMap<>();
     }
@@ -65,6 +94,25 @@ public class GambitSDKService {
      */
     public void finish() {
 
+        if (mEventPipeline != null) {
+            mEventPipeline.shutdown();
+        }
+
+        if (mEventSpool != null) {
+            try {
+                mEventSpool.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            if (mAsyncTransport != null) {
+                mAsyncTransport.shutdown();
+                mAsyncTransport = null;
+            }
+        }
+
         if (getExecutorService() != null && !getExecutorService().isShutdown()) {
             getExecutorService().shutdown();
         }
@@ -88,6 +136,26 @@ public class GambitSDKService {
         return mExecutor;
     }
 
+    /**
+     * Replace the thread pool running the API calls. Requests already submitted to the previous pool still complete.
+     * @param builder The {@link GambitBoundedExecutor.Builder} configuring thread count, queue size and rejection policy
+     */
+    public void setExecutor(GambitBoundedExecutor.Builder builder) {
+        GambitBoundedExecutor previous = mExecutor;
+
+        mExecutor = builder.build();
+
+        previous.shutdown();
+    }
+
+    /**
+     * Get the thread pool running the API calls, e.g. to read its active thread, queue and rejection counts
+     * @return The {@link GambitBoundedExecutor}
+     */
+    public GambitBoundedExecutor getExecutor() {
+        return mExecutor;
+    }
+
     /**
      * Set Gambit API Endpoint Hostname
      * @param hostname The endpoint hostname. Protocol is always secure.
@@ -105,13 +173,328 @@ public class GambitSDKService {
     }
 
     /**
-     * Send Gambit Event data
+     * Send events in batches through a {@link GambitEventPipeline} built from the given builder, instead of one
+     * request per thread. Any previously configured pipeline is shut down after sending the events it has queued.
+     * @param builder The {@link GambitEventPipeline.Builder} object, or null to send each event on its own again
+     */
+    public void setEventPipeline(GambitEventPipeline.Builder builder) {
+        GambitEventPipeline previous = mEventPipeline;
+
+        mEventPipeline = (builder == null) ? null : builder.build();
+
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Get the pipeline batching the events, e.g. to read its metrics
+     * @return The {@link GambitEventPipeline}, or null if events are sent on their own
+     */
+    public GambitEventPipeline getEventPipeline() {
+        return mEventPipeline;
+    }
+
+    /**
+     * Spool events sent through {@link #sendGambitEvent(GambitRequestEvent)} that fail to reach the endpoint, or
+     * that it fails with a server error, to a {@link GambitEventSpool} built from the given builder. Their futures
+     * fail with a {@link GambitSpooledException}, and the spool sends them again once the endpoint is back. Events
+     * left in the spool directory by an earlier run are sent too. Any previously configured spool is closed.
+     * @param builder The {@link GambitEventSpool.Builder} object, or null to stop spooling
+     * @throws IOException If the spool directory can't be opened
+     */
+    public void setEventSpool(GambitEventSpool.Builder builder) throws IOException {
+        GambitEventSpool previous = mEventSpool;
+
+        mEventSpool = (builder == null) ? null : builder.build();
+
+        if (previous != null) {
+            try {
+                previous.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Get the spool keeping the events that could not be delivered, e.g. to read its metrics
+     * @return The {@link GambitEventSpool}, or null if such events are dropped
+     */
+    public GambitEventSpool getEventSpool() {
+        return mEventSpool;
+    }
+
+    /**
+     * Refuse events sent through {@link #sendGambitEvent(GambitRequestEvent)} while the event endpoint keeps
+     * failing, using a {@link GambitCircuitBreaker} built from the given builder. Refused events are spooled if a
+     * spool is configured.
+     * @param builder The {@link GambitCircuitBreaker.Builder} object, or null to send every event
+     */
+    public void setCircuitBreaker(GambitCircuitBreaker.Builder builder) {
+        mCircuitBreaker = (builder == null) ? null : builder.build();
+    }
+
+    /**
+     * Get the circuit breaker of the event endpoint, e.g. to read its state
+     * @return The {@link GambitCircuitBreaker}, or null if there is none
+     */
+    public GambitCircuitBreaker getCircuitBreaker() {
+        return mCircuitBreaker;
+    }
+
+    /**
+     * Limit the events sent through {@link #sendGambitEvent(GambitRequestEvent)} that are in flight at the same
+     * time, adapting the limit to the latency of the endpoint with a {@link GambitConcurrencyLimit} built from the
+     * given builder. Events over the limit are spooled if a spool is configured, otherwise refused. The limit
+     * doesn't apply while an event pipeline is configured, which bounds its own concurrency.
+     * @param builder The {@link GambitConcurrencyLimit.Builder} object, or null to remove the limit
+     */
+    public void setConcurrencyLimit(GambitConcurrencyLimit.Builder builder) {
+        mConcurrencyLimit = (builder == null) ? null : builder.build();
+    }
+
+    /**
+     * Get the concurrency limit of the event endpoint, e.g. to read the current limit
+     * @return The {@link GambitConcurrencyLimit}, or null if there is none
+     */
+    public GambitConcurrencyLimit getConcurrencyLimit() {
+        return mConcurrencyLimit;
+    }
+
+    /**
+     * Send Gambit Event data. When an event pipeline is configured, the event is queued to be sent with the next
+     * batch and this method never blocks.
      * @param builder Builder that configures the {@link GambitRequest} inheriting object
      * @return Promised object that inherits {@link GambitResponse}
      * @throws java.lang.Exception 
      */
     public Future<GambitResponse> sendGambitEvent(GambitRequestEvent.Builder builder) throws Exception {
-        return mExecutor.submit(builder.build());
+        return sendGambitEvent(builder.build());
+    }
+
+    /**
+     * Send a Gambit Event that was already built, such as one created by a
+     * {@link com.gambit.sdk.request.GambitEventTemplate}. When a circuit breaker is open, or the concurrency limit is
+     * reached, the event is not sent: it is spooled if a spool is configured, otherwise its future fails with a
+     * {@link RejectedExecutionException}.
+     * @param request The event to send
+     * @return Promised object that inherits {@link GambitResponse}
+     */
+    public Future<GambitResponse> sendGambitEvent(GambitRequestEvent request) {
+        GambitEventPipeline pipeline = mEventPipeline;
+        GambitEventSpool spool = mEventSpool;
+        GambitCircuitBreaker breaker = mCircuitBreaker;
+        // A pipeline bounds its own concurrency, and counting queued events would keep batches from filling up
+        GambitConcurrencyLimit limit = (pipeline == null) ? mConcurrencyLimit : null;
+
+        if (limit != null && !limit.tryAcquire()) {
+            return refuse(spool, request, new RejectedExecutionException(
+                    "The concurrency limit of " + limit.getLimit() + " events in flight is reached."));
+        }
+
+        if (breaker != null && !breaker.tryAcquire()) {
+            if (limit != null) {
+                limit.release();
+            }
+
+            return refuse(spool, request, new RejectedExecutionException("The circuit breaker of the event endpoint is open."));
+        }
+
+        if (pipeline != null) {
+            CompletableFuture<GambitResponse> future = pipeline.submit(request);
+
+            if (spool == null && breaker == null) {
+                return future;
+            }
+
+            CompletableFuture<GambitResponse> result = new CompletableFuture<>();
+
+            future.whenComplete((response, error) -> {
+                boolean failed = error instanceof IOException || (error == null && response.getRawCode() >= 500);
+
+                record(breaker, failed, error != null && !failed);
+
+                if (failed && spool != null) {
+                    result.completeExceptionally(spool(spool, request, response, error));
+                } else if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            });
+
+            return result;
+        }
+
+        if (spool == null && breaker == null && limit == null) {
+            return mExecutor.submit(request);
+        }
+
+        try {
+            return mExecutor.submit(() -> callGuarded(request, spool, breaker, limit));
+        } catch (RejectedExecutionException e) {
+            if (limit != null) {
+                limit.release();
+            }
+
+            record(breaker, false, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Send an event on the calling thread, reporting the outcome to the breaker and the limit, and spooling the
+     * event if the endpoint failed it
+     * @param request The event to send
+     * @param spool The spool, or null
+     * @param breaker The circuit breaker, or null
+     * @param limit The concurrency limit, or null
+     * @return The response to the event
+     * @throws Exception If the request fails, or a {@link GambitSpooledException} if it was spooled
+     */
+    protected GambitResponse callGuarded(GambitRequestEvent request, GambitEventSpool spool, GambitCircuitBreaker breaker,
+                                         GambitConcurrencyLimit limit) throws Exception {
+        long start = System.nanoTime();
+        GambitResponse response = null;
+        Exception error = null;
+
+        try {
+            response = request.call();
+        } catch (Exception e) {
+            error = e;
+        }
+
+        boolean failed = error instanceof IOException || (response != null && response.getRawCode() >= 500);
+
+        if (limit != null) {
+            if (error != null && !failed) {
+                limit.release();
+            } else {
+                limit.release(System.nanoTime() - start, failed);
+            }
+        }
+
+        record(breaker, failed, error != null && !failed);
+
+        if (failed && spool != null) {
+            throw spool(spool, request, response, error);
+        }
+
+        if (error != null) {
+            throw error;
+        }
+
+        return response;
+    }
+
+    /**
+     * Fail an event that was not sent, spooling it if a spool is configured
+     * @param spool The spool, or null
+     * @param request The event
+     * @param reason Why the event was not sent
+     * @return The failed future of the event
+     */
+    protected CompletableFuture<GambitResponse> refuse(GambitEventSpool spool, GambitRequestEvent request, RejectedExecutionException reason) {
+        CompletableFuture<GambitResponse> future = new CompletableFuture<>();
+
+        future.completeExceptionally((spool != null) ? spool(spool, request, null, reason) : reason);
+
+        return future;
+    }
+
+    /**
+     * Spool an event that could not be delivered
+     * @param spool The spool
+     * @param request The event
+     * @param response The server error response, or null
+     * @param error Why the event could not be sent, or null
+     * @return The exception to fail the future of the event with: a {@link GambitSpooledException} once the event
+     * is spooled, otherwise the original failure
+     */
+    protected Exception spool(GambitEventSpool spool, GambitRequestEvent request, GambitResponse response, Throwable error) {
+        String reason = (response != null) ? "The endpoint answered " + response.getRawCode()
+                : (error instanceof RejectedExecutionException) ? "The event was not sent" : "The endpoint is unreachable";
+
+        try {
+            spool.append(request);
+        } catch (IOException e) {
+            if (error instanceof Exception) {
+                error.addSuppressed(e);
+                return (Exception) error;
+            }
+
+            return new IOException(reason + " and the event could not be spooled.", e);
+        }
+
+        return new GambitSpooledException(reason + "; the event was spooled and will be sent again later.", error);
+    }
+
+    /**
+     * Send Gambit Event data without blocking a thread while waiting for the response. The event is sent over one
+     * of a few keep-alive connections shared by all events sent this way.
+     * @param builder Builder that configures the {@link GambitRequest} inheriting object
+     * @return Promised object that inherits {@link GambitResponse}
+     * @throws java.lang.Exception If the event fails validation or the transport can't be started
+     */
+    public CompletableFuture<GambitResponse> sendGambitEventAsync(GambitRequestEvent.Builder builder) throws Exception {
+        return getAsyncTransport().send(builder.build());
+    }
+
+    /**
+     * Send a Gambit Event that was already built without blocking a thread while waiting for the response.
+     * @param request The event to send
+     * @return Promised object that inherits {@link GambitResponse}
+     * @throws IOException If the transport can't be started
+     */
+    public CompletableFuture<GambitResponse> sendGambitEventAsync(GambitRequestEvent request) throws IOException {
+        return getAsyncTransport().send(request);
+    }
+
+    /**
+     * Replace the transport used by {@link #sendGambitEventAsync(GambitRequestEvent.Builder)}, and open its warm-up
+     * connections to the event endpoint. Requests in flight on the previous transport fail.
+     * @param builder The {@link GambitAsyncTransport.Builder} configuring connections, threads and timeouts
+     * @throws IOException If the transport fails to start
+     */
+    public synchronized void setAsyncTransport(GambitAsyncTransport.Builder builder) throws IOException {
+        GambitAsyncTransport previous = mAsyncTransport;
+
+        mAsyncTransport = startAsyncTransport(builder);
+
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Get the transport used by {@link #sendGambitEventAsync(GambitRequestEvent.Builder)}, starting one with the
+     * default settings if none was set.
+     * @return The {@link GambitAsyncTransport}
+     * @throws IOException If the transport fails to start
+     */
+    public synchronized GambitAsyncTransport getAsyncTransport() throws IOException {
+        if (mAsyncTransport == null) {
+            mAsyncTransport = startAsyncTransport(new GambitAsyncTransport.Builder());
+        }
+
+        return mAsyncTransport;
+    }
+
+    /**
+     * Build a transport and start opening its warm-up connections to the event endpoint in the background
+     * @param builder The {@link GambitAsyncTransport.Builder} object
+     * @return The started transport
+     * @throws IOException If the transport fails to start
+     */
+    protected GambitAsyncTransport startAsyncTransport(GambitAsyncTransport.Builder builder) throws IOException {
+        GambitAsyncTransport transport = builder.build();
+
+        if (transport.getWarmupConnections() > 0) {
+            transport.warmUp(new URL("https://" + getEndpointHostname() + "/event"), transport.getWarmupConnections());
+        }
+
+        return transport;
     }
 
     /**
@@ -153,4 +536,18 @@ public class GambitSDKService {
         return service;
     }
 
+
+    private static void record(GambitCircuitBreaker breaker, boolean failed, boolean ignored) {
+        if (breaker == null) {
+            return;
+        }
+
+        if (failed) {
+            breaker.onFailure();
+        } else if (ignored) {
+            breaker.onIgnored();
+        } else {
+            breaker.onSuccess();
+        }
+    }
 }
@@ -0,0 +1,298 @@
+package com.gambit.sdk;
+
+import javax.websocket.WebSocketContainer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.client.ClientProperties;
+import org.glassfish.tyrus.container.grizzly.client.GrizzlyClientProperties;
+
+/**
+ * Holds the settings of the websocket client runtime used by the Pub/Sub and push connections, and hands out
+ * the {@link WebSocketContainer} for those settings. Containers are created once per distinct set of settings
+ * and shared by every connection that uses them, and all of them run on the single Tyrus shared transport, so
+ * any number of connections share one fixed selector and worker thread pool.
+ *
+ * Note: The shared transport is created by the first connection that is established. Its selector and worker
+ * thread counts are taken from the settings of that connection and apply to every connection in the JVM.
+ */
+public class GambitWebsocketContainer {
+
+    public static class Builder {
+
+        /**
+         * Number of selector (I/O) threads of the shared transport.
+         */
+        protected int mSelectorThreads = 1;
+
+        /**
+         * Number of worker threads of the shared transport.
+         */
+        protected int mWorkerThreads = 2;
+
+        /**
+         * Size, in bytes, of the buffer used to read incoming frames for each connection.
+         */
+        protected int mIncomingBufferSize = 4194315;
+
+        /**
+         * Largest text message, in characters, that a session will accept by default.
+         */
+        protected int mMaxTextMessageBufferSize = 65536;
+
+        /**
+         * Time, in seconds, that the shared transport is kept alive after the last connection closes.
+         */
+        protected int mIdleTimeout = 30;
+
+        /**
+         * Number of selector (I/O) threads of the shared transport.
+         *
+         * @param threads The number of selector threads (Default: 1)
+         * @return The same instance
+         */
+        public Builder setSelectorThreads(int threads) {
+            this.mSelectorThreads = threads;
+
+            return this;
+        }
+
+        /**
+         * Number of selector (I/O) threads of the shared transport.
+         *
+         * @return The number of selector threads
+         */
+        public int getSelectorThreads() {
+            return mSelectorThreads;
+        }
+
+        /**
+         * Number of worker threads of the shared transport.
+         *
+         * @param threads The number of worker threads (Default: 2)
+         * @return The same instance
+         */
+        public Builder setWorkerThreads(int threads) {
+            this.mWorkerThreads = threads;
+
+            return this;
+        }
+
+        /**
+         * Number of worker threads of the shared transport.
+         *
+         * @return The number of worker threads
+         */
+        public int getWorkerThreads() {
+            return mWorkerThreads;
+        }
+
+        /**
+         * Size, in bytes, of the buffer used to read incoming frames for each connection.
+         *
+         * @param size The incoming buffer size in bytes (Default: 4194315)
+         * @return The same instance
+         */
+        public Builder setIncomingBufferSize(int size) {
+            this.mIncomingBufferSize = size;
+
+            return this;
+        }
+
+        /**
+         * Size, in bytes, of the buffer used to read incoming frames for each connection.
+         *
+         * @return The incoming buffer size in bytes
+         */
+        public int getIncomingBufferSize() {
+            return mIncomingBufferSize;
+        }
+
+        /**
+         * Largest text message, in characters, that a session will accept by default.
+         *
+         * @param size The maximum text message size (Default: 65536)
+         * @return The same instance
+         */
+        public Builder setMaxTextMessageBufferSize(int size) {
+            this.mMaxTextMessageBufferSize = size;
+
+            return this;
+        }
+
+        /**
+         * Largest text message, in characters, that a session will accept by default.
+         *
+         * @return The maximum text message size
+         */
+        public int getMaxTextMessageBufferSize() {
+            return mMaxTextMessageBufferSize;
+        }
+
+        /**
+         * Time, in seconds, that the shared transport is kept alive after the last connection closes.
+         *
+         * @param seconds The idle timeout in seconds (Default: 30)
+         * @return The same instance
+         */
+        public Builder setIdleTimeout(int seconds) {
+            this.mIdleTimeout = seconds;
+
+            return this;
+        }
+
+        /**
+         * Time, in seconds, that the shared transport is kept alive after the last connection closes.
+         *
+         * @return The idle timeout in seconds
+         */
+        public int getIdleTimeout() {
+            return mIdleTimeout;
+        }
+
+        /**
+         * Build container settings object
+         *
+         * @return A {@link GambitWebsocketContainer} instance
+         * @throws IllegalArgumentException if validation fails
+         */
+        public GambitWebsocketContainer build() {
+            validate();
+
+            return new GambitWebsocketContainer(this);
+        }
+
+        /**
+         * Validate the builder integrity before proceeding with object creation
+         * @throws IllegalArgumentException If any of the settings is out of range
+         */
+        protected void validate() {
+            if (mSelectorThreads < 1 || mWorkerThreads < 1) {
+                throw new IllegalArgumentException("There must be at least one selector and one worker thread.");
+            }
+
+            if (mIncomingBufferSize < 1 || mMaxTextMessageBufferSize < 1) {
+                throw new IllegalArgumentException("Buffer sizes must be positive.");
+            }
+
+            if (mIdleTimeout < 0) {
+                throw new IllegalArgumentException("The idle timeout may not be negative.");
+            }
+        }
+    }
+
+    /**
+     * Container settings with all default values.
+     */
+    public static final GambitWebsocketContainer DEFAULT = new Builder().build();
+
+    /**
+     * The containers created so far, by the settings they were created with
+     */
+    protected static final Map<GambitWebsocketContainer, ClientManager> mContainers = new ConcurrentHashMap<>();
+
+    protected final int mSelectorThreads;
+    protected final int mWorkerThreads;
+    protected final int mIncomingBufferSize;
+    protected final int mMaxTextMessageBufferSize;
+    protected final int mIdleTimeout;
+
+    /**
+     * Construct the container settings using it's own {@link Builder} object
+     * @param builder The {@link Builder} object
+     */
+    protected GambitWebsocketContainer(Builder builder) {
+        mSelectorThreads = builder.getSelectorThreads();
+        mWorkerThreads = builder.getWorkerThreads();
+        mIncomingBufferSize = builder.getIncomingBufferSize();
+        mMaxTextMessageBufferSize = builder.getMaxTextMessageBufferSize();
+        mIdleTimeout = builder.getIdleTimeout();
+    }
+
+    /**
+     * Get the shared websocket container for these settings, creating it on first use.
+     * @return The {@link WebSocketContainer} to connect with
+     */
+    public WebSocketContainer getContainer() {
+        return mContainers.computeIfAbsent(this, GambitWebsocketContainer::createContainer);
+    }
+
+    /**
+     * Create a Tyrus client that runs on the shared transport, configured with the given settings.
+     * @param settings The settings to configure the client with
+     * @return The configured client
+     */
+    protected static ClientManager createContainer(GambitWebsocketContainer settings) {
+        ClientManager client = ClientManager.createClient();
+        Map<String, Object> properties = client.getProperties();
+
+        ThreadPoolConfig selectorPool = ThreadPoolConfig.defaultConfig()
+                .setPoolName("cogs-websocket-selector")
+                .setCorePoolSize(settings.mSelectorThreads)
+                .setMaxPoolSize(settings.mSelectorThreads);
+
+        ThreadPoolConfig workerPool = ThreadPoolConfig.defaultConfig()
+                .setPoolName("cogs-websocket-worker")
+                .setCorePoolSize(settings.mWorkerThreads)
+                .setMaxPoolSize(settings.mWorkerThreads);
+
+        properties.put(ClientProperties.SHARED_CONTAINER, true);
+        properties.put(ClientProperties.SHARED_CONTAINER_IDLE_TIMEOUT, settings.mIdleTimeout);
+        properties.put(ClientProperties.INCOMING_BUFFER_SIZE, settings.mIncomingBufferSize);
+        properties.put(GrizzlyClientProperties.SELECTOR_THREAD_POOL_CONFIG, selectorPool);
+        properties.put(GrizzlyClientProperties.WORKER_THREAD_POOL_CONFIG, workerPool);
+
+        client.setDefaultMaxTextMessageBufferSize(settings.mMaxTextMessageBufferSize);
+
+        return client;
+    }
+
+    public int getSelectorThreads() {
+        return mSelectorThreads;
+    }
+
+    public int getWorkerThreads() {
+        return mWorkerThreads;
+    }
+
+    public int getIncomingBufferSize() {
+        return mIncomingBufferSize;
+    }
+
+    public int getMaxTextMessageBufferSize() {
+        return mMaxTextMessageBufferSize;
+    }
+
+    public int getIdleTimeout() {
+        return mIdleTimeout;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof GambitWebsocketContainer)) {
+            return false;
+        }
+
+        GambitWebsocketContainer that = (GambitWebsocketContainer) other;
+
+        return mSelectorThreads == that.mSelectorThreads
+                && mWorkerThreads == that.mWorkerThreads
+                && mIncomingBufferSize == that.mIncomingBufferSize
+                && mMaxTextMessageBufferSize == that.mMaxTextMessageBufferSize
+                && mIdleTimeout == that.mIdleTimeout;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mSelectorThreads;
+        result = 31 * result + mWorkerThreads;
+        result = 31 * result + mIncomingBufferSize;
+        result = 31 * result + mMaxTextMessageBufferSize;
+        result = 31 * result + mIdleTimeout;
+
+        return result;
+    }
+}
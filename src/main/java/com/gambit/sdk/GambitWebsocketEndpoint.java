@@ -102,6 +102,16 @@ public class GambitWebsocketEndpoint extends Endpoint {
      */
     protected WebSocketContainer mContainer;
 
+    /**
+     * Settings of the shared websocket container to connect with
+     */
+    protected GambitWebsocketContainer mContainerSettings;
+
+    /**
+     * The permessage-deflate compression to offer to the server, null for none
+     */
+    protected GambitDeflateExtension mCompression;
+
     /**
      * Connection retry counter
      */
@@ -121,7 +131,36 @@ public class GambitWebsocketEndpoint extends Endpoint {
      * @param ping_handler The handler to be attached to the session object for acknowledging PING/PONG packets
      */
     public GambitWebsocketEndpoint(URI endpoint, final String payload, final String signature, final MessageHandler.Whole<String> message_handler, final MessageHandler.Whole<PongMessage> ping_handler) {
+        this(endpoint, payload, signature, message_handler, ping_handler, GambitWebsocketContainer.DEFAULT);
+    }
+
+    /**
+     * Create a websocket client endpoint instance on the shared websocket container with the given settings
+     * @param endpoint The server URL to connect to
+     * @param payload The payload used for authorization
+     * @param signature The signature used for proving the payload authenticity
+     * @param message_handler The handler to be attached to the session object for receiving messages
+     * @param ping_handler The handler to be attached to the session object for acknowledging PING/PONG packets
+     * @param container The settings of the shared websocket container to connect with
+     */
+    public GambitWebsocketEndpoint(URI endpoint, final String payload, final String signature, final MessageHandler.Whole<String> message_handler, final MessageHandler.Whole<PongMessage> ping_handler, final GambitWebsocketContainer container) {
+        this(endpoint, payload, signature, message_handler, ping_handler, container, null);
+    }
+
+    /**
+     * Create a websocket client endpoint instance on the shared websocket container, offering the given compression
+     * @param endpoint The server URL to connect to
+     * @param payload The payload used for authorization
+     * @param signature The signature used for proving the payload authenticity
+     * @param message_handler The handler to be attached to the session object for receiving messages
+     * @param ping_handler The handler to be attached to the session object for acknowledging PING/PONG packets
+     * @param container The settings of the shared websocket container to connect with
+     * @param compression The permessage-deflate compression to offer to the server, null for none
+     */
+    public GambitWebsocketEndpoint(URI endpoint, final String payload, final String signature, final MessageHandler.Whole<String> message_handler, final MessageHandler.Whole<PongMessage> ping_handler, final GambitWebsocketContainer container, final GambitDeflateExtension compression) {
         this.mEndpointUrl = endpoint;
+        this.mContainerSettings = container;
+        this.mCompression = compression;
         this.mPayload = payload;
         this.mSignature = signature;
         this.mMessageHandler = message_handler;
@@ -135,7 +174,7 @@ public class GambitWebsocketEndpoint extends Endpoint {
      */
     protected void init() {
         try {
-            mContainer = ContainerProvider.getWebSocketContainer();
+            mContainer = mContainerSettings.getContainer();
 
             ClientEndpointConfig.Configurator configurator = new ClientEndpointConfig.Configurator() {
                 public void beforeRequest(Map<String, List<String>> headers) {
@@ -145,11 +184,15 @@ public class GambitWebsocketEndpoint extends Endpoint {
                 }
             };
 
-            ClientEndpointConfig clientConfig = ClientEndpointConfig.Builder.create()
-                    .configurator(configurator)
-                    .build();
+            ClientEndpointConfig.Builder configBuilder = ClientEndpointConfig.Builder.create()
+                    .configurator(configurator);
+
+            if (mCompression != null) {
+                configBuilder.extensions(Collections.<Extension>singletonList(mCompression));
+            }
+
+            ClientEndpointConfig clientConfig = configBuilder.build();
 
-            mContainer.setDefaultMaxSessionIdleTimeout(300000); //5 minutes?
             mContainer.connectToServer(this, clientConfig, mEndpointUrl);
         } catch (Exception e) {
             throw new CogsException("Failed to initialize Cogs push WebSocket.", e);
@@ -175,6 +218,7 @@ public class GambitWebsocketEndpoint extends Endpoint {
         mRetry = 0; //reset error counter
         mIsRunning = true;
 
+        mSession.setMaxIdleTimeout(300000); //5 minutes? (per session, the container is shared)
         mSession.addMessageHandler(mMessageHandler);
         mSession.addMessageHandler(mPingPongHandler);
 
@@ -0,0 +1,22 @@
+package com.gambit.sdk.attributes;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sets the name of an attribute of a {@link GambitAttributes} class when it differs from the name of the field.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface GambitAttribute {
+
+    /**
+     * The name of the attribute as defined in the namespace
+     * @return The attribute name
+     */
+    String value();
+}
@@ -0,0 +1,18 @@
+package com.gambit.sdk.attributes;
+
+/**
+ * Writes the attributes held by an object as a JSON object. Writers are generated by
+ * {@link GambitAttributesProcessor} for classes annotated with {@link GambitAttributes} and looked up through
+ * {@link GambitAttributeWriters#forType(Class)}. A writer must be safe to use from several threads at once.
+ *
+ * @param <T> The type holding the attributes
+ */
+public interface GambitAttributeWriter<T> {
+
+    /**
+     * Append the attributes as a JSON object
+     * @param attributes The object holding the attributes
+     * @param out The buffer to append to
+     */
+    void write(T attributes, StringBuilder out);
+}
@@ -0,0 +1,184 @@
+package com.gambit.sdk.attributes;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Looks up the {@link GambitAttributeWriter} of a {@link GambitAttributes} class, and holds the helpers used by the
+ * generated writers. The generated writer of a class is found by name the first time the class is looked up and
+ * cached after that; writers can also be added with {@link #register(Class, GambitAttributeWriter)}.
+ */
+public class GambitAttributeWriters {
+
+    /**
+     * Suffix of the name of generated writers, appended to the name of the class without its package, with the
+     * names of nested classes joined by underscores
+     */
+    public static final String SUFFIX = "_GambitAttributeWriter";
+
+    protected static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * The writer of each class looked up or registered so far
+     */
+    protected static final Map<Class<?>, GambitAttributeWriter<?>> mWriters = new ConcurrentHashMap<>();
+
+    private GambitAttributeWriters() {}
+
+    /**
+     * Register the writer of a class, which takes the place of the generated one
+     * @param type The class holding the attributes
+     * @param writer The writer of the class
+     * @param <T> The class holding the attributes
+     */
+    public static <T> void register(Class<T> type, GambitAttributeWriter<? super T> writer) {
+        mWriters.put(type, writer);
+    }
+
+    /**
+     * Get the writer of a class
+     * @param type The class holding the attributes
+     * @param <T> The class holding the attributes
+     * @return The writer of the class
+     * @throws IllegalArgumentException If no writer was generated or registered for the class
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> GambitAttributeWriter<? super T> forType(Class<T> type) {
+        return (GambitAttributeWriter<? super T>) mWriters.computeIfAbsent(type, GambitAttributeWriters::find);
+    }
+
+    /**
+     * Write the attributes held by an object as a JSON object, using the writer of its class
+     * @param attributes The object holding the attributes
+     * @return The JSON object
+     * @throws IllegalArgumentException If no writer was generated or registered for the class of the object
+     */
+    public static String toJson(Object attributes) {
+        StringBuilder out = new StringBuilder(256);
+        write(attributes, out);
+        return out.toString();
+    }
+
+    /**
+     * Append the attributes held by an object as a JSON object, using the writer of its class
+     * @param attributes The object holding the attributes
+     * @param out The buffer to append to
+     * @throws IllegalArgumentException If no writer was generated or registered for the class of the object
+     */
+    public static void write(Object attributes, StringBuilder out) {
+        write(attributes.getClass(), attributes, out);
+    }
+
+    /**
+     * Append a string as a quoted JSON string, escaped the same way as {@link JSONObject#quote(String)}
+     * @param value The string
+     * @param out The buffer to append to
+     */
+    public static void writeString(CharSequence value, StringBuilder out) {
+        out.append('"');
+
+        char previous = 0;
+
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '\\':
+                case '"':
+                    out.append('\\').append(c);
+                    break;
+                case '/':
+                    if (previous == '<') {
+                        out.append('\\');
+                    }
+                    out.append(c);
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                default:
+                    if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+                        out.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                                .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+
+            previous = c;
+        }
+
+        out.append('"');
+    }
+
+    /**
+     * Append a number
+     * @param value The number
+     * @param out The buffer to append to
+     * @throws JSONException If the number is infinite or NaN
+     */
+    public static void writeNumber(double value, StringBuilder out) {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+
+        out.append(value);
+    }
+
+    /**
+     * Append a number
+     * @param value The number
+     * @param out The buffer to append to
+     * @throws JSONException If the number is infinite or NaN
+     */
+    public static void writeNumber(float value, StringBuilder out) {
+        if (Float.isInfinite(value) || Float.isNaN(value)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+
+        out.append(value);
+    }
+
+    /**
+     * Append a value of a type without a generated writer, such as a collection or a map, the same way as
+     * {@link JSONObject} does
+     * @param value The value
+     * @param out The buffer to append to
+     */
+    public static void writeValue(Object value, StringBuilder out) {
+        out.append(JSONObject.valueToString(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void write(Class<T> type, Object attributes, StringBuilder out) {
+        forType(type).write((T) attributes, out);
+    }
+
+    private static GambitAttributeWriter<?> find(Class<?> type) {
+        String name = type.getName();
+        int dot = name.lastIndexOf('.');
+        String writer = name.substring(0, dot + 1) + name.substring(dot + 1).replace('$', '_') + SUFFIX;
+
+        try {
+            return (GambitAttributeWriter<?>) Class.forName(writer, true, type.getClassLoader()).getField("INSTANCE").get(null);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("No attribute writer was generated for " + name + "; annotate it with @"
+                    + GambitAttributes.class.getSimpleName() + " and compile it with the SDK on the annotation processor path.", e);
+        }
+    }
+}
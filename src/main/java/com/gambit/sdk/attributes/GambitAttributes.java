@@ -0,0 +1,23 @@
+package com.gambit.sdk.attributes;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class whose instances hold the attributes of an event. When the SDK is on the annotation processor path,
+ * {@link GambitAttributesProcessor} generates a {@link GambitAttributeWriter} for the class that writes its
+ * attributes as JSON directly, without copying them into a map, boxing numbers or using reflection.
+ *
+ * Every non-static, non-transient field declared by the class is an attribute, named after the field unless it is
+ * annotated with {@link GambitAttribute}. A field is read through its public getter ({@code getName()},
+ * {@code isName()} or, as with records, {@code name()}) when there is one, otherwise directly, in which case it
+ * must not be private. Attributes that are null are left out, as they are for attribute maps.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GambitAttributes {
+}
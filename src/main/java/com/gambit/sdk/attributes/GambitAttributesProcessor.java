@@ -0,0 +1,301 @@
+package com.gambit.sdk.attributes;
+
+import org.json.JSONObject;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Generates a {@link GambitAttributeWriter} for each class annotated with {@link GambitAttributes}. The writer of
+ * {@code com.example.Outer.Purchase} is {@code com.example.Outer_Purchase_GambitAttributeWriter}; it appends each
+ * attribute with a statement chosen for its type when the writer is generated, so writing attributes needs no map,
+ * no boxing of primitive attributes and no reflection.
+ *
+ * The processor is listed in {@code META-INF/services/javax.annotation.processing.Processor}, so javac runs it
+ * whenever the SDK is on the annotation processor path (or the class path, when no processor path is set).
+ */
+@SupportedAnnotationTypes("com.gambit.sdk.attributes.GambitAttributes")
+public class GambitAttributesProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (Element element : round.getElementsAnnotatedWith(GambitAttributes.class)) {
+            // Records are accepted by name so the processor still runs on Java 8
+            if (element.getKind() != ElementKind.CLASS && !"RECORD".equals(element.getKind().name())) {
+                error("@GambitAttributes can only be put on a class.", element);
+                continue;
+            }
+
+            try {
+                generate((TypeElement) element);
+            } catch (IOException e) {
+                error("Unable to write the attribute writer: " + e.getMessage(), element);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the source of the writer of a class
+     * @param type The annotated class
+     * @throws IOException If the source file can't be written
+     */
+    protected void generate(TypeElement type) throws IOException {
+        for (Element enclosing = type; enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                error("A @GambitAttributes class must not be private, or nested in a private class.", type);
+                return;
+            }
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String writerName = flatName(type) + GambitAttributeWriters.SUFFIX;
+        String typeName = rawName(type.asType());
+
+        StringBuilder body = new StringBuilder();
+
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+
+            String access = accessor(type, field);
+
+            if (access == null) {
+                error("The attribute " + field.getSimpleName() + " is private and has no public getter.", field);
+                return;
+            }
+
+            GambitAttribute named = field.getAnnotation(GambitAttribute.class);
+            String name = (named != null) ? named.value() : field.getSimpleName().toString();
+
+            member(body, JSONObject.quote(name) + ":", field.asType(), "attributes." + access);
+        }
+
+        String qualifiedName = packageName.isEmpty() ? writerName : packageName + "." + writerName;
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+
+            out.println("/**");
+            out.println(" * Writes the attributes of {@link " + typeName + "} as JSON. Generated by "
+                    + GambitAttributesProcessor.class.getSimpleName() + "; do not edit.");
+            out.println(" */");
+            out.println("public final class " + writerName + " implements " + GambitAttributeWriter.class.getName() + "<" + typeName + "> {");
+            out.println();
+            out.println("    public static final " + writerName + " INSTANCE = new " + writerName + "();");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void write(" + typeName + " attributes, StringBuilder out) {");
+            out.println("        boolean first = true;");
+            out.println("        out.append('{');");
+            out.print(body);
+            out.println("        out.append('}');");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    /**
+     * Append the statements writing one attribute
+     * @param body The body of the write method
+     * @param key The JSON key of the attribute, including the colon
+     * @param type The type of the attribute
+     * @param access The expression reading the attribute
+     */
+    protected void member(StringBuilder body, String key, TypeMirror type, String access) {
+        String writers = GambitAttributeWriters.class.getName();
+        String write;
+
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                write = "out.append(value);";
+                break;
+            case CHAR:
+                write = writers + ".writeString(String.valueOf(value), out);";
+                break;
+            case FLOAT:
+            case DOUBLE:
+                write = writers + ".writeNumber(value, out);";
+                break;
+            default:
+                write = reference(type, writers);
+        }
+
+        boolean primitive = type.getKind().isPrimitive();
+
+        body.append("        {\n");
+        body.append("            ").append(primitive ? type.getKind().name().toLowerCase(Locale.ROOT) : rawName(type)).append(" value = ").append(access).append(";\n");
+
+        String indent = "            ";
+
+        if (!primitive) {
+            body.append("            if (value != null) {\n");
+            indent += "    ";
+        }
+
+        body.append(indent).append("out.append(first ? \"").append(javaString(key)).append("\" : \",")
+                .append(javaString(key)).append("\");\n");
+        body.append(indent).append("first = false;\n");
+        body.append(indent).append(write).append("\n");
+
+        if (!primitive) {
+            body.append("            }\n");
+        }
+
+        body.append("        }\n");
+    }
+
+    /**
+     * Get the statement writing an attribute of a reference type
+     */
+    private String reference(TypeMirror type, String writers) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return writers + ".writeValue(value, out);";
+        }
+
+        TypeElement element = (TypeElement) processingEnv.getTypeUtils().asElement(type);
+
+        switch (element.getQualifiedName().toString()) {
+            case "java.lang.Boolean":
+                return "out.append(value.booleanValue());";
+            case "java.lang.Byte":
+            case "java.lang.Short":
+            case "java.lang.Integer":
+                return "out.append(value.intValue());";
+            case "java.lang.Long":
+                return "out.append(value.longValue());";
+            case "java.lang.Float":
+                return writers + ".writeNumber(value.floatValue(), out);";
+            case "java.lang.Double":
+                return writers + ".writeNumber(value.doubleValue(), out);";
+            case "java.lang.Character":
+                return writers + ".writeString(String.valueOf(value.charValue()), out);";
+            default:
+                break;
+        }
+
+        TypeMirror charSequence = processingEnv.getElementUtils().getTypeElement(CharSequence.class.getName()).asType();
+
+        if (processingEnv.getTypeUtils().isAssignable(type, charSequence)) {
+            return writers + ".writeString(value, out);";
+        }
+
+        if (element.getKind() == ElementKind.ENUM) {
+            return writers + ".writeString(value.name(), out);";
+        }
+
+        if (element.getAnnotation(GambitAttributes.class) != null) {
+            String packageName = processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+            String writerName = flatName(element) + GambitAttributeWriters.SUFFIX;
+
+            return (packageName.isEmpty() ? "" : packageName + ".") + writerName + ".INSTANCE.write(value, out);";
+        }
+
+        return writers + ".writeValue(value, out);";
+    }
+
+    /**
+     * Find how the writer reads a field: through its public getter, or directly when it isn't private
+     * @return The accessor expression, or null if the field can't be read
+     */
+    private String accessor(TypeElement type, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            String methodName = method.getSimpleName().toString();
+
+            boolean getter = methodName.equals("get" + capitalized) || methodName.equals(name)
+                    || (methodName.equals("is" + capitalized) && field.asType().getKind() == TypeKind.BOOLEAN);
+
+            if (getter && method.getParameters().isEmpty() && method.getModifiers().contains(Modifier.PUBLIC)
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())) {
+                return methodName + "()";
+            }
+        }
+
+        return field.getModifiers().contains(Modifier.PRIVATE) ? null : name;
+    }
+
+    /**
+     * Get the name of a reference type without type arguments or annotations
+     */
+    private String rawName(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) processingEnv.getTypeUtils().asElement(type)).getQualifiedName().toString();
+        }
+
+        if (type.getKind() == TypeKind.ARRAY) {
+            return processingEnv.getTypeUtils().erasure(type).toString();
+        }
+
+        return Object.class.getName();
+    }
+
+    /**
+     * Get the name of a class without its package, with the names of nested classes joined by underscores
+     */
+    private static String flatName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+
+        for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            name = enclosing.getSimpleName() + "_" + name;
+        }
+
+        return name;
+    }
+
+    /**
+     * Escape a string for a Java string literal
+     */
+    private static String javaString(String value) {
+        StringBuilder out = new StringBuilder();
+
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ' || c > '~') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+
+        return out.toString();
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
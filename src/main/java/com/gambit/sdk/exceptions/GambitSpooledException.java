@@ -0,0 +1,15 @@
+package com.gambit.sdk.exceptions;
+
+/**
+ * Fails the future of an event that could not be delivered and was spooled instead, to be sent again once the
+ * endpoint is back.
+ */
+public class GambitSpooledException extends CogsException {
+    public GambitSpooledException(String message) {
+        super(message);
+    }
+
+    public GambitSpooledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,344 @@
+package com.gambit.sdk.pubsub;
+
+import java.time.Duration;
+
+import java.util.ArrayDeque;
+import java.util.UUID;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.gambit.sdk.pubsub.utils.PubSubUtils;
+
+/**
+ * Publishes messages with acknowledgement through a {@link PubSubHandle} while limiting how many publishes wait for
+ * their acknowledgement at the same time. The limit, or window, adapts to the server: it grows by about one
+ * publish per round trip while acknowledgements arrive quickly, and is cut by a constant factor when the server
+ * answers with an error or the round-trip time rises well above the lowest one observed (additive increase,
+ * multiplicative decrease). Publishes beyond the window are queued and sent in order as acknowledgements arrive.
+ * A publish whose acknowledgement doesn't arrive in time fails, and counts as congestion.
+ */
+public class PubSubAckedPublisher {
+
+    /**
+     * Builds a {@link PubSubAckedPublisher} for a handle.
+     */
+    public static class Builder {
+        private final PubSubHandle handle;
+        private Integer initialWindow;
+        private Integer minWindow;
+        private Integer maxWindow;
+        private Double decreaseFactor;
+        private Double rttTolerance;
+        private Duration ackTimeout;
+
+        /**
+         * Starts building a publisher that publishes through the given handle.
+         *
+         * @param handle The handle through which messages are published.
+         */
+        public Builder(PubSubHandle handle) {
+            this.handle = handle;
+        }
+
+        /**
+         * Sets the number of publishes allowed in flight before any acknowledgement arrived (Default: 8).
+         *
+         * @param initialWindow Initial size of the window.
+         * @return Builder The same instance.
+         */
+        public Builder setInitialWindow(int initialWindow) {
+            this.initialWindow = initialWindow;
+            return this;
+        }
+
+        /**
+         * Sets the size below which the window never shrinks (Default: 1).
+         *
+         * @param minWindow Smallest size of the window.
+         * @return Builder The same instance.
+         */
+        public Builder setMinWindow(int minWindow) {
+            this.minWindow = minWindow;
+            return this;
+        }
+
+        /**
+         * Sets the size above which the window never grows (Default: 1024).
+         *
+         * @param maxWindow Largest size of the window.
+         * @return Builder The same instance.
+         */
+        public Builder setMaxWindow(int maxWindow) {
+            this.maxWindow = maxWindow;
+            return this;
+        }
+
+        /**
+         * Sets the factor by which the window is multiplied when the server is congested (Default: 0.5).
+         *
+         * @param decreaseFactor Factor between 0 and 1, exclusive.
+         * @return Builder The same instance.
+         */
+        public Builder setDecreaseFactor(double decreaseFactor) {
+            this.decreaseFactor = decreaseFactor;
+            return this;
+        }
+
+        /**
+         * Sets how many times the lowest observed round-trip time an acknowledgement may take before the server is
+         * considered congested (Default: 2.0).
+         *
+         * @param rttTolerance Multiple of the lowest round-trip time, at least 1.
+         * @return Builder The same instance.
+         */
+        public Builder setRttTolerance(double rttTolerance) {
+            this.rttTolerance = rttTolerance;
+            return this;
+        }
+
+        /**
+         * Sets how long a publish may wait for its acknowledgement before it fails with a
+         * {@link TimeoutException} (Default: 30 seconds, as long as the socket keeps track of it).
+         *
+         * @param ackTimeout The longest wait for an acknowledgement.
+         * @return Builder The same instance.
+         */
+        public Builder setAckTimeout(Duration ackTimeout) {
+            this.ackTimeout = ackTimeout;
+            return this;
+        }
+
+        /**
+         * Creates the publisher with the options set on this builder.
+         * @return PubSubAckedPublisher The publisher.
+         */
+        public PubSubAckedPublisher build() {
+            return new PubSubAckedPublisher(this);
+        }
+    }
+
+    /**
+     * A publish and the future completed with its acknowledgement.
+     */
+    private static class Publish {
+        final String channel;
+        final String message;
+        final CompletableFuture<UUID> outcome;
+
+        Publish(String channel, String message) {
+            this.channel = channel;
+            this.message = message;
+            this.outcome = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * Weight of the newest round-trip sample in the smoothed round-trip time
+     */
+    private static final double RTT_WEIGHT = 0.2;
+
+    private final PubSubHandle handle;
+    private final int minWindow;
+    private final int maxWindow;
+    private final double decreaseFactor;
+    private final double rttTolerance;
+    private final long ackTimeoutMillis;
+
+    /**
+     * Publishes waiting for room in the window, in the order they were made
+     */
+    private final ArrayDeque<Publish> queued;
+
+    /**
+     * The current window; fractional so that each acknowledgement can grow it by a fraction of a publish
+     */
+    private double window;
+
+    /**
+     * The number of publishes waiting for their acknowledgement
+     */
+    private int inFlight;
+
+    /**
+     * The number of publishes sent so far
+     */
+    private long sent;
+
+    /**
+     * Publishes sent before this number do not shrink the window again, so one congested round trip shrinks it once
+     */
+    private long recoveryPoint;
+
+    /**
+     * Smoothed and lowest acknowledgement round-trip time in nanoseconds, or -1 if nothing was acknowledged yet
+     */
+    private long rtt;
+    private long minRtt;
+
+    private PubSubAckedPublisher(Builder builder) {
+        this.handle = builder.handle;
+        this.minWindow = (builder.minWindow == null) ? 1 : builder.minWindow;
+        this.maxWindow = (builder.maxWindow == null) ? 1024 : builder.maxWindow;
+        this.decreaseFactor = (builder.decreaseFactor == null) ? 0.5 : builder.decreaseFactor;
+        this.rttTolerance = (builder.rttTolerance == null) ? 2.0 : builder.rttTolerance;
+        this.ackTimeoutMillis = (builder.ackTimeout == null) ? 30000L : builder.ackTimeout.toMillis();
+        this.window = (builder.initialWindow == null) ? Math.max(minWindow, Math.min(8, maxWindow)) : builder.initialWindow;
+        this.queued = new ArrayDeque<>();
+        this.rtt = -1L;
+        this.minRtt = -1L;
+
+        if(handle == null) {
+            throw new IllegalArgumentException("A handle is required to publish.");
+        }
+
+        if(minWindow < 1 || maxWindow < minWindow || window < minWindow || window > maxWindow) {
+            throw new IllegalArgumentException("The windows must satisfy 1 <= min window <= initial window <= max window.");
+        }
+
+        if(!(decreaseFactor > 0.0 && decreaseFactor < 1.0)) {
+            throw new IllegalArgumentException("The decrease factor must be between 0 and 1.");
+        }
+
+        if(!(rttTolerance >= 1.0)) {
+            throw new IllegalArgumentException("The round-trip tolerance must be at least 1.");
+        }
+
+        if(ackTimeoutMillis < 1) {
+            throw new IllegalArgumentException("The acknowledgement timeout must be positive.");
+        }
+    }
+
+    /**
+     * Publishes {@code message} to {@code channel} with acknowledgement as soon as the window has room.
+     *
+     * @param channel Name of the channel on which to publish the message.
+     * @param message Content of the message to be publish on the given channel.
+     * @return {@code CompletableFuture<UUID>} Completes with the id of the published message once it is acknowledged.
+     */
+    public CompletableFuture<UUID> publish(String channel, String message) {
+        Publish publish = new Publish(channel, message);
+
+        synchronized(this) {
+            queued.add(publish);
+        }
+
+        dispatch();
+
+        return publish.outcome;
+    }
+
+    /**
+     * Gets the number of publishes currently allowed to wait for acknowledgement at the same time.
+     * @return int The size of the window.
+     */
+    public synchronized int getWindow() {
+        return (int) window;
+    }
+
+    /**
+     * Gets the smoothed time between sending a publish and receiving its acknowledgement.
+     * @return Duration The round-trip time, or null if no publish was acknowledged yet.
+     */
+    public synchronized Duration getRtt() {
+        return (rtt < 0) ? null : Duration.ofNanos(rtt);
+    }
+
+    /**
+     * Gets the number of publishes waiting for their acknowledgement.
+     * @return int The number of publishes in flight.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets the number of publishes waiting for room in the window.
+     * @return int The number of queued publishes.
+     */
+    public synchronized int getQueued() {
+        return queued.size();
+    }
+
+    /**
+     * Sends queued publishes while the window has room.
+     */
+    private void dispatch() {
+        while(true) {
+            Publish next;
+            long number;
+
+            synchronized(this) {
+                if(inFlight >= (int) window || queued.isEmpty()) {
+                    return;
+                }
+
+                next = queued.poll();
+                number = sent++;
+                ++inFlight;
+            }
+
+            send(next, number);
+        }
+    }
+
+    private void send(Publish publish, long number) {
+        long started = System.nanoTime();
+        CompletableFuture<UUID> ack;
+
+        try {
+            ack = handle.publishWithAck(publish.channel, publish.message);
+        }
+        catch(Throwable e) {
+            ack = new CompletableFuture<>();
+            ack.completeExceptionally(e);
+        }
+
+        // A lost acknowledgement would otherwise hold its place in the window for good
+        CompletableFuture<UUID> pending = ack;
+        ScheduledFuture<?> timeout = PubSubUtils.getScheduler().schedule(() -> {
+            pending.completeExceptionally(new TimeoutException("No acknowledgement of the publish arrived in " + ackTimeoutMillis + " ms."));
+        }, ackTimeoutMillis, TimeUnit.MILLISECONDS);
+
+        ack.whenComplete((messageId, error) -> {
+            timeout.cancel(false);
+            acknowledged(number, System.nanoTime() - started, error == null);
+
+            if(error == null) {
+                publish.outcome.complete(messageId);
+            }
+            else {
+                publish.outcome.completeExceptionally(error);
+            }
+
+            dispatch();
+        });
+    }
+
+    /**
+     * Adjusts the window after the publish with the given number was acknowledged or failed.
+     */
+    private synchronized void acknowledged(long number, long elapsed, boolean success) {
+        --inFlight;
+
+        boolean congested = !success;
+
+        if(success) {
+            rtt = (rtt < 0) ? elapsed : (long) (RTT_WEIGHT * elapsed + (1 - RTT_WEIGHT) * rtt);
+            minRtt = (minRtt < 0) ? elapsed : Math.min(minRtt, elapsed);
+            congested = elapsed > minRtt * rttTolerance;
+        }
+
+        if(congested) {
+            if(number >= recoveryPoint) {
+                window = Math.max(minWindow, window * decreaseFactor);
+                recoveryPoint = sent;
+            }
+        }
+        else {
+            window = Math.min(maxWindow, window + 1.0 / window);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import java.util.function.Supplier;
+
+import com.gambit.sdk.pubsub.handlers.PubSubMessageHandler;
+
+/**
+ * Shares the subscriptions of one {@link PubSubHandle} between any number of local listeners. Each channel is
+ * subscribed to once, however many listeners it has, and every message received on it is decoded once and handed
+ * to all of them. The broker unsubscribes from a channel only when its last listener leaves.
+ *
+ * Modules of the same process that would otherwise each open their own connection and subscribe to the same
+ * channels should instead share one broker.
+ *
+ * With a {@link PubSubHistory}, the broker keeps the recent messages of each channel, and a listener can ask for
+ * them to be replayed before it receives the live messages.
+ *
+ * An exception thrown by a listener does not keep the message from the other listeners; it is passed to the error
+ * handler registered with {@link PubSubHandle#onError(com.gambit.sdk.pubsub.handlers.PubSubErrorHandler)}.
+ */
+public class PubSubBroker {
+
+    /**
+     * The listeners of one channel and the upstream requests made for it.
+     */
+    private class Channel {
+        final String name;
+        final List<PubSubSubscription> listeners;
+
+        /**
+         * The live messages held back from listeners still being replayed to; guarded by this channel
+         */
+        final Map<PubSubSubscription, List<PubSubMessageRecord>> replaying;
+
+        /**
+         * The number of listeners, including those being added; guarded by the broker
+         */
+        int members;
+
+        /**
+         * Whether the channel is, or is being, subscribed to upstream
+         */
+        boolean subscribed;
+
+        /**
+         * The last upstream request for the channel; the next one starts after it, so they reach the server in order
+         */
+        CompletableFuture<Void> pending;
+
+        Channel(String name) {
+            this.name = name;
+            this.listeners = new CopyOnWriteArrayList<>();
+            this.replaying = new HashMap<>();
+            this.pending = CompletableFuture.completedFuture(null);
+        }
+
+        /**
+         * Hands a message to every listener. The message is kept and the listeners are picked while holding this
+         * channel, so a listener that joins with a replay sees each message exactly once; the listeners are called
+         * after it is released.
+         */
+        void dispatch(PubSubMessageRecord record) {
+            List<PubSubSubscription> targets = new ArrayList<>();
+
+            synchronized(this) {
+                if(history != null) {
+                    history.add(record);
+                }
+
+                for(PubSubSubscription listener : listeners) {
+                    List<PubSubMessageRecord> held = replaying.get(listener);
+
+                    if(held != null) {
+                        held.add(record);
+                    }
+                    else {
+                        targets.add(listener);
+                    }
+                }
+            }
+
+            for(PubSubSubscription listener : targets) {
+                deliver(listener, record);
+            }
+        }
+
+        /**
+         * Replays up to {@code replay} kept messages to a new listener, then the live messages that arrived in the
+         * meantime, after which it receives the live messages as they arrive.
+         */
+        void join(PubSubSubscription subscription, int replay) {
+            List<PubSubMessageRecord> records;
+
+            synchronized(this) {
+                records = (history == null) ? new ArrayList<>() : history.recent(name, replay);
+
+                if(!records.isEmpty()) {
+                    replaying.put(subscription, new ArrayList<>());
+                }
+
+                listeners.add(subscription);
+            }
+
+            while(!records.isEmpty()) {
+                for(PubSubMessageRecord record : records) {
+                    deliver(subscription, record);
+                }
+
+                synchronized(this) {
+                    records = replaying.remove(subscription);
+
+                    if(!records.isEmpty()) {
+                        replaying.put(subscription, new ArrayList<>());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Hands a message to one listener, reporting what it throws instead of letting it reach the others.
+         */
+        private void deliver(PubSubSubscription listener, PubSubMessageRecord record) {
+            try {
+                listener.getMessageHandler().onMessage(record);
+            }
+            catch(Exception e) {
+                handle.reportError(e);
+            }
+        }
+    }
+
+    private final PubSubHandle handle;
+    private final PubSubHistory history;
+
+    /**
+     * The channels that have listeners or upstream requests in progress; guarded by this broker
+     */
+    private final Map<String, Channel> channels;
+
+    /**
+     * Creates a broker that subscribes through the given handle.
+     *
+     * @param handle The handle through which channels are subscribed to.
+     */
+    public PubSubBroker(PubSubHandle handle) {
+        this(handle, null);
+    }
+
+    /**
+     * Creates a broker that subscribes through the given handle and keeps recent messages in {@code history}.
+     *
+     * @param handle  The handle through which channels are subscribed to.
+     * @param history The history in which recent messages are kept, null to keep none.
+     */
+    public PubSubBroker(PubSubHandle handle, PubSubHistory history) {
+        this.handle = handle;
+        this.history = history;
+        this.channels = new HashMap<>();
+    }
+
+    /**
+     * Adds a listener to {@code channel}, subscribing to the channel if it has no other listeners.
+     *
+     * @param channel        Name of the channel to which to listen.
+     * @param messageHandler Handler that receives the messages of {@code channel}. May NOT be null.
+     * @return {@code CompletableFuture<PubSubSubscription>} Completes with the new listener once the channel is
+     *         subscribed to, or exceptionally if subscribing failed, in which case the listener is not added.
+     */
+    public CompletableFuture<PubSubSubscription> subscribe(String channel, PubSubMessageHandler messageHandler) {
+        return subscribe(channel, messageHandler, 0);
+    }
+
+    /**
+     * Adds a listener to {@code channel} that first receives up to {@code replay} of the recent messages kept in
+     * the history of this broker, and then the live messages, without gaps or duplicates between them.
+     *
+     * @param channel        Name of the channel to which to listen.
+     * @param messageHandler Handler that receives the messages of {@code channel}. May NOT be null.
+     * @param replay         The number of recent messages to replay, 0 for none.
+     * @return {@code CompletableFuture<PubSubSubscription>} Completes with the new listener once the channel is
+     *         subscribed to, or exceptionally if subscribing failed, in which case the listener is not added.
+     */
+    public CompletableFuture<PubSubSubscription> subscribe(String channel, PubSubMessageHandler messageHandler, int replay) {
+        PubSubSubscription subscription = new PubSubSubscription(this, channel, messageHandler);
+        CompletableFuture<Void> upstream;
+        Channel state;
+
+        synchronized(this) {
+            state = channels.computeIfAbsent(channel, Channel::new);
+            ++state.members;
+
+            if(!state.subscribed) {
+                state.subscribed = true;
+                state.pending = then(state.pending, () -> handle.subscribe(channel, state::dispatch));
+
+                CompletableFuture<Void> request = state.pending;
+                request.whenComplete((voidReturn, error) -> {
+                    if(error != null) {
+                        failed(state, request);
+                    }
+                });
+            }
+
+            upstream = state.pending;
+        }
+
+        // Joined outside the broker lock, since the replayed handlers may call back into the broker
+        state.join(subscription, replay);
+
+        return upstream.handle((voidReturn, error) -> {
+            if(error != null) {
+                state.listeners.remove(subscription);
+                throw (error instanceof CompletionException) ? (CompletionException) error : new CompletionException(error);
+            }
+
+            return subscription;
+        });
+    }
+
+    /**
+     * Gets the channels that currently have listeners.
+     * @return {@code List<String>} Names of the channels.
+     */
+    public synchronized List<String> getChannels() {
+        List<String> names = new ArrayList<>();
+
+        for(Channel state : channels.values()) {
+            if(state.members > 0) {
+                names.add(state.name);
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Gets the number of listeners of {@code channel}.
+     *
+     * @param channel Name of the channel.
+     * @return int The number of listeners, 0 if the channel has none.
+     */
+    public synchronized int getListenerCount(String channel) {
+        Channel state = channels.get(channel);
+        return (state == null) ? 0 : state.members;
+    }
+
+    /**
+     * Removes a listener, unsubscribing from its channel if it was the last one.
+     */
+    CompletableFuture<Void> remove(PubSubSubscription subscription) {
+        synchronized(this) {
+            Channel state = channels.get(subscription.getChannel());
+
+            if(state == null || !state.listeners.remove(subscription)) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if(--state.members > 0 || !state.subscribed) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            // Messages published while unsubscribed are missed, so the kept ones would not lead up to later ones
+            if(history != null) {
+                history.clear(state.name);
+            }
+
+            state.subscribed = false;
+            state.pending = then(state.pending, () -> handle.unsubscribe(state.name));
+
+            CompletableFuture<Void> request = state.pending;
+            request.whenComplete((voidReturn, error) -> forget(state, request));
+
+            return request;
+        }
+    }
+
+    /**
+     * Removes the listeners that were waiting for a subscribe request that failed, unless a later request for the
+     * channel has already been made.
+     */
+    private synchronized void failed(Channel state, CompletableFuture<Void> request) {
+        if(state.pending == request) {
+            state.subscribed = false;
+            state.members = 0;
+            state.listeners.clear();
+            forget(state, request);
+        }
+    }
+
+    /**
+     * Drops a channel without listeners once its last upstream request is over.
+     */
+    private synchronized void forget(Channel state, CompletableFuture<Void> request) {
+        if(state.pending == request && state.members == 0 && channels.get(state.name) == state) {
+            channels.remove(state.name);
+        }
+    }
+
+    /**
+     * Starts {@code request} after {@code previous} is over, whether or not it succeeded.
+     */
+    private static CompletableFuture<Void> then(CompletableFuture<Void> previous, Supplier<CompletableFuture<List<String>>> request) {
+        return previous
+            .handle((voidReturn, error) -> null)
+            .thenCompose((ignored) -> request.get())
+            .thenApply((subscriptions) -> null);
+    }
+}
@@ -0,0 +1,60 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a bulk subscribe or unsubscribe: which channels succeeded, why the others failed, and the
+ * channels subscribed to afterwards.
+ */
+public class PubSubBulkResult {
+    private final List<String> succeeded;
+    private final Map<String, Throwable> failed;
+    private final List<String> channels;
+
+    /**
+     * Creates the outcome of a bulk request.
+     *
+     * @param succeeded Channels whose request succeeded.
+     * @param failed    Channels whose request failed, with the reason.
+     * @param channels  Channels subscribed to according to the last response, or null if no request succeeded.
+     */
+    public PubSubBulkResult(List<String> succeeded, Map<String, Throwable> failed, List<String> channels) {
+        this.succeeded = Collections.unmodifiableList(succeeded);
+        this.failed = Collections.unmodifiableMap(failed);
+        this.channels = (channels == null) ? null : Collections.unmodifiableList(channels);
+    }
+
+    /**
+     * Gets the channels whose request succeeded.
+     * @return {@code List<String>} Names of the channels, in the order their responses arrived.
+     */
+    public List<String> getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Gets the channels whose request failed, with the reason each one failed.
+     * @return {@code Map<String, Throwable>} Reasons for failure by channel name.
+     */
+    public Map<String, Throwable> getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the channels subscribed to after the bulk request, according to the last response from the server.
+     * @return {@code List<String>} Names of all current subscriptions, null if no request succeeded.
+     */
+    public List<String> getChannels() {
+        return channels;
+    }
+
+    /**
+     * Returns whether the request for every channel succeeded.
+     * @return boolean True if no request failed.
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+}
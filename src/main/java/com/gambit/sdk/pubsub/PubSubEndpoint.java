@@ -0,0 +1,140 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the health and round-trip time of one Pub/Sub server url. Scores are shared by every socket in the
+ * JVM that connects to the same url, so a degraded endpoint found by one socket is avoided by all of them.
+ */
+class PubSubEndpoint
+{
+    /**
+     * Weight of the newest round-trip sample in the smoothed round-trip time
+     */
+    private static final double RTT_WEIGHT = 0.2;
+
+    /**
+     * Time, in nanoseconds, that an endpoint is avoided after it failed
+     */
+    private static final long FAILURE_COOLDOWN = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * The endpoints created so far, by their url
+     */
+    private static final Map<String, PubSubEndpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * The url of this endpoint
+     */
+    private final String url;
+
+    /**
+     * Smoothed round-trip time in nanoseconds, or -1 if the endpoint was never measured
+     */
+    private volatile long rtt;
+
+    /**
+     * Number of failures since the last successful connection
+     */
+    private volatile int failures;
+
+    /**
+     * Time, from {@link System#nanoTime()}, of the last failure
+     */
+    private volatile long lastFailure;
+
+    private PubSubEndpoint(String url) {
+        this.url = url;
+        this.rtt = -1L;
+    }
+
+    /**
+     * Gets the endpoint shared by all sockets for the given url.
+     * @param url The url of the endpoint
+     * @return PubSubEndpoint The shared endpoint
+     */
+    static PubSubEndpoint forUrl(String url) {
+        return endpoints.computeIfAbsent(url, PubSubEndpoint::new);
+    }
+
+    /**
+     * Orders the endpoints of the given urls for connecting: healthy endpoints before failed ones, and among
+     * those the lowest measured round-trip time first. Endpoints that were never measured keep their configured
+     * order after the measured ones.
+     * @param urls The configured urls, in order of preference
+     * @return List<PubSubEndpoint> The endpoints in the order they should be tried
+     */
+    static List<PubSubEndpoint> rank(List<String> urls) {
+        List<PubSubEndpoint> ranked = new ArrayList<>(urls.size());
+        long now = System.nanoTime();
+
+        for(String url : urls) {
+            ranked.add(forUrl(url));
+        }
+
+        // List.sort is stable, so endpoints that compare equal keep their configured order
+        ranked.sort(Comparator
+            .comparing((PubSubEndpoint endpoint) -> !endpoint.isHealthy(now))
+            .thenComparingLong((endpoint) -> (endpoint.rtt < 0) ? Long.MAX_VALUE : endpoint.rtt));
+
+        return ranked;
+    }
+
+    /**
+     * Gets the url of this endpoint.
+     * @return String The url of this endpoint
+     */
+    String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the smoothed round-trip time of this endpoint.
+     * @return long Round-trip time in nanoseconds, or -1 if the endpoint was never measured
+     */
+    long getRtt() {
+        return rtt;
+    }
+
+    /**
+     * Returns whether this endpoint has not failed recently.
+     * @param now The current time, from {@link System#nanoTime()}
+     * @return boolean True if the endpoint has no recent failures
+     */
+    boolean isHealthy(long now) {
+        return failures == 0 || now - lastFailure > FAILURE_COOLDOWN;
+    }
+
+    /**
+     * Adds a round-trip sample, such as the time between a heartbeat ping and its pong.
+     * @param nanos The round-trip time in nanoseconds
+     */
+    synchronized void recordRtt(long nanos) {
+        if(nanos < 0) {
+            return;
+        }
+
+        rtt = (rtt < 0) ? nanos : (long) (RTT_WEIGHT * nanos + (1 - RTT_WEIGHT) * rtt);
+    }
+
+    /**
+     * Records that a connection to this endpoint was established.
+     */
+    void recordSuccess() {
+        failures = 0;
+    }
+
+    /**
+     * Records that a connection to this endpoint failed or was dropped.
+     */
+    synchronized void recordFailure() {
+        failures = failures + 1;
+        lastFailure = System.nanoTime();
+    }
+}
@@ -0,0 +1,58 @@
+package com.gambit.sdk.pubsub;
+
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * {@link PubSubSessionStore} that keeps the state in a small JSON file. Each save writes a temporary file next
+ * to the snapshot and moves it into place, so a crash while saving leaves the previous snapshot intact.
+ */
+public class PubSubFileSessionStore implements PubSubSessionStore {
+    private final Path file;
+
+    /**
+     * Creates a store that keeps the state in the given file.
+     *
+     * @param file Path of the snapshot file. Its directory must exist.
+     */
+    public PubSubFileSessionStore(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public PubSubSessionState load() throws IOException {
+        try {
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            return PubSubSessionState.fromJSON(new JSONObject(content));
+        }
+        catch(NoSuchFileException e) {
+            return null;
+        }
+        catch(JSONException e) {
+            throw new IOException("Invalid session state in " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void save(PubSubSessionState state) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        Files.write(temporary, state.toJSON().toString().getBytes(StandardCharsets.UTF_8));
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
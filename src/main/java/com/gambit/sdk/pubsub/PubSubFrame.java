@@ -0,0 +1,291 @@
+package com.gambit.sdk.pubsub;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import java.nio.CharBuffer;
+
+import java.util.Map;
+
+import org.json.JSONException;
+
+/**
+ * A complete JSON record assembled by {@link PubSubFrameDecoder}. The values of the top-level fields are read
+ * directly from the buffer the fragments were collected into.
+ */
+class PubSubFrame
+{
+    /**
+     * Location and kind of a top-level field value within the frame buffer.
+     */
+    static class Field {
+        static final int STRING = 0;
+        static final int ESCAPED_STRING = 1;
+        static final int OTHER = 2;
+
+        /**
+         * Index of the first character of the value (after the opening quote for strings)
+         */
+        final int start;
+
+        /**
+         * Index one past the last character of the value (the closing quote for strings)
+         */
+        final int end;
+
+        /**
+         * One of {@code STRING}, {@code ESCAPED_STRING} or {@code OTHER}
+         */
+        final int kind;
+
+        Field(int start, int end, int kind) {
+            this.start = start;
+            this.end = end;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * The characters of the complete frame
+     */
+    private final char[] buffer;
+
+    /**
+     * The number of characters used in {@code buffer}
+     */
+    private final int length;
+
+    /**
+     * The location of each top-level field value
+     */
+    private final Map<String, Field> fields;
+
+    /**
+     * True if the frame was a single well-formed JSON object
+     */
+    private final boolean valid;
+
+    PubSubFrame(char[] buffer, int length, Map<String, Field> fields, boolean valid) {
+        this.buffer = buffer;
+        this.length = length;
+        this.fields = fields;
+        this.valid = valid;
+    }
+
+    /**
+     * Returns whether the frame was a single well-formed JSON object.
+     *
+     * @return boolean True if the frame could be decoded.
+     */
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Returns whether the frame is a published message record (that is, has "action": "msg").
+     *
+     * @return boolean True if the frame is a message record.
+     */
+    boolean isMessageRecord() {
+        Field action = fields.get("action");
+
+        return valid && action != null && action.kind == Field.STRING
+            && CharBuffer.wrap(buffer, action.start, action.end - action.start).toString().equals("msg");
+    }
+
+    /**
+     * Returns the unescaped string value of the given top-level field.
+     *
+     * @param key The name of the field.
+     * @return String The value of the field.
+     * @throws JSONException If the field is missing or is not a string.
+     */
+    String getString(String key) throws JSONException {
+        Field field = checkString(key);
+
+        if(field.kind == Field.ESCAPED_STRING) {
+            return unescape(buffer, field.start, field.end);
+        }
+
+        return new String(buffer, field.start, field.end - field.start);
+    }
+
+    /**
+     * Returns the value of the given top-level string field as a {@link CharSequence}. Values without escape
+     * sequences are returned as a view of the frame buffer; only escaped values are copied when unescaped.
+     *
+     * @param key The name of the field.
+     * @return CharSequence The value of the field.
+     * @throws JSONException If the field is missing or is not a string.
+     */
+    CharSequence getText(String key) throws JSONException {
+        Field field = checkString(key);
+
+        if(field.kind == Field.ESCAPED_STRING) {
+            return unescape(buffer, field.start, field.end);
+        }
+
+        return CharBuffer.wrap(buffer, field.start, field.end - field.start);
+    }
+
+    /**
+     * Returns a {@link Reader} over the value of the given top-level string field. The value is read, and
+     * unescaped if needed, straight from the frame buffer without being copied.
+     *
+     * @param key The name of the field.
+     * @return Reader Reader over the value of the field.
+     * @throws JSONException If the field is missing or is not a string.
+     */
+    Reader getReader(String key) throws JSONException {
+        Field field = checkString(key);
+
+        if(field.kind == Field.ESCAPED_STRING) {
+            return new UnescapingReader(buffer, field.start, field.end);
+        }
+
+        return new CharArrayReader(buffer, field.start, field.end - field.start);
+    }
+
+    /**
+     * Returns the whole frame as a String.
+     *
+     * @return String The raw JSON of the frame.
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Returns the location of the given top-level string field.
+     *
+     * @param key The name of the field.
+     * @return Field The location of the value of the field.
+     * @throws JSONException If the field is missing or is not a string.
+     */
+    Field checkString(String key) throws JSONException {
+        Field field = fields.get(key);
+
+        if(field == null) {
+            throw new JSONException("JSONObject[\"" + key + "\"] not found.");
+        }
+
+        if(field.kind == Field.OTHER) {
+            throw new JSONException("JSONObject[\"" + key + "\"] not a string.");
+        }
+
+        return field;
+    }
+
+    /**
+     * Unescapes the JSON string content found between {@code start} and {@code end} in {@code chars}.
+     *
+     * @param chars The characters holding the escaped string content.
+     * @param start Index of the first character of the content.
+     * @param end   Index one past the last character of the content.
+     * @return String The unescaped content.
+     */
+    static String unescape(char[] chars, int start, int end) {
+        StringBuilder builder = new StringBuilder(end - start);
+
+        try (UnescapingReader reader = new UnescapingReader(chars, start, end)) {
+            int c;
+
+            while((c = reader.read()) != -1) {
+                builder.append((char) c);
+            }
+        }
+        catch(IOException e) {
+            throw new JSONException(e.getMessage());
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Reads the content of a JSON string from a character array, replacing escape sequences as it goes.
+     */
+    private static class UnescapingReader extends Reader {
+        private final char[] chars;
+        private final int end;
+        private int position;
+
+        UnescapingReader(char[] chars, int start, int end) {
+            this.chars = chars;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(position >= end) {
+                return -1;
+            }
+
+            char c = chars[position++];
+
+            if(c != '\\') {
+                return c;
+            }
+
+            if(position >= end) {
+                throw new IOException("Unterminated escape sequence");
+            }
+
+            char escaped = chars[position++];
+
+            switch(escaped) {
+                case 'b': return '\b';
+                case 'f': return '\f';
+                case 'n': return '\n';
+                case 'r': return '\r';
+                case 't': return '\t';
+
+                case 'u': {
+                    if(position + 4 > end) {
+                        throw new IOException("Unterminated unicode escape sequence");
+                    }
+
+                    try {
+                        int code = Integer.parseInt(new String(chars, position, 4), 16);
+                        position += 4;
+                        return code;
+                    }
+                    catch(NumberFormatException e) {
+                        throw new IOException("Invalid unicode escape sequence", e);
+                    }
+                }
+
+                default:
+                    return escaped;
+            }
+        }
+
+        @Override
+        public int read(char[] destination, int offset, int count) throws IOException {
+            if(count == 0) {
+                return 0;
+            }
+
+            int read = 0;
+
+            while(read < count) {
+                int c = read();
+
+                if(c == -1) {
+                    break;
+                }
+
+                destination[offset + read++] = (char) c;
+            }
+
+            return (read == 0) ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+            position = end;
+        }
+    }
+}
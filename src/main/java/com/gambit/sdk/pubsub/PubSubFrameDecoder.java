@@ -0,0 +1,286 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Incrementally decodes a JSON record from Cogswell Pub/Sub that arrives as several websocket frame fragments.
+ * Each fragment is appended to a single growing buffer and scanned once as it arrives. For every top-level
+ * field the decoder only records where the value lies in the buffer, so the values (most importantly large
+ * {@code msg} bodies) can later be read straight from the buffer without being copied into their own Strings.
+ */
+class PubSubFrameDecoder
+{
+    /**
+     * The initial capacity of the buffer of every new frame
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int OBJECT_START = 0;
+    private static final int KEY_OR_END = 1;
+    private static final int KEY = 2;
+    private static final int COLON = 3;
+    private static final int VALUE = 4;
+    private static final int STRING_VALUE = 5;
+    private static final int NESTED_VALUE = 6;
+    private static final int SCALAR_VALUE = 7;
+    private static final int COMMA_OR_END = 8;
+    private static final int DONE = 9;
+    private static final int INVALID = 10;
+
+    /**
+     * The characters received so far for the current frame
+     */
+    private char[] buffer;
+
+    /**
+     * The number of characters used in {@code buffer}
+     */
+    private int length;
+
+    /**
+     * The number of characters of {@code buffer} that have already been scanned
+     */
+    private int scanned;
+
+    /**
+     * The current state of the scanner
+     */
+    private int state;
+
+    /**
+     * True when the previous character was an escaping backslash inside a string
+     */
+    private boolean escape;
+
+    /**
+     * True when the current key or string value contains escape sequences
+     */
+    private boolean escaped;
+
+    /**
+     * True while scanning a string nested inside an object or array value
+     */
+    private boolean inNestedString;
+
+    /**
+     * Nesting depth of the object or array value being scanned
+     */
+    private int depth;
+
+    /**
+     * Start of the key or value being scanned
+     */
+    private int start;
+
+    /**
+     * The key of the field whose value is being scanned
+     */
+    private String key;
+
+    /**
+     * The location of each top-level field value found so far
+     */
+    private Map<String, PubSubFrame.Field> fields;
+
+    /**
+     * Creates a decoder that is ready to receive the first fragment of a frame.
+     */
+    PubSubFrameDecoder() {
+        reset();
+    }
+
+    /**
+     * Appends the given fragment to the current frame and scans it.
+     *
+     * @param fragment The next fragment of the frame.
+     */
+    void feed(String fragment) {
+        int needed = length + fragment.length();
+
+        if(needed > buffer.length) {
+            char[] grown = new char[Math.max(needed, buffer.length * 2)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+
+        fragment.getChars(0, fragment.length(), buffer, length);
+        length = needed;
+
+        scan();
+    }
+
+    /**
+     * Completes the current frame and prepares the decoder for the next one.
+     *
+     * @return PubSubFrame The frame assembled from all fragments fed since the last call.
+     */
+    PubSubFrame finish() {
+        PubSubFrame frame = new PubSubFrame(buffer, length, fields, state == DONE);
+        reset();
+
+        return frame;
+    }
+
+    /**
+     * Discards the current frame, if any, and prepares the decoder for the next one.
+     */
+    void reset() {
+        buffer = new char[INITIAL_CAPACITY];
+        length = 0;
+        scanned = 0;
+        state = OBJECT_START;
+        escape = false;
+        escaped = false;
+        inNestedString = false;
+        depth = 0;
+        key = null;
+        fields = new HashMap<>();
+    }
+
+    /**
+     * Advances the scanner over every character that has not been scanned yet.
+     */
+    private void scan() {
+        for(int i = scanned; i < length && state != INVALID; ++i) {
+            char c = buffer[i];
+
+            switch(state) {
+                case OBJECT_START:
+                    if(c == '{') {
+                        state = KEY_OR_END;
+                    }
+                    else if(!Character.isWhitespace(c)) {
+                        state = INVALID;
+                    }
+                    break;
+
+                case KEY_OR_END:
+                    if(c == '"') {
+                        start = i + 1;
+                        escaped = false;
+                        state = KEY;
+                    }
+                    else if(c == '}') {
+                        state = DONE;
+                    }
+                    else if(!Character.isWhitespace(c)) {
+                        state = INVALID;
+                    }
+                    break;
+
+                case KEY:
+                    if(escape) {
+                        escape = false;
+                    }
+                    else if(c == '\\') {
+                        escape = true;
+                        escaped = true;
+                    }
+                    else if(c == '"') {
+                        key = escaped ? PubSubFrame.unescape(buffer, start, i) : new String(buffer, start, i - start);
+                        state = COLON;
+                    }
+                    break;
+
+                case COLON:
+                    if(c == ':') {
+                        state = VALUE;
+                    }
+                    else if(!Character.isWhitespace(c)) {
+                        state = INVALID;
+                    }
+                    break;
+
+                case VALUE:
+                    if(c == '"') {
+                        start = i + 1;
+                        escaped = false;
+                        state = STRING_VALUE;
+                    }
+                    else if(c == '{' || c == '[') {
+                        start = i;
+                        depth = 1;
+                        inNestedString = false;
+                        state = NESTED_VALUE;
+                    }
+                    else if(c == ',' || c == '}') {
+                        state = INVALID;
+                    }
+                    else if(!Character.isWhitespace(c)) {
+                        start = i;
+                        state = SCALAR_VALUE;
+                    }
+                    break;
+
+                case STRING_VALUE:
+                    if(escape) {
+                        escape = false;
+                    }
+                    else if(c == '\\') {
+                        escape = true;
+                        escaped = true;
+                    }
+                    else if(c == '"') {
+                        fields.put(key, new PubSubFrame.Field(start, i, escaped ? PubSubFrame.Field.ESCAPED_STRING : PubSubFrame.Field.STRING));
+                        state = COMMA_OR_END;
+                    }
+                    break;
+
+                case NESTED_VALUE:
+                    if(inNestedString) {
+                        if(escape) {
+                            escape = false;
+                        }
+                        else if(c == '\\') {
+                            escape = true;
+                        }
+                        else if(c == '"') {
+                            inNestedString = false;
+                        }
+                    }
+                    else if(c == '"') {
+                        inNestedString = true;
+                    }
+                    else if(c == '{' || c == '[') {
+                        ++depth;
+                    }
+                    else if((c == '}' || c == ']') && --depth == 0) {
+                        fields.put(key, new PubSubFrame.Field(start, i + 1, PubSubFrame.Field.OTHER));
+                        state = COMMA_OR_END;
+                    }
+                    break;
+
+                case SCALAR_VALUE:
+                    if(c == ',' || c == '}' || Character.isWhitespace(c)) {
+                        fields.put(key, new PubSubFrame.Field(start, i, PubSubFrame.Field.OTHER));
+                        state = (c == ',') ? KEY_OR_END : (c == '}') ? DONE : COMMA_OR_END;
+                    }
+                    break;
+
+                case COMMA_OR_END:
+                    if(c == ',') {
+                        state = KEY_OR_END;
+                    }
+                    else if(c == '}') {
+                        state = DONE;
+                    }
+                    else if(!Character.isWhitespace(c)) {
+                        state = INVALID;
+                    }
+                    break;
+
+                case DONE:
+                    if(!Character.isWhitespace(c)) {
+                        state = INVALID;
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        scanned = length;
+    }
+}
@@ -3,10 +3,24 @@ package com.gambit.sdk.pubsub;
 import java.util.concurrent.atomic.AtomicLong;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import java.util.function.Consumer;
+
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import java.io.IOException;
@@ -18,6 +32,8 @@ import com.gambit.sdk.pubsub.responses.successes.*;
 import com.gambit.sdk.pubsub.responses.errors.PubSubErrorResponse;
 import com.gambit.sdk.pubsub.exceptions.*;
 import com.gambit.sdk.pubsub.handlers.*;
+import com.gambit.sdk.pubsub.codecs.PubSubCodecs;
+import com.gambit.sdk.pubsub.utils.PubSubUtils;
 
 /**
  * Represents user endpoint to Cogswell Pub/Sub and provides methods to perform available Pub/Sub operations.
@@ -25,6 +41,7 @@ import com.gambit.sdk.pubsub.handlers.*;
 public class PubSubHandle {
     private AtomicLong sequence;
     private PubSubSocket socket;
+    private PubSubPublishThrottle throttle;
 
     /**
      * Creates an endpoint to Cogswell Pub/Sub using the given {@link PubSubSocket} as the underlying connection.
@@ -44,6 +61,7 @@ public class PubSubHandle {
     protected PubSubHandle(PubSubSocket socket, long firstSequenceNumber) {
         this.sequence = new AtomicLong(firstSequenceNumber);
         this.socket = socket;
+        this.throttle = (socket == null) ? null : PubSubPublishThrottle.forOptions(socket.getOptions());
     }
 
     /**
@@ -56,9 +74,34 @@ public class PubSubHandle {
 
     /**
      * Fetches UUID of current session, which enables caching if caching is enabled on the project. 
+     * The UUID is fetched from the server only once per connection; later calls are answered locally.
      * @return {@code CompletableFuture<UUID>} Completes with UUID of current session on success.   
      */
     public CompletableFuture<UUID> getSessionUuid() {
+        return getSessionUuid(false);
+    }
+
+    /**
+     * Fetches UUID of current session, which enables caching if caching is enabled on the project. 
+     * Concurrent calls that go to the server share a single request.
+     * @param forceRefresh True to ask the server even if the UUID of the current session is already known.
+     * @return {@code CompletableFuture<UUID>} Completes with UUID of current session on success.   
+     */
+    public CompletableFuture<UUID> getSessionUuid(boolean forceRefresh) {
+        UUID known = socket.getReportedSessionUuid();
+
+        if(!forceRefresh && known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+
+        return socket.getSessionUuidRequests().run(this::requestSessionUuid);
+    }
+
+    /**
+     * Asks the server for the UUID of the current session.
+     * @return {@code CompletableFuture<UUID>} Completes with UUID of current session on success.   
+     */
+    private CompletableFuture<UUID> requestSessionUuid() {
         CompletableFuture<UUID> outcome = new CompletableFuture<>();
         long seq = sequence.getAndIncrement();
 
@@ -70,6 +113,7 @@ public class PubSubHandle {
             .thenAcceptAsync((response) -> {
                 if (response instanceof PubSubSessionUuidResponse) {
                     PubSubSessionUuidResponse uuidResponse = (PubSubSessionUuidResponse)(response);
+                    socket.updateSessionUuid(uuidResponse.getSessionUuid());
                     outcome.complete(uuidResponse.getSessionUuid());
                 }
                 else {
@@ -106,6 +150,7 @@ public class PubSubHandle {
             .thenAcceptAsync((response) -> {
                 if (response instanceof PubSubSubscribeResponse) {
                     PubSubSubscribeResponse subResponse = (PubSubSubscribeResponse)(response);
+                    socket.updateSubscriptions(subResponse.getSequence(), subResponse.getChannels());
                     outcome.complete(subResponse.getChannels());
                 }
                 else {
@@ -121,6 +166,42 @@ public class PubSubHandle {
         return outcome;
     }
 
+    /**
+     * Subscribes to {@code channel}, decoding the content of its messages to {@code type} with the
+     * {@link com.gambit.sdk.pubsub.codecs.PubSubCodec} for that type. Messages that cannot be decoded are passed to
+     * the error handler instead of {@code messageHandler}.
+     *
+     * @param channel        Name of the channel to which to subscribe.
+     * @param type           Type to which the content of messages is decoded.
+     * @param messageHandler Handler that receives the decoded messages from {@code channel}. May NOT be null.
+     * @param <T>            Type to which the content of messages is decoded.
+     * @return {@code CompletableFuture<List<String>>} Completes with list of all current subscriptions on success.
+     */
+    public <T> CompletableFuture<List<String>> subscribe(String channel, Class<T> type, PubSubTypedMessageHandler<T> messageHandler) {
+        try {
+            PubSubCodecs.forType(type);
+        }
+        catch(PubSubCodecException e) {
+            CompletableFuture<List<String>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        return subscribe(channel, (record) -> {
+            T message;
+
+            try {
+                message = PubSubCodecs.decode(type, record);
+            }
+            catch(PubSubCodecException e) {
+                socket.reportError(e);
+                return;
+            }
+
+            messageHandler.onMessage(record, message);
+        });
+    }
+
     /**
      * Unsubscribes from {@code channel} which stops receipt and handling of messages for {@code channel}.
      *
@@ -140,6 +221,7 @@ public class PubSubHandle {
             .thenAcceptAsync((response) -> {
                 if(response instanceof PubSubUnsubscribeResponse) {
                     PubSubUnsubscribeResponse unsubResponse = (PubSubUnsubscribeResponse)(response);
+                    socket.updateSubscriptions(unsubResponse.getSequence(), unsubResponse.getChannels());
                     outcome.complete(unsubResponse.getChannels());
                 }
                 else {
@@ -171,6 +253,7 @@ public class PubSubHandle {
             .thenAcceptAsync((response) -> {
                 if (response instanceof PubSubUnsubscribeAllResponse) {
                     PubSubUnsubscribeAllResponse unsubAllResponse = (PubSubUnsubscribeAllResponse)(response);
+                    socket.updateSubscriptions(unsubAllResponse.getSequence(), Collections.emptyList());
                     outcome.complete(unsubAllResponse.getChannels());
                 }
                 else {
@@ -186,11 +269,199 @@ public class PubSubHandle {
     }
 
     /**
-     * Fetches list of all current subscriptions.
+     * Subscribes to every channel of {@code messageHandlers}, each processed by its own handler. The subscribe
+     * requests are pipelined: up to {@link PubSubOptions#getMaxInFlightRequests()} requests wait for their response
+     * at the same time, and the next one is sent as soon as a response arrives. A request without a response after
+     * {@link PubSubOptions#getBulkRequestTimeout()} fails its channel.
+     *
+     * @param messageHandlers Handlers that receive the messages of each channel, by channel name. May NOT contain null.
+     * @return {@code CompletableFuture<PubSubBulkResult>} Completes with the result for each channel once all have responded.
+     */
+    public CompletableFuture<PubSubBulkResult> subscribeAll(Map<String, PubSubMessageHandler> messageHandlers) {
+        socket.addMessageHandlers(messageHandlers);
+
+        return pipeline(new ArrayList<>(messageHandlers.keySet()), "subscribe", socket::removeMessageHandler);
+    }
+
+    /**
+     * Unsubscribes from every channel in {@code channels}. The unsubscribe requests are pipelined in the same way
+     * as those of {@link #subscribeAll(Map)}.
+     *
+     * @param channels Names of the channels from which to unsubscribe.
+     * @return {@code CompletableFuture<PubSubBulkResult>} Completes with the result for each channel once all have responded.
+     */
+    public CompletableFuture<PubSubBulkResult> unsubscribeBulk(Collection<String> channels) {
+        return pipeline(new ArrayList<>(channels), "unsubscribe", (channel) -> {});
+    }
+
+    /**
+     * Sends one {@code action} request per channel, keeping at most the configured number of requests in flight.
+     *
+     * @param channels  Names of the channels to send a request for.
+     * @param action    Either "subscribe" or "unsubscribe".
+     * @param onFailure Called with the name of each channel whose request failed.
+     * @return {@code CompletableFuture<PubSubBulkResult>} Completes with the result for each channel once all have responded.
+     */
+    private CompletableFuture<PubSubBulkResult> pipeline(List<String> channels, String action, Consumer<String> onFailure) {
+        CompletableFuture<PubSubBulkResult> outcome = new CompletableFuture<>();
+
+        List<String> succeeded = Collections.synchronizedList(new ArrayList<>(channels.size()));
+        Map<String, Throwable> failed = new ConcurrentHashMap<>();
+        AtomicReference<PubSubResponse> lastResponse = new AtomicReference<>();
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(channels.size());
+        AtomicInteger permits = new AtomicInteger(socket.getOptions().getMaxInFlightRequests());
+        AtomicInteger drains = new AtomicInteger();
+        long timeoutMillis = socket.getOptions().getBulkRequestTimeout();
+
+        Runnable finish = () -> {
+            PubSubResponse last = lastResponse.get();
+            List<String> current = null;
+
+            if(last instanceof PubSubSubscribeResponse) {
+                current = ((PubSubSubscribeResponse) last).getChannels();
+            }
+            else if(last instanceof PubSubUnsubscribeResponse) {
+                current = ((PubSubUnsubscribeResponse) last).getChannels();
+            }
+
+            if(current != null) {
+                socket.updateSubscriptions(last.getSequence(), current);
+            }
+
+            outcome.complete(new PubSubBulkResult(new ArrayList<>(succeeded), new HashMap<>(failed), current));
+        };
+
+        if(channels.isEmpty()) {
+            finish.run();
+            return outcome;
+        }
+
+        // Sends requests while permits are free. Responses that complete on the sending thread only count down
+        // "drains", so the loop picks them up instead of recursing once per channel.
+        Runnable drain = new Runnable() {
+            @Override
+            public void run() {
+                if(drains.getAndIncrement() != 0) {
+                    return;
+                }
+
+                boolean done = false;
+
+                try {
+                    do {
+                        while(permits.get() > 0 && next.get() < channels.size()) {
+                            permits.decrementAndGet();
+                            send(channels.get(next.getAndIncrement()));
+                        }
+                    } while(drains.decrementAndGet() != 0);
+
+                    done = true;
+                }
+                finally {
+                    // An exception must not leave later responses thinking a drain is still running
+                    if(!done) {
+                        drains.set(0);
+                    }
+                }
+            }
+
+            private void send(String channel) {
+                long seq = sequence.getAndIncrement();
+
+                JSONObject request = new JSONObject()
+                    .put("seq", seq)
+                    .put("action", action)
+                    .put("channel", channel);
+
+                // A request whose response never arrives would otherwise keep its permit and the bulk result for good
+                CompletableFuture<PubSubResponse> result = new CompletableFuture<>();
+                ScheduledFuture<?> timeout = PubSubUtils.getScheduler().schedule(() -> {
+                    result.completeExceptionally(new TimeoutException("No response to " + action + " of " + channel + " arrived in " + timeoutMillis + " ms."));
+                }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+                result.whenComplete((response, error) -> {
+                    timeout.cancel(false);
+
+                    if(error != null) {
+                        failed.put(channel, (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error);
+                        onFailure.accept(channel);
+                    }
+                    else if(response instanceof PubSubSubscribeResponse || response instanceof PubSubUnsubscribeResponse) {
+                        succeeded.add(channel);
+                        lastResponse.accumulateAndGet(response, (previous, current) ->
+                            (previous == null || previous.getSequence() < current.getSequence()) ? current : previous);
+                    }
+                    else {
+                        failed.put(channel, new PubSubResponseTypeException("Invalid Response to Bulk Request", response));
+                        onFailure.accept(channel);
+                    }
+
+                    permits.incrementAndGet();
+
+                    if(remaining.decrementAndGet() == 0) {
+                        finish.run();
+                    }
+                    else {
+                        run();
+                    }
+                });
+
+                // The socket throws if the connection dropped; the request then fails like any other
+                try {
+                    socket.sendRequest(seq, request).whenComplete((response, error) -> {
+                        if(error != null) {
+                            result.completeExceptionally(error);
+                        }
+                        else {
+                            result.complete(response);
+                        }
+                    });
+                }
+                catch(Exception e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        };
+
+        drain.run();
+
+        return outcome;
+    }
+
+    /**
+     * Fetches list of all current subscriptions. Once the subscriptions are known, from this or any subscribe or
+     * unsubscribe response, the list is answered locally until the connection is re-established.
      *
      * @return {@code CompletableFuture<List<String>>} Completes with list of all current subscriptions on success.
      */
     public CompletableFuture<List<String>> listSubscriptions() {
+        return listSubscriptions(false);
+    }
+
+    /**
+     * Fetches list of all current subscriptions. Concurrent calls that go to the server share a single request.
+     *
+     * @param forceRefresh True to ask the server even if the current subscriptions are already known.
+     * @return {@code CompletableFuture<List<String>>} Completes with list of all current subscriptions on success.
+     */
+    public CompletableFuture<List<String>> listSubscriptions(boolean forceRefresh) {
+        List<String> known = socket.getSubscriptions();
+
+        if(!forceRefresh && known != null) {
+            return CompletableFuture.completedFuture(new LinkedList<>(known));
+        }
+
+        return socket.getSubscriptionsRequests().run(this::requestSubscriptions);
+    }
+
+    /**
+     * Asks the server for the list of all current subscriptions.
+     *
+     * @return {@code CompletableFuture<List<String>>} Completes with list of all current subscriptions on success.
+     */
+    private CompletableFuture<List<String>> requestSubscriptions() {
         CompletableFuture<List<String>> outcome = new CompletableFuture<>();
 
         long seq = sequence.getAndIncrement();
@@ -202,6 +473,7 @@ public class PubSubHandle {
             .thenAcceptAsync((response) -> {
                 if (response instanceof PubSubListSubscriptionsResponse) {
                     PubSubListSubscriptionsResponse listResponse = (PubSubListSubscriptionsResponse)(response);
+                    socket.updateSubscriptions(listResponse.getSequence(), listResponse.getChannels());
                     outcome.complete(listResponse.getChannels());
                 }
                 else {
@@ -216,10 +488,55 @@ public class PubSubHandle {
         return outcome;
     }
 
+    /**
+     * Restores the session state saved by the session store of the {@link PubSubOptions} in one step. If the server
+     * resumed the saved session, its channels are still subscribed and {@code messageHandler} is only registered
+     * for them locally; otherwise every saved channel is subscribed again, with all requests sent at once. In both
+     * cases the publishes that were not acknowledged before the restart are published again.
+     *
+     * @param messageHandler Handler that receives messages from the restored channels. May NOT be null.
+     * @return {@code CompletableFuture<List<String>>} Completes with list of all current subscriptions on success.
+     */
+    public CompletableFuture<List<String>> restoreSession(PubSubMessageHandler messageHandler) {
+        PubSubSessionState state = socket.getRestoredState();
+
+        if(state == null) {
+            return listSubscriptions();
+        }
+
+        return getSessionUuid()
+            .thenCompose((uuid) -> {
+                if(uuid.equals(state.getSessionUuid())) {
+                    for(String channel : state.getChannels()) {
+                        socket.addMessageHandler(channel, messageHandler);
+                    }
+
+                    return listSubscriptions(true);
+                }
+
+                List<CompletableFuture<List<String>>> requests = new LinkedList<>();
+
+                for(String channel : state.getChannels()) {
+                    requests.add(subscribe(channel, messageHandler));
+                }
+
+                return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[requests.size()]))
+                    .thenCompose((voidReturn) -> listSubscriptions());
+            })
+            .thenApply((channels) -> {
+                for(PubSubSessionState.PendingPublish publish : state.getPendingPublishes()) {
+                    publishWithAck(publish.getChannel(), publish.getMessage());
+                }
+
+                return channels;
+            });
+    }
+
     /**
      * Publishes {@code message} to {@code channel} without acknowledgement that the message was actually published.
      * Note: Completion of the returned CompletableFuture indicates success only in sending the message. 
      *       This method gives no information and no guarantees that the message was actually published.
+     * The publish is subject to the publish rate limits set in {@link PubSubOptions}.
      *
      * @param channel Name of the channel on which to publish the message.
      * @param message Content of the message to be publish on the given channel.
@@ -227,6 +544,14 @@ public class PubSubHandle {
      * @return {@code CompletableFuture<Long>} Completes with sequence number of record sent on a successful send. 
      */
     public CompletableFuture<Long> publish(String channel, String message, PubSubErrorResponseHandler handler) {
+        if(throttle != null) {
+            return throttle.run(channel, () -> sendPublish(channel, message, handler));
+        }
+
+        return sendPublish(channel, message, handler);
+    }
+
+    private CompletableFuture<Long> sendPublish(String channel, String message, PubSubErrorResponseHandler handler) {
         CompletableFuture<Long> outcome = new CompletableFuture<>();
         long seq = sequence.getAndIncrement();
 
@@ -253,42 +578,81 @@ public class PubSubHandle {
      * Publishes {@code message} to {@code channel} without acknowledgement that the message was actually published.
      * Note: Completion of the returned CompletableFuture indicates success only in sending the message. 
      *       This method gives no information and no guarantees that the message was actually published.
+     * The publish is subject to the publish rate limits set in {@link PubSubOptions}.
      *
      * @param channel Name of the channel on which to publish the message.
      * @param message Content of the message to be publish on the given channel.
      * @return {@code CompletableFuture<Long>} Completes with sequence number of record sent on a successful send. 
      */
     public CompletableFuture<Long> publish(String channel, String message) {
-        CompletableFuture<Long> outcome = new CompletableFuture<>();
-        long seq = sequence.getAndIncrement();
-
-        JSONObject publish = new JSONObject()
-            .put("seq", seq)
-            .put("action", "pub")
-            .put("chan", channel)
-            .put("msg", message)
-            .put("ack", false);
+        return publish(channel, message, null);
+    }
 
-        socket.sendPublish(seq, publish, null, (result) -> {
-            if(result.isOK()) {
-                outcome.complete(seq);
-            }
-            else {
-                outcome.completeExceptionally(result.getException());
-            }
-        });
+    /**
+     * Publishes {@code value} to {@code channel}, encoded with the {@link com.gambit.sdk.pubsub.codecs.PubSubCodec}
+     * for its type, without acknowledgement that the message was actually published.
+     *
+     * @param channel Name of the channel on which to publish the message.
+     * @param value   Value to encode as the content of the message.
+     * @param <T>     Type of the value.
+     * @return {@code CompletableFuture<Long>} Completes with sequence number of record sent on a successful send.
+     */
+    public <T> CompletableFuture<Long> publish(String channel, T value) {
+        String message;
+
+        try {
+            message = PubSubCodecs.encode(value);
+        }
+        catch(PubSubCodecException e) {
+            CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        return publish(channel, message, null);
+    }
 
-        return outcome;
+    /**
+     * Publishes {@code value} to {@code channel}, encoded with the {@link com.gambit.sdk.pubsub.codecs.PubSubCodec}
+     * for its type, with acknowledgement that the message was actually published.
+     *
+     * @param channel Name of the channel on which to publish the message.
+     * @param value   Value to encode as the content of the message.
+     * @param <T>     Type of the value.
+     * @return {@code CompletableFuture<UUID>} Completes with UUID of published message on success.
+     */
+    public <T> CompletableFuture<UUID> publishWithAck(String channel, T value) {
+        String message;
+
+        try {
+            message = PubSubCodecs.encode(value);
+        }
+        catch(PubSubCodecException e) {
+            CompletableFuture<UUID> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        return publishWithAck(channel, message);
     }
 
     /**
      * Publishes {@code message} to {@code channel} with acknowledgement that the message was actually published.
+     * The publish is subject to the publish rate limits set in {@link PubSubOptions}.
      *
      * @param channel Name of the channel on which to publish the message.
      * @param message Content of the message to be publish on the given channel.
      * @return {@code CompletableFuture<UUID>} Completes with UUID of published message on success. 
      */
     public CompletableFuture<UUID> publishWithAck(String channel, String message) {
+        if(throttle != null) {
+            return throttle.run(channel, () -> sendPublishWithAck(channel, message));
+        }
+
+        return sendPublishWithAck(channel, message);
+    }
+
+    private CompletableFuture<UUID> sendPublishWithAck(String channel, String message) {
         CompletableFuture<UUID> outcome = new CompletableFuture<>();
         long seq = sequence.getAndIncrement();
 
@@ -375,6 +739,15 @@ public class PubSubHandle {
         socket.setErrorHandler(errorHandler);
     }
 
+    /**
+     * Passes an error that occurred in code run for this handle, such as a listener of a {@link PubSubBroker}, to
+     * the error handler.
+     * @param error The error that occurred
+     */
+    void reportError(Throwable error) {
+        socket.reportError(error);
+    }
+
     /**
      * Registers a handler for whenever an error response is received from ther server.
      *
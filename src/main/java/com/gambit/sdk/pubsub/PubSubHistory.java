@@ -0,0 +1,215 @@
+package com.gambit.sdk.pubsub;
+
+import java.time.Duration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the most recent messages of each channel of a {@link PubSubBroker}, so that listeners joining later can
+ * be handed the recent messages before the live ones. Each channel keeps at most a number of messages, none older
+ * than a maximum age, and all channels together stay within a memory budget: when it is exceeded, the oldest
+ * messages of the channel that received a message least recently are dropped first.
+ *
+ * A history belongs to a single broker.
+ */
+public class PubSubHistory {
+
+    /**
+     * Builds a {@link PubSubHistory}.
+     */
+    public static class Builder {
+        private Integer maxMessagesPerChannel;
+        private Long maxBytes;
+        private Duration maxAge;
+
+        /**
+         * Sets the number of messages kept for each channel (Default: 100).
+         *
+         * @param maxMessagesPerChannel Maximum number of messages kept for a channel.
+         * @return Builder The same instance.
+         */
+        public Builder setMaxMessagesPerChannel(int maxMessagesPerChannel) {
+            this.maxMessagesPerChannel = maxMessagesPerChannel;
+            return this;
+        }
+
+        /**
+         * Sets the estimated memory, in bytes, that the messages of all channels may use (Default: 64 MiB).
+         *
+         * @param maxBytes Maximum estimated size of all kept messages.
+         * @return Builder The same instance.
+         */
+        public Builder setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets how long a message is kept after it was received (Default: null, no limit).
+         *
+         * @param maxAge Time, as a duration, after which a message is dropped.
+         * @return Builder The same instance.
+         */
+        public Builder setMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * Creates the history with the limits set on this builder.
+         * @return PubSubHistory The empty history.
+         */
+        public PubSubHistory build() {
+            return new PubSubHistory(this);
+        }
+    }
+
+    /**
+     * A kept message with the time it was received and its estimated size.
+     */
+    private static class Entry {
+        final PubSubMessageRecord record;
+        final long received;
+        final long size;
+
+        Entry(PubSubMessageRecord record, long received, long size) {
+            this.record = record;
+            this.received = received;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Estimated size, in bytes, of a kept message apart from its content and channel name
+     */
+    private static final long ENTRY_OVERHEAD = 128L;
+
+    private final int maxMessagesPerChannel;
+    private final long maxBytes;
+    private final long maxAge;
+
+    /**
+     * The messages of each channel, oldest first; iterated from the channel used least recently
+     */
+    private final LinkedHashMap<String, ArrayDeque<Entry>> channels;
+
+    /**
+     * The estimated size of all kept messages
+     */
+    private long bytes;
+
+    private PubSubHistory(Builder builder) {
+        this.maxMessagesPerChannel = (builder.maxMessagesPerChannel == null) ? 100 : builder.maxMessagesPerChannel;
+        this.maxBytes = (builder.maxBytes == null) ? 64L * 1024 * 1024 : builder.maxBytes;
+        this.maxAge = (builder.maxAge == null) ? -1L : builder.maxAge.toNanos();
+        this.channels = new LinkedHashMap<>(16, 0.75f, true);
+
+        if(maxMessagesPerChannel < 1 || maxBytes < 1 || (builder.maxAge != null && maxAge <= 0)) {
+            throw new IllegalArgumentException("The history limits must be positive.");
+        }
+    }
+
+    /**
+     * Gets the estimated memory used by the kept messages.
+     * @return long Estimated size, in bytes, of all kept messages.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the number of channels that have kept messages.
+     * @return int The number of channels.
+     */
+    public synchronized int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * Keeps a message received on its channel, dropping older messages as the limits require.
+     */
+    synchronized void add(PubSubMessageRecord record) {
+        long now = System.nanoTime();
+        String channel = record.getChannel();
+        ArrayDeque<Entry> ring = channels.computeIfAbsent(channel, (name) -> new ArrayDeque<>());
+
+        Entry entry = new Entry(record, now, ENTRY_OVERHEAD + 2L * (channel.length() + record.getMessageContent().length()));
+        ring.addLast(entry);
+        bytes += entry.size;
+
+        while(ring.size() > maxMessagesPerChannel) {
+            bytes -= ring.removeFirst().size;
+        }
+
+        expire(channel, ring, now);
+
+        // The channel just used is last in iteration order, so other channels give up their messages first
+        Iterator<Map.Entry<String, ArrayDeque<Entry>>> leastRecent = channels.entrySet().iterator();
+
+        while(bytes > maxBytes && leastRecent.hasNext()) {
+            ArrayDeque<Entry> victim = leastRecent.next().getValue();
+
+            while(bytes > maxBytes && !victim.isEmpty()) {
+                bytes -= victim.removeFirst().size;
+            }
+
+            if(victim.isEmpty()) {
+                leastRecent.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets up to {@code count} of the most recent messages of {@code channel}, oldest first.
+     */
+    synchronized List<PubSubMessageRecord> recent(String channel, int count) {
+        ArrayDeque<Entry> ring = channels.get(channel);
+        List<PubSubMessageRecord> records = new ArrayList<>();
+
+        if(ring == null || count <= 0) {
+            return records;
+        }
+
+        expire(channel, ring, System.nanoTime());
+
+        int skip = ring.size() - count;
+        for(Entry entry : ring) {
+            if(skip-- <= 0) {
+                records.add(entry.record);
+            }
+        }
+
+        return records;
+    }
+
+    /**
+     * Drops the messages of {@code channel}, such as when it is no longer subscribed to and later messages would
+     * not follow on from the kept ones.
+     */
+    synchronized void clear(String channel) {
+        ArrayDeque<Entry> ring = channels.remove(channel);
+
+        if(ring != null) {
+            for(Entry entry : ring) {
+                bytes -= entry.size;
+            }
+        }
+    }
+
+    private void expire(String channel, ArrayDeque<Entry> ring, long now) {
+        if(maxAge > 0) {
+            while(!ring.isEmpty() && now - ring.peekFirst().received > maxAge) {
+                bytes -= ring.removeFirst().size;
+            }
+        }
+
+        if(ring.isEmpty()) {
+            channels.remove(channel);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.gambit.sdk.pubsub;
 
+import java.io.Reader;
+import java.io.StringReader;
+
 import java.time.Instant;
 import java.util.UUID;
 
@@ -23,8 +26,14 @@ public class PubSubMessageRecord
 
     /**
      * The content of the published message represented by this PubSubMessageRecord.
+     * When the record was decoded from a streamed frame, this is only filled in once requested.
      */
-    private final String message;
+    private volatile String message;
+
+    /**
+     * The streamed frame the record was decoded from, if any, which holds the content of the message.
+     */
+    private final PubSubFrame frame;
 
     /**
      * The UUID of the message represented by this PubSubMessageRecord
@@ -41,6 +50,22 @@ public class PubSubMessageRecord
         channel = jsonObj.getString("chan");
         id = UUID.fromString(jsonObj.getString("id"));
         timestamp = Instant.parse(jsonObj.getString("time"));
+        frame = null;
+    }
+
+    /**
+     * Creates the PubSubMessageRecord from a streamed frame. The content of the message stays in the frame
+     * and is only copied out if {@link #getMessage()} is called.
+     *
+     * @param frame The decoded frame representing the message record
+     */
+    PubSubMessageRecord(PubSubFrame frame) throws JSONException {
+        channel = frame.getString("chan");
+        id = UUID.fromString(frame.getString("id"));
+        timestamp = Instant.parse(frame.getString("time"));
+        frame.checkString("msg");
+        message = null;
+        this.frame = frame;
     }
 
     /**
@@ -58,9 +83,33 @@ public class PubSubMessageRecord
      * @return String
      */
     public String getMessage() { 
+        if(message == null) {
+            message = frame.getString("msg");
+        }
+
         return message; 
     }
 
+    /**
+     * Returns the content of the published message as a {@link CharSequence}. For records received through
+     * the streaming path this is a view of the received frame, so large messages are not copied.
+     *
+     * @return CharSequence
+     */
+    public CharSequence getMessageContent() {
+        return (frame == null) ? message : frame.getText("msg");
+    }
+
+    /**
+     * Returns a {@link Reader} over the content of the published message. For records received through
+     * the streaming path the content is read straight from the received frame.
+     *
+     * @return Reader
+     */
+    public Reader getMessageReader() {
+        return (frame == null) ? new StringReader(message) : frame.getReader("msg");
+    }
+
     /**
      * Returns the timestamp of the message represented by this PubSubMessageRecord.
      *
@@ -1,19 +1,301 @@
 package com.gambit.sdk.pubsub;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import java.time.Duration;
 
+import com.gambit.sdk.GambitDeflateExtension;
+import com.gambit.sdk.GambitWebsocketContainer;
+
 /**
  * Holds initialization options to use when first connect to Cogswell Pub/Sub
  */
 public class PubSubOptions {
 
+    /**
+     * Builds {@link PubSubOptions} one option at a time. Any option that is not set keeps its default value.
+     */
+    public static class Builder {
+        private String url;
+        private List<String> urls;
+        private Duration hedgeDelay;
+        private Boolean autoReconnect;
+        private Duration connectTimeout;
+        private UUID sessionUuid;
+        private GambitWebsocketContainer container;
+        private boolean streamingMessages;
+        private GambitDeflateExtension compression;
+        private Duration reconnectBaseDelay;
+        private Duration reconnectMaxDelay;
+        private Integer maxConcurrentReconnects;
+        private PubSubSessionStore sessionStore;
+        private Integer maxInFlightRequests;
+        private Duration bulkRequestTimeout;
+        private PubSubRateLimiter globalPublishLimiter;
+        private double handlePublishRate;
+        private int handlePublishBurst;
+        private double channelPublishRate;
+        private int channelPublishBurst;
+        private PubSubRateLimitMode rateLimitMode;
+
+        /**
+         * Sets the url to which to connect (Default: "wss://api.cogswell.io/pubsub").
+         *
+         * @param url URL to which to connect.
+         * @return Builder The same instance.
+         */
+        public Builder setUrl(String url) {
+            this.url = url;
+            return this;
+        }
+
+        /**
+         * Sets several urls to which to connect, in order of preference (Default: the single url). Each connection
+         * attempt starts with the healthy url that has the lowest measured round-trip time, and races the next url
+         * if it has not connected after the hedge delay.
+         *
+         * @param urls URLs to which to connect, replacing any url set before.
+         * @return Builder The same instance.
+         */
+        public Builder setUrls(List<String> urls) {
+            this.urls = urls;
+            return this;
+        }
+
+        /**
+         * Sets how long a connection attempt may take before an attempt on the next url is started alongside it
+         * (Default: 250 ms). Only applies when several urls are set.
+         *
+         * @param hedgeDelay Time, as a duration, to wait before racing the next url.
+         * @return Builder The same instance.
+         */
+        public Builder setHedgeDelay(Duration hedgeDelay) {
+            this.hedgeDelay = hedgeDelay;
+            return this;
+        }
+
+        /**
+         * Sets whether the connection should attempt to reconnect when disconnected (Default: true).
+         *
+         * @param autoReconnect True if connection should reconnect.
+         * @return Builder The same instance.
+         */
+        public Builder setAutoReconnect(Boolean autoReconnect) {
+            this.autoReconnect = autoReconnect;
+            return this;
+        }
+
+        /**
+         * Sets the time before a connection attempt should timeout (Default: 30000 ms).
+         *
+         * @param connectTimeout Time, as a duration, before connection should timeout.
+         * @return Builder The same instance.
+         */
+        public Builder setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the UUID of the session to restore (Default: null).
+         *
+         * @param sessionUuid UUID of session to restore.
+         * @return Builder The same instance.
+         */
+        public Builder setSessionUuid(UUID sessionUuid) {
+            this.sessionUuid = sessionUuid;
+            return this;
+        }
+
+        /**
+         * Sets the websocket container settings that the connection is made with (Default: {@link GambitWebsocketContainer#DEFAULT}).
+         *
+         * @param container Settings of the shared websocket container.
+         * @return Builder The same instance.
+         */
+        public Builder setContainer(GambitWebsocketContainer container) {
+            this.container = container;
+            return this;
+        }
+
+        /**
+         * Sets whether messages are received as a stream of fragments (Default: false). Streamed messages do not
+         * have to fit into the text message buffer of the websocket container, and the content of published
+         * messages can be read from {@link PubSubMessageRecord#getMessageReader()} without being copied.
+         *
+         * @param streamingMessages True if messages should be received as streams of fragments.
+         * @return Builder The same instance.
+         */
+        public Builder setStreamingMessages(boolean streamingMessages) {
+            this.streamingMessages = streamingMessages;
+            return this;
+        }
+
+        /**
+         * Sets the permessage-deflate compression to offer to the server (Default: null, no compression).
+         *
+         * @param compression The compression settings, or null to send and receive everything uncompressed.
+         * @return Builder The same instance.
+         */
+        public Builder setCompression(GambitDeflateExtension compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Sets the smallest delay between reconnect attempts (Default: 5000 ms). Each delay is chosen at random
+         * between this delay and three times the previous one, so sockets that dropped together spread out.
+         *
+         * @param reconnectBaseDelay Smallest time, as a duration, between reconnect attempts.
+         * @return Builder The same instance.
+         */
+        public Builder setReconnectBaseDelay(Duration reconnectBaseDelay) {
+            this.reconnectBaseDelay = reconnectBaseDelay;
+            return this;
+        }
+
+        /**
+         * Sets the largest delay between reconnect attempts (Default: 120000 ms).
+         *
+         * @param reconnectMaxDelay Largest time, as a duration, between reconnect attempts.
+         * @return Builder The same instance.
+         */
+        public Builder setReconnectMaxDelay(Duration reconnectMaxDelay) {
+            this.reconnectMaxDelay = reconnectMaxDelay;
+            return this;
+        }
+
+        /**
+         * Sets how many reconnect attempts may be in progress at the same time (Default: 16). The limit is shared
+         * by every connection in the JVM that uses the same value; sockets with active subscriptions get a free
+         * slot first.
+         *
+         * @param maxConcurrentReconnects Maximum number of reconnect attempts in progress at the same time.
+         * @return Builder The same instance.
+         */
+        public Builder setMaxConcurrentReconnects(int maxConcurrentReconnects) {
+            this.maxConcurrentReconnects = maxConcurrentReconnects;
+            return this;
+        }
+
+        /**
+         * Sets the store that keeps the session state of the connection (Default: null, no state is kept). When the
+         * store holds a saved session and no session UUID is set, the connection asks to restore the saved session,
+         * and {@link PubSubHandle#restoreSession(com.gambit.sdk.pubsub.handlers.PubSubMessageHandler)} brings back
+         * its subscriptions and unacknowledged publishes.
+         *
+         * @param sessionStore Store for the session state.
+         * @return Builder The same instance.
+         */
+        public Builder setSessionStore(PubSubSessionStore sessionStore) {
+            this.sessionStore = sessionStore;
+            return this;
+        }
+
+        /**
+         * Sets how many requests of a bulk subscribe or unsubscribe may wait for their response at the same time
+         * (Default: 64). The next request is sent as soon as a response arrives.
+         *
+         * @param maxInFlightRequests Maximum number of bulk requests waiting for a response.
+         * @return Builder The same instance.
+         */
+        public Builder setMaxInFlightRequests(int maxInFlightRequests) {
+            this.maxInFlightRequests = maxInFlightRequests;
+            return this;
+        }
+
+        /**
+         * Sets how long each request of a bulk subscribe or unsubscribe may wait for its response before its
+         * channel is reported as failed (Default: 30 seconds).
+         *
+         * @param bulkRequestTimeout Time, as a duration, before a bulk request fails.
+         * @return Builder The same instance.
+         */
+        public Builder setBulkRequestTimeout(Duration bulkRequestTimeout) {
+            this.bulkRequestTimeout = bulkRequestTimeout;
+            return this;
+        }
+
+        /**
+         * Sets a publish rate limiter shared by every connection built with it (Default: null, no shared limit).
+         * Passing the same limiter to the options of several connections limits their publishes together.
+         *
+         * @param globalPublishLimiter Limiter shared by the connections.
+         * @return Builder The same instance.
+         */
+        public Builder setGlobalPublishLimiter(PubSubRateLimiter globalPublishLimiter) {
+            this.globalPublishLimiter = globalPublishLimiter;
+            return this;
+        }
+
+        /**
+         * Limits the publishes of each handle to {@code permitsPerSecond} on average, with bursts of up to
+         * {@code burst} publishes (Default: no limit).
+         *
+         * @param permitsPerSecond Average number of publishes per second.
+         * @param burst Number of publishes allowed at once after the handle was idle.
+         * @return Builder The same instance.
+         */
+        public Builder setHandlePublishRate(double permitsPerSecond, int burst) {
+            this.handlePublishRate = permitsPerSecond;
+            this.handlePublishBurst = burst;
+            return this;
+        }
+
+        /**
+         * Limits the publishes of each handle on each channel to {@code permitsPerSecond} on average, with bursts
+         * of up to {@code burst} publishes (Default: no limit).
+         *
+         * @param permitsPerSecond Average number of publishes per second on a channel.
+         * @param burst Number of publishes allowed at once after the channel was idle.
+         * @return Builder The same instance.
+         */
+        public Builder setChannelPublishRate(double permitsPerSecond, int burst) {
+            this.channelPublishRate = permitsPerSecond;
+            this.channelPublishBurst = burst;
+            return this;
+        }
+
+        /**
+         * Sets what happens to a publish that exceeds a publish rate limit (Default: DELAY).
+         *
+         * @param rateLimitMode Whether to block, reject or delay such publishes.
+         * @return Builder The same instance.
+         */
+        public Builder setRateLimitMode(PubSubRateLimitMode rateLimitMode) {
+            this.rateLimitMode = rateLimitMode;
+            return this;
+        }
+
+        /**
+         * Creates the {@link PubSubOptions} holding the options set on this Builder.
+         *
+         * @return PubSubOptions The options set on this Builder.
+         * @throws IllegalArgumentException If the reconnect settings are out of range.
+         */
+        public PubSubOptions build() {
+            return new PubSubOptions(this);
+        }
+    }
+
     /**
      * The url used for connecting to the Pub/Sub service
      */
     private final String url;
 
+    /**
+     * All urls that may be used for connecting to the Pub/Sub service, in order of preference
+     */
+    private final List<String> urls;
+
+    /**
+     * The time, in milliseconds, before a connection attempt on the next url is started
+     */
+    private final long hedgeDelay;
+
     /**
      * True if connection should auto-reconnect when dropped
      */
@@ -29,6 +311,62 @@ public class PubSubOptions {
      */
     private final UUID sessionUuid;
 
+    /**
+     * Holds the settings of the shared websocket container the connection is made with.
+     */
+    private final GambitWebsocketContainer container;
+
+    /**
+     * True if messages should be received as streams of fragments.
+     */
+    private final boolean streamingMessages;
+
+    /**
+     * Holds the permessage-deflate compression to offer to the server, null if none.
+     */
+    private final GambitDeflateExtension compression;
+
+    /**
+     * The smallest delay, in milliseconds, between reconnect attempts.
+     */
+    private final long reconnectBaseDelay;
+
+    /**
+     * The largest delay, in milliseconds, between reconnect attempts.
+     */
+    private final long reconnectMaxDelay;
+
+    /**
+     * The maximum number of reconnect attempts in progress at the same time.
+     */
+    private final int maxConcurrentReconnects;
+
+    /**
+     * Holds the store that keeps the session state of the connection, null if none.
+     */
+    private final PubSubSessionStore sessionStore;
+
+    /**
+     * The maximum number of bulk requests waiting for a response at the same time.
+     */
+    private final int maxInFlightRequests;
+
+    /**
+     * The time, in milliseconds, a bulk request waits for its response before it fails.
+     */
+    private final long bulkRequestTimeout;
+
+    /**
+     * The publish rate limits: a limiter shared between connections, the rate and burst of each handle and of each
+     * channel (a rate of 0 meaning no limit), and what to do with publishes over a limit.
+     */
+    private final PubSubRateLimiter globalPublishLimiter;
+    private final double handlePublishRate;
+    private final int handlePublishBurst;
+    private final double channelPublishRate;
+    private final int channelPublishBurst;
+    private final PubSubRateLimitMode rateLimitMode;
+
     /**
      * Initializes this PubSubOptions with all default values
      */
@@ -50,14 +388,76 @@ public class PubSubOptions {
      * @param sessionUuid    UUID of session to restore, if requested (Default: null). 
      */
     public PubSubOptions(String url, Boolean autoReconnect, Duration connectTimeout, UUID sessionUuid) {
-      this.url = (url == null) ? "wss://api.cogswell.io/pubsub" : url;
-      this.autoReconnect = (autoReconnect == null) ? true : autoReconnect;
-      this.sessionUuid = sessionUuid;
-      this.connectTimeout = (connectTimeout == null) ? 30000 : connectTimeout.toMillis();
+      this(new Builder()
+        .setUrl(url)
+        .setAutoReconnect(autoReconnect)
+        .setConnectTimeout(connectTimeout)
+        .setSessionUuid(sessionUuid));
+    }
+
+    /**
+     * Initializes this PubSubOptions with the options set on the given {@link Builder}, filling in unset values with defaults.
+     *
+     * @param builder The {@link Builder} holding the requested options.
+     */
+    private PubSubOptions(Builder builder) {
+      if(builder.urls != null && !builder.urls.isEmpty()) {
+        this.urls = Collections.unmodifiableList(new ArrayList<>(builder.urls));
+      }
+      else {
+        this.urls = Collections.singletonList((builder.url == null) ? "wss://api.cogswell.io/pubsub" : builder.url);
+      }
+
+      this.url = urls.get(0);
+      this.hedgeDelay = (builder.hedgeDelay == null) ? 250 : builder.hedgeDelay.toMillis();
+      this.autoReconnect = (builder.autoReconnect == null) ? true : builder.autoReconnect;
+      this.sessionUuid = builder.sessionUuid;
+      this.connectTimeout = (builder.connectTimeout == null) ? 30000 : builder.connectTimeout.toMillis();
+      this.container = (builder.container == null) ? GambitWebsocketContainer.DEFAULT : builder.container;
+      this.streamingMessages = builder.streamingMessages;
+      this.compression = builder.compression;
+      this.reconnectBaseDelay = (builder.reconnectBaseDelay == null) ? 5000 : builder.reconnectBaseDelay.toMillis();
+      this.reconnectMaxDelay = (builder.reconnectMaxDelay == null) ? 120000 : builder.reconnectMaxDelay.toMillis();
+      this.maxConcurrentReconnects = (builder.maxConcurrentReconnects == null) ? 16 : builder.maxConcurrentReconnects;
+      this.sessionStore = builder.sessionStore;
+      this.maxInFlightRequests = (builder.maxInFlightRequests == null) ? 64 : builder.maxInFlightRequests;
+      this.bulkRequestTimeout = (builder.bulkRequestTimeout == null) ? 30000 : builder.bulkRequestTimeout.toMillis();
+      this.globalPublishLimiter = builder.globalPublishLimiter;
+      this.handlePublishRate = builder.handlePublishRate;
+      this.handlePublishBurst = builder.handlePublishBurst;
+      this.channelPublishRate = builder.channelPublishRate;
+      this.channelPublishBurst = builder.channelPublishBurst;
+      this.rateLimitMode = (builder.rateLimitMode == null) ? PubSubRateLimitMode.DELAY : builder.rateLimitMode;
+
+      if(reconnectBaseDelay < 0 || reconnectMaxDelay < reconnectBaseDelay) {
+        throw new IllegalArgumentException("The reconnect delays must satisfy 0 <= base delay <= max delay.");
+      }
+
+      if(urls.contains(null) || hedgeDelay < 0) {
+        throw new IllegalArgumentException("The urls may not be null and the hedge delay may not be negative.");
+      }
+
+      if(maxConcurrentReconnects < 1) {
+        throw new IllegalArgumentException("At least one reconnect attempt must be allowed at a time.");
+      }
+
+      if(maxInFlightRequests < 1) {
+        throw new IllegalArgumentException("At least one bulk request must be allowed in flight.");
+      }
+
+      if(bulkRequestTimeout < 1) {
+        throw new IllegalArgumentException("The bulk request timeout must be positive.");
+      }
+
+      if(handlePublishRate < 0 || channelPublishRate < 0
+        || (handlePublishRate > 0 && handlePublishBurst < 1) || (channelPublishRate > 0 && channelPublishBurst < 1))
+      {
+        throw new IllegalArgumentException("Publish rates may not be negative and their bursts must be at least 1.");
+      }
     }
 
     /**
-     * Gets the url represented in this PubSubOptions for a connection.
+     * Gets the url represented in this PubSubOptions for a connection, the first one if several were set.
      *
      * @return String The url represented in this PubSubOptions .
      */
@@ -65,6 +465,23 @@ public class PubSubOptions {
       return url;
     }
 
+    /**
+     * Gets all urls represented in this PubSubOptions for a connection, in order of preference.
+     *
+     * @return List<String> The urls represented in this PubSubOptions.
+     */
+    public List<String> getUrls() {
+      return urls;
+    }
+
+    /**
+     * Gets the time, in milliseconds, before a connection attempt on the next url is started.
+     * @return long Time, in milliseconds, before racing the next url.
+     */
+    public long getHedgeDelay() {
+      return hedgeDelay;
+    }
+
     /**
      * Gets whether these options represent the request to auto-reconnect.
      *
@@ -89,4 +506,124 @@ public class PubSubOptions {
     public UUID getSessionUuid() {
       return sessionUuid;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the settings of the shared websocket container the connection is made with.
+     * @return GambitWebsocketContainer Settings of the websocket container.
+     */
+    public GambitWebsocketContainer getContainer() {
+      return container;
+    }
+
+    /**
+     * Gets whether messages should be received as streams of fragments.
+     * @return boolean True if streaming messages were requested.
+     */
+    public boolean getStreamingMessages() {
+      return streamingMessages;
+    }
+
+    /**
+     * Gets the permessage-deflate compression to offer to the server.
+     * @return GambitDeflateExtension The compression settings, null if compression was not requested.
+     */
+    public GambitDeflateExtension getCompression() {
+      return compression;
+    }
+
+    /**
+     * Gets the smallest delay, in milliseconds, between reconnect attempts.
+     * @return long Smallest delay, in milliseconds, between reconnect attempts.
+     */
+    public long getReconnectBaseDelay() {
+      return reconnectBaseDelay;
+    }
+
+    /**
+     * Gets the largest delay, in milliseconds, between reconnect attempts.
+     * @return long Largest delay, in milliseconds, between reconnect attempts.
+     */
+    public long getReconnectMaxDelay() {
+      return reconnectMaxDelay;
+    }
+
+    /**
+     * Gets the maximum number of reconnect attempts in progress at the same time.
+     * @return int Maximum number of concurrent reconnect attempts.
+     */
+    public int getMaxConcurrentReconnects() {
+      return maxConcurrentReconnects;
+    }
+
+    /**
+     * Gets the store that keeps the session state of the connection.
+     * @return PubSubSessionStore The session store, null if no state should be kept.
+     */
+    public PubSubSessionStore getSessionStore() {
+      return sessionStore;
+    }
+
+    /**
+     * Gets the maximum number of bulk subscribe or unsubscribe requests waiting for a response at the same time.
+     * @return int Maximum number of bulk requests in flight.
+     */
+    public int getMaxInFlightRequests() {
+      return maxInFlightRequests;
+    }
+
+    /**
+     * Gets the time, in milliseconds, a bulk subscribe or unsubscribe request waits for its response before it fails.
+     * @return long Time, in milliseconds, before a bulk request fails.
+     */
+    public long getBulkRequestTimeout() {
+      return bulkRequestTimeout;
+    }
+
+    /**
+     * Gets the publish rate limiter shared by the connections built with these options.
+     * @return PubSubRateLimiter The shared limiter, null if there is none.
+     */
+    public PubSubRateLimiter getGlobalPublishLimiter() {
+      return globalPublishLimiter;
+    }
+
+    /**
+     * Gets the average number of publishes per second allowed for each handle.
+     * @return double Publishes per second, 0 if handles are not limited.
+     */
+    public double getHandlePublishRate() {
+      return handlePublishRate;
+    }
+
+    /**
+     * Gets the number of publishes each handle may make at once after it was idle.
+     * @return int The burst size of each handle.
+     */
+    public int getHandlePublishBurst() {
+      return handlePublishBurst;
+    }
+
+    /**
+     * Gets the average number of publishes per second allowed for each handle on each channel.
+     * @return double Publishes per second, 0 if channels are not limited.
+     */
+    public double getChannelPublishRate() {
+      return channelPublishRate;
+    }
+
+    /**
+     * Gets the number of publishes each handle may make at once on a channel after the channel was idle.
+     * @return int The burst size of each channel.
+     */
+    public int getChannelPublishBurst() {
+      return channelPublishBurst;
+    }
+
+    /**
+     * Gets what happens to a publish that exceeds a publish rate limit.
+     * @return PubSubRateLimitMode Whether such publishes are blocked, rejected or delayed.
+     */
+    public PubSubRateLimitMode getRateLimitMode() {
+      return rateLimitMode;
+    }
+}
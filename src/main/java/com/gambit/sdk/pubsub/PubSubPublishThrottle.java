@@ -0,0 +1,173 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import java.util.function.Supplier;
+
+import com.gambit.sdk.pubsub.exceptions.PubSubRateLimitException;
+import com.gambit.sdk.pubsub.utils.PubSubUtils;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Applies the publish rate limits of a {@link PubSubHandle}: a limiter shared by every connection configured with
+ * it, one for the handle, and one per channel. A publish needs a permit from each of them, taken from the channel
+ * limiter first and from the shared ones only once the publish is due there.
+ */
+class PubSubPublishThrottle
+{
+    private final PubSubRateLimitMode mode;
+    private final PubSubRateLimiter global;
+    private final PubSubRateLimiter handle;
+
+    /**
+     * The limiters of the channels published to recently, null if channels are not limited. A limiter that has
+     * been idle long enough to be full again is dropped; a new one starts out full as well.
+     */
+    private final LoadingCache<String, PubSubRateLimiter> channels;
+
+    private PubSubPublishThrottle(PubSubOptions options) {
+        this.mode = options.getRateLimitMode();
+        this.global = options.getGlobalPublishLimiter();
+
+        this.handle = (options.getHandlePublishRate() > 0)
+            ? new PubSubRateLimiter(options.getHandlePublishRate(), options.getHandlePublishBurst())
+            : null;
+
+        if(options.getChannelPublishRate() > 0) {
+            double rate = options.getChannelPublishRate();
+            int burst = options.getChannelPublishBurst();
+            long refill = (long) Math.ceil(burst / rate * 1000);
+
+            this.channels = CacheBuilder.newBuilder()
+                .expireAfterAccess(Math.max(60000L, refill), TimeUnit.MILLISECONDS)
+                .build(new CacheLoader<String, PubSubRateLimiter>() {
+                    @Override
+                    public PubSubRateLimiter load(String channel) {
+                        return new PubSubRateLimiter(rate, burst);
+                    }
+                });
+        }
+        else {
+            this.channels = null;
+        }
+    }
+
+    /**
+     * Creates the throttle for a handle using the given options.
+     * @param options The options of the connection, may be null
+     * @return PubSubPublishThrottle The throttle, or null if the options set no publish rate limits
+     */
+    static PubSubPublishThrottle forOptions(PubSubOptions options) {
+        if(options == null) {
+            return null;
+        }
+
+        if(options.getGlobalPublishLimiter() == null
+            && options.getHandlePublishRate() <= 0
+            && options.getChannelPublishRate() <= 0)
+        {
+            return null;
+        }
+
+        return new PubSubPublishThrottle(options);
+    }
+
+    /**
+     * Starts the publish done by {@code send} once it fits within the limits, as the mode requires.
+     * @param channel The channel of the publish
+     * @param send Sends the publish and returns its outcome
+     * @return {@code CompletableFuture<T>} The outcome of the publish
+     */
+    <T> CompletableFuture<T> run(String channel, Supplier<CompletableFuture<T>> send) {
+        // From the most specific limiter to the most shared one, the order in which the permits are taken
+        PubSubRateLimiter[] limiters = {
+            (channels == null) ? null : channels.getUnchecked(channel),
+            handle,
+            global
+        };
+
+        if(mode == PubSubRateLimitMode.REJECT) {
+            for(int i = 0; i < limiters.length; ++i) {
+                if(limiters[i] != null && !limiters[i].tryAcquire()) {
+                    // Give back the permits already taken, since the publish will not be sent
+                    for(int j = 0; j < i; ++j) {
+                        if(limiters[j] != null) {
+                            limiters[j].release();
+                        }
+                    }
+
+                    CompletableFuture<T> rejected = new CompletableFuture<>();
+                    rejected.completeExceptionally(new PubSubRateLimitException(channel));
+                    return rejected;
+                }
+            }
+
+            return send.get();
+        }
+
+        if(mode == PubSubRateLimitMode.BLOCK) {
+            for(PubSubRateLimiter limiter : limiters) {
+                if(limiter != null) {
+                    park(limiter.reserve());
+                }
+            }
+
+            return send.get();
+        }
+
+        return delay(limiters, 0, send);
+    }
+
+    /**
+     * Takes the permits of {@code limiters} from {@code from} on, one after the other, and sends the publish once
+     * it has them all. A permit of the next limiter is only taken once the wait for the previous one is over, so a
+     * publish held back by its channel doesn't take the permits that the other channels share in the meantime.
+     * @param limiters The limiters, null for those not configured
+     * @param from The index of the first limiter whose permit is still needed
+     * @param send Sends the publish and returns its outcome
+     * @return {@code CompletableFuture<T>} The outcome of the publish
+     */
+    private <T> CompletableFuture<T> delay(PubSubRateLimiter[] limiters, int from, Supplier<CompletableFuture<T>> send) {
+        for(int i = from; i < limiters.length; ++i) {
+            long wait = (limiters[i] == null) ? 0L : limiters[i].reserve();
+
+            if(wait > 0L) {
+                int next = i + 1;
+                CompletableFuture<T> outcome = new CompletableFuture<>();
+
+                PubSubUtils.getScheduler().schedule(() -> {
+                    try {
+                        delay(limiters, next, send).whenComplete((result, error) -> {
+                            if(error == null) {
+                                outcome.complete(result);
+                            }
+                            else {
+                                outcome.completeExceptionally(error);
+                            }
+                        });
+                    }
+                    catch(Throwable e) {
+                        outcome.completeExceptionally(e);
+                    }
+                }, wait, TimeUnit.NANOSECONDS);
+
+                return outcome;
+            }
+        }
+
+        return send.get();
+    }
+
+    private static void park(long wait) {
+        long deadline = System.nanoTime() + wait;
+
+        for(long left = wait; left > 0; left = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(left);
+        }
+    }
+}
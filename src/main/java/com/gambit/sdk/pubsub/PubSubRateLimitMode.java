@@ -0,0 +1,22 @@
+package com.gambit.sdk.pubsub;
+
+/**
+ * What a {@link PubSubHandle} does with a publish that exceeds one of its publish rate limits.
+ */
+public enum PubSubRateLimitMode {
+    /**
+     * The publishing thread waits until the publish fits within the limits.
+     */
+    BLOCK,
+
+    /**
+     * The publish is not sent and its future completes with a
+     * {@link com.gambit.sdk.pubsub.exceptions.PubSubRateLimitException}.
+     */
+    REJECT,
+
+    /**
+     * The publish method returns right away and the publish is sent once it fits within the limits.
+     */
+    DELAY
+}
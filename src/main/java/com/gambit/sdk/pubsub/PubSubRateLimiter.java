@@ -0,0 +1,112 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that allows on average {@code permitsPerSecond} permits per second, and up to {@code burst} permits
+ * at once after it was idle. The bucket is refilled lazily: its level is kept as the time at which it will be full
+ * again, so taking a permit and refilling the bucket are a single compare-and-set on that time, without locks.
+ * The same limiter may be shared by any number of threads and connections.
+ */
+public class PubSubRateLimiter {
+    /**
+     * Time, in nanoseconds, it takes to refill one permit
+     */
+    private final long interval;
+
+    /**
+     * Time, in nanoseconds, it takes to refill the whole bucket
+     */
+    private final long capacity;
+
+    private final double permitsPerSecond;
+    private final int burst;
+
+    /**
+     * Time, from {@link System#nanoTime()}, at which the bucket is full again; any time in the past means full
+     */
+    private final AtomicLong fullAt;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param permitsPerSecond Average number of permits per second.
+     * @param burst            Number of permits the bucket holds when full.
+     */
+    public PubSubRateLimiter(double permitsPerSecond, int burst) {
+        if(!(permitsPerSecond > 0.0) || burst < 1) {
+            throw new IllegalArgumentException("The rate must be positive and the burst at least 1.");
+        }
+
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.interval = Math.max(1L, Math.round(1e9 / permitsPerSecond));
+        this.capacity = interval * burst;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Gets the average number of permits per second.
+     * @return double Permits per second.
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Gets the number of permits the bucket holds when full.
+     * @return int The burst size.
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Takes a permit if one is available right now.
+     * @return boolean True if a permit was taken.
+     */
+    public boolean tryAcquire() {
+        while(true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = later(current, now) + interval;
+
+            if(next - now > capacity) {
+                return false;
+            }
+
+            if(fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes a permit, even if none is available yet, and returns how long the caller must wait before using it.
+     * Permits are reserved in the order this method is called.
+     *
+     * @return long Time, in nanoseconds, until the permit may be used; 0 if it may be used right away.
+     */
+    public long reserve() {
+        while(true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = later(current, now) + interval;
+
+            if(fullAt.compareAndSet(current, next)) {
+                return Math.max(0L, next - now - capacity);
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit taken by {@link #tryAcquire()} that was not used.
+     */
+    void release() {
+        fullAt.addAndGet(-interval);
+    }
+
+    private static long later(long first, long second) {
+        return (first - second > 0) ? first : second;
+    }
+}
@@ -0,0 +1,180 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import java.util.function.Supplier;
+
+import com.gambit.sdk.pubsub.utils.PubSubUtils;
+
+/**
+ * Schedules the reconnect attempts of every {@link PubSubSocket} that shares the same limit on concurrent
+ * attempts. Attempts become ready after their backoff delay, and then wait until fewer than the limit are in
+ * progress. Ready attempts of sockets with active subscriptions go first; otherwise they run in the order they
+ * became ready. Together with jittered delays this keeps a large number of sockets that dropped at the same
+ * time from reconnecting in synchronized waves.
+ */
+class PubSubReconnectCoordinator
+{
+    /**
+     * The coordinators created so far, by their limit on concurrent attempts
+     */
+    private static final Map<Integer, PubSubReconnectCoordinator> coordinators = new ConcurrentHashMap<>();
+
+    /**
+     * A reconnect attempt that is waiting for its turn.
+     */
+    private static class Attempt implements Comparable<Attempt> {
+        final boolean priority;
+        final long sequence;
+        final Supplier<CompletableFuture<Void>> action;
+
+        Attempt(boolean priority, long sequence, Supplier<CompletableFuture<Void>> action) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Attempt other) {
+            if(priority != other.priority) {
+                return priority ? -1 : 1;
+            }
+
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * The maximum number of attempts in progress at the same time
+     */
+    private final int maxConcurrent;
+
+    /**
+     * The attempts whose delay has passed, in the order they should run
+     */
+    private final PriorityQueue<Attempt> ready;
+
+    /**
+     * The number of attempts in progress
+     */
+    private int inFlight;
+
+    /**
+     * The number of attempts that have become ready so far, used to order attempts of the same priority
+     */
+    private long sequence;
+
+    /**
+     * Creates a coordinator that runs at most {@code maxConcurrent} attempts at the same time.
+     * @param maxConcurrent The maximum number of attempts in progress at the same time
+     */
+    PubSubReconnectCoordinator(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+        this.ready = new PriorityQueue<>();
+    }
+
+    /**
+     * Gets the coordinator shared by all sockets with the given limit on concurrent attempts.
+     * @param maxConcurrent The maximum number of attempts in progress at the same time
+     * @return PubSubReconnectCoordinator The shared coordinator
+     */
+    static PubSubReconnectCoordinator forLimit(int maxConcurrent) {
+        return coordinators.computeIfAbsent(maxConcurrent, PubSubReconnectCoordinator::new);
+    }
+
+    /**
+     * Computes the next backoff delay using decorrelated jitter: a random delay between {@code baseDelay} and
+     * three times the previous delay, capped at {@code maxDelay}.
+     * @param baseDelay The smallest delay, in milliseconds
+     * @param maxDelay The largest delay, in milliseconds
+     * @param previousDelay The previous delay, in milliseconds
+     * @return long The next delay, in milliseconds
+     */
+    static long nextDelay(long baseDelay, long maxDelay, long previousDelay) {
+        long upper = Math.min(maxDelay, Math.max(baseDelay, previousDelay) * 3);
+
+        if(upper <= baseDelay) {
+            return Math.min(baseDelay, maxDelay);
+        }
+
+        return ThreadLocalRandom.current().nextLong(baseDelay, upper + 1);
+    }
+
+    /**
+     * Runs the given attempt once {@code delay} milliseconds have passed and a slot is free. The slot is held
+     * until the future returned by the attempt completes.
+     * @param priority True if the attempt should go ahead of attempts without priority
+     * @param delay Time, in milliseconds, before the attempt becomes ready
+     * @param action Starts the attempt and returns a future that completes when the attempt is over
+     */
+    void submit(boolean priority, long delay, Supplier<CompletableFuture<Void>> action) {
+        PubSubUtils.getScheduler().schedule(() -> {
+            synchronized(this) {
+                ready.add(new Attempt(priority, sequence++, action));
+            }
+
+            dispatch();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the number of attempts in progress.
+     * @return int The number of attempts in progress
+     */
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets the number of ready attempts waiting for a free slot.
+     * @return int The number of waiting attempts
+     */
+    synchronized int getWaiting() {
+        return ready.size();
+    }
+
+    /**
+     * Starts ready attempts while there are free slots.
+     */
+    private void dispatch() {
+        while(true) {
+            Attempt next;
+
+            synchronized(this) {
+                if(inFlight >= maxConcurrent || ready.isEmpty()) {
+                    return;
+                }
+
+                next = ready.poll();
+                ++inFlight;
+            }
+
+            CompletableFuture<Void> outcome;
+
+            try {
+                outcome = next.action.get();
+            }
+            catch(Throwable e) {
+                outcome = null;
+            }
+
+            if(outcome == null) {
+                outcome = CompletableFuture.completedFuture(null);
+            }
+
+            outcome.whenCompleteAsync((voidReturn, error) -> {
+                synchronized(this) {
+                    --inFlight;
+                }
+
+                dispatch();
+            }, PubSubUtils.getScheduler());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Snapshot of the state of a Pub/Sub connection that is needed to resume it in a new process: the session UUID,
+ * the subscribed channels, and the publishes that were sent with acknowledgement but not yet acknowledged.
+ */
+public class PubSubSessionState {
+
+    /**
+     * A publish that was sent with acknowledgement but not yet acknowledged by the server.
+     */
+    public static class PendingPublish {
+        private final String channel;
+        private final String message;
+
+        /**
+         * Creates a pending publish of {@code message} to {@code channel}.
+         *
+         * @param channel Name of the channel the message was published on.
+         * @param message Content of the message.
+         */
+        public PendingPublish(String channel, String message) {
+            this.channel = channel;
+            this.message = message;
+        }
+
+        /**
+         * Gets the name of the channel the message was published on.
+         * @return String Name of the channel.
+         */
+        public String getChannel() {
+            return channel;
+        }
+
+        /**
+         * Gets the content of the message.
+         * @return String Content of the message.
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final UUID sessionUuid;
+    private final List<String> channels;
+    private final List<PendingPublish> pendingPublishes;
+
+    /**
+     * Creates a snapshot with the given state.
+     *
+     * @param sessionUuid      UUID of the session, may be null if it is not known.
+     * @param channels         Channels subscribed in the session.
+     * @param pendingPublishes Publishes that were not yet acknowledged.
+     */
+    public PubSubSessionState(UUID sessionUuid, Collection<String> channels, Collection<PendingPublish> pendingPublishes) {
+        this.sessionUuid = sessionUuid;
+        this.channels = Collections.unmodifiableList(new ArrayList<>(channels));
+        this.pendingPublishes = Collections.unmodifiableList(new ArrayList<>(pendingPublishes));
+    }
+
+    /**
+     * Gets the UUID of the session.
+     * @return UUID UUID of the session, null if it was not known.
+     */
+    public UUID getSessionUuid() {
+        return sessionUuid;
+    }
+
+    /**
+     * Gets the channels subscribed in the session.
+     * @return {@code List<String>} Names of the subscribed channels.
+     */
+    public List<String> getChannels() {
+        return channels;
+    }
+
+    /**
+     * Gets the publishes that were sent with acknowledgement but not yet acknowledged.
+     * @return {@code List<PendingPublish>} The unacknowledged publishes, oldest first.
+     */
+    public List<PendingPublish> getPendingPublishes() {
+        return pendingPublishes;
+    }
+
+    /**
+     * Serializes this snapshot as a JSON object.
+     * @return JSONObject The JSON representation of this snapshot.
+     */
+    public JSONObject toJSON() {
+        JSONArray pending = new JSONArray();
+
+        for(PendingPublish publish : pendingPublishes) {
+            pending.put(new JSONObject()
+                .put("chan", publish.getChannel())
+                .put("msg", publish.getMessage()));
+        }
+
+        JSONObject json = new JSONObject()
+            .put("channels", new JSONArray(channels.toArray()))
+            .put("pending", pending);
+
+        if(sessionUuid != null) {
+            json.put("uuid", sessionUuid.toString());
+        }
+
+        return json;
+    }
+
+    /**
+     * Reads a snapshot from its JSON representation.
+     *
+     * @param json The JSON representation created by {@link #toJSON()}.
+     * @return PubSubSessionState The snapshot.
+     * @throws JSONException If the JSON is not a valid snapshot.
+     */
+    public static PubSubSessionState fromJSON(JSONObject json) throws JSONException {
+        UUID uuid = json.has("uuid") ? UUID.fromString(json.getString("uuid")) : null;
+        JSONArray channelList = json.getJSONArray("channels");
+        JSONArray pendingList = json.getJSONArray("pending");
+
+        List<String> channels = new ArrayList<>(channelList.length());
+        List<PendingPublish> pending = new ArrayList<>(pendingList.length());
+
+        for(int i = 0; i < channelList.length(); ++i) {
+            channels.add(channelList.getString(i));
+        }
+
+        for(int i = 0; i < pendingList.length(); ++i) {
+            JSONObject publish = pendingList.getJSONObject(i);
+            pending.add(new PendingPublish(publish.getString("chan"), publish.getString("msg")));
+        }
+
+        return new PubSubSessionState(uuid, channels, pending);
+    }
+}
@@ -0,0 +1,25 @@
+package com.gambit.sdk.pubsub;
+
+import java.io.IOException;
+
+/**
+ * Persists the {@link PubSubSessionState} of a connection, so that a restarted process can resume the session
+ * instead of subscribing to every channel again.
+ */
+public interface PubSubSessionStore {
+    /**
+     * Loads the most recently saved state.
+     *
+     * @return PubSubSessionState The saved state, or null if nothing was saved yet.
+     * @throws IOException If the saved state could not be read.
+     */
+    PubSubSessionState load() throws IOException;
+
+    /**
+     * Saves the given state, replacing any state saved before.
+     *
+     * @param state The state to save.
+     * @throws IOException If the state could not be written.
+     */
+    void save(PubSubSessionState state) throws IOException;
+}
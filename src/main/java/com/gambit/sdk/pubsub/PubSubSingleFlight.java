@@ -0,0 +1,64 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Merges concurrent identical requests into one: while a request is in flight, every other caller waits for
+ * the same response instead of sending its own request.
+ *
+ * @param <T> Type of the response
+ */
+class PubSubSingleFlight<T>
+{
+    /**
+     * The request in flight, null if there is none
+     */
+    private final AtomicReference<CompletableFuture<T>> inFlight = new AtomicReference<>();
+
+    /**
+     * Sends the request made by {@code request}, or joins the request that is already in flight.
+     * @param request Sends the request and returns a future of its response
+     * @return {@code CompletableFuture<T>} Completes with the response of the request
+     */
+    CompletableFuture<T> run(Supplier<CompletableFuture<T>> request) {
+        while(true) {
+            CompletableFuture<T> current = inFlight.get();
+
+            if(current != null) {
+                // Each caller gets its own future, so one caller completing it cannot affect the others
+                return current.thenApply(Function.identity());
+            }
+
+            CompletableFuture<T> shared = new CompletableFuture<>();
+
+            if(inFlight.compareAndSet(null, shared)) {
+                CompletableFuture<T> response;
+
+                try {
+                    response = request.get();
+                }
+                catch(Throwable e) {
+                    response = new CompletableFuture<>();
+                    response.completeExceptionally(e);
+                }
+
+                response.whenComplete((result, error) -> {
+                    inFlight.compareAndSet(shared, null);
+
+                    if(error != null) {
+                        shared.completeExceptionally(error);
+                    }
+                    else {
+                        shared.complete(result);
+                    }
+                });
+
+                return shared.thenApply(Function.identity());
+            }
+        }
+    }
+}
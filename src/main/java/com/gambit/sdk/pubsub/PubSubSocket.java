@@ -2,18 +2,23 @@ package com.gambit.sdk.pubsub;
 
 import javax.websocket.*;
 
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicLong;
 
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
 import java.io.IOException;
@@ -40,7 +45,8 @@ import com.gambit.sdk.pubsub.utils.PubSubUtils;
 /**
  * Wraps the logic of Java websockets by extending {@link javax.websocket.Endpoint} and implementing 
  * {@link javax.websocket.MessageHandler.Whole}. It also tracks and routes both incoming and outgoing 
- * message to and from Cogswell Pub/Sub.
+ * message to and from Cogswell Pub/Sub. When streaming messages are enabled in the {@link PubSubOptions},
+ * messages are instead received as {@link javax.websocket.MessageHandler.Partial} fragments.
  */
 public class PubSubSocket extends Endpoint implements MessageHandler.Whole<String>
 {
@@ -74,21 +80,14 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
     }
 
     /**
-     * This is the shortest default delay that the socket will wait between reconnects
-     * Current it is set to 5 seconds = 5 s * 1000 ms/s = 5000 ms.
-     */
-    private static final long DEFAULT_RECONNECT_DELAY = 5000L; // 5 seconds
-
-    /**
-     * This is the longest the socket will wait between reconnects before giving up.
-     * Currently it is set to 2 minutes = 2 min * 60 s/min * 1000 ms/s = 120000 ms.
+     * Size of the payload of heartbeat pings, which carries the time the ping was sent
      */
-    private static final long MAX_RECONNECT_DELAY = 120000L; // 2 minutes
+    private static final int PING_SIZE = Long.BYTES;
 
     /**
-     * 
+     * Time, in milliseconds, that changes to the session state are collected before they are saved
      */
-    private static final ByteBuffer pingData = ByteBuffer.allocate(0);
+    private static final long SESSION_SAVE_DELAY = 50L;
 
     /**
      * The project keys that were used to create this PubSubSocket
@@ -108,42 +107,42 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
     /**
      * The {@link Session} that represents this PubSubSocket as a websocket Endpoint connection.
      */
-    private Session websocketSession;
+    private volatile Session websocketSession;
 
     /**
-     * The ping interval for which after every interval the socket should ping the server 
+     * The endpoint that {@code websocketSession} is connected to
      */
-    private AtomicLong pingInterval;
+    private volatile PubSubEndpoint activeEndpoint;
 
     /**
-     * True when the socket should ping the server every interval given in pingInterval
+     * The opened {@link Session} whose close has not been handled yet, so that each session is closed only once
      */
-    private AtomicBoolean doPings;
+    private AtomicReference<Session> openSession;
 
     /**
-     * Tracks whether this socket is actually connected to the Pub/Sub server
+     * The ping interval for which after every interval the socket should ping the server 
      */
-    private AtomicBoolean isConnected;
+    private AtomicLong pingInterval;
 
     /**
-     * Holds whether to actually reconnect (based on length of delay, and whether close was chosen)
+     * The current {@link PubSubSocketState} of this socket, only changed through compare-and-set transitions
      */
-    private AtomicBoolean autoReconnect;
+    private AtomicReference<PubSubSocketState> state;
 
     /**
-     * Holds the next delay to wait when an attempted reconnect fails
+     * The one heartbeat of this socket, present only while the socket is OPEN
      */
-    private AtomicLong autoReconnectDelay;
+    private AtomicReference<ScheduledFuture<?>> heartbeat;
 
     /**
-     * Holds the current session uuid from the Pub/Sub server
+     * Holds the delay to wait before the first attempt of the next reconnect loop
      */
-    private UUID sessionUuid;
+    private volatile long autoReconnectDelay;
 
     /**
-     * Holds whether the most recent session UUID meant that a new session was generated
+     * Holds the current session uuid from the Pub/Sub server
      */
-    private AtomicBoolean isNewSession;
+    private UUID sessionUuid;
 
     /**
      * Maps each outstanding request to the server by their sequence number 
@@ -201,11 +200,56 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
      */
     private PubSubCloseHandler closeHandler;
 
+    /**
+     * The channels subscribed to, as last reported by the server, null if not known since the connection opened
+     */
+    private volatile List<String> subscriptions;
+
+    /**
+     * The channels subscribed to, as last reported by the server on any connection, null if never reported
+     */
+    private volatile List<String> lastReportedSubscriptions;
+
+    /**
+     * Sequence number of the response {@link #subscriptions} was taken from, Long.MIN_VALUE if none
+     */
+    private long subscriptionsSequence = Long.MIN_VALUE;
+
+    /**
+     * The session UUID last reported by the server, null if not known since the connection opened
+     */
+    private volatile UUID reportedSessionUuid;
+
+    /**
+     * Merges concurrent requests for the session UUID
+     */
+    private PubSubSingleFlight<UUID> sessionUuidRequests;
+
+    /**
+     * Merges concurrent requests for the list of subscriptions
+     */
+    private PubSubSingleFlight<List<String>> subscriptionsRequests;
+
+    /**
+     * The session state loaded from the session store of the options when this socket was created, null if none
+     */
+    private PubSubSessionState restoredState;
+
+    /**
+     * True while a save of the session state is scheduled
+     */
+    private AtomicBoolean sessionSavePending;
+
     /**
      * Stores any exceptions collected when closing this socket
      */
     private IOException closeException;
 
+    /**
+     * Assembles message fragments when receiving streaming messages
+     */
+    private PubSubFrameDecoder frameDecoder;
+
     /**
      * Creates a minimal PubSubSocket, used for testing purposes
      */
@@ -216,13 +260,16 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
 
         this.msgHandlers = Collections.synchronizedMap(new Hashtable<>());
 
-        this.autoReconnectDelay = new AtomicLong(DEFAULT_RECONNECT_DELAY);
-        this.autoReconnect = new AtomicBoolean(false);
-        this.isConnected = new AtomicBoolean(false);
-
-        this.doPings = new AtomicBoolean(false);
+        this.autoReconnectDelay = PubSubOptions.DEFAULT_OPTIONS.getReconnectBaseDelay();
+        this.state = new AtomicReference<>(PubSubSocketState.CLOSED);
+        this.heartbeat = new AtomicReference<>();
+        this.openSession = new AtomicReference<>();
         this.pingInterval = new AtomicLong(15);
 
+        this.sessionUuidRequests = new PubSubSingleFlight<>();
+        this.subscriptionsRequests = new PubSubSingleFlight<>();
+        this.sessionSavePending = new AtomicBoolean(false);
+
         this.options = PubSubOptions.DEFAULT_OPTIONS;
     }
 
@@ -250,35 +297,64 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
         this.options = options;
         this.sessionUuid = options.getSessionUuid();
 
+        if(options.getSessionStore() != null) {
+            this.restoredState = options.getSessionStore().load();
+
+            if(sessionUuid == null && restoredState != null) {
+                this.sessionUuid = restoredState.getSessionUuid();
+            }
+        }
+
         this.publishErrorHandlers = CacheBuilder.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS).build();
         this.publishRequests = CacheBuilder.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS).build();
         this.outstanding = CacheBuilder.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS).build();
 
         this.msgHandlers = Collections.synchronizedMap(new Hashtable<>());
 
-        this.autoReconnectDelay = new AtomicLong(options.getConnectTimeout());
-        this.autoReconnect = new AtomicBoolean(options.getAutoReconnect());
-        this.isConnected = new AtomicBoolean(false);
-
-        this.doPings = new AtomicBoolean(false);
+        this.autoReconnectDelay = options.getReconnectBaseDelay();
+        this.state = new AtomicReference<>(PubSubSocketState.CLOSED);
+        this.heartbeat = new AtomicReference<>();
+        this.openSession = new AtomicReference<>();
         this.pingInterval = new AtomicLong(15);
+
+        this.sessionUuidRequests = new PubSubSingleFlight<>();
+        this.subscriptionsRequests = new PubSubSingleFlight<>();
+        this.sessionSavePending = new AtomicBoolean(false);
     }
 
     /**
-     * Closes the connection represented by this PubSubSocket
+     * Closes the connection represented by this PubSubSocket. The socket moves to DRAINING until the connection
+     * has closed, or straight to CLOSED if it is not connected, and will not reconnect afterwards.
      */
     public void close()
     {
-        autoReconnect.set(false);
+        PubSubSocketState current = state.get();
 
-        try {
-            websocketSession.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "Initiated a Standard Close"));
-        }
-        catch(IOException e) {
-            closeException = e;
+        while(current != PubSubSocketState.CLOSED && current != PubSubSocketState.DRAINING) {
+            PubSubSocketState next = (current == PubSubSocketState.OPEN) ? PubSubSocketState.DRAINING : PubSubSocketState.CLOSED;
+
+            if(state.compareAndSet(current, next)) {
+                stopHeartbeat();
+
+                if(next == PubSubSocketState.DRAINING) {
+                    closeSession(CloseReason.CloseCodes.NORMAL_CLOSURE, "Initiated a Standard Close");
+                }
+
+                return;
+            }
+
+            current = state.get();
         }
     }
 
+    /**
+     * Gets the current state of the connection represented by this PubSubSocket.
+     * @return PubSubSocketState The current state
+     */
+    public PubSubSocketState getState() {
+        return state.get();
+    }
+
     /**
      * Sends the given request, represented by the {@link org.json.JSONObject}, to the server and maps the
      * eventual result to be stored in a {@link java.util.concurrent.CompletableFuture} with the sequence
@@ -347,6 +423,8 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
     protected CompletableFuture<PubSubResponse> sendPublishWithAck(long sequence, JSONObject json, SendHandler handler) {
         CompletableFuture<PubSubResponse> result = new CompletableFuture<>();
         outstanding.put(sequence, result);
+        publishRequests.put(sequence, json);
+        saveSessionState();
         
         server.sendText(json.toString(), (sendResult) -> {
             if(!sendResult.isOK()) {
@@ -354,6 +432,8 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
                     errorHandler.onError(sendResult.getException());
                 }
 
+                completePublish(sequence);
+
                 handler.onResult(sendResult);
             }
             else {
@@ -364,14 +444,169 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
         return result;
     }
 
+    /**
+     * Forgets the publish with the given sequence number, if it was waiting for acknowledgement.
+     * @param sequence Sequence number of the publish
+     */
+    private void completePublish(long sequence) {
+        if(publishRequests.getIfPresent(sequence) != null) {
+            publishRequests.invalidate(sequence);
+            saveSessionState();
+        }
+    }
+
+    /**
+     * Records the channels subscribed to, as reported by the server in a response, and saves the session state.
+     * Responses may be handled out of order, so the list is only taken from a response newer than the one it was
+     * last taken from.
+     * @param sequence Sequence number of the response
+     * @param channels The channels currently subscribed to
+     */
+    void updateSubscriptions(long sequence, List<String> channels) {
+        synchronized(this) {
+            if(subscriptions != null && sequence <= subscriptionsSequence) {
+                return;
+            }
+
+            subscriptionsSequence = sequence;
+            subscriptions = Collections.unmodifiableList(new ArrayList<>(channels));
+            lastReportedSubscriptions = subscriptions;
+        }
+
+        saveSessionState();
+    }
+
+    /**
+     * Gets the options this socket was created with.
+     * @return PubSubOptions The options of this socket
+     */
+    PubSubOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Gets the channels subscribed to, as last reported by the server.
+     * @return {@code List<String>} The channels currently subscribed to, null if not known
+     */
+    List<String> getSubscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Records the session UUID reported by the server in a response.
+     * @param uuid The UUID of the current session
+     */
+    void updateSessionUuid(UUID uuid) {
+        reportedSessionUuid = uuid;
+    }
+
+    /**
+     * Gets the session UUID last reported by the server.
+     * @return UUID The UUID of the current session, null if not known
+     */
+    UUID getReportedSessionUuid() {
+        return reportedSessionUuid;
+    }
+
+    /**
+     * Gets the merger for concurrent requests for the session UUID.
+     * @return {@code PubSubSingleFlight<UUID>} The merger of session UUID requests
+     */
+    PubSubSingleFlight<UUID> getSessionUuidRequests() {
+        return sessionUuidRequests;
+    }
+
+    /**
+     * Gets the merger for concurrent requests for the list of subscriptions.
+     * @return {@code PubSubSingleFlight<List<String>>} The merger of subscription list requests
+     */
+    PubSubSingleFlight<List<String>> getSubscriptionsRequests() {
+        return subscriptionsRequests;
+    }
+
+    /**
+     * Gets the session state that was loaded from the session store when this socket was created.
+     * @return PubSubSessionState The restored state, null if there was none
+     */
+    PubSubSessionState getRestoredState() {
+        return restoredState;
+    }
+
+    /**
+     * Takes a snapshot of the current session state of this socket.
+     * @return PubSubSessionState The current session UUID, subscriptions and unacknowledged publishes
+     */
+    PubSubSessionState snapshotSessionState() {
+        List<PubSubSessionState.PendingPublish> pending = new ArrayList<>();
+
+        new TreeMap<>(publishRequests.asMap()).values().forEach((json) -> {
+            pending.add(new PubSubSessionState.PendingPublish(json.getString("chan"), json.getString("msg")));
+        });
+
+        // Until the server reports the channels of this connection, keep those known before, so that a save
+        // made before the session is restored doesn't forget them
+        List<String> channels = subscriptions;
+
+        if(channels == null) {
+            channels = lastReportedSubscriptions;
+        }
+
+        if(channels == null) {
+            PubSubSessionState restored = getRestoredState();
+            channels = (restored == null) ? Collections.<String>emptyList() : restored.getChannels();
+        }
+
+        return new PubSubSessionState(sessionUuid, channels, pending);
+    }
+
+    /**
+     * Saves the session state to the session store of the options, if there is one. Saves are made shortly after
+     * the first change, so a burst of changes is written only once.
+     */
+    private void saveSessionState() {
+        PubSubSessionStore store = getOptions().getSessionStore();
+
+        if(store == null || !sessionSavePending.compareAndSet(false, true)) {
+            return;
+        }
+
+        PubSubUtils.getScheduler().schedule(() -> {
+            sessionSavePending.set(false);
+
+            try {
+                store.save(snapshotSessionState());
+            }
+            catch(Exception e) {
+                if(errorHandler != null) {
+                    errorHandler.onError(e);
+                }
+            }
+        }, SESSION_SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * This method (used for testing purposes only) drops  underlying connection and reconnects with delay of msDelay milliseconds. 
      * @param dropOptions PubSubDropConnectionOptions provided to fine-tune some of the behavior when dropping the connection
      */
     protected void dropConnection(PubSubDropConnectionOptions dropOptions) {
+        autoReconnectDelay = dropOptions.getAutoReconnectDelay();
+        closeSession(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Dropped Connection");
+    }
+
+    /**
+     * Closes the current websocket session, if there is one, with the given code and reason.
+     * @param code The close code to send to the server
+     * @param reason The close reason to send to the server
+     */
+    private void closeSession(CloseReason.CloseCode code, String reason) {
+        Session session = websocketSession;
+
+        if(session == null) {
+            return;
+        }
+
         try {
-            autoReconnectDelay.set(dropOptions.getAutoReconnectDelay());
-            websocketSession.close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Dropped Connection"));
+            session.close(new CloseReason(code, reason));
         }
         catch(IOException e) {
             closeException = e;
@@ -379,25 +614,109 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
     }
 
     /**
-     * Initiates the connection the the Pub/Sub server with the configuration for this PubSubSocket
-     * @throws DeploymentException
-     * @throws IOException
+     * Initiates the first connection to the Pub/Sub server, moving this socket from CLOSED to CONNECTING.
+     * If the attempt fails the socket returns to CLOSED.
+     * @return CompletableFuture<Void> future that completes successfully when connected, with an error otherwise
+     */
+    CompletableFuture<Void> connect() {
+        if(!state.compareAndSet(PubSubSocketState.CLOSED, PubSubSocketState.CONNECTING)) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new PubSubSocketConnectionException("The socket is already " + state.get() + "."));
+            return failed;
+        }
+
+        return openConnection()
+            .whenComplete((voidReturn, error) -> {
+                if(error != null) {
+                    state.compareAndSet(PubSubSocketState.CONNECTING, PubSubSocketState.CLOSED);
+                }
+            });
+    }
+
+    /**
+     * Establishes the connection the the Pub/Sub server with the configuration for this PubSubSocket.
+     * The urls of the options are tried in the order given by {@link PubSubEndpoint#rank(List)}. An attempt on the
+     * next url starts when the previous one fails, or alongside it once the hedge delay has passed; the first
+     * connection to open wins and the others are closed as they open.
+     * @return CompletableFuture<Void> future that completes successfully when connected, with an error otherwise
+     */
+    private CompletableFuture<Void> openConnection() {
+        List<PubSubEndpoint> candidates = PubSubEndpoint.rank(options.getUrls());
+        CompletableFuture<Void> outcome = new CompletableFuture<>();
+
+        hedge(candidates, outcome, new AtomicInteger(), new AtomicInteger());
+
+        return outcome;
+    }
+
+    /**
+     * Starts the connection attempt on the next of the given endpoints, unless the outcome is already decided.
+     * @param candidates The endpoints to try, in order
+     * @param outcome Completed by the first attempt that connects, or with the last error if all attempts fail
+     * @param started The number of attempts started so far
+     * @param failed The number of attempts that failed so far
      */
-    private CompletableFuture<Void> connect() {
+    private void hedge(List<PubSubEndpoint> candidates, CompletableFuture<Void> outcome, AtomicInteger started, AtomicInteger failed) {
+        if(outcome.isDone()) {
+            return;
+        }
+
+        int index = started.getAndIncrement();
+
+        if(index >= candidates.size()) {
+            return;
+        }
+
+        if(index + 1 < candidates.size()) {
+            ScheduledFuture<?> timer = PubSubUtils.getScheduler().schedule(
+                () -> hedge(candidates, outcome, started, failed), options.getHedgeDelay(), TimeUnit.MILLISECONDS);
+
+            outcome.whenComplete((voidReturn, error) -> timer.cancel(false));
+        }
+
+        PubSubEndpoint endpoint = candidates.get(index);
+
+        connectTo(endpoint).whenComplete((voidReturn, error) -> {
+            if(error == null) {
+                outcome.complete(null);
+            }
+            else if(failed.incrementAndGet() == candidates.size()) {
+                outcome.completeExceptionally(error);
+            }
+            else {
+                hedge(candidates, outcome, started, failed);
+            }
+        });
+    }
+
+    /**
+     * Connects to the given endpoint, recording the outcome in the health of the endpoint.
+     * @param endpoint The endpoint to connect to
+     * @return CompletableFuture<Void> future that completes successfully when connected, with an error otherwise
+     */
+    private CompletableFuture<Void> connectTo(PubSubEndpoint endpoint) {
         // Code Information: The connectToServer will block until it connects or throws an exception. Within Tyrus
         //                   there is an asyncConnectToServer method which returns a java.util.Future, but Futures
         //                   in java are blocking once get() is called on them.
 
         CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
             PubSubSocketConfigurator configurator = new PubSubSocketConfigurator(projectKeys, sessionUuid);
-            ClientEndpointConfig config = ClientEndpointConfig.Builder.create().configurator(configurator).build();
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+            ClientEndpointConfig.Builder configBuilder = ClientEndpointConfig.Builder.create().configurator(configurator);
+
+            if(options.getCompression() != null) {
+                configBuilder.extensions(Collections.singletonList(options.getCompression()));
+            }
+
+            ClientEndpointConfig config = configBuilder.build();
+            WebSocketContainer container = options.getContainer().getContainer();
+            Session session;
 
             if(container != null) {
                 try {
-                    websocketSession = container.connectToServer(this, config, URI.create(options.getUrl()));
+                    session = connectToServer(container, config, URI.create(endpoint.getUrl()));
                 }
                 catch(Exception e) {
+                    endpoint.recordFailure();
                     throw new CompletionException(e);
                 }
             }
@@ -406,21 +725,43 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
                 throw new CompletionException(e);
             }
 
-            if(websocketSession == null) {
+            if(session == null) {
+                endpoint.recordFailure();
                 PubSubException e = new PubSubSocketConnectionException("Could not instantiate connection to server.");
                 throw new CompletionException(e);
             }
-        });
+
+            endpoint.recordSuccess();
+
+            if(session == websocketSession) {
+                activeEndpoint = endpoint;
+            }
+        }, PubSubUtils.getConnector());
 
         return future;
     }
 
+    /**
+     * Performs the blocking websocket handshake with the Pub/Sub server.
+     * @param container The websocket container to connect with
+     * @param config The endpoint configuration to connect with
+     * @param uri The location of the Pub/Sub server
+     * @return Session The session of the established connection
+     * @throws DeploymentException
+     * @throws IOException
+     */
+    protected Session connectToServer(WebSocketContainer container, ClientEndpointConfig config, URI uri)
+        throws DeploymentException, IOException
+    {
+        return container.connectToServer(this, config, uri);
+    }
+
     /**
      * Attempts to reconnects a socket that has been dropped for any reason other than intentionally and cleanly disconnecting
      * @return CompletableFuture<Void> future that completes successfully when connected, with an error otherwise
      */
     private CompletableFuture<Void> reconnect() {
-        return connect()
+        return openConnection()
             .whenComplete((pubsubsocket, error) -> {
                 if(reconnectHandler != null) {
                     reconnectHandler.onReconnect();
@@ -429,47 +770,75 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
     }
 
     /**
-     * Continuously attempts to reconnect to a socket after given time in milliseconds if the socket was not closed cleanly.
-     * This method uses a backoff scheme whereby the time between the reconnect attempts increases up to MAX_RECONNECT_DELAY. 
+     * Attempts to reconnect to a socket after given time in milliseconds if the socket was not closed cleanly.
+     * The attempts of all sockets are run through a shared {@link PubSubReconnectCoordinator}, which limits how many
+     * run at the same time and lets sockets with subscriptions go first. After a failed attempt the next delay is
+     * chosen with decorrelated jitter between the reconnect base and max delays of the {@link PubSubOptions}.
+     * Only the thread that moved the socket to RECONNECTING starts this loop, and the loop ends as soon as the socket
+     * leaves RECONNECTING, so there is never more than one loop per socket.
      * @param msUntilNextRetry initial amount of time to wait before first reconnect attempt
      */
     private void reconnectRetry(final long msUntilNextRetry) {
-        PubSubUtils.setTimeout(() -> {
-            reconnect()
-                .whenComplete((socket, error) -> { 
-                    /* We Reconnected, We're done */ 
-                })
+        PubSubReconnectCoordinator coordinator = PubSubReconnectCoordinator.forLimit(options.getMaxConcurrentReconnects());
+
+        coordinator.submit(!msgHandlers.isEmpty(), msUntilNextRetry, () -> {
+            if(state.get() != PubSubSocketState.RECONNECTING) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            return reconnect()
                 .exceptionally((error) -> {
-                    long minimumDelay = Math.max(DEFAULT_RECONNECT_DELAY, msUntilNextRetry);
-                    long nextDelay = Math.min(minimumDelay * 2, MAX_RECONNECT_DELAY);
+                    if(state.get() == PubSubSocketState.RECONNECTING) {
+                        reconnectRetry(PubSubReconnectCoordinator.nextDelay(
+                            options.getReconnectBaseDelay(), options.getReconnectMaxDelay(), msUntilNextRetry));
+                    }
 
-                    reconnectRetry(nextDelay);
                     return null;
                 });
+        });
+    }
 
-        }, msUntilNextRetry);
+    /**
+     * Starts pinging the remote server every {@code pingInterval} milliseconds, unless a heartbeat is already running.
+     */
+    private void startHeartbeat() {
+        long interval = pingInterval.get();
+        ScheduledFuture<?> next = PubSubUtils.getScheduler().scheduleWithFixedDelay(this::sendHeartbeat, 0L, interval, TimeUnit.MILLISECONDS);
+
+        if(!heartbeat.compareAndSet(null, next)) {
+            next.cancel(false);
+        }
     }
 
     /**
-     * Continuously pings the remote server with interval {@code msBetweenPings} between pings.
-     * @param msBetweenPings Interval to wait between sending two pings to remote server 
+     * Stops the heartbeat of this socket, if it is running.
      */
-    private void pingRemoteRepeat(final long msBetweenPings) {
-        new Thread(() -> {
-            while(doPings.get()) {
-                try {
-                    if(server != null && isConnected.get()) {
-                        server.sendPing(pingData);
-                    }
-                    Thread.sleep(msBetweenPings);
-                }
-                catch(Exception e) {
-                    if(errorHandler != null) {
-                        errorHandler.onError(e);
-                    }
-                }
+    private void stopHeartbeat() {
+        ScheduledFuture<?> current = heartbeat.getAndSet(null);
+
+        if(current != null) {
+            current.cancel(false);
+        }
+    }
+
+    /**
+     * Sends a single ping to the remote server while the socket is OPEN. The ping carries the time it was sent,
+     * so the round-trip time of the endpoint can be measured when the pong comes back.
+     */
+    private void sendHeartbeat() {
+        RemoteEndpoint.Async remote = server;
+
+        try {
+            if(remote != null && state.get() == PubSubSocketState.OPEN) {
+                ByteBuffer ping = ByteBuffer.allocate(PING_SIZE).putLong(0, System.nanoTime());
+                remote.sendPing(ping);
             }
-        }).start();
+        }
+        catch(Exception e) {
+            if(errorHandler != null) {
+                errorHandler.onError(e);
+            }
+        }
     }
 
     ///////////////////// EXTENDING ENDPOINT AND IMPLEMENTING MESSAGE_HANDLER ///////////////////// 
@@ -481,21 +850,59 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
      */
     @Override
     public void onOpen(Session session, EndpointConfig config) {
-        session.addMessageHandler(this);
-        server = session.getAsyncRemote();
+        if(!state.compareAndSet(PubSubSocketState.CONNECTING, PubSubSocketState.OPEN)
+            && !state.compareAndSet(PubSubSocketState.RECONNECTING, PubSubSocketState.OPEN))
+        {
+            // Closed while the connection was being established, or another endpoint won the race
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "Initiated a Standard Close"));
+            }
+            catch(IOException e) {
+                closeException = e;
+            }
+
+            return;
+        }
+
+        websocketSession = session;
+        activeEndpoint = null;
+        openSession.set(session);
+
+        if(state.get() != PubSubSocketState.OPEN) {
+            // Closed while the session was being set up
+            closeSession(CloseReason.CloseCodes.NORMAL_CLOSURE, "Initiated a Standard Close");
+            return;
+        }
 
-        isConnected.set(true);
+        if(options.getStreamingMessages()) {
+            frameDecoder = new PubSubFrameDecoder();
+            session.addMessageHandler(String.class, (MessageHandler.Partial<String>) this::onMessagePart);
+        }
+        else {
+            session.addMessageHandler(this);
+        }
 
-        doPings.set(true);
-        pingRemoteRepeat(pingInterval.get());
+        session.addMessageHandler(PongMessage.class, (MessageHandler.Whole<PongMessage>) this::onPong);
+
+        server = session.getAsyncRemote();
+
+        startHeartbeat();
         
-        autoReconnectDelay.set(DEFAULT_RECONNECT_DELAY);
+        autoReconnectDelay = options.getReconnectBaseDelay();
+
+        // The session may have changed, so the local view of it must be fetched again
+        reportedSessionUuid = null;
+
+        synchronized(this) {
+            subscriptions = null;
+        }
 
-        if(autoReconnect.get()) {
-            (new PubSubHandle(this, -1L)).getSessionUuid()
+        if(options.getAutoReconnect()) {
+            (new PubSubHandle(this, -1L)).getSessionUuid(true)
                 .thenAccept((uuid) -> {
                     if(sessionUuid == null || !sessionUuid.toString().equals(uuid.toString())) {
                         sessionUuid = uuid;
+                        saveSessionState();
 
                         if(newSessionHandler != null) {
                             newSessionHandler.onNewSession(sessionUuid);
@@ -503,7 +910,9 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
                     }
                 })
                 .exceptionally((error) -> {
-                    isConnected.set(false);
+                    if(errorHandler != null) {
+                        errorHandler.onError(error);
+                    }
                     return null;
                 });
         }
@@ -516,16 +925,48 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
      */
     @Override
     public void onClose(Session session, CloseReason closeReason) {
+        if(!openSession.compareAndSet(session, null)) {
+            return;
+        }
+
+        stopHeartbeat();
         server = null;
-        doPings.set(false);
-        isConnected.set(false);
+
+        boolean reconnect = options.getAutoReconnect()
+            && state.compareAndSet(PubSubSocketState.OPEN, PubSubSocketState.RECONNECTING);
+
+        if(!reconnect && !state.compareAndSet(PubSubSocketState.DRAINING, PubSubSocketState.CLOSED)) {
+            state.compareAndSet(PubSubSocketState.OPEN, PubSubSocketState.CLOSED);
+        }
 
         if(closeHandler != null) {
             closeHandler.onClose(closeException);
         }
         
-        if(options.getAutoReconnect() == true) {
-            reconnectRetry(autoReconnectDelay.get());
+        if(reconnect) {
+            PubSubEndpoint endpoint = activeEndpoint;
+
+            if(endpoint != null) {
+                // Prefer the other endpoints while this one recovers
+                endpoint.recordFailure();
+            }
+
+            // Spread the first attempts of sockets that dropped together over the whole first delay
+            long firstDelay = autoReconnectDelay;
+            reconnectRetry((firstDelay > 0) ? ThreadLocalRandom.current().nextLong(firstDelay + 1) : 0L);
+        }
+    }
+
+    /**
+     * Called when the server answers a heartbeat ping, to measure the round-trip time of the current endpoint.
+     * @param pong The pong that answers a ping sent by {@link #sendHeartbeat()}
+     */
+    private void onPong(PongMessage pong) {
+        ByteBuffer data = pong.getApplicationData();
+        PubSubEndpoint endpoint = activeEndpoint;
+
+        if(endpoint != null && data != null && data.remaining() == PING_SIZE) {
+            endpoint.recordRtt(System.nanoTime() - data.getLong(data.position()));
         }
     }
 
@@ -562,13 +1003,7 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
 
             if(json.getString("action").equals("msg")) {
                 try {
-                    PubSubMessageRecord record = new PubSubMessageRecord(json);
-                    PubSubMessageHandler handler = msgHandlers.get(record.getChannel());
-                    handler.onMessage(record);
-
-                    if(generalMsgHandler != null) {
-                        generalMsgHandler.onMessage(record);
-                    }
+                    deliverMessage(new PubSubMessageRecord(json));
                 }
                 catch(Exception e) {
                     if(errorHandler != null) {
@@ -615,6 +1050,7 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
                 }
 
                 outstanding.invalidate(seq);
+                completePublish(seq);
             }
             else {
                 seq = new Long(json.getLong("seq"));
@@ -636,6 +1072,7 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
                 }
                 
                 outstanding.invalidate(seq);
+                completePublish(seq);
             }
         }
         catch(JSONException e) {
@@ -654,6 +1091,64 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
         }
     }
 
+    /**
+     * Called for every fragment of a message received from the remote endpoint when streaming messages are enabled.
+     * Fragments are fed into a {@link PubSubFrameDecoder} as they arrive. Published messages are delivered from the
+     * decoded frame without copying their content; all other messages are handled as in {@link #onMessage(String)}.
+     * @param part The fragment received from the remote endpoint
+     * @param last True if this is the last fragment of the message
+     */
+    public void onMessagePart(String part, boolean last) {
+        frameDecoder.feed(part);
+
+        if(!last) {
+            return;
+        }
+
+        PubSubFrame frame = frameDecoder.finish();
+
+        if(!frame.isMessageRecord()) {
+            onMessage(frame.toString());
+            return;
+        }
+
+        if(rawRecordHandler != null) {
+            rawRecordHandler.onRawRecord(frame.toString());
+        }
+
+        try {
+            deliverMessage(new PubSubMessageRecord(frame));
+        }
+        catch(Exception e) {
+            if(errorHandler != null) {
+                errorHandler.onError(e);
+            }
+        }
+    }
+
+    /**
+     * Passes an error that occurred outside the socket, such as in decoding a message, to the error handler.
+     * @param error The error that occurred
+     */
+    void reportError(Throwable error) {
+        if(errorHandler != null) {
+            errorHandler.onError(error);
+        }
+    }
+
+    /**
+     * Passes a published message to the handler of its channel and to the general message handler.
+     * @param record The message that was received
+     */
+    private void deliverMessage(PubSubMessageRecord record) {
+        PubSubMessageHandler handler = msgHandlers.get(record.getChannel());
+        handler.onMessage(record);
+
+        if(generalMsgHandler != null) {
+            generalMsgHandler.onMessage(record);
+        }
+    }
+
     //////////////////////// HANDLERS THAT ARE PROVIDED BY A PUBSUBHANDLE ////////////////////////
 
     /**
@@ -723,6 +1218,14 @@ public class PubSubSocket extends Endpoint implements MessageHandler.Whole<Strin
         msgHandlers.put(channel, handler);
     }
 
+    /**
+     * Associates each of the given {@link PubSubMessageHandler}s with its channel in a single update.
+     * @param handlers The handlers to register, by channel name
+     */
+    public void addMessageHandlers(Map<String, PubSubMessageHandler> handlers) {
+        msgHandlers.putAll(handlers);
+    }
+
     /**
      * Disassociates the current {@link PubSubMessageHandler}, if any, with the given channel.
      * @param channel The channel from which to remove the handler
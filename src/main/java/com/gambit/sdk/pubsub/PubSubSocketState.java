@@ -0,0 +1,44 @@
+package com.gambit.sdk.pubsub;
+
+/**
+ * The states of the connection represented by a {@link PubSubSocket}. A socket only moves between states
+ * through atomic compare-and-set transitions, so exactly one thread performs the work of each transition.
+ *
+ * <pre>
+ *   CLOSED       -&gt; CONNECTING     connect()
+ *   CONNECTING   -&gt; OPEN           the connection was established
+ *   CONNECTING   -&gt; CLOSED         the connection attempt failed, or close()
+ *   OPEN         -&gt; DRAINING       close()
+ *   OPEN         -&gt; RECONNECTING   the connection dropped and auto-reconnect is enabled
+ *   OPEN         -&gt; CLOSED         the connection dropped and auto-reconnect is disabled
+ *   RECONNECTING -&gt; OPEN           a reconnect attempt succeeded
+ *   RECONNECTING -&gt; CLOSED         close()
+ *   DRAINING     -&gt; CLOSED         the connection finished closing
+ * </pre>
+ */
+public enum PubSubSocketState {
+    /**
+     * The first connection attempt is in progress.
+     */
+    CONNECTING,
+
+    /**
+     * The connection is established. The socket runs exactly one heartbeat while in this state.
+     */
+    OPEN,
+
+    /**
+     * A close was requested and the socket is waiting for the connection to finish closing.
+     */
+    DRAINING,
+
+    /**
+     * The connection was dropped and the socket's single reconnect loop is trying to re-establish it.
+     */
+    RECONNECTING,
+
+    /**
+     * The socket is not connected and will not reconnect.
+     */
+    CLOSED
+}
@@ -0,0 +1,47 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.gambit.sdk.pubsub.handlers.PubSubMessageHandler;
+
+/**
+ * A local listener on a channel of a {@link PubSubBroker}. Closing the subscription removes the listener; the
+ * broker unsubscribes from the channel once its last listener is removed.
+ */
+public class PubSubSubscription {
+    private final PubSubBroker broker;
+    private final String channel;
+    private final PubSubMessageHandler messageHandler;
+
+    PubSubSubscription(PubSubBroker broker, String channel, PubSubMessageHandler messageHandler) {
+        this.broker = broker;
+        this.channel = channel;
+        this.messageHandler = messageHandler;
+    }
+
+    /**
+     * Gets the name of the channel this subscription listens to.
+     * @return String Name of the channel.
+     */
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * Gets the handler that receives the messages of this subscription.
+     * @return PubSubMessageHandler The handler of this subscription.
+     */
+    PubSubMessageHandler getMessageHandler() {
+        return messageHandler;
+    }
+
+    /**
+     * Removes this listener from its channel. Closing a subscription more than once has no further effect.
+     *
+     * @return {@code CompletableFuture<Void>} Completes once the listener is removed and, if it was the last one,
+     *         the broker has unsubscribed from the channel.
+     */
+    public CompletableFuture<Void> close() {
+        return broker.remove(this);
+    }
+}
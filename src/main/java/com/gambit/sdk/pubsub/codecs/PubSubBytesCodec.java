@@ -0,0 +1,41 @@
+package com.gambit.sdk.pubsub.codecs;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import java.util.Base64;
+
+import com.gambit.sdk.pubsub.exceptions.PubSubCodecException;
+
+/**
+ * Codec for binary values, which are carried in the content of messages as Base64 text.
+ */
+public class PubSubBytesCodec implements PubSubCodec<byte[]> {
+    @Override
+    public Class<byte[]> getType() {
+        return byte[].class;
+    }
+
+    @Override
+    public String encode(byte[] value) {
+        return Base64.getEncoder().encodeToString(value);
+    }
+
+    @Override
+    public byte[] decode(CharSequence message) throws PubSubCodecException {
+        // Base64 text is ASCII, so it is narrowed to bytes directly instead of being copied into a String first
+        ByteBuffer ascii = StandardCharsets.ISO_8859_1.encode(CharBuffer.wrap(message));
+
+        try {
+            ByteBuffer decoded = Base64.getDecoder().decode(ascii);
+            byte[] value = new byte[decoded.remaining()];
+
+            decoded.get(value);
+            return value;
+        }
+        catch(IllegalArgumentException e) {
+            throw new PubSubCodecException("The message is not valid Base64", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.gambit.sdk.pubsub.codecs;
+
+import com.gambit.sdk.pubsub.PubSubMessageRecord;
+import com.gambit.sdk.pubsub.exceptions.PubSubCodecException;
+
+/**
+ * Converts values of one type to and from the content of Pub/Sub messages. Codecs are looked up by type through
+ * {@link PubSubCodecs}, which knows the built-in codecs, codecs registered with
+ * {@link PubSubCodecs#register(PubSubCodec)}, and codecs listed in
+ * {@code META-INF/services/com.gambit.sdk.pubsub.codecs.PubSubCodec}. A codec must be safe to use from several
+ * threads at once.
+ *
+ * @param <T> The type of the values this codec converts.
+ */
+public interface PubSubCodec<T> {
+    /**
+     * Gets the type of the values this codec converts.
+     * @return {@code Class<T>} The type of the values.
+     */
+    Class<T> getType();
+
+    /**
+     * Converts a value to the content of a message.
+     *
+     * @param value The value to convert.
+     * @return String The content of the message.
+     * @throws PubSubCodecException If the value cannot be converted.
+     */
+    String encode(T value) throws PubSubCodecException;
+
+    /**
+     * Converts the content of a message to a value.
+     *
+     * @param message The content of the message.
+     * @return T The value.
+     * @throws PubSubCodecException If the content does not hold a valid value.
+     */
+    T decode(CharSequence message) throws PubSubCodecException;
+
+    /**
+     * Converts the content of a received message to a value. By default this decodes
+     * {@link PubSubMessageRecord#getMessageContent()}, which for messages received through the streaming path is a
+     * view of the received frame; codecs that can read their format incrementally may override this to read from
+     * {@link PubSubMessageRecord#getMessageReader()} instead, so the content is never copied.
+     *
+     * @param record The received message.
+     * @return T The value.
+     * @throws PubSubCodecException If the content does not hold a valid value.
+     */
+    default T decode(PubSubMessageRecord record) throws PubSubCodecException {
+        return decode(record.getMessageContent());
+    }
+}
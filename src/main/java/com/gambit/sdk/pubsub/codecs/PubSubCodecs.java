@@ -0,0 +1,150 @@
+package com.gambit.sdk.pubsub.codecs;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.gambit.sdk.pubsub.PubSubMessageRecord;
+import com.gambit.sdk.pubsub.exceptions.PubSubCodecException;
+
+/**
+ * Looks up the {@link PubSubCodec} for a type. The codec found for each type is cached, so the lookup is a single
+ * map access after the first time. Codecs for String, byte[] (as Base64), JSONObject and JSONArray are built in;
+ * codecs listed in {@code META-INF/services/com.gambit.sdk.pubsub.codecs.PubSubCodec} are loaded when this class is
+ * first used, and others can be added with {@link #register(PubSubCodec)}.
+ */
+public class PubSubCodecs {
+    /**
+     * The registered codecs, the most recently registered first
+     */
+    private static final CopyOnWriteArrayList<PubSubCodec<?>> registered = new CopyOnWriteArrayList<>();
+
+    /**
+     * The codec found for each type looked up so far
+     */
+    private static final Map<Class<?>, PubSubCodec<?>> cache = new ConcurrentHashMap<>();
+
+    static {
+        register(new PubSubStringCodec());
+        register(new PubSubBytesCodec());
+        register(new PubSubJsonCodec());
+        register(new PubSubJsonArrayCodec());
+
+        for(PubSubCodec<?> codec : ServiceLoader.load(PubSubCodec.class)) {
+            register(codec);
+        }
+    }
+
+    private PubSubCodecs() {}
+
+    /**
+     * Registers a codec, which takes the place of any codec registered before for the same type.
+     *
+     * @param codec The codec to register.
+     */
+    public static void register(PubSubCodec<?> codec) {
+        registered.add(0, codec);
+        cache.clear();
+    }
+
+    /**
+     * Gets the codec for {@code type}: the codec registered for the type itself or, failing that, the most
+     * recently registered codec for one of its supertypes.
+     *
+     * @param type The type of the values to convert.
+     * @param <T> The type of the values to convert.
+     * @return {@code PubSubCodec<? super T>} The codec for the type.
+     * @throws PubSubCodecException If no codec handles the type.
+     */
+    public static <T> PubSubCodec<? super T> forType(Class<T> type) throws PubSubCodecException {
+        PubSubCodec<?> codec = cache.computeIfAbsent(type, PubSubCodecs::find);
+
+        if(codec == null) {
+            throw new PubSubCodecException("No codec is registered for " + type.getName());
+        }
+
+        return cast(codec, type);
+    }
+
+    /**
+     * Converts a value to the content of a message with the codec for its type.
+     *
+     * @param value The value to convert.
+     * @return String The content of the message.
+     * @throws PubSubCodecException If no codec handles the value or it cannot be converted.
+     */
+    public static String encode(Object value) throws PubSubCodecException {
+        if(value == null) {
+            throw new PubSubCodecException("A null value cannot be encoded");
+        }
+
+        return encode(value.getClass(), value);
+    }
+
+    /**
+     * Converts the content of a message to a value of {@code type} with the codec for that type.
+     *
+     * @param type    The type of the value.
+     * @param message The content of the message.
+     * @param <T>     The type of the value.
+     * @return T The value.
+     * @throws PubSubCodecException If no codec handles the type or the content does not hold a valid value.
+     */
+    public static <T> T decode(Class<T> type, CharSequence message) throws PubSubCodecException {
+        return checked(type, forType(type).decode(message));
+    }
+
+    /**
+     * Converts the content of a received message to a value of {@code type} with the codec for that type, reading
+     * from the received frame where the codec supports it.
+     *
+     * @param type   The type of the value.
+     * @param record The received message.
+     * @param <T>    The type of the value.
+     * @return T The value.
+     * @throws PubSubCodecException If no codec handles the type or the content does not hold a valid value.
+     */
+    public static <T> T decode(Class<T> type, PubSubMessageRecord record) throws PubSubCodecException {
+        return checked(type, forType(type).decode(record));
+    }
+
+    private static <T> T checked(Class<T> type, Object value) throws PubSubCodecException {
+        try {
+            return type.cast(value);
+        }
+        catch(ClassCastException e) {
+            throw new PubSubCodecException("The codec for " + type.getName() + " decoded a " + value.getClass().getName(), e);
+        }
+    }
+
+    private static <T> String encode(Class<T> type, Object value) throws PubSubCodecException {
+        return forType(type).encode(type.cast(value));
+    }
+
+    private static PubSubCodec<?> find(Class<?> type) {
+        for(PubSubCodec<?> codec : registered) {
+            if(codec.getType() == type) {
+                return codec;
+            }
+        }
+
+        for(PubSubCodec<?> codec : registered) {
+            if(codec.getType().isAssignableFrom(type)) {
+                return codec;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Narrows a codec found for {@code type}; safe because {@link #find(Class)} only returns codecs whose type is
+     * {@code type} or one of its supertypes.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> PubSubCodec<? super T> cast(PubSubCodec<?> codec, Class<T> type) {
+        return (PubSubCodec<? super T>) codec;
+    }
+}
@@ -0,0 +1,45 @@
+package com.gambit.sdk.pubsub.codecs;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import com.gambit.sdk.pubsub.PubSubMessageRecord;
+import com.gambit.sdk.pubsub.exceptions.PubSubCodecException;
+
+/**
+ * Codec for JSON arrays, which are carried as the JSON text of the message itself rather than as a string
+ * holding JSON.
+ */
+public class PubSubJsonArrayCodec implements PubSubCodec<JSONArray> {
+    @Override
+    public Class<JSONArray> getType() {
+        return JSONArray.class;
+    }
+
+    @Override
+    public String encode(JSONArray value) {
+        return value.toString();
+    }
+
+    @Override
+    public JSONArray decode(CharSequence message) throws PubSubCodecException {
+        try {
+            return new JSONArray(message.toString());
+        }
+        catch(JSONException e) {
+            throw new PubSubCodecException("The message is not a JSON array", e);
+        }
+    }
+
+    @Override
+    public JSONArray decode(PubSubMessageRecord record) throws PubSubCodecException {
+        // Parses straight from the received frame instead of copying its content into a string first
+        try {
+            return new JSONArray(new JSONTokener(record.getMessageReader()));
+        }
+        catch(JSONException e) {
+            throw new PubSubCodecException("The message is not a JSON array", e);
+        }
+    }
+}
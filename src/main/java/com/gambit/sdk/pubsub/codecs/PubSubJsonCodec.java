@@ -0,0 +1,45 @@
+package com.gambit.sdk.pubsub.codecs;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.gambit.sdk.pubsub.PubSubMessageRecord;
+import com.gambit.sdk.pubsub.exceptions.PubSubCodecException;
+
+/**
+ * Codec for JSON objects, which are carried as the JSON text of the message itself rather than as a string
+ * holding JSON.
+ */
+public class PubSubJsonCodec implements PubSubCodec<JSONObject> {
+    @Override
+    public Class<JSONObject> getType() {
+        return JSONObject.class;
+    }
+
+    @Override
+    public String encode(JSONObject value) {
+        return value.toString();
+    }
+
+    @Override
+    public JSONObject decode(CharSequence message) throws PubSubCodecException {
+        try {
+            return new JSONObject(message.toString());
+        }
+        catch(JSONException e) {
+            throw new PubSubCodecException("The message is not a JSON object", e);
+        }
+    }
+
+    @Override
+    public JSONObject decode(PubSubMessageRecord record) throws PubSubCodecException {
+        // Parses straight from the received frame instead of copying its content into a string first
+        try {
+            return new JSONObject(new JSONTokener(record.getMessageReader()));
+        }
+        catch(JSONException e) {
+            throw new PubSubCodecException("The message is not a JSON object", e);
+        }
+    }
+}
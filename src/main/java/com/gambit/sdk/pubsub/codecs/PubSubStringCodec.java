@@ -0,0 +1,29 @@
+package com.gambit.sdk.pubsub.codecs;
+
+import com.gambit.sdk.pubsub.PubSubMessageRecord;
+
+/**
+ * Codec that passes the content of messages through unchanged.
+ */
+public class PubSubStringCodec implements PubSubCodec<String> {
+    @Override
+    public Class<String> getType() {
+        return String.class;
+    }
+
+    @Override
+    public String encode(String value) {
+        return value;
+    }
+
+    @Override
+    public String decode(CharSequence message) {
+        return message.toString();
+    }
+
+    @Override
+    public String decode(PubSubMessageRecord record) {
+        // The record keeps the copied string, so later calls to getMessage() do not copy it again
+        return record.getMessage();
+    }
+}
@@ -0,0 +1,28 @@
+package com.gambit.sdk.pubsub.exceptions;
+
+/**
+ * Exception thrown when a message cannot be encoded or decoded by a {@link com.gambit.sdk.pubsub.codecs.PubSubCodec},
+ * or when there is no codec for a type.
+ */
+public class PubSubCodecException extends PubSubException {
+
+    /**
+     * Creates this PubSubCodecException with the given message.
+     *
+     * @param message Message to associate with this PubSubCodecException.
+     */
+    public PubSubCodecException(String message) {
+        super(message);
+    }
+
+    /**
+     * Creates this PubSubCodecException with the given message and the error that caused it.
+     *
+     * @param message Message to associate with this PubSubCodecException.
+     * @param cause   The error that caused the encoding or decoding to fail.
+     */
+    public PubSubCodecException(String message, Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,26 @@
+package com.gambit.sdk.pubsub.exceptions;
+
+/**
+ * Exception with which a publish completes when it was rejected by a client-side publish rate limit.
+ */
+public class PubSubRateLimitException extends PubSubException {
+    private final String channel;
+
+    /**
+     * Creates this PubSubRateLimitException for a publish on the given channel.
+     *
+     * @param channel Name of the channel on which the rejected message was to be published.
+     */
+    public PubSubRateLimitException(String channel) {
+        super("Publish rate limit exceeded on channel " + channel);
+        this.channel = channel;
+    }
+
+    /**
+     * Gets the name of the channel on which the rejected message was to be published.
+     * @return String Name of the channel.
+     */
+    public String getChannel() {
+        return channel;
+    }
+}
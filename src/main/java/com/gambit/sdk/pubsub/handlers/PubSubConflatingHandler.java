@@ -0,0 +1,218 @@
+package com.gambit.sdk.pubsub.handlers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import java.util.function.Function;
+
+import com.gambit.sdk.pubsub.PubSubMessageRecord;
+import com.gambit.sdk.pubsub.utils.PubSubUtils;
+
+/**
+ * Message handler for channels where only the newest message matters, such as channels carrying state snapshots.
+ * Received messages are not queued for the wrapped handler: each one replaces the message still waiting under the
+ * same key, and the wrapped handler, running on its own thread, always gets the newest message once it is done
+ * with the previous one. Memory and delivery latency therefore stay bounded however fast messages arrive.
+ *
+ * By default the key of a message is its channel, so one message per channel waits at a time, and a handler shared
+ * between channels keeps the newest message of each. A key function keeps the newest message per key instead, for
+ * example per entity whose state the channel carries.
+ *
+ * A message that the wrapped handler fails on does not stop the delivery of newer ones: the failure is counted and
+ * passed to the error handler, if one is set.
+ */
+public class PubSubConflatingHandler implements PubSubMessageHandler {
+    private final PubSubMessageHandler messageHandler;
+    private final Function<PubSubMessageRecord, ?> key;
+    private final Executor executor;
+    private final int maxPendingKeys;
+
+    /**
+     * The newest waiting message of each key, in the order the keys started waiting
+     */
+    private final LinkedHashMap<Object, PubSubMessageRecord> pending;
+
+    /**
+     * Whether a task is delivering the waiting messages
+     */
+    private boolean draining;
+
+    /**
+     * Handler of the errors thrown by the wrapped handler, null if none
+     */
+    private volatile PubSubErrorHandler errorHandler;
+
+    private long received;
+    private long delivered;
+    private long conflated;
+    private long dropped;
+    private long failed;
+
+    /**
+     * Wraps {@code messageHandler} so that it only receives the newest message of each channel. A message waits
+     * for each channel that received one, so no channel loses its newest message to another.
+     *
+     * @param messageHandler Handler that receives the newest message of each channel.
+     */
+    public PubSubConflatingHandler(PubSubMessageHandler messageHandler) {
+        this(messageHandler, PubSubMessageRecord::getChannel, Integer.MAX_VALUE, PubSubUtils.getDeliverer());
+    }
+
+    /**
+     * Wraps {@code messageHandler} so that it only receives the newest message for each key.
+     *
+     * @param messageHandler Handler that receives the newest message of each key.
+     * @param key            Function that gives the key of a message.
+     * @param maxPendingKeys The number of keys that may have a waiting message; when a new key exceeds it, the
+     *                       message of the key that has waited longest is dropped.
+     * @param executor       Executor on which {@code messageHandler} is called.
+     */
+    public PubSubConflatingHandler(PubSubMessageHandler messageHandler, Function<PubSubMessageRecord, ?> key, int maxPendingKeys, Executor executor) {
+        if(messageHandler == null || key == null || executor == null || maxPendingKeys < 1) {
+            throw new IllegalArgumentException("A handler, key function and executor are required, and at least one key must be allowed.");
+        }
+
+        this.messageHandler = messageHandler;
+        this.key = key;
+        this.executor = executor;
+        this.maxPendingKeys = maxPendingKeys;
+        this.pending = new LinkedHashMap<>();
+    }
+
+    @Override
+    public void onMessage(PubSubMessageRecord record) {
+        Object recordKey = key.apply(record);
+        boolean start;
+
+        synchronized(this) {
+            ++received;
+
+            if(pending.put(recordKey, record) != null) {
+                ++conflated;
+            }
+            else if(pending.size() > maxPendingKeys) {
+                Iterator<PubSubMessageRecord> oldest = pending.values().iterator();
+                oldest.next();
+                oldest.remove();
+                ++dropped;
+            }
+
+            start = !draining;
+            draining = true;
+        }
+
+        if(start) {
+            try {
+                executor.execute(this::drain);
+            }
+            catch(RejectedExecutionException e) {
+                // The messages stay pending, and the next one received tries to start the delivery again
+                synchronized(this) {
+                    draining = false;
+                }
+
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Sets the handler that receives the errors thrown by the wrapped handler.
+     *
+     * @param errorHandler The handler of the errors, or null for none.
+     */
+    public void setErrorHandler(PubSubErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Gets the number of messages received.
+     * @return long The number of messages received.
+     */
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    /**
+     * Gets the number of messages handed to the wrapped handler.
+     * @return long The number of messages delivered.
+     */
+    public synchronized long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Gets the number of messages replaced by a newer message of the same key before they were delivered.
+     * @return long The number of conflated messages.
+     */
+    public synchronized long getConflated() {
+        return conflated;
+    }
+
+    /**
+     * Gets the number of messages dropped because too many keys had a waiting message.
+     * @return long The number of dropped messages.
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Gets the number of delivered messages on which the wrapped handler threw.
+     * @return long The number of failed messages.
+     */
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the number of messages waiting to be delivered.
+     * @return int The number of waiting messages, at most one per key.
+     */
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    private void drain() {
+        while(true) {
+            PubSubMessageRecord next;
+
+            synchronized(this) {
+                Iterator<PubSubMessageRecord> oldest = pending.values().iterator();
+
+                if(!oldest.hasNext()) {
+                    draining = false;
+                    return;
+                }
+
+                next = oldest.next();
+                oldest.remove();
+                ++delivered;
+            }
+
+            try {
+                messageHandler.onMessage(next);
+            }
+            catch(Exception e) {
+                // A failing message must not stop the delivery of newer ones
+                synchronized(this) {
+                    ++failed;
+                }
+
+                PubSubErrorHandler handler = errorHandler;
+
+                if(handler != null) {
+                    try {
+                        handler.onError(e);
+                    }
+                    catch(Exception ignored) {
+                        // Nor must a failing error handler
+                    }
+                }
+            }
+        }
+    }
+}
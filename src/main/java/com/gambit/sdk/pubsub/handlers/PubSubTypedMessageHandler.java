@@ -0,0 +1,20 @@
+package com.gambit.sdk.pubsub.handlers;
+
+import com.gambit.sdk.pubsub.PubSubMessageRecord;
+
+/**
+ * Represents a handler function for message records whose content is decoded by a
+ * {@link com.gambit.sdk.pubsub.codecs.PubSubCodec}.
+ *
+ * @param <T> The type the content of the messages is decoded to.
+ */
+@FunctionalInterface
+public interface PubSubTypedMessageHandler<T> {
+    /**
+     * Invoked when a content message is received from Cogswell Pub/Sub and decoded.
+     *
+     * @param record  PubSubMessageRecord filled with information about the message received.
+     * @param message The decoded content of the message.
+     */
+    void onMessage(PubSubMessageRecord record, T message);
+}
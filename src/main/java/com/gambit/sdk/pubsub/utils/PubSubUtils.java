@@ -1,9 +1,31 @@
 package com.gambit.sdk.pubsub.utils;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Created by gambit on 2/7/17.
  */
 public class PubSubUtils {
+    /**
+     * Scheduler shared by all sockets for heartbeats and reconnect attempts.
+     */
+    private static final ScheduledThreadPoolExecutor scheduler = createScheduler();
+
+    /**
+     * Executor that runs the blocking websocket handshakes.
+     */
+    private static final ExecutorService connector = Executors.newCachedThreadPool(daemonThreads("cogs-pubsub-connect-"));
+
+    /**
+     * Executor that runs message handlers that were moved off the socket thread.
+     */
+    private static final ExecutorService deliverer = Executors.newCachedThreadPool(daemonThreads("cogs-pubsub-delivery-"));
+
     /**
      * Simple method to spin up new thread that calls provided Runnable no sooner than the given delay in ms.
      * @param runnable The runnable that will be called after the given delay
@@ -22,4 +44,48 @@ public class PubSubUtils {
             }
         }).start();
     }
+
+    /**
+     * Returns the scheduler shared by all sockets for their timed work (heartbeats and reconnect attempts).
+     * Its daemon threads never block on network I/O for long, so two of them serve any number of sockets.
+     * @return ScheduledExecutorService The shared scheduler
+     */
+    public static ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the executor that runs blocking websocket handshakes. Each handshake gets its own daemon thread, so
+     * a slow endpoint never holds up a hedged attempt on another one; idle threads are released after a minute.
+     * @return ExecutorService The shared connect executor
+     */
+    public static ExecutorService getConnector() {
+        return connector;
+    }
+
+    /**
+     * Returns the executor that runs message handlers which should not hold up the socket, such as conflating
+     * handlers. Handlers may block, so threads are added as needed; idle threads are released after a minute.
+     * @return ExecutorService The shared delivery executor
+     */
+    public static ExecutorService getDeliverer() {
+        return deliverer;
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2, daemonThreads("cogs-pubsub-scheduler-"));
+
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+
+        return (runnable) -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 }
@@ -0,0 +1,181 @@
+package com.gambit.sdk.request;
+
+import org.json.JSONObject;
+
+import javax.xml.bind.DatatypeConverter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates many {@link GambitRequestEvent}s that share their keys, namespace, tags, campaign and most of their
+ * attributes. Those shared fields, and each shared attribute, are serialized once when the template is built;
+ * each event then only serializes its name, timestamp and the attributes that differ, writing the request body
+ * into a buffer that is reused by the thread creating the events.
+ *
+ * A template is safe to use from several threads. Changes made to the {@link GambitRequestEvent.Builder} after
+ * building the template don't affect it.
+ */
+public class GambitEventTemplate {
+
+    /**
+     * Body buffer of each thread
+     */
+    protected static final ThreadLocal<StringBuilder> mBuffers = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    /**
+     * Copy of the builder the template was built from, holding the shared fields
+     */
+    protected final GambitRequestEvent.Builder mShared;
+
+    /**
+     * The shared attributes
+     */
+    protected final LinkedHashMap<String, Object> mAttributes;
+
+    /**
+     * Each shared attribute serialized as a JSON member, in order
+     */
+    protected final LinkedHashMap<String, String> mSerializedAttributes;
+
+    /**
+     * The body up to the opening brace of the attributes
+     */
+    protected final String mPrefix;
+
+    /**
+     * Build a template from the shared fields of a builder
+     * @param builder The builder with the shared fields set
+     */
+    protected GambitEventTemplate(GambitRequestEvent.Builder builder) {
+        mAttributes = (builder.getAttributes() == null) ? new LinkedHashMap<>() : new LinkedHashMap<>(builder.getAttributes());
+
+        mShared = new GambitRequestEvent.Builder(builder.getAccessKey(), builder.getClientSalt(), builder.getClientSecret())
+                .setNamespace(builder.getNamespace())
+                .setCampaignId(builder.getCampaignId())
+                .setTags((builder.getTags() == null) ? null : new ArrayList<>(builder.getTags()))
+                .setDebugDirective(builder.getDebugDirective())
+                .setForwardAsMessage(builder.isForwardAsMessage())
+                .setAttributes(mAttributes);
+
+        mSerializedAttributes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Object> attribute : mAttributes.entrySet()) {
+            if (attribute.getValue() != null) {
+                mSerializedAttributes.put(attribute.getKey(), member(attribute.getKey(), attribute.getValue()));
+            }
+        }
+
+        StringBuilder prefix = new StringBuilder("{");
+
+        prefix.append(member("client_salt", mShared.getClientSalt())).append(',');
+        prefix.append(member("access_key", mShared.getAccessKey())).append(',');
+        prefix.append(member("namespace", mShared.getNamespace())).append(',');
+
+        if (mShared.getCampaignId() > 0) {
+            prefix.append(member("campaign_id", mShared.getCampaignId())).append(',');
+        }
+
+        if (mShared.getTags() != null && !mShared.getTags().isEmpty()) {
+            prefix.append(member("tags", mShared.getTags())).append(',');
+        }
+
+        if (mShared.getDebugDirective() != null && !mShared.getDebugDirective().isEmpty()) {
+            prefix.append(member("debug_directive", mShared.getDebugDirective())).append(',');
+        }
+
+        if (mShared.isForwardAsMessage()) {
+            prefix.append(member("forward_as_message", true)).append(',');
+        }
+
+        prefix.append("\"attributes\":{");
+
+        mPrefix = prefix.toString();
+    }
+
+    /**
+     * Create an event with only the shared attributes
+     * @param eventName The name of the event
+     * @param timestamp The timestamp of the event in ISO-8601 format; null for the current time
+     * @return The event, ready to be sent
+     * @throws Exception If the event name or timestamp is invalid, or there are no attributes
+     */
+    public GambitRequestEvent event(String eventName, String timestamp) throws Exception {
+        return event(eventName, timestamp, Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Create an event
+     * @param eventName The name of the event
+     * @param timestamp The timestamp of the event in ISO-8601 format; null for the current time
+     * @param changedAttributes Attributes that this event adds to, or changes from, the shared attributes
+     * @return The event, ready to be sent
+     * @throws Exception If the event name or timestamp is invalid, or there are no attributes
+     */
+    public GambitRequestEvent event(String eventName, String timestamp, Map<String, Object> changedAttributes) throws Exception {
+        if (eventName == null || eventName.isEmpty()) {
+            throw new Exception("Missing mandatory parameter of Builder: event_name");
+        }
+
+        if (timestamp == null) {
+            timestamp = DatatypeConverter.printDateTime(new GregorianCalendar());
+        } else {
+            try {
+                DatatypeConverter.parseDateTime(timestamp);
+            } catch (IllegalArgumentException e) {
+                throw new Exception("Invalid format for event timestamp.", e);
+            }
+        }
+
+        LinkedHashMap<String, Object> attributes = mAttributes;
+
+        if (!changedAttributes.isEmpty()) {
+            attributes = new LinkedHashMap<>(mAttributes);
+            attributes.putAll(changedAttributes);
+        }
+
+        if (attributes.isEmpty()) {
+            throw new Exception("Missing mandatory parameter of Builder: attributes");
+        }
+
+        StringBuilder body = mBuffers.get();
+        body.setLength(0);
+        body.append(mPrefix);
+
+        boolean first = true;
+
+        for (Map.Entry<String, String> shared : mSerializedAttributes.entrySet()) {
+            if (!changedAttributes.containsKey(shared.getKey())) {
+                first = separate(body, first);
+                body.append(shared.getValue());
+            }
+        }
+
+        for (Map.Entry<String, Object> changed : changedAttributes.entrySet()) {
+            if (changed.getValue() != null) {
+                first = separate(body, first);
+                body.append(member(changed.getKey(), changed.getValue()));
+            }
+        }
+
+        body.append("},\"event_name\":").append(JSONObject.quote(eventName));
+        body.append(",\"timestamp\":").append(JSONObject.quote(timestamp));
+        body.append('}');
+
+        return new GambitRequestEvent(mShared, eventName, timestamp, attributes, body.toString());
+    }
+
+    private static boolean separate(StringBuilder body, boolean first) {
+        if (!first) {
+            body.append(',');
+        }
+
+        return false;
+    }
+
+    private static String member(String name, Object value) {
+        return JSONObject.quote(name) + ":" + JSONObject.valueToString(value);
+    }
+}
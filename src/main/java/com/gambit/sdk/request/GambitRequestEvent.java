@@ -4,7 +4,10 @@ import com.gambit.sdk.GambitRequest;
 import com.gambit.sdk.GambitResponse;
 import com.gambit.sdk.exceptions.CogsException;
 import com.gambit.sdk.response.GambitResponseEvent;
+import com.gambit.sdk.attributes.GambitAttributeWriters;
+import com.gambit.sdk.attributes.GambitAttributes;
 import org.json.JSONObject;
+import org.json.JSONString;
 
 import javax.xml.bind.DatatypeConverter;
 import java.io.IOException;
@@ -59,6 +62,11 @@ public class GambitRequestEvent extends GambitRequest {
          */
         protected LinkedHashMap<String, Object> mAttributes;
 
+        /**
+         * Object of a {@link GambitAttributes} class holding the attributes, used instead of {@link #mAttributes}
+         */
+        protected Object mTypedAttributes;
+
         /**
          * The associated campaign ID, if this event is related to a message
          * sent from a campaign.
@@ -229,6 +237,29 @@ public class GambitRequestEvent extends GambitRequest {
             return mAttributes;
         }
 
+        /**
+         * Set the attributes from an object of a class annotated with {@link GambitAttributes}. The attributes are
+         * written by the writer generated for that class instead of being copied into a map, and take the place of
+         * any set with {@link #setAttributes(LinkedHashMap)}.
+         *
+         * @param attributes Object holding the namespace specific attributes
+         * @return The same instance
+         */
+        public Builder setTypedAttributes(Object attributes) {
+            this.mTypedAttributes = attributes;
+
+            return this;
+        }
+
+        /**
+         * Object of a {@link GambitAttributes} class holding the attributes
+         *
+         * @return The typed attributes; may be null as well
+         */
+        public Object getTypedAttributes() {
+            return mTypedAttributes;
+        }
+
         /**
          * Optional. Supply any desired tags.
          *
@@ -327,6 +358,25 @@ public class GambitRequestEvent extends GambitRequest {
             return new GambitRequestEvent(this);
         }
 
+        /**
+         * Build a template for many events sharing everything set on this builder except their name, timestamp
+         * and some of their attributes. The shared fields are serialized once, by the template.
+         *
+         * @return A {@link GambitEventTemplate} instance
+         * @throws java.lang.Exception if validation fails
+         */
+        public GambitEventTemplate buildTemplate() throws Exception {
+            if (mNamespace == null || mNamespace.isEmpty()) {
+                throw new Exception("Missing mandatory parameter of Builder: namespace");
+            }
+
+            if (mTypedAttributes != null) {
+                throw new Exception("Templates take their shared attributes as a map; typed attributes can't be changed per event.");
+            }
+
+            return new GambitEventTemplate(this);
+        }
+
         /**
          * Validate the builder integrity before proceeding with object creation
          * @throws Exception If anything crucial is missing
@@ -336,7 +386,9 @@ public class GambitRequestEvent extends GambitRequest {
                 throw new Exception("Missing mandatory parameter of Builder: event_name");
             }
 
-            if (mAttributes == null || mAttributes.isEmpty()) {
+            if (mTypedAttributes != null) {
+                GambitAttributeWriters.forType(mTypedAttributes.getClass());
+            } else if (mAttributes == null || mAttributes.isEmpty()) {
                 throw new Exception("Missing mandatory parameter of Builder: attributes");
             }
 
@@ -363,6 +415,11 @@ public class GambitRequestEvent extends GambitRequest {
      */
     protected String mBody;
 
+    /**
+     * Generated request body, encoded as UTF-8; both signed and sent
+     */
+    protected byte[] mBodyBytes;
+
     /**
      * Obtained through GambitToolsSDK
      */
@@ -401,6 +458,11 @@ public class GambitRequestEvent extends GambitRequest {
      */
     protected LinkedHashMap<String, Object> mAttributes;
 
+    /**
+     * Object of a {@link GambitAttributes} class holding the attributes, used instead of {@link #mAttributes}
+     */
+    protected Object mTypedAttributes;
+
     /**
      * The associated campaign ID, if this event is related to a message sent
      * from a campaign.
@@ -437,6 +499,7 @@ public class GambitRequestEvent extends GambitRequest {
         mEventName = builder.getEventName();
         mTags = builder.getTags();
         mAttributes = builder.getAttributes();
+        mTypedAttributes = builder.getTypedAttributes();
         mCampaignId = builder.getCampaignId();
         mNamespace = builder.getNamespace();
 
@@ -444,6 +507,23 @@ public class GambitRequestEvent extends GambitRequest {
         mForwardAsMessage = builder.isForwardAsMessage();
     }
 
+    /**
+     * Construct the request object for an event of a {@link GambitEventTemplate}, with its body already serialized.
+     * @param template The {@link Builder} holding the fields shared by the events of the template
+     * @param eventName The name of this event
+     * @param timestamp The timestamp of this event
+     * @param attributes The attributes of this event
+     * @param body The serialized request body
+     */
+    protected GambitRequestEvent(Builder template, String eventName, String timestamp, LinkedHashMap<String, Object> attributes, String body) {
+        this(template);
+
+        mEventName = eventName;
+        mTimestamp = timestamp;
+        mAttributes = attributes;
+        mBody = body;
+    }
+
     /**
      * Define the HTTP method to use
      * @return POST
@@ -490,7 +570,12 @@ public class GambitRequestEvent extends GambitRequest {
             json.put("event_name", mEventName);
             json.put("timestamp", mTimestamp);
             json.put("namespace", mNamespace);
-            json.put("attributes", mAttributes);
+
+            if (mTypedAttributes != null) {
+                json.put("attributes", (JSONString) () -> GambitAttributeWriters.toJson(mTypedAttributes));
+            } else {
+                json.put("attributes", mAttributes);
+            }
             
             if (mCampaignId > 0) {
                 json.put("campaign_id", mCampaignId);
@@ -514,17 +599,42 @@ public class GambitRequestEvent extends GambitRequest {
         return mBody;
     }
 
+    /**
+     * The request body encoded as UTF-8, encoded once for both signing and sending
+     * @return The request body bytes
+     */
+    @Override
+    protected byte[] getBodyBytes() {
+        if (mBodyBytes == null) {
+            mBodyBytes = super.getBodyBytes();
+        }
+
+        return mBodyBytes;
+    }
+
     /**
      * Inject the HMAC-SHA256 hash as a header to the request
-     * @param connection The {@link HttpURLConnection} object that is going to execute the API call.
+     * @return The request headers, including Payload-HMAC
      */
     @Override
-    protected void setRequestParams(HttpURLConnection connection) {
+    protected Map<String, String> getHeaders() {
+        Map<String, String> headers = super.getHeaders();
+
         try {
-            connection.setRequestProperty("Payload-HMAC", getHmac(getBody(), mClientSecret));
+            headers.put("Payload-HMAC", getHmac(getBodyBytes(), mClientSecret));
         } catch (Exception ex) {
             throw new CogsException("Invalid parameters for Cogs event request.", ex);
         }
+
+        return headers;
+    }
+
+    /**
+     * Nothing to add; the signature is sent with {@link #getHeaders()}.
+     * @param connection The {@link HttpURLConnection} object that is going to execute the API call.
+     */
+    @Override
+    protected void setRequestParams(HttpURLConnection connection) {
     }
 
     /**
@@ -615,6 +725,15 @@ public class GambitRequestEvent extends GambitRequest {
         return mAttributes;
     }
 
+    /**
+     * Object of a {@link GambitAttributes} class holding the attributes
+     *
+     * @return The typed attributes; may be null as well
+     */
+    public Object getTypedAttributes() {
+        return mTypedAttributes;
+    }
+
     /**
      * Optional. Supply any desired tags.
      *
@@ -0,0 +1,261 @@
+package com.gambit.sdk;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGambitAsyncTransport
+{
+    private HttpServer server;
+    private Set<Integer> clientPorts;
+
+    @Before
+    public void startServer() throws IOException {
+        clientPorts = ConcurrentHashMap.newKeySet();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8, (runnable) -> new Thread(runnable, "test-server")));
+
+        // Answers with the message of the request body
+        server.createContext("/event", (exchange) -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            String message = new JSONObject(read(exchange.getRequestBody())).getString("message");
+            byte[] response = new JSONObject().put("message", message).toString().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json;charset=UTF-8");
+            exchange.sendResponseHeaders(200, response.length);
+
+            try(OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+
+        server.createContext("/slow", (exchange) -> {
+            try {
+                Thread.sleep(2000);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+
+        while((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static long clientThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter((thread) -> !thread.getName().startsWith("test-server") && !thread.getName().startsWith("HTTP-Dispatcher"))
+            .count();
+    }
+
+    private GambitRequest request(String path, String message) throws IOException {
+        return new TestGambitHttpRequest(new URL("http://127.0.0.1:" + server.getAddress().getPort() + path), message);
+    }
+
+    @Test
+    public void testManyRequestsShareFewConnections() throws Exception {
+        GambitAsyncTransport transport = new GambitAsyncTransport.Builder()
+            .setMaxConnectionsPerHost(2)
+            .build();
+
+        try {
+            long threads = 0;
+
+            for(int round = 0; round < 2; ++round) {
+                List<CompletableFuture<GambitResponse>> futures = new ArrayList<>();
+
+                for(int i = 0; i < 200; ++i) {
+                    futures.add(transport.send(request("/event", "event-" + i)));
+                }
+
+                for(int i = 0; i < 200; ++i) {
+                    GambitResponse response = futures.get(i).get(10, TimeUnit.SECONDS);
+                    assertEquals("Each request should get its own response.", "event-" + i, response.getObject().getString("message"));
+                }
+
+                if(round == 0) {
+                    threads = clientThreads();
+                }
+            }
+
+            assertTrue("No threads should be started for more requests.", clientThreads() <= threads);
+
+            assertTrue("The requests should be sent over at most two connections.", clientPorts.size() <= 2);
+            assertTrue("The connections should be kept open for reuse.", transport.getOpenConnections() <= 2);
+        }
+        finally {
+            transport.shutdown();
+        }
+    }
+
+    @Test
+    public void testWarmedUpConnectionsAreReused() throws Exception {
+        GambitAsyncTransport transport = new GambitAsyncTransport.Builder()
+            .setMaxConnectionsPerHost(2)
+            .build();
+
+        try {
+            URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/event");
+            assertEquals("No more than the maximum connections should be opened.", 2, (int) transport.warmUp(url, 5).get(10, TimeUnit.SECONDS));
+            assertEquals("The warmed up connections should be idle.", 2, transport.getIdleConnections());
+
+            List<CompletableFuture<GambitResponse>> futures = new ArrayList<>();
+            for(int i = 0; i < 50; ++i) {
+                futures.add(transport.send(request("/event", "event-" + i)));
+            }
+
+            for(CompletableFuture<GambitResponse> future : futures) {
+                assertTrue(future.get(10, TimeUnit.SECONDS).isSuccess());
+            }
+
+            assertEquals("Every request should find an open connection.", 50, transport.getPoolHits());
+            assertEquals("No request should wait for a new connection.", 0, transport.getPoolMisses());
+            assertEquals("Only the warmed up connections should be used.", 2, clientPorts.size());
+        }
+        finally {
+            transport.shutdown();
+        }
+    }
+
+    @Test
+    public void testClosesIdleConnections() throws Exception {
+        GambitAsyncTransport transport = new GambitAsyncTransport.Builder()
+            .setIdleTimeoutMillis(100)
+            .build();
+
+        try {
+            assertTrue(transport.send(request("/event", "event")).get(10, TimeUnit.SECONDS).isSuccess());
+            assertEquals("The new connection should be counted as a miss.", 1, transport.getPoolMisses());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(transport.getOpenConnections() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals("The idle connection should be closed.", 0, transport.getOpenConnections());
+            assertEquals("The eviction should be counted.", 1, transport.getEvictedConnections());
+        }
+        finally {
+            transport.shutdown();
+        }
+    }
+
+    @Test
+    public void testSendsBodyAsUtf8() throws Exception {
+        GambitAsyncTransport transport = new GambitAsyncTransport.Builder().build();
+        String message = "Gr\u00fc\u00dfe, \u4e16\u754c \ud83d\ude00";
+
+        try {
+            GambitResponse response = transport.send(request("/event", message)).get(10, TimeUnit.SECONDS);
+            assertEquals("Characters outside Latin-1 should survive the round trip.", message, response.getObject().getString("message"));
+
+            assertEquals("The blocking transport should encode the body the same way.", message, request("/event", message).call().getObject().getString("message"));
+        }
+        finally {
+            transport.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailsRequestsThatTakeTooLong() throws Exception {
+        GambitAsyncTransport transport = new GambitAsyncTransport.Builder()
+            .setRequestTimeoutMillis(100)
+            .build();
+
+        try {
+            transport.send(request("/slow", "slow")).get(5, TimeUnit.SECONDS);
+            fail("The request should time out.");
+        }
+        catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        finally {
+            transport.shutdown();
+        }
+    }
+}
+
+/**
+ * Request carrying a message to a local URL, sent for real by either transport.
+ */
+class TestGambitHttpRequest extends GambitRequest
+{
+    private final URL url;
+    private final String message;
+
+    public TestGambitHttpRequest(URL url, String message) {
+        this.url = url;
+        this.message = message;
+    }
+
+    @Override
+    protected String getMethod() {
+        return "POST";
+    }
+
+    @Override
+    protected URL getUrl() {
+        return url;
+    }
+
+    @Override
+    protected String getBody() {
+        return new JSONObject().put("message", message).toString();
+    }
+
+    @Override
+    protected void setRequestParams(HttpURLConnection connection) {
+    }
+
+    @Override
+    protected GambitResponse getResponse(String response, int code) {
+        return new GambitResponse(response, code);
+    }
+}
@@ -0,0 +1,261 @@
+package com.gambit.sdk;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestGambitBackfill
+{
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String line(int index) {
+        JSONObject event = new JSONObject()
+            .put("event_name", "event-" + index)
+            .put("timestamp", "2016-07-01T09:36:42.520Z")
+            .put("attributes", new JSONObject().put("index", index).put("note", "caf\u00e9 #" + index));
+
+        if(index % 2 == 0) {
+            event.put("namespace", "other-namespace");
+        }
+
+        if(index % 3 == 0) {
+            event.put("tags", Collections.singletonList("backfill"));
+        }
+
+        return event.toString();
+    }
+
+    private File events(int count, String... extra) throws IOException {
+        StringBuilder content = new StringBuilder();
+
+        for(int i = 0; i < count; ++i) {
+            content.append(line(i)).append(i % 5 == 0 ? "\r\n" : "\n");
+        }
+
+        for(String line : extra) {
+            content.append(line).append("\n");
+        }
+
+        File file = folder.newFile("events.ndjson");
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static GambitBackfill.Builder builder(File file) {
+        return new GambitBackfill.Builder(file, "access-key", "client-salt", SECRET)
+            .setNamespace("test-namespace");
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+
+        while((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSendsEveryEventToStub() throws Exception {
+        int count = 5000;
+        File file = events(count);
+        Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+        AtomicInteger badSignatures = new AtomicInteger();
+
+        ExecutorService threads = Executors.newFixedThreadPool(16, (runnable) -> new Thread(runnable, "test-server"));
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(threads);
+        server.createContext("/event", (exchange) -> {
+            String body = read(exchange.getRequestBody());
+
+            try {
+                if(!GambitRequest.getHmac(body, SECRET).equals(exchange.getRequestHeaders().getFirst("Payload-HMAC"))) {
+                    badSignatures.incrementAndGet();
+                }
+            }
+            catch(Exception e) {
+                badSignatures.incrementAndGet();
+            }
+
+            JSONObject event = new JSONObject(body);
+            int index = event.getJSONObject("attributes").getInt("index");
+            String namespace = (index % 2 == 0) ? "other-namespace" : "test-namespace";
+
+            if(event.getString("namespace").equals(namespace) && event.getString("access_key").equals("access-key")) {
+                received.computeIfAbsent(event.getString("event_name"), (key) -> new AtomicInteger()).incrementAndGet();
+            }
+
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+
+        GambitAsyncTransport transport = new GambitAsyncTransport.Builder().setMaxConnectionsPerHost(16).build();
+
+        try {
+            URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/event");
+
+            GambitBackfill backfill = new GambitBackfill(builder(file).setMaxInFlight(16).setChunkBytes(64 * 1024)) {
+                @Override
+                protected URL getEventUrl() {
+                    return url;
+                }
+
+                @Override
+                protected CompletableFuture<GambitResponse> send(GambitRequest request) {
+                    return transport.send(request);
+                }
+            };
+
+            backfill.run();
+
+            assertEquals(count, backfill.getSentCount());
+            assertEquals(0, badSignatures.get());
+            assertEquals("Every event should reach the endpoint.", count, received.size());
+
+            for(AtomicInteger times : received.values()) {
+                assertEquals("No event should be sent twice.", 1, times.get());
+            }
+
+            assertEquals(file.length(), backfill.getCheckpoint());
+            assertEquals(Long.toString(file.length()),
+                new String(Files.readAllBytes(new File(file.getPath() + ".checkpoint").toPath()), StandardCharsets.US_ASCII));
+        }
+        finally {
+            transport.shutdown();
+            server.stop(0);
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidLinesWithoutStopping() throws Exception {
+        File file = events(10, "not json", "{\"event_name\":\"no-attributes\"}", "", line(10));
+        File rejects = new File(folder.getRoot(), "rejects.ndjson");
+
+        TestBackfill backfill = new TestBackfill(builder(file).setRejectFile(rejects).setChunkBytes(64),
+            (event) -> event.getString("event_name").equals("event-3") ? 400 : 200);
+
+        backfill.run();
+
+        assertEquals(10, backfill.getSentCount());
+        assertEquals(3, backfill.getRejectedCount());
+        assertEquals(file.length(), backfill.getCheckpoint());
+
+        List<String> rejected = Files.readAllLines(rejects.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, rejected.size());
+        assertTrue(rejected.contains(line(3)));
+        assertTrue(rejected.contains("not json"));
+        assertTrue(rejected.contains("{\"event_name\":\"no-attributes\"}"));
+    }
+
+    @Test
+    public void testResumesFromCheckpointAfterFailure() throws Exception {
+        int count = 300;
+        File file = events(count);
+        Set<String> failOnce = ConcurrentHashMap.newKeySet();
+        failOnce.add("event-200");
+
+        Function<JSONObject, Integer> endpoint = (event) -> failOnce.remove(event.getString("event_name")) ? 503 : 200;
+        TestBackfill first = new TestBackfill(builder(file).setChunkBytes(2048).setMaxInFlight(4), endpoint);
+
+        try {
+            first.run();
+            fail("A server error should stop the backfill.");
+        }
+        catch(IOException e) {
+            assertTrue(e.getMessage().contains("stopped at byte " + first.getCheckpoint()));
+        }
+
+        long checkpoint = first.getCheckpoint();
+        assertTrue("The checkpoint should be past the events taken before the failure.", checkpoint > 0);
+        assertTrue("The checkpoint should be before the failed event.", checkpoint < file.length());
+
+        Set<String> beforeCheckpoint = new HashSet<>();
+        String content = new String(Files.readAllBytes(file.toPath()), 0, (int) checkpoint, StandardCharsets.UTF_8);
+
+        for(String line : content.split("\r?\n")) {
+            beforeCheckpoint.add(new JSONObject(line).getString("event_name"));
+        }
+
+        assertFalse(beforeCheckpoint.contains("event-200"));
+        assertTrue("Every event before the checkpoint should have been sent.", first.sent.containsAll(beforeCheckpoint));
+
+        TestBackfill second = new TestBackfill(builder(file).setChunkBytes(2048).setMaxInFlight(4), endpoint);
+        second.run();
+
+        Set<String> all = new HashSet<>(first.sent);
+        all.addAll(second.sent);
+
+        assertEquals("Every event should be sent across both runs.", count, all.size());
+        assertTrue("Events before the checkpoint shouldn't be sent again.", Collections.disjoint(beforeCheckpoint, second.sent));
+        assertEquals(file.length(), second.getCheckpoint());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsMissingSecret() throws Exception {
+        new GambitBackfill.Builder(events(1), "access-key", "client-salt", null).build();
+    }
+
+    /**
+     * Backfill that answers events itself instead of sending them, recording the names of those it took
+     */
+    private static class TestBackfill extends GambitBackfill
+    {
+        final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        final Function<JSONObject, Integer> endpoint;
+
+        TestBackfill(GambitBackfill.Builder builder, Function<JSONObject, Integer> endpoint) {
+            super(builder);
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        protected CompletableFuture<GambitResponse> send(GambitRequest request) {
+            JSONObject event = new JSONObject(request.getBody());
+            int code = endpoint.apply(event);
+
+            if(code < 400) {
+                sent.add(event.getString("event_name"));
+            }
+
+            return CompletableFuture.completedFuture(new GambitResponse("{}", code));
+        }
+    }
+}
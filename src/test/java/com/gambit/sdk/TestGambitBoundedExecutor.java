@@ -0,0 +1,152 @@
+package com.gambit.sdk;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestGambitBoundedExecutor
+{
+    @Test
+    public void testRejectsOverloadWithoutGrowing() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        GambitBoundedExecutor executor = new GambitBoundedExecutor.Builder()
+            .setCoreThreads(1)
+            .setMaxThreads(2)
+            .setQueueCapacity(4)
+            .setRejectionPolicy(GambitBoundedExecutor.RejectionPolicy.REJECT)
+            .build();
+
+        List<Future<GambitResponse>> accepted = new ArrayList<>();
+        int rejected = 0;
+
+        // Ten times what the executor can hold, against an endpoint that doesn't answer
+        for(int i = 0; i < 60; ++i) {
+            try {
+                accepted.add(executor.submit(new TestGambitRequestStub("event-" + i) {
+                    @Override
+                    public GambitResponse call() throws IOException {
+                        try {
+                            release.await();
+                        }
+                        catch(InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+
+                        return super.call();
+                    }
+                }));
+            }
+            catch(RejectedExecutionException e) {
+                ++rejected;
+            }
+        }
+
+        assertEquals("Only the threads and the queue should hold requests.", 6, accepted.size());
+        assertEquals("The overload should be rejected.", 54, rejected);
+        assertEquals("Rejections should be counted.", 54, executor.getRejectedCount());
+        assertEquals("The thread count should stay bounded.", 2, executor.getPoolSize());
+        assertEquals("The queue should be full.", 4, executor.getQueueDepth());
+
+        release.countDown();
+
+        for(Future<GambitResponse> future : accepted) {
+            assertTrue(future.get(5, TimeUnit.SECONDS).isSuccess());
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCallerRunsOverload() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger onCaller = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+
+        GambitBoundedExecutor executor = new GambitBoundedExecutor.Builder()
+            .setCoreThreads(1)
+            .setMaxThreads(1)
+            .setQueueCapacity(1)
+            .build();
+
+        executor.execute(() -> {
+            try {
+                release.await();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(() -> {});
+
+        for(int i = 0; i < 5; ++i) {
+            executor.execute(() -> {
+                if(Thread.currentThread() == caller) {
+                    onCaller.incrementAndGet();
+                }
+            });
+        }
+
+        assertEquals("Requests that don't fit should run on the caller.", 5, onCaller.get());
+        assertEquals("Caller runs should be counted.", 5, executor.getCallerRunsCount());
+        assertEquals("Nothing should be rejected.", 0, executor.getRejectedCount());
+
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testIdleCoreThreadsEnd() throws Exception {
+        GambitBoundedExecutor executor = new GambitBoundedExecutor.Builder()
+            .setCoreThreads(4)
+            .setKeepAliveSeconds(1)
+            .build();
+
+        CountDownLatch started = new CountDownLatch(4);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for(int i = 0; i < 4; ++i) {
+            executor.execute(() -> {
+                started.countDown();
+
+                try {
+                    release.await();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals("Every core thread should be started.", 4, executor.getPoolSize());
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while(executor.getPoolSize() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals("Idle core threads should end, so they don't keep the JVM running.", 0, executor.getPoolSize());
+        assertFalse("The executor itself should stay usable.", executor.isShutdown());
+
+        executor.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsZeroKeepAlive() {
+        new GambitBoundedExecutor.Builder().setKeepAliveSeconds(0).build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.gambit.sdk;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.gambit.sdk.request.GambitRequestEvent;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestGambitCircuitBreaker
+{
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        GambitCircuitBreaker breaker = new GambitCircuitBreaker.Builder()
+            .setFailureThreshold(3)
+            .setOpenMillis(60000)
+            .build();
+
+        for(int i = 0; i < 2; ++i) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+
+        for(int i = 0; i < 3; ++i) {
+            assertEquals("A success should reset the failure count.", GambitCircuitBreaker.State.CLOSED, breaker.getState());
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+
+        assertEquals(GambitCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse("An open breaker should refuse events.", breaker.tryAcquire());
+        assertEquals(1, breaker.getOpenedCount());
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void testProbesWhenHalfOpen() throws Exception {
+        GambitCircuitBreaker breaker = new GambitCircuitBreaker.Builder()
+            .setFailureThreshold(1)
+            .setOpenMillis(20)
+            .build();
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Thread.sleep(40);
+
+        assertTrue("The first event after the open time should probe the endpoint.", breaker.tryAcquire());
+        assertEquals(GambitCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse("Only one probe should be in flight.", breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals("A failed probe should open the breaker again.", GambitCircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(40);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onIgnored();
+        assertTrue("A probe that was not sent should free its slot.", breaker.tryAcquire());
+        breaker.onSuccess();
+
+        assertEquals("A successful probe should close the breaker.", GambitCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2, breaker.getOpenedCount());
+    }
+
+    @Test
+    public void testServiceFailsFastWhileOpen() throws Exception {
+        GambitSDKService service = GambitSDKService.getInstance();
+        String hostname = service.mEndpointHostname;
+
+        LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("index", 1);
+
+        GambitRequestEvent event = new GambitRequestEvent.Builder("access-key", "client-salt", "0123")
+            .setNamespace("test-namespace")
+            .setEventName("event")
+            .setAttributes(attributes)
+            .build();
+
+        try {
+            service.mEndpointHostname = "127.0.0.1:1"; // nothing listens there
+            service.setCircuitBreaker(new GambitCircuitBreaker.Builder().setFailureThreshold(2).setOpenMillis(60000));
+
+            for(int i = 0; i < 2; ++i) {
+                try {
+                    service.sendGambitEvent(event).get(10, TimeUnit.SECONDS);
+                    fail("The endpoint should be unreachable.");
+                }
+                catch(ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+
+            assertEquals(GambitCircuitBreaker.State.OPEN, service.getCircuitBreaker().getState());
+
+            Future<GambitResponse> refused = service.sendGambitEvent(event);
+            assertTrue("An open breaker should fail events without sending them.", refused.isDone());
+
+            try {
+                refused.get();
+                fail("The refused event should fail.");
+            }
+            catch(ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        finally {
+            service.mEndpointHostname = hostname;
+            service.setCircuitBreaker(null);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.gambit.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestGambitConcurrencyLimit
+{
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Send as many events at once as the limit allows, each taking the given time
+     */
+    private static void round(GambitConcurrencyLimit limit, long rttNanos) {
+        int count = 0;
+
+        while(limit.tryAcquire()) {
+            ++count;
+        }
+
+        for(int i = 0; i < count; ++i) {
+            limit.release(rttNanos, false);
+        }
+    }
+
+    @Test
+    public void testRefusesOverLimit() {
+        GambitConcurrencyLimit limit = new GambitConcurrencyLimit.Builder().setInitialLimit(3).build();
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse("Events over the limit should be refused.", limit.tryAcquire());
+        assertEquals(3, limit.getInFlight());
+        assertEquals(1, limit.getRejectedCount());
+
+        limit.release();
+        assertTrue("A released event should free its slot.", limit.tryAcquire());
+    }
+
+    @Test
+    public void testGrowsWhileLatencyStaysLow() {
+        GambitConcurrencyLimit limit = new GambitConcurrencyLimit.Builder().setInitialLimit(10).build();
+
+        for(int i = 0; i < 20; ++i) {
+            round(limit, FAST);
+        }
+
+        assertTrue("The limit should grow while the endpoint keeps up: " + limit.getLimit(), limit.getLimit() > 10);
+        assertEquals(10.0, limit.getMinRttMillis(), 0.001);
+    }
+
+    @Test
+    public void testShrinksWhenLatencyGrows() {
+        GambitConcurrencyLimit limit = new GambitConcurrencyLimit.Builder().setInitialLimit(50).build();
+
+        round(limit, FAST);
+        int before = limit.getLimit();
+
+        for(int i = 0; i < 10; ++i) {
+            round(limit, 4 * FAST);
+        }
+
+        assertTrue("The limit should shrink once events queue at the endpoint: " + limit.getLimit(), limit.getLimit() < before);
+    }
+
+    @Test
+    public void testShrinksOnFailureWithinBounds() {
+        GambitConcurrencyLimit limit = new GambitConcurrencyLimit.Builder()
+            .setInitialLimit(5)
+            .setMinLimit(2)
+            .build();
+
+        for(int i = 0; i < 10; ++i) {
+            assertTrue(limit.tryAcquire());
+            limit.release(FAST, true);
+        }
+
+        assertEquals("Failures should shrink the limit down to the minimum.", 2, limit.getLimit());
+    }
+}
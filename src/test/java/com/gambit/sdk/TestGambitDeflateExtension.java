@@ -0,0 +1,231 @@
+package com.gambit.sdk;
+
+import java.io.ByteArrayOutputStream;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.gambit.sdk.exceptions.CogsException;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension.ExtensionContext;
+import org.glassfish.tyrus.core.frame.Frame;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestGambitDeflateExtension
+{
+    private static final byte[] MESSAGE = repeat("{\"chan\":\"prices\",\"msg\":\"the same snapshot again\"}", 40);
+
+    private static byte[] repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+
+        for(int i = 0; i < times; ++i) {
+            builder.append(text);
+        }
+
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ExtensionContext negotiated(GambitDeflateExtension extension, Extension.Parameter... response) {
+        Map<String, Object> properties = new HashMap<>();
+        ExtensionContext context = () -> properties;
+
+        extension.onHandshakeResponse(context, Arrays.asList(response));
+        return context;
+    }
+
+    private static Frame text(byte[] payload, boolean fin) {
+        return Frame.builder()
+            .opcode(GambitDeflateExtension.OPCODE_TEXT)
+            .fin(fin)
+            .payloadData(payload)
+            .payloadLength(payload.length)
+            .build();
+    }
+
+    private static boolean endsWithTail(byte[] data) {
+        byte[] tail = GambitDeflateExtension.TAIL;
+        return data.length >= tail.length && Arrays.equals(Arrays.copyOfRange(data, data.length - tail.length, data.length), tail);
+    }
+
+    /**
+     * Inflates a message as a peer would: the sent payload followed by the stripped tail.
+     */
+    private static byte[] inflateAlone(byte[] payload) throws Exception {
+        Inflater inflater = new Inflater(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int count;
+
+        inflater.setInput(payload);
+        while((count = inflater.inflate(chunk)) > 0) {
+            out.write(chunk, 0, count);
+        }
+
+        inflater.setInput(GambitDeflateExtension.TAIL);
+        while((count = inflater.inflate(chunk)) > 0) {
+            out.write(chunk, 0, count);
+        }
+
+        inflater.end();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testCompressedFrameRoundTrips() throws Exception {
+        GambitDeflateExtension extension = new GambitDeflateExtension.Builder().build();
+        ExtensionContext client = negotiated(extension);
+        ExtensionContext peer = negotiated(extension);
+
+        Frame sent = extension.processOutgoing(client, text(MESSAGE, true));
+
+        assertTrue("A compressed frame should have RSV1 set.", sent.isRsv1());
+        assertTrue("The message should be compressed.", sent.getPayloadData().length < MESSAGE.length);
+        assertEquals(sent.getPayloadData().length, sent.getPayloadLength());
+        assertFalse("The empty block trailer should be stripped.", endsWithTail(sent.getPayloadData()));
+        assertArrayEquals("The trailer should be all that was stripped.", MESSAGE, inflateAlone(sent.getPayloadData()));
+
+        Frame received = extension.processIncoming(peer, sent);
+
+        assertFalse("An inflated frame should have RSV1 cleared.", received.isRsv1());
+        assertArrayEquals("The message should inflate to what was sent.", MESSAGE, received.getPayloadData());
+        assertEquals(MESSAGE.length, received.getPayloadLength());
+    }
+
+    @Test
+    public void testShortMessagesAreSentUncompressed() {
+        GambitDeflateExtension extension = new GambitDeflateExtension.Builder().setThreshold(64).build();
+        ExtensionContext context = negotiated(extension);
+
+        byte[] payload = "{\"chan\":\"prices\"}".getBytes(StandardCharsets.UTF_8);
+        Frame sent = extension.processOutgoing(context, text(payload, true));
+
+        assertFalse("A message below the threshold should not have RSV1 set.", sent.isRsv1());
+        assertArrayEquals("A message below the threshold should be sent as it is.", payload, sent.getPayloadData());
+
+        Frame received = extension.processIncoming(context, sent);
+        assertArrayEquals("An uncompressed frame should be passed on as it is.", payload, received.getPayloadData());
+    }
+
+    @Test
+    public void testNoContextTakeoverResetsDeflater() throws Exception {
+        GambitDeflateExtension keeping = new GambitDeflateExtension.Builder().build();
+        ExtensionContext kept = negotiated(keeping);
+
+        byte[] first = keeping.processOutgoing(kept, text(MESSAGE, true)).getPayloadData();
+        byte[] second = keeping.processOutgoing(kept, text(MESSAGE, true)).getPayloadData();
+
+        assertTrue("With context takeover the repeated message should refer back to the first.", second.length < first.length);
+
+        GambitDeflateExtension resetting = new GambitDeflateExtension.Builder().setClientContextTakeover(false).build();
+        ExtensionContext reset = negotiated(resetting);
+
+        first = resetting.processOutgoing(reset, text(MESSAGE, true)).getPayloadData();
+        second = resetting.processOutgoing(reset, text(MESSAGE, true)).getPayloadData();
+
+        assertArrayEquals("Without context takeover each message should be compressed from scratch.", first, second);
+        assertArrayEquals("Each message should inflate on its own.", MESSAGE, inflateAlone(second));
+    }
+
+    @Test
+    public void testServerNoContextTakeoverResetsInflater() {
+        GambitDeflateExtension extension = new GambitDeflateExtension.Builder().setClientContextTakeover(false).build();
+        ExtensionContext sender = negotiated(extension);
+        ExtensionContext receiver = negotiated(extension, new GambitDeflateExtension.Parameter("server_no_context_takeover", null));
+
+        for(int i = 0; i < 3; ++i) {
+            Frame received = extension.processIncoming(receiver, extension.processOutgoing(sender, text(MESSAGE, true)));
+            assertArrayEquals("Every message should inflate from a fresh context.", MESSAGE, received.getPayloadData());
+        }
+    }
+
+    @Test
+    public void testFragmentedMessageInflates() {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[] compressed = GambitDeflateExtension.deflate(deflater, MESSAGE);
+        deflater.end();
+
+        int third = compressed.length / 3;
+        Frame first = Frame.builder(text(Arrays.copyOfRange(compressed, 0, third), false)).rsv1(true).build();
+        Frame middle = Frame.builder()
+            .opcode(GambitDeflateExtension.OPCODE_CONTINUATION)
+            .fin(false)
+            .payloadData(Arrays.copyOfRange(compressed, third, 2 * third))
+            .payloadLength(third)
+            .build();
+        Frame last = Frame.builder()
+            .opcode(GambitDeflateExtension.OPCODE_CONTINUATION)
+            .fin(true)
+            .payloadData(Arrays.copyOfRange(compressed, 2 * third, compressed.length))
+            .payloadLength(compressed.length - 2 * third)
+            .build();
+
+        GambitDeflateExtension extension = new GambitDeflateExtension.Builder().build();
+        ExtensionContext context = negotiated(extension);
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+
+        for(Frame frame : Arrays.asList(first, middle, last)) {
+            byte[] inflated = extension.processIncoming(context, frame).getPayloadData();
+            message.write(inflated, 0, inflated.length);
+        }
+
+        assertArrayEquals("The fragments should inflate to the whole message.", MESSAGE, message.toByteArray());
+
+        byte[] plain = "not compressed".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals("The next uncompressed message should be passed on as it is.",
+            plain, extension.processIncoming(context, text(plain, true)).getPayloadData());
+    }
+
+    @Test
+    public void testOffersConfiguredParameters() {
+        List<Extension.Parameter> offered = new GambitDeflateExtension.Builder()
+            .setClientContextTakeover(false)
+            .setServerContextTakeover(false)
+            .setServerMaxWindowBits(10)
+            .build()
+            .getParameters();
+
+        assertEquals(3, offered.size());
+        assertEquals("client_no_context_takeover", offered.get(0).getName());
+        assertEquals("server_no_context_takeover", offered.get(1).getName());
+        assertEquals("server_max_window_bits", offered.get(2).getName());
+        assertEquals("10", offered.get(2).getValue());
+
+        assertTrue("The defaults should offer no parameters.", new GambitDeflateExtension.Builder().build().getParameters().isEmpty());
+    }
+
+    @Test
+    public void testParsesHandshakeResponse() {
+        GambitDeflateExtension extension = new GambitDeflateExtension.Builder().build();
+
+        Map<String, Object> defaults = negotiated(extension).getProperties();
+        assertEquals(false, defaults.get(GambitDeflateExtension.RESET_DEFLATER));
+        assertEquals(false, defaults.get(GambitDeflateExtension.RESET_INFLATER));
+        assertEquals(15, defaults.get(GambitDeflateExtension.SERVER_MAX_WINDOW_BITS));
+
+        Map<String, Object> accepted = negotiated(extension,
+            new GambitDeflateExtension.Parameter("client_no_context_takeover", null),
+            new GambitDeflateExtension.Parameter("server_no_context_takeover", null),
+            new GambitDeflateExtension.Parameter("server_max_window_bits", "10")).getProperties();
+
+        assertEquals(true, accepted.get(GambitDeflateExtension.RESET_DEFLATER));
+        assertEquals(true, accepted.get(GambitDeflateExtension.RESET_INFLATER));
+        assertEquals(10, accepted.get(GambitDeflateExtension.SERVER_MAX_WINDOW_BITS));
+    }
+
+    @Test(expected = CogsException.class)
+    public void testRejectsInvalidWindowBits() {
+        negotiated(new GambitDeflateExtension.Builder().build(),
+            new GambitDeflateExtension.Parameter("server_max_window_bits", "16"));
+    }
+}
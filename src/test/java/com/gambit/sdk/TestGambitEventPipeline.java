@@ -0,0 +1,178 @@
+package com.gambit.sdk;
+
+import java.io.IOException;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestGambitEventPipeline
+{
+    @Test
+    public void testBatchesBySizeAndAnswersEachCaller() throws Exception {
+        GambitEventPipeline pipeline = new GambitEventPipeline.Builder()
+            .setMaxBatchSize(5)
+            .setLingerMillis(10000)
+            .build();
+
+        List<CompletableFuture<GambitResponse>> futures = new ArrayList<>();
+
+        for(int i = 0; i < 10; ++i) {
+            futures.add(pipeline.submit(new TestGambitRequestStub(i == 3 ? null : "event-" + i)));
+        }
+
+        for(int i = 0; i < 10; ++i) {
+            if(i == 3) {
+                try {
+                    futures.get(i).get(5, TimeUnit.SECONDS);
+                    fail("The failing event should fail its own future.");
+                }
+                catch(ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+            else {
+                assertEquals("Each caller should get its own response.", "event-" + i, futures.get(i).get(5, TimeUnit.SECONDS).getObject().getString("message"));
+            }
+        }
+
+        assertEquals("Full batches should not wait for the linger time.", 2, pipeline.getBatchCount());
+        assertEquals("Batches should be filled up to the maximum size.", 5, pipeline.getLargestBatchSize());
+        assertEquals("Successful events should be counted.", 9, pipeline.getSentCount());
+        assertEquals("Failed events should be counted.", 1, pipeline.getFailedCount());
+    }
+
+    @Test
+    public void testSendsPartialBatchAfterLinger() throws Exception {
+        GambitEventPipeline pipeline = new GambitEventPipeline.Builder()
+            .setMaxBatchSize(100)
+            .setLingerMillis(200)
+            .build();
+
+        CompletableFuture<GambitResponse> first = pipeline.submit(new TestGambitRequestStub("first"));
+        CompletableFuture<GambitResponse> second = pipeline.submit(new TestGambitRequestStub("second"));
+
+        assertTrue(first.get(5, TimeUnit.SECONDS).isSuccess());
+        assertTrue(second.get(5, TimeUnit.SECONDS).isSuccess());
+
+        assertEquals("Both events should share one batch.", 1, pipeline.getBatchCount());
+        assertEquals("Both events should share one batch.", 2.0, pipeline.getAverageBatchSize(), 0.0);
+    }
+
+    @Test
+    public void testRejectsWithoutBlockingWhenQueueIsFull() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        GambitEventPipeline pipeline = new GambitEventPipeline.Builder()
+            .setQueueCapacity(2)
+            .setMaxBatchSize(1)
+            .setLingerMillis(0)
+            .setMaxConcurrentBatches(1)
+            .build();
+
+        CompletableFuture<GambitResponse> blocked = pipeline.submit(new TestGambitRequestStub("blocked") {
+            @Override
+            public GambitResponse call() throws IOException {
+                sending.countDown();
+
+                try {
+                    release.await();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return super.call();
+            }
+        });
+
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        // Taken by the batcher, which then waits for the only sender
+        pipeline.submit(new TestGambitRequestStub("waiting"));
+        while(pipeline.getQueueDepth() > 0) {
+            Thread.sleep(1);
+        }
+
+        pipeline.submit(new TestGambitRequestStub("queued-1"));
+        pipeline.submit(new TestGambitRequestStub("queued-2"));
+        CompletableFuture<GambitResponse> rejected = pipeline.submit(new TestGambitRequestStub("rejected"));
+
+        assertTrue("The overflowing event should fail right away.", rejected.isCompletedExceptionally());
+        assertEquals("The rejection should be counted.", 1, pipeline.getRejectedCount());
+        assertEquals("The queue should be full.", 2, pipeline.getQueueDepth());
+        assertEquals("One batch should be in flight.", 1, pipeline.getBatchesInFlight());
+
+        try {
+            rejected.get();
+        }
+        catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        release.countDown();
+        pipeline.shutdown();
+
+        assertTrue("Queued events should be sent on shutdown.", pipeline.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(blocked.isDone());
+        assertEquals("Every accepted event should be sent.", 4, pipeline.getSentCount());
+        assertTrue("Events after shutdown should be rejected.", pipeline.submit(new TestGambitRequestStub("late")).isCompletedExceptionally());
+    }
+}
+
+/**
+ * Request that answers with its own message instead of calling the endpoint, or fails if it has none.
+ */
+class TestGambitRequestStub extends GambitRequest
+{
+    private final String message;
+
+    public TestGambitRequestStub(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public GambitResponse call() throws IOException {
+        if(message == null) {
+            throw new IOException("Connection refused");
+        }
+
+        return getResponse("{\"message\":\"" + message + "\"}", 200);
+    }
+
+    @Override
+    protected String getMethod() {
+        return "POST";
+    }
+
+    @Override
+    protected URL getUrl() throws IOException {
+        return new URL("https://localhost/event");
+    }
+
+    @Override
+    protected String getBody() {
+        return "{}";
+    }
+
+    @Override
+    protected void setRequestParams(HttpURLConnection connection) {
+    }
+
+    @Override
+    protected GambitResponse getResponse(String response, int code) {
+        return new GambitResponse(response, code);
+    }
+}
@@ -0,0 +1,231 @@
+package com.gambit.sdk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+
+import com.gambit.sdk.exceptions.GambitSpooledException;
+import com.gambit.sdk.request.GambitRequestEvent;
+
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestGambitEventSpool
+{
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static GambitRequestEvent event(int index) throws Exception {
+        LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("index", index);
+
+        return new GambitRequestEvent.Builder("access-key", "client-salt", SECRET)
+            .setNamespace("test-namespace")
+            .setEventName("event-" + index)
+            .setAttributes(attributes)
+            .build();
+    }
+
+    private static List<String> names(int count) {
+        List<String> names = new ArrayList<>();
+
+        for(int i = 0; i < count; ++i) {
+            names.add("event-" + i);
+        }
+
+        return names;
+    }
+
+    private static void awaitDrained(GambitEventSpool spool) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while(spool.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals("Every spooled event should be acknowledged.", 0, spool.getPendingCount());
+    }
+
+    private GambitEventSpool.Builder builder() throws IOException {
+        return new GambitEventSpool.Builder(folder.getRoot())
+            .setSegmentBytes(4096)
+            .setReplayIntervalMillis(3600000);
+    }
+
+    @Test
+    public void testReplaysInOrderAndDeletesSegments() throws Exception {
+        TestSpool spool = new TestSpool(builder().setMaxConcurrentReplays(1));
+
+        for(int i = 0; i < 100; ++i) {
+            spool.append(event(i));
+        }
+
+        assertTrue("Full segments should roll over to new ones.", spool.getSegmentCount() > 1);
+
+        spool.replay();
+        awaitDrained(spool);
+
+        assertEquals("Events should be replayed in the order they were spooled.", names(100), spool.sent);
+        assertEquals("Acknowledged segments should be deleted.", 0, spool.getSegmentCount());
+        assertEquals("Acknowledged segments should be deleted.", 0, folder.getRoot().listFiles().length);
+
+        spool.append(event(100));
+        spool.replay();
+        awaitDrained(spool);
+
+        assertEquals("Events spooled after a replay should be sent too.", "event-100", spool.sent.get(100));
+        spool.close();
+    }
+
+    @Test
+    public void testResumesAfterFailureWithoutDuplicates() throws Exception {
+        TestSpool spool = new TestSpool(builder().setMaxConcurrentReplays(4));
+        spool.failOnce.addAll(Arrays.asList("event-10", "event-11", "event-40"));
+
+        for(int i = 0; i < 60; ++i) {
+            spool.append(event(i));
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while(spool.failOnce.size() == 3 && System.currentTimeMillis() < deadline) {
+            spool.replay();
+            Thread.sleep(5);
+        }
+
+        while(spool.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            spool.replay();
+            Thread.sleep(5);
+        }
+
+        assertEquals(0, spool.getPendingCount());
+        assertEquals("Every failed event should be retried.", 0, spool.failOnce.size());
+        assertEquals(3, spool.getReplayFailureCount());
+
+        for(String name : names(60)) {
+            assertEquals(name + " should be acknowledged exactly once.", 1, spool.acknowledged.get(name).get());
+        }
+
+        assertEquals(0, spool.getSegmentCount());
+        spool.close();
+    }
+
+    @Test
+    public void testRecoversSpooledEventsAfterRestart() throws Exception {
+        GambitEventSpool.Builder builder = builder()
+            .setFsyncPolicy(GambitEventSpool.FsyncPolicy.EVERY_APPEND)
+            .setMaxConcurrentReplays(1);
+        TestSpool first = new TestSpool(builder);
+
+        for(int i = 0; i < 30; ++i) {
+            first.append(event(i));
+        }
+
+        first.close();
+
+        // Tear the last event, as a crash in the middle of writing it would
+        File[] segments = folder.getRoot().listFiles();
+        Arrays.sort(segments);
+
+        try(RandomAccessFile file = new RandomAccessFile(segments[segments.length - 1], "rw")) {
+            byte[] content = new byte[(int) file.length()];
+            file.readFully(content);
+
+            int last = new String(content, StandardCharsets.ISO_8859_1).lastIndexOf("event-29");
+            file.seek(last);
+            file.write('X');
+        }
+
+        TestSpool second = new TestSpool(builder);
+
+        assertEquals("Intact events should be recovered.", 29, second.getPendingCount());
+
+        second.replay();
+        awaitDrained(second);
+
+        assertEquals("Recovered events should be replayed in order.", names(29), second.sent);
+        second.close();
+    }
+
+    @Test
+    public void testServiceSpoolsUndeliverableEvents() throws Exception {
+        GambitSDKService service = GambitSDKService.getInstance();
+        String hostname = service.mEndpointHostname;
+
+        try {
+            service.mEndpointHostname = "127.0.0.1:1"; // nothing listens there
+            service.setEventSpool(builder());
+
+            try {
+                service.sendGambitEvent(event(0)).get(10, TimeUnit.SECONDS);
+                fail("An undeliverable event should fail its future.");
+            }
+            catch(ExecutionException e) {
+                assertTrue(e.getCause() instanceof GambitSpooledException);
+                assertTrue(e.getCause().getCause() instanceof IOException);
+            }
+
+            assertEquals("The event should be spooled.", 1, service.getEventSpool().getPendingCount());
+        }
+        finally {
+            service.mEndpointHostname = hostname;
+            service.setEventSpool(null);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsAppendAfterClose() throws Exception {
+        TestSpool spool = new TestSpool(builder());
+        spool.close();
+        spool.append(event(0));
+    }
+
+    /**
+     * Spool that records the events it replays instead of sending them, failing some of them once.
+     */
+    private static class TestSpool extends GambitEventSpool
+    {
+        final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        final Map<String, AtomicInteger> acknowledged = new ConcurrentHashMap<>();
+        final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+
+        TestSpool(GambitEventSpool.Builder builder) throws IOException {
+            super(builder);
+        }
+
+        @Override
+        protected GambitResponse send(GambitRequest request) throws Exception {
+            String name = new JSONObject(request.getBody()).getString("event_name");
+
+            if(failOnce.remove(name)) {
+                throw new IOException("Connection refused");
+            }
+
+            sent.add(name);
+            acknowledged.computeIfAbsent(name, (key) -> new AtomicInteger()).incrementAndGet();
+
+            return new GambitResponse("{}", 200);
+        }
+    }
+}
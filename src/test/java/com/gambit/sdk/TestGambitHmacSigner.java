@@ -0,0 +1,72 @@
+package com.gambit.sdk;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestGambitHmacSigner
+{
+    private static final String KEY = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private static String reference(String content, String key) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(DatatypeConverter.parseHexBinary(key), "HmacSHA256"));
+
+        return DatatypeConverter.printHexBinary(mac.doFinal(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testMatchesUncachedSignature() throws Exception {
+        for(String content : new String[] { "", "{\"event_name\":\"test\"}", "Gr\u00fc\u00dfe \u4e16\u754c" }) {
+            assertEquals("The signature should not change.", reference(content, KEY), GambitRequest.getHmac(content, KEY));
+        }
+
+        assertEquals("Signing twice should give the same signature.", GambitRequest.getHmac("payload", KEY), GambitRequest.getHmac("payload", KEY));
+        assertNotEquals("Another key should give another signature.", GambitRequest.getHmac("payload", KEY), GambitRequest.getHmac("payload", KEY.replace('0', '1')));
+    }
+
+    @Test
+    public void testReusesSignerPerKey() throws Exception {
+        assertSame("The signer of a key should be cached.", GambitHmacSigner.forKey(KEY), GambitHmacSigner.forKey(KEY));
+    }
+
+    @Test
+    public void testSignsConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        GambitHmacSigner signer = GambitHmacSigner.forKey(KEY);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        for(int i = 0; i < 4; ++i) {
+            results.add(executor.submit(() -> {
+                for(int j = 0; j < 500; ++j) {
+                    String content = "event-" + j;
+
+                    if(!reference(content, KEY).equals(signer.sign(content.getBytes(StandardCharsets.UTF_8)))) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }));
+        }
+
+        for(Future<Boolean> result : results) {
+            assertTrue("Threads signing at the same time should not disturb each other.", result.get(10, TimeUnit.SECONDS));
+        }
+
+        executor.shutdown();
+    }
+}
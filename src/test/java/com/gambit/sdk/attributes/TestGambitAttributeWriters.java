@@ -0,0 +1,130 @@
+package com.gambit.sdk.attributes;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestGambitAttributeWriters
+{
+    public enum Tier { GOLD, SILVER }
+
+    @GambitAttributes
+    public static class Address
+    {
+        String city;
+        int zip;
+    }
+
+    @GambitAttributes
+    public static class Purchase
+    {
+        @GambitAttribute("customer_email")
+        String email;
+        long orderId;
+        int quantity;
+        double total;
+        float discount;
+        boolean gift;
+        char grade;
+        Integer points;
+        Double rating;
+        Tier tier;
+        List<String> items;
+        Address shipping;
+        transient String ignored = "ignored";
+        static String alsoIgnored = "ignored";
+
+        private String note;
+
+        public String getNote() {
+            return note;
+        }
+    }
+
+    private static Purchase purchase() {
+        Purchase purchase = new Purchase();
+        purchase.email = "some\"one\"@example.com</";
+        purchase.orderId = 1234567890123L;
+        purchase.quantity = 3;
+        purchase.total = 19.5;
+        purchase.discount = 0.25f;
+        purchase.gift = true;
+        purchase.grade = 'A';
+        purchase.points = 42;
+        purchase.tier = Tier.GOLD;
+        purchase.items = Arrays.asList("book", "pen");
+        purchase.shipping = new Address();
+        purchase.shipping.city = "Z\u00fcrich\n";
+        purchase.shipping.zip = 8001;
+        purchase.note = "\u2028handle with care";
+        return purchase;
+    }
+
+    private static LinkedHashMap<String, Object> map(Purchase purchase) {
+        LinkedHashMap<String, Object> shipping = new LinkedHashMap<>();
+        shipping.put("city", purchase.shipping.city);
+        shipping.put("zip", purchase.shipping.zip);
+
+        LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("customer_email", purchase.email);
+        attributes.put("orderId", purchase.orderId);
+        attributes.put("quantity", purchase.quantity);
+        attributes.put("total", purchase.total);
+        attributes.put("discount", purchase.discount);
+        attributes.put("gift", purchase.gift);
+        attributes.put("grade", String.valueOf(purchase.grade));
+        attributes.put("points", purchase.points);
+        attributes.put("tier", purchase.tier.name());
+        attributes.put("items", purchase.items);
+        attributes.put("shipping", shipping);
+        attributes.put("note", purchase.getNote());
+        return attributes;
+    }
+
+    @Test
+    public void testWritesSameJsonAsMap() {
+        Purchase purchase = purchase();
+        String json = GambitAttributeWriters.toJson(purchase);
+
+        assertTrue("The generated writer should write the same attributes as the map path: " + json,
+            new JSONObject(new JSONObject(map(purchase)).toString()).similar(new JSONObject(json)));
+        assertFalse("Null attributes should be left out.", new JSONObject(json).has("rating"));
+        assertFalse("Transient fields should be left out.", new JSONObject(json).has("ignored"));
+    }
+
+    @Test
+    public void testEscapesStringsLikeJsonObject() {
+        String text = "quote\" slash\\ </script> \u0001 \u0085 \u2028";
+        StringBuilder out = new StringBuilder();
+
+        GambitAttributeWriters.writeString(text, out);
+
+        assertEquals(JSONObject.quote(text), out.toString());
+    }
+
+    @Test
+    public void testLooksUpGeneratedWriter() {
+        assertSame(TestGambitAttributeWriters_Purchase_GambitAttributeWriter.INSTANCE, GambitAttributeWriters.forType(Purchase.class));
+        assertSame("The writer of a nested class should be named after its enclosing classes.",
+            TestGambitAttributeWriters_Address_GambitAttributeWriter.INSTANCE, GambitAttributeWriters.forType(Address.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsClassWithoutWriter() {
+        GambitAttributeWriters.forType(String.class);
+    }
+
+    @Test(expected = JSONException.class)
+    public void testRejectsNonFiniteNumbers() {
+        Purchase purchase = purchase();
+        purchase.total = Double.NaN;
+
+        GambitAttributeWriters.toJson(purchase);
+    }
+}
@@ -0,0 +1,190 @@
+package com.gambit.sdk.pubsub;
+
+import java.time.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gambit.sdk.pubsub.utils.PubSubUtils;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubAckedPublisher
+{
+    private static void awaitAll(List<CompletableFuture<UUID>> futures) throws Exception {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+            .handle((voidReturn, error) -> null)
+            .get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testWindowGrowsWhileAcksAreFast() throws Exception {
+        TestPubSubHandleAcking handle = new TestPubSubHandleAcking();
+        PubSubAckedPublisher publisher = new PubSubAckedPublisher.Builder(handle)
+            .setInitialWindow(4)
+            .setMaxWindow(32)
+            .setRttTolerance(1000.0)
+            .build();
+
+        List<CompletableFuture<UUID>> futures = new ArrayList<>();
+        for(int i = 0; i < 500; ++i) {
+            futures.add(publisher.publish("channel", "message-" + i));
+        }
+
+        assertTrue("Publishes beyond the window should be queued.", publisher.getQueued() > 0);
+        awaitAll(futures);
+
+        for(CompletableFuture<UUID> future : futures) {
+            assertNotNull("Every publish should be acknowledged.", future.get());
+        }
+
+        assertTrue("The window should have grown.", publisher.getWindow() > 4);
+        assertTrue("No more than the largest window should be in flight.", handle.maxInFlight.get() <= 32);
+        assertNotNull("The round-trip time should be measured.", publisher.getRtt());
+        assertEquals("Nothing should be left in flight.", 0, publisher.getInFlight());
+    }
+
+    @Test
+    public void testErrorResponsesShrinkWindow() throws Exception {
+        TestPubSubHandleAcking handle = new TestPubSubHandleAcking();
+        handle.failing = true;
+
+        PubSubAckedPublisher publisher = new PubSubAckedPublisher.Builder(handle)
+            .setInitialWindow(64)
+            .setMinWindow(2)
+            .build();
+
+        List<CompletableFuture<UUID>> futures = new ArrayList<>();
+        for(int i = 0; i < 200; ++i) {
+            futures.add(publisher.publish("channel", "message-" + i));
+        }
+
+        awaitAll(futures);
+
+        assertTrue("Failed publishes should complete exceptionally.", futures.get(0).isCompletedExceptionally());
+        assertEquals("The window should shrink to its minimum.", 2, publisher.getWindow());
+    }
+
+    @Test
+    public void testOneCongestedRoundTripShrinksOnce() throws Exception {
+        TestPubSubHandleAcking handle = new TestPubSubHandleAcking();
+        handle.failing = true;
+        handle.holding = true;
+
+        PubSubAckedPublisher publisher = new PubSubAckedPublisher.Builder(handle)
+            .setInitialWindow(64)
+            .build();
+
+        // All 64 are sent before any fails, so together they count as a single congestion signal
+        List<CompletableFuture<UUID>> futures = new ArrayList<>();
+        for(int i = 0; i < 64; ++i) {
+            futures.add(publisher.publish("channel", "message-" + i));
+        }
+
+        assertEquals("The whole window should be in flight.", 64, publisher.getInFlight());
+
+        handle.release();
+        awaitAll(futures);
+
+        assertEquals("The window should be halved once.", 32, publisher.getWindow());
+    }
+
+    @Test
+    public void testLostAcksTimeOutAndFreeWindow() throws Exception {
+        TestPubSubHandleAcking handle = new TestPubSubHandleAcking();
+        handle.holding = true; // never answered
+
+        PubSubAckedPublisher publisher = new PubSubAckedPublisher.Builder(handle)
+            .setInitialWindow(4)
+            .setAckTimeout(Duration.ofMillis(50))
+            .build();
+
+        List<CompletableFuture<UUID>> futures = new ArrayList<>();
+        for(int i = 0; i < 8; ++i) {
+            futures.add(publisher.publish("channel", "message-" + i));
+        }
+
+        awaitAll(futures);
+
+        for(CompletableFuture<UUID> future : futures) {
+            try {
+                future.get();
+                fail("A publish without acknowledgement should fail.");
+            }
+            catch(ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+        }
+
+        assertEquals("Every publish should be sent once the window frees up.", 8, handle.inFlight.get());
+        assertEquals("Nothing should be left in flight.", 0, publisher.getInFlight());
+        assertTrue("Lost acknowledgements should shrink the window.", publisher.getWindow() < 4);
+    }
+}
+
+/**
+ * Handle that acknowledges publishes after a short delay, or answers them with an error.
+ */
+class TestPubSubHandleAcking extends PubSubHandle
+{
+    public final AtomicInteger inFlight = new AtomicInteger();
+    public final AtomicInteger maxInFlight = new AtomicInteger();
+    public volatile boolean failing = false;
+    public volatile boolean holding = false;
+
+    private final List<Runnable> held = new ArrayList<>();
+
+    public TestPubSubHandleAcking() {
+        super(null);
+    }
+
+    @Override
+    public CompletableFuture<UUID> publishWithAck(String channel, String message) {
+        CompletableFuture<UUID> outcome = new CompletableFuture<>();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+        Runnable answer = () -> {
+            inFlight.decrementAndGet();
+
+            if(failing) {
+                outcome.completeExceptionally(new IllegalStateException("Rejected by the server"));
+            }
+            else {
+                outcome.complete(UUID.randomUUID());
+            }
+        };
+
+        if(holding) {
+            synchronized(held) {
+                held.add(answer);
+            }
+        }
+        else {
+            PubSubUtils.getScheduler().schedule(answer, 1, TimeUnit.MILLISECONDS);
+        }
+
+        return outcome;
+    }
+
+    /**
+     * Answers the publishes held so far.
+     */
+    public void release() {
+        List<Runnable> answers;
+
+        synchronized(held) {
+            answers = new ArrayList<>(held);
+            held.clear();
+        }
+
+        answers.forEach(Runnable::run);
+    }
+}
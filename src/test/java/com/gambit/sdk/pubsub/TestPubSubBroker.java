@@ -0,0 +1,245 @@
+package com.gambit.sdk.pubsub;
+
+import java.time.Instant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gambit.sdk.pubsub.handlers.PubSubMessageHandler;
+
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubBroker
+{
+    private static PubSubMessageRecord record(String channel, String message) {
+        return new PubSubMessageRecord(new JSONObject()
+            .put("id", UUID.randomUUID().toString())
+            .put("chan", channel)
+            .put("msg", message)
+            .put("time", Instant.now().toString()));
+    }
+
+    @Test
+    public void testListenersShareOneSubscription() throws Exception {
+        TestPubSubHandleUpstream handle = new TestPubSubHandleUpstream();
+        PubSubBroker broker = new PubSubBroker(handle);
+
+        List<String> first = new CopyOnWriteArrayList<>();
+        List<String> second = new CopyOnWriteArrayList<>();
+
+        PubSubSubscription one = broker.subscribe("shared", (record) -> first.add(record.getMessage())).get(1, TimeUnit.SECONDS);
+        PubSubSubscription two = broker.subscribe("shared", (record) -> second.add(record.getMessage())).get(1, TimeUnit.SECONDS);
+
+        assertEquals("The channel should be subscribed to once.", 1, handle.subscribes.get());
+        assertEquals("The channel should have both listeners.", 2, broker.getListenerCount("shared"));
+
+        handle.deliver(record("shared", "hello"));
+        assertEquals("The first listener should receive the message.", 1, first.size());
+        assertEquals("The second listener should receive the message.", 1, second.size());
+
+        one.close().get(1, TimeUnit.SECONDS);
+        assertEquals("The channel should stay subscribed while it has a listener.", 0, handle.unsubscribes.get());
+
+        handle.deliver(record("shared", "again"));
+        assertEquals("A closed listener should not receive messages.", 1, first.size());
+        assertEquals("The remaining listener should receive the message.", 2, second.size());
+
+        two.close().get(1, TimeUnit.SECONDS);
+        two.close().get(1, TimeUnit.SECONDS);
+
+        assertEquals("The last listener leaving should unsubscribe once.", 1, handle.unsubscribes.get());
+        assertTrue("No channel should be left.", broker.getChannels().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentSubscribersShareOneRequest() throws Exception {
+        TestPubSubHandleUpstream handle = new TestPubSubHandleUpstream();
+        handle.delayed = true;
+
+        PubSubBroker broker = new PubSubBroker(handle);
+        List<CompletableFuture<PubSubSubscription>> futures = new ArrayList<>();
+
+        for(int i = 0; i < 10; ++i) {
+            futures.add(broker.subscribe("shared", (record) -> {}));
+        }
+
+        assertFalse("Listeners should wait for the subscription.", futures.get(0).isDone());
+
+        handle.release();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(1, TimeUnit.SECONDS);
+
+        assertEquals("The pending subscription should be shared.", 1, handle.subscribes.get());
+        assertEquals("Every listener should be added.", 10, broker.getListenerCount("shared"));
+    }
+
+    @Test
+    public void testFailedSubscribeRemovesListeners() throws Exception {
+        TestPubSubHandleUpstream handle = new TestPubSubHandleUpstream();
+        handle.failing = true;
+
+        PubSubBroker broker = new PubSubBroker(handle);
+
+        try {
+            broker.subscribe("denied", (record) -> {}).get(1, TimeUnit.SECONDS);
+            fail("The subscription should fail.");
+        }
+        catch(ExecutionException e) {
+            assertEquals("The listener should not be kept.", 0, broker.getListenerCount("denied"));
+        }
+
+        handle.failing = false;
+        broker.subscribe("denied", (record) -> {}).get(1, TimeUnit.SECONDS);
+
+        assertEquals("A later listener should subscribe again.", 2, handle.subscribes.get());
+    }
+
+    @Test
+    public void testResubscribeWaitsForUnsubscribe() throws Exception {
+        TestPubSubHandleUpstream handle = new TestPubSubHandleUpstream();
+        PubSubBroker broker = new PubSubBroker(handle);
+
+        PubSubSubscription first = broker.subscribe("channel", (record) -> {}).get(1, TimeUnit.SECONDS);
+
+        handle.delayed = true;
+        CompletableFuture<Void> closed = first.close();
+        CompletableFuture<PubSubSubscription> second = broker.subscribe("channel", (record) -> {});
+
+        assertEquals("The subscribe should wait for the unsubscribe.", 1, handle.subscribes.get());
+
+        handle.delayed = false;
+        handle.release();
+        closed.get(1, TimeUnit.SECONDS);
+        second.get(1, TimeUnit.SECONDS);
+
+        assertEquals("The requests should reach the server in order.", "subscribe,unsubscribe,subscribe", String.join(",", handle.requests));
+    }
+
+    @Test
+    public void testFailingListenerIsReported() throws Exception {
+        TestPubSubHandleUpstream handle = new TestPubSubHandleUpstream();
+        PubSubBroker broker = new PubSubBroker(handle);
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        broker.subscribe("channel", (record) -> {
+            throw new IllegalStateException("Listener failed");
+        }).get(1, TimeUnit.SECONDS);
+        broker.subscribe("channel", (record) -> received.add(record.getMessage())).get(1, TimeUnit.SECONDS);
+
+        handle.deliver(record("channel", "hello"));
+
+        assertEquals("The other listener should still receive the message.", 1, received.size());
+        assertEquals("The failure should be reported.", 1, handle.errors.size());
+        assertTrue(handle.errors.get(0) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testListenersAreCalledOutsideChannelLock() throws Exception {
+        TestPubSubHandleUpstream handle = new TestPubSubHandleUpstream();
+        PubSubHistory history = new PubSubHistory.Builder().setMaxMessagesPerChannel(10).build();
+        PubSubBroker broker = new PubSubBroker(handle, history);
+        List<String> replayed = new CopyOnWriteArrayList<>();
+        List<Exception> waits = new CopyOnWriteArrayList<>();
+
+        // The listener waits for another thread joining the same channel with a replay
+        broker.subscribe("channel", (record) -> {
+            CompletableFuture<PubSubSubscription> joined = CompletableFuture.supplyAsync(() ->
+                broker.subscribe("channel", (kept) -> replayed.add(kept.getMessage()), 10).join());
+
+            try {
+                joined.get(1, TimeUnit.SECONDS);
+            }
+            catch(Exception e) {
+                waits.add(e);
+            }
+        }).get(1, TimeUnit.SECONDS);
+
+        handle.deliver(record("channel", "hello"));
+
+        assertTrue("The joining listener shouldn't wait for the first one.", waits.isEmpty());
+        assertEquals("The kept message should be replayed once.", "hello", String.join(",", replayed));
+    }
+}
+
+/**
+ * Handle that answers subscribe and unsubscribe requests itself and can deliver messages to its subscriptions.
+ */
+class TestPubSubHandleUpstream extends PubSubHandle
+{
+    public final AtomicInteger subscribes = new AtomicInteger();
+    public final AtomicInteger unsubscribes = new AtomicInteger();
+    public final List<String> requests = new CopyOnWriteArrayList<>();
+    public final List<Throwable> errors = new CopyOnWriteArrayList<>();
+    public volatile boolean failing = false;
+    public volatile boolean delayed = false;
+
+    private final Map<String, PubSubMessageHandler> handlers = new ConcurrentHashMap<>();
+    private final List<Runnable> held = new CopyOnWriteArrayList<>();
+
+    public TestPubSubHandleUpstream() {
+        super(null);
+    }
+
+    public void deliver(PubSubMessageRecord record) {
+        handlers.get(record.getChannel()).onMessage(record);
+    }
+
+    @Override
+    void reportError(Throwable error) {
+        errors.add(error);
+    }
+
+    public void release() {
+        while(!held.isEmpty()) {
+            held.remove(0).run();
+        }
+    }
+
+    private CompletableFuture<List<String>> answer(Runnable effect) {
+        CompletableFuture<List<String>> outcome = new CompletableFuture<>();
+
+        Runnable respond = () -> {
+            if(failing) {
+                outcome.completeExceptionally(new IllegalStateException("Not authorized"));
+            }
+            else {
+                effect.run();
+                outcome.complete(new ArrayList<>(handlers.keySet()));
+            }
+        };
+
+        if(delayed) {
+            held.add(respond);
+        }
+        else {
+            respond.run();
+        }
+
+        return outcome;
+    }
+
+    @Override
+    public CompletableFuture<List<String>> subscribe(String channel, PubSubMessageHandler messageHandler) {
+        subscribes.incrementAndGet();
+        requests.add("subscribe");
+        return answer(() -> handlers.put(channel, messageHandler));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> unsubscribe(String channel) {
+        unsubscribes.incrementAndGet();
+        requests.add("unsubscribe");
+        return answer(() -> handlers.remove(channel));
+    }
+}
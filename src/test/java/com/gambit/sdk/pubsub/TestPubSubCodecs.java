@@ -0,0 +1,196 @@
+package com.gambit.sdk.pubsub;
+
+import javax.websocket.SendHandler;
+
+import java.time.Instant;
+
+import java.util.List;
+import java.util.UUID;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.gambit.sdk.pubsub.codecs.PubSubBytesCodec;
+import com.gambit.sdk.pubsub.codecs.PubSubCodec;
+import com.gambit.sdk.pubsub.codecs.PubSubCodecs;
+import com.gambit.sdk.pubsub.codecs.PubSubJsonCodec;
+import com.gambit.sdk.pubsub.exceptions.PubSubCodecException;
+import com.gambit.sdk.pubsub.handlers.PubSubErrorResponseHandler;
+import com.gambit.sdk.pubsub.handlers.PubSubMessageHandler;
+import com.gambit.sdk.pubsub.responses.successes.PubSubResponse;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubCodecs
+{
+    private static PubSubMessageRecord streamed(String msg) throws Exception {
+        String json = new JSONObject()
+            .put("id", UUID.randomUUID().toString())
+            .put("action", "msg")
+            .put("time", Instant.now().toString())
+            .put("chan", "TEST")
+            .put("msg", msg)
+            .toString();
+
+        PubSubFrameDecoder decoder = new PubSubFrameDecoder();
+        decoder.feed(json);
+
+        return new PubSubMessageRecord(decoder.finish());
+    }
+
+    @Test
+    public void testBuiltInCodecsRoundTrip() throws Exception {
+        byte[] bytes = { 0, 1, 2, (byte) 0xff, 42 };
+        JSONObject object = new JSONObject().put("price", 12.5).put("symbol", "ABC");
+
+        assertEquals("Strings should pass through.", "plain", PubSubCodecs.encode("plain"));
+        assertArrayEquals("Bytes should round trip through Base64.", bytes, PubSubCodecs.decode(byte[].class, PubSubCodecs.encode(bytes)));
+        assertEquals("Bytes should be encoded as Base64.", "AAEC/yo=", PubSubCodecs.encode(bytes));
+
+        String json = PubSubCodecs.encode(object);
+        assertEquals("JSON objects should be sent as JSON, not as a JSON string.", '{', json.charAt(0));
+        assertEquals("JSON objects should round trip.", "ABC", PubSubCodecs.decode(JSONObject.class, json).getString("symbol"));
+        assertEquals("JSON arrays should round trip.", 3, PubSubCodecs.decode(JSONArray.class, "[1,2,3]").length());
+    }
+
+    @Test
+    public void testCodecsAreCachedPerType() throws Exception {
+        assertSame("The same codec should be returned for a type.", PubSubCodecs.forType(JSONObject.class), PubSubCodecs.forType(JSONObject.class));
+    }
+
+    @Test
+    public void testDecodesStreamedRecordsFromTheFrame() throws Exception {
+        PubSubMessageRecord record = streamed("{\"symbol\":\"ABC\",\"bids\":[1,2,3]}");
+        JSONObject decoded = new PubSubJsonCodec().decode(record);
+
+        assertEquals("The object should be read from the frame.", 3, decoded.getJSONArray("bids").length());
+        assertEquals("The frame should be read without copying out the message.", "ABC", decoded.getString("symbol"));
+
+        assertArrayEquals("Base64 should be decoded from the frame.", new byte[] { 1, 2, 3 }, new PubSubBytesCodec().decode(streamed("AQID")));
+    }
+
+    @Test
+    public void testRejectsUnknownTypesAndBadContent() throws Exception {
+        try {
+            PubSubCodecs.forType(Thread.class);
+            fail("There should be no codec for threads.");
+        }
+        catch(PubSubCodecException e) {
+            assertTrue(e.getMessage().contains("java.lang.Thread"));
+        }
+
+        try {
+            new PubSubBytesCodec().decode("not base64!");
+            fail("Invalid Base64 should be rejected.");
+        }
+        catch(PubSubCodecException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testTypedPublishAndSubscribe() throws Exception {
+        TestPubSubSocketPublishing socket = new TestPubSubSocketCodecs();
+        PubSubHandle handle = new PubSubHandle(socket);
+
+        PubSubCodecs.register(new PubSubCodec<Point>() {
+            @Override
+            public Class<Point> getType() {
+                return Point.class;
+            }
+
+            @Override
+            public String encode(Point value) {
+                return value.x + "," + value.y;
+            }
+
+            @Override
+            public Point decode(CharSequence message) throws PubSubCodecException {
+                String[] parts = message.toString().split(",");
+
+                if(parts.length != 2) {
+                    throw new PubSubCodecException("Not a point: " + message);
+                }
+
+                return new Point(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+            }
+        });
+
+        handle.publish("points", new Point(3, 4)).get(1, TimeUnit.SECONDS);
+        assertEquals("The custom codec should encode the value.", "3,4", ((TestPubSubSocketCodecs) socket).lastMessage);
+
+        List<Point> received = new CopyOnWriteArrayList<>();
+        handle.subscribe("points", Point.class, (record, point) -> received.add(point)).get(1, TimeUnit.SECONDS);
+
+        PubSubMessageHandler upstream = ((TestPubSubSocketCodecs) socket).handler;
+        upstream.onMessage(streamed("5,6"));
+        upstream.onMessage(streamed("garbage"));
+
+        assertEquals("Only the valid message should be delivered.", 1, received.size());
+        assertEquals("The message should be decoded.", 6, received.get(0).y);
+
+        try {
+            handle.publish("points", Thread.currentThread()).get(1, TimeUnit.SECONDS);
+            fail("A value without a codec should not be published.");
+        }
+        catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof PubSubCodecException);
+        }
+    }
+
+    static class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
+
+/**
+ * Publishing socket that also remembers the last message sent and the handler of the last subscription.
+ */
+class TestPubSubSocketCodecs extends TestPubSubSocketPublishing
+{
+    public volatile String lastMessage;
+    public volatile PubSubMessageHandler handler;
+
+    public TestPubSubSocketCodecs() {
+        super(PubSubOptions.DEFAULT_OPTIONS);
+    }
+
+    @Override
+    protected void sendPublish(long sequence, JSONObject json, PubSubErrorResponseHandler errorResponseHandler, SendHandler handler) {
+        lastMessage = json.getString("msg");
+        super.sendPublish(sequence, json, errorResponseHandler, handler);
+    }
+
+    @Override
+    public void addMessageHandler(String channel, PubSubMessageHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    protected CompletableFuture<PubSubResponse> sendRequest(long sequence, JSONObject json) {
+        try {
+            return CompletableFuture.completedFuture(PubSubResponse.create(new JSONObject()
+                .put("seq", sequence)
+                .put("action", "subscribe")
+                .put("code", 200)
+                .put("channels", new JSONArray().put(json.getString("channel")))));
+        }
+        catch(Exception e) {
+            CompletableFuture<PubSubResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.gambit.sdk.pubsub;
+
+import java.time.Instant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.gambit.sdk.pubsub.handlers.PubSubConflatingHandler;
+
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubConflatingHandler
+{
+    private static PubSubMessageRecord record(String message) {
+        return record("snapshots", message);
+    }
+
+    private static PubSubMessageRecord record(String channel, String message) {
+        return new PubSubMessageRecord(new JSONObject()
+            .put("id", UUID.randomUUID().toString())
+            .put("chan", channel)
+            .put("msg", message)
+            .put("time", Instant.now().toString()));
+    }
+
+    private static void awaitIdle(PubSubConflatingHandler handler) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(handler.getDelivered() + handler.getConflated() + handler.getDropped() < handler.getReceived()
+            && System.nanoTime() < deadline)
+        {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testSlowHandlerGetsNewestMessage() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+
+        PubSubConflatingHandler handler = new PubSubConflatingHandler((record) -> {
+            handled.add(record.getMessage());
+
+            if(handled.size() == 1) {
+                blocked.countDown();
+
+                try {
+                    release.await();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        handler.onMessage(record("0"));
+        assertTrue("The first message should be delivered right away.", blocked.await(5, TimeUnit.SECONDS));
+
+        for(int i = 1; i <= 100; ++i) {
+            handler.onMessage(record(Integer.toString(i)));
+        }
+
+        assertEquals("Only one message should wait.", 1, handler.getPending());
+
+        release.countDown();
+        awaitIdle(handler);
+
+        assertEquals("The slow handler should get the first and the newest message.", "0,100", String.join(",", handled));
+        assertEquals("Every message should be counted.", 101, handler.getReceived());
+        assertEquals("The stale messages should be conflated.", 99, handler.getConflated());
+        assertEquals("Nothing should be dropped.", 0, handler.getDropped());
+    }
+
+    @Test
+    public void testKeepsNewestMessagePerChannelByDefault() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+
+        PubSubConflatingHandler handler = new PubSubConflatingHandler((record) -> {
+            handled.add(record.getChannel() + ":" + record.getMessage());
+
+            if(handled.size() == 1) {
+                blocked.countDown();
+
+                try {
+                    release.await();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        handler.onMessage(record("a", "0"));
+        assertTrue("The first message should be delivered right away.", blocked.await(5, TimeUnit.SECONDS));
+
+        handler.onMessage(record("a", "1"));
+        handler.onMessage(record("b", "1"));
+        handler.onMessage(record("a", "2"));
+
+        assertEquals("One message per channel should wait.", 2, handler.getPending());
+
+        release.countDown();
+        awaitIdle(handler);
+
+        assertEquals("Each channel should get its newest message.", "a:0,a:2,b:1", String.join(",", handled));
+        assertEquals("Only the stale message of the same channel should be conflated.", 1, handler.getConflated());
+        assertEquals("Nothing should be dropped.", 0, handler.getDropped());
+    }
+
+    @Test
+    public void testKeepsNewestMessagePerKey() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        List<Runnable> tasks = new ArrayList<>();
+
+        PubSubConflatingHandler handler = new PubSubConflatingHandler(
+            (record) -> handled.add(record.getMessage()),
+            (record) -> record.getMessage().split(":")[0],
+            2,
+            tasks::add);
+
+        handler.onMessage(record("a:1"));
+        handler.onMessage(record("b:1"));
+        handler.onMessage(record("a:2"));
+        handler.onMessage(record("c:1"));
+
+        assertEquals("Delivery should be started once.", 1, tasks.size());
+        tasks.get(0).run();
+
+        assertEquals("The kept keys should be delivered in the order they started waiting.", "b:1,c:1", String.join(",", handled));
+        assertEquals("The replaced message should be conflated.", 1, handler.getConflated());
+        assertEquals("The key waiting longest should be dropped when too many wait.", 1, handler.getDropped());
+    }
+
+    @Test
+    public void testHandlerErrorsAreCountedAndReported() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        List<Runnable> tasks = new ArrayList<>();
+
+        PubSubConflatingHandler handler = new PubSubConflatingHandler(
+            (record) -> {
+                if(record.getMessage().equals("bad")) {
+                    throw new IllegalStateException("Cannot handle " + record.getMessage());
+                }
+
+                handled.add(record.getMessage());
+            },
+            (record) -> record.getMessage(),
+            8,
+            tasks::add);
+        handler.setErrorHandler(errors::add);
+
+        handler.onMessage(record("bad"));
+        handler.onMessage(record("good"));
+        tasks.get(0).run();
+
+        assertEquals("The message after the failing one should be delivered.", "good", String.join(",", handled));
+        assertEquals("The failure should be counted.", 1, handler.getFailed());
+        assertEquals("The failure should be reported.", 1, errors.size());
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testRejectedDeliveryStartsAgain() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        List<Runnable> tasks = new ArrayList<>();
+        AtomicBoolean rejecting = new AtomicBoolean(true);
+
+        PubSubConflatingHandler handler = new PubSubConflatingHandler(
+            (record) -> handled.add(record.getMessage()),
+            (record) -> Boolean.TRUE,
+            1,
+            (task) -> {
+                if(rejecting.get()) {
+                    throw new RejectedExecutionException("Shutting down");
+                }
+
+                tasks.add(task);
+            });
+
+        try {
+            handler.onMessage(record("0"));
+            fail("The rejection should reach the caller.");
+        }
+        catch(RejectedExecutionException e) {
+            // expected
+        }
+
+        rejecting.set(false);
+        handler.onMessage(record("1"));
+
+        assertEquals("Delivery should be started again.", 1, tasks.size());
+        tasks.get(0).run();
+
+        assertEquals("The newest message should be delivered.", "1", String.join(",", handled));
+    }
+}
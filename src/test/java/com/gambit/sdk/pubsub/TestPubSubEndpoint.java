@@ -0,0 +1,202 @@
+package com.gambit.sdk.pubsub;
+
+import javax.websocket.*;
+
+import java.io.IOException;
+
+import java.net.URI;
+
+import java.nio.ByteBuffer;
+
+import java.time.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.gambit.sdk.pubsub.exceptions.PubSubException;
+
+import org.mockito.Mockito;
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubEndpoint
+{
+    /**
+     * Creates a url that no other test uses, so endpoint scores do not leak between tests.
+     */
+    private static String stubUrl(String name) {
+        return "wss://" + name + "-" + UUID.randomUUID() + ".localhost/pubsub";
+    }
+
+    @Test
+    public void testRanksHealthyEndpointsByRtt() {
+        String slow = stubUrl("slow");
+        String fast = stubUrl("fast");
+        String unmeasured = stubUrl("unmeasured");
+        String failed = stubUrl("failed");
+
+        PubSubEndpoint.forUrl(slow).recordRtt(TimeUnit.MILLISECONDS.toNanos(80));
+        PubSubEndpoint.forUrl(fast).recordRtt(TimeUnit.MILLISECONDS.toNanos(10));
+        PubSubEndpoint.forUrl(failed).recordRtt(TimeUnit.MILLISECONDS.toNanos(1));
+        PubSubEndpoint.forUrl(failed).recordFailure();
+
+        List<PubSubEndpoint> ranked = PubSubEndpoint.rank(Arrays.asList(failed, unmeasured, slow, fast));
+
+        assertEquals("The fastest healthy endpoint should be first.", fast, ranked.get(0).getUrl());
+        assertEquals("Slower endpoints should follow.", slow, ranked.get(1).getUrl());
+        assertEquals("Unmeasured endpoints should follow measured ones.", unmeasured, ranked.get(2).getUrl());
+        assertEquals("Failed endpoints should be last.", failed, ranked.get(3).getUrl());
+    }
+
+    @Test
+    public void testFailsOverToNextEndpoint() throws Exception {
+        String down = stubUrl("down");
+        String up = stubUrl("up");
+
+        TestPubSubSocketStubServers socket = new TestPubSubSocketStubServers(Arrays.asList(down, up), Duration.ofSeconds(10));
+        socket.refused.put(down, true);
+
+        long started = System.nanoTime();
+        socket.connect().get(5, TimeUnit.SECONDS);
+
+        assertTrue("The failover should not wait for the hedge delay.", System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+        assertEquals("The socket should be open.", PubSubSocketState.OPEN, socket.getState());
+        assertEquals("The socket should connect to the second endpoint.", up, socket.connected.get(0));
+        assertFalse("The refused endpoint should be marked unhealthy.", PubSubEndpoint.forUrl(down).isHealthy(System.nanoTime()));
+        assertEquals("The next connection should go to the healthy endpoint first.", up, PubSubEndpoint.rank(Arrays.asList(down, up)).get(0).getUrl());
+
+        socket.close();
+    }
+
+    @Test
+    public void testHedgesSlowEndpoint() throws Exception {
+        String slow = stubUrl("slow");
+        String fast = stubUrl("fast");
+
+        TestPubSubSocketStubServers socket = new TestPubSubSocketStubServers(Arrays.asList(slow, fast), Duration.ofMillis(50));
+        socket.handshakeDelays.put(slow, 2000L);
+
+        long started = System.nanoTime();
+        socket.connect().get(5, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - started;
+
+        assertTrue("The hedged attempt should connect before the slow endpoint.", elapsed < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals("The socket should be open.", PubSubSocketState.OPEN, socket.getState());
+        assertEquals("The fast endpoint should win the race.", fast, socket.connected.get(0));
+
+        // The slow endpoint opens later and must be closed without replacing the winning connection
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(socket.connected.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals("The slow endpoint should eventually connect.", 2, socket.connected.size());
+        verify(socket.sessions.get(slow)).close(any(CloseReason.class));
+        assertEquals("The socket should stay open on the winning connection.", PubSubSocketState.OPEN, socket.getState());
+        verify(socket.sessions.get(fast), never()).close(any(CloseReason.class));
+
+        socket.close();
+    }
+
+    @Test
+    public void testMeasuresRttFromHeartbeat() throws Exception {
+        String url = stubUrl("heartbeat");
+
+        TestPubSubSocketStubServers socket = new TestPubSubSocketStubServers(Collections.singletonList(url), Duration.ofMillis(50));
+        socket.connect().get(5, TimeUnit.SECONDS);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(PubSubEndpoint.forUrl(url).getRtt() < 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertTrue("Pongs should give the endpoint a round-trip time.", PubSubEndpoint.forUrl(url).getRtt() >= 0);
+
+        socket.close();
+    }
+}
+
+/**
+ * PubSubSocket connected to stub servers: each url answers the handshake after a configurable delay, or refuses
+ * it, and its sessions answer every heartbeat ping with a pong.
+ */
+class TestPubSubSocketStubServers extends PubSubSocket
+{
+    public final Map<String, Long> handshakeDelays = new ConcurrentHashMap<>();
+    public final Map<String, Boolean> refused = new ConcurrentHashMap<>();
+    public final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    public final List<String> connected = Collections.synchronizedList(new ArrayList<>());
+
+    static {
+        // Create the mock classes up front so that the first handshake is not slowed down by their generation
+        mock(Session.class);
+        mock(RemoteEndpoint.Async.class);
+        mock(PongMessage.class);
+    }
+
+    public TestPubSubSocketStubServers(List<String> urls, Duration hedgeDelay) throws DeploymentException, IOException, PubSubException {
+        super(
+            Collections.singletonList("R-0123456789abcdef0123456789abcdef-0123456789abcdef0123456789abcdef"),
+            new PubSubOptions.Builder()
+                .setUrls(urls)
+                .setHedgeDelay(hedgeDelay)
+                .setAutoReconnect(false)
+                .build()
+        );
+    }
+
+    @Override
+    protected Session connectToServer(WebSocketContainer container, ClientEndpointConfig config, URI uri)
+        throws DeploymentException, IOException
+    {
+        String url = uri.toString();
+
+        if(refused.containsKey(url)) {
+            throw new DeploymentException("Refused by " + url);
+        }
+
+        try {
+            Thread.sleep(handshakeDelays.getOrDefault(url, 0L));
+        }
+        catch(InterruptedException e) {
+            throw new DeploymentException("Interrupted");
+        }
+
+        Session session = mock(Session.class);
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        AtomicReference<MessageHandler.Whole<PongMessage>> pongHandler = new AtomicReference<>();
+
+        when(session.getAsyncRemote()).thenReturn(remote);
+
+        doAnswer((invocation) -> {
+            pongHandler.set(invocation.getArgument(1));
+            return null;
+        }).when(session).addMessageHandler(eq(PongMessage.class), Mockito.<MessageHandler.Whole<PongMessage>>any());
+
+        doAnswer((invocation) -> {
+            ByteBuffer data = invocation.getArgument(0);
+            PongMessage pong = mock(PongMessage.class);
+            when(pong.getApplicationData()).thenReturn(data.duplicate());
+
+            if(pongHandler.get() != null) {
+                pongHandler.get().onMessage(pong);
+            }
+            return null;
+        }).when(remote).sendPing(any(ByteBuffer.class));
+
+        sessions.put(url, session);
+        onOpen(session, config);
+        connected.add(url);
+
+        return session;
+    }
+}
@@ -0,0 +1,98 @@
+package com.gambit.sdk.pubsub;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+
+import java.util.UUID;
+
+import java.time.Instant;
+
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubFrameDecoder
+{
+    private static String messageJson(String msg) {
+        return new JSONObject()
+            .put("id", UUID.randomUUID().toString())
+            .put("action", "msg")
+            .put("time", Instant.now().toString())
+            .put("chan", "TEST")
+            .put("msg", msg)
+            .toString();
+    }
+
+    private static PubSubFrame decodeInFragments(String json, int fragmentSize) {
+        PubSubFrameDecoder decoder = new PubSubFrameDecoder();
+
+        for(int i = 0; i < json.length(); i += fragmentSize) {
+            decoder.feed(json.substring(i, Math.min(json.length(), i + fragmentSize)));
+        }
+
+        return decoder.finish();
+    }
+
+    @Test
+    public void testDecodesMessageRecordAcrossFragments() throws Exception {
+        String json = messageJson("Hello, world!");
+        JSONObject expected = new JSONObject(json);
+
+        for(int size = 1; size <= json.length(); ++size) {
+            PubSubFrame frame = decodeInFragments(json, size);
+            assertTrue("The frame should be recognized as a message record.", frame.isMessageRecord());
+
+            PubSubMessageRecord record = new PubSubMessageRecord(frame);
+            assertEquals("The channel should be decoded.", expected.getString("chan"), record.getChannel());
+            assertEquals("The id should be decoded.", expected.getString("id"), record.getId().toString());
+            assertEquals("The message should be decoded.", "Hello, world!", record.getMessage());
+        }
+    }
+
+    @Test
+    public void testUnescapesMessageContent() throws Exception {
+        String content = "{\"nested\": \"json \\\\ with \\u00e9scapes\"}\n\ttabbed";
+        PubSubMessageRecord record = new PubSubMessageRecord(decodeInFragments(messageJson(content), 7));
+
+        assertEquals("The message should be unescaped.", content, record.getMessage());
+        assertEquals("The content view should be unescaped.", content, record.getMessageContent().toString());
+
+        StringBuilder read = new StringBuilder();
+
+        try(Reader reader = new BufferedReader(record.getMessageReader())) {
+            char[] chunk = new char[5];
+            int count;
+
+            while((count = reader.read(chunk)) != -1) {
+                read.append(chunk, 0, count);
+            }
+        }
+
+        assertEquals("The message reader should unescape the content.", content, read.toString());
+    }
+
+    @Test
+    public void testSkipsNestedValuesAndNonMessageFrames() {
+        String json = new JSONObject()
+            .put("seq", 12)
+            .put("action", "subscribe")
+            .put("code", 200)
+            .put("channels", new String[] { "A}", "B\"]" })
+            .toString();
+
+        PubSubFrame frame = decodeInFragments(json, 3);
+
+        assertTrue("The frame should be well-formed.", frame.isValid());
+        assertFalse("The frame should not be a message record.", frame.isMessageRecord());
+        assertEquals("The action should be decoded.", "subscribe", frame.getString("action"));
+        assertEquals("The whole frame should be preserved.", json, frame.toString());
+    }
+
+    @Test
+    public void testRejectsMalformedFrames() {
+        assertFalse("A truncated frame should be invalid.", decodeInFragments("{\"action\": \"msg\"", 4).isValid());
+        assertFalse("Trailing data should be invalid.", decodeInFragments("{\"action\": \"msg\"} x", 4).isValid());
+        assertFalse("A non-object frame should be invalid.", decodeInFragments("[1, 2]", 4).isValid());
+    }
+}
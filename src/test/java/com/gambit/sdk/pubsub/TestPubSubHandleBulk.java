@@ -0,0 +1,253 @@
+package com.gambit.sdk.pubsub;
+
+import java.time.Duration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gambit.sdk.pubsub.exceptions.PubSubErrorResponseException;
+import com.gambit.sdk.pubsub.handlers.PubSubMessageHandler;
+import com.gambit.sdk.pubsub.responses.errors.PubSubErrorResponse;
+import com.gambit.sdk.pubsub.responses.successes.PubSubResponse;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubHandleBulk
+{
+    private static final int CHANNELS = 500;
+    private static final int WINDOW = 8;
+
+    private static Map<String, PubSubMessageHandler> handlersFor(int count) {
+        Map<String, PubSubMessageHandler> handlers = new LinkedHashMap<>();
+
+        for(int i = 0; i < count; ++i) {
+            handlers.put("channel-" + i, (record) -> {});
+        }
+
+        return handlers;
+    }
+
+    @Test
+    public void testSubscribeAllStaysWithinWindow() throws Exception {
+        TestPubSubSocketPipelined socket = new TestPubSubSocketPipelined(WINDOW, true);
+        PubSubHandle handle = new PubSubHandle(socket);
+
+        PubSubBulkResult result = handle.subscribeAll(handlersFor(CHANNELS)).get(10, TimeUnit.SECONDS);
+
+        assertTrue("Every subscribe should succeed.", result.isSuccess());
+        assertEquals("Every channel should be reported.", CHANNELS, result.getSucceeded().size());
+        assertEquals("The final list should hold every channel.", CHANNELS, result.getChannels().size());
+        assertTrue("No more than the window should be in flight.", socket.maxInFlight.get() <= WINDOW);
+        assertTrue("Requests should be pipelined.", socket.maxInFlight.get() > 1);
+        assertNotNull("Handlers should be registered.", socket.getHandler("channel-0"));
+        assertEquals("The local view should follow the last response.", CHANNELS, handle.listSubscriptions().get(5, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    public void testSynchronousResponsesDoNotRecurse() throws Exception {
+        TestPubSubSocketPipelined socket = new TestPubSubSocketPipelined(1, false);
+        PubSubHandle handle = new PubSubHandle(socket);
+
+        PubSubBulkResult result = handle.subscribeAll(handlersFor(2000)).get(10, TimeUnit.SECONDS);
+
+        assertEquals("Every channel should be reported.", 2000, result.getSucceeded().size());
+    }
+
+    @Test
+    public void testReportsFailuresPerChannel() throws Exception {
+        TestPubSubSocketPipelined socket = new TestPubSubSocketPipelined(WINDOW, true);
+        socket.rejected.add("channel-3");
+        socket.rejected.add("channel-7");
+
+        PubSubHandle handle = new PubSubHandle(socket);
+        PubSubBulkResult result = handle.subscribeAll(handlersFor(10)).get(10, TimeUnit.SECONDS);
+
+        assertFalse("The bulk request should report failures.", result.isSuccess());
+        assertEquals("Rejected channels should fail.", 2, result.getFailed().size());
+        assertTrue("The failure should carry the error response.", result.getFailed().get("channel-3") instanceof PubSubErrorResponseException);
+        assertNull("Handlers of failed channels should be removed.", socket.getHandler("channel-3"));
+        assertEquals("The other channels should succeed.", 8, result.getSucceeded().size());
+
+        List<String> channels = new ArrayList<>(result.getSucceeded());
+        PubSubBulkResult removed = handle.unsubscribeBulk(channels).get(10, TimeUnit.SECONDS);
+
+        assertTrue("Every unsubscribe should succeed.", removed.isSuccess());
+        assertTrue("No channel should remain.", removed.getChannels().isEmpty());
+    }
+
+    @Test
+    public void testUnansweredRequestsTimeOut() throws Exception {
+        PubSubOptions options = new PubSubOptions.Builder()
+            .setMaxInFlightRequests(2)
+            .setBulkRequestTimeout(Duration.ofMillis(100))
+            .build();
+
+        TestPubSubSocketPipelined socket = new TestPubSubSocketPipelined(options, true);
+        socket.dropped.add("channel-0");
+        socket.dropped.add("channel-1");
+
+        PubSubHandle handle = new PubSubHandle(socket);
+        PubSubBulkResult result = handle.subscribeAll(handlersFor(10)).get(10, TimeUnit.SECONDS);
+
+        assertEquals("The unanswered channels should fail.", 2, result.getFailed().size());
+        assertTrue("The failure should be a timeout.", result.getFailed().get("channel-0") instanceof TimeoutException);
+        assertNull("Handlers of timed out channels should be removed.", socket.getHandler("channel-1"));
+        assertEquals("Their permits should be returned to the other channels.", 8, result.getSucceeded().size());
+    }
+
+    @Test
+    public void testDisconnectPartwayFailsRemainingChannels() throws Exception {
+        TestPubSubSocketPipelined socket = new TestPubSubSocketPipelined(4, true);
+        socket.connectedRequests.set(5);
+
+        PubSubHandle handle = new PubSubHandle(socket);
+        PubSubBulkResult result = handle.subscribeAll(handlersFor(20)).get(10, TimeUnit.SECONDS);
+
+        assertEquals("The requests sent before the disconnect should succeed.", 5, result.getSucceeded().size());
+        assertEquals("The requests after the disconnect should fail.", 15, result.getFailed().size());
+        assertNull("Handlers of failed channels should be removed.", socket.getHandler("channel-19"));
+    }
+}
+
+/**
+ * Fake server that answers subscribe and unsubscribe requests, either right away or on another thread, and
+ * records how many requests wait for a response at the same time.
+ */
+class TestPubSubSocketPipelined extends PubSubSocket
+{
+    public final AtomicInteger inFlight = new AtomicInteger();
+    public final AtomicInteger maxInFlight = new AtomicInteger();
+    public final Set<String> rejected = ConcurrentHashMap.newKeySet();
+    public final Set<String> dropped = ConcurrentHashMap.newKeySet();
+    public final AtomicInteger connectedRequests = new AtomicInteger(Integer.MAX_VALUE);
+
+    private final Set<String> subscribed = ConcurrentHashMap.newKeySet();
+    private final Map<String, PubSubMessageHandler> handlers = new ConcurrentHashMap<>();
+    private final PubSubOptions options;
+    private final boolean async;
+
+    // Like a server reading one connection, requests are answered in the order they were sent
+    private final ExecutorService server = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TestPubSubSocketPipelined(int window, boolean async) {
+        this(new PubSubOptions.Builder().setMaxInFlightRequests(window).build(), async);
+    }
+
+    public TestPubSubSocketPipelined(PubSubOptions options, boolean async) {
+        this.options = options;
+        this.async = async;
+    }
+
+    public PubSubMessageHandler getHandler(String channel) {
+        return handlers.get(channel);
+    }
+
+    @Override
+    PubSubOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public void addMessageHandlers(Map<String, PubSubMessageHandler> map) {
+        handlers.putAll(map);
+    }
+
+    @Override
+    public void removeMessageHandler(String channel) {
+        handlers.remove(channel);
+    }
+
+    @Override
+    protected CompletableFuture<PubSubResponse> sendRequest(long sequence, JSONObject json) {
+        if(connectedRequests.getAndDecrement() <= 0) {
+            // Like the socket once its connection closed and the server endpoint was cleared
+            throw new NullPointerException();
+        }
+
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+
+        if(dropped.contains(json.getString("channel"))) {
+            inFlight.decrementAndGet();
+            return new CompletableFuture<>();
+        }
+
+        if(!async) {
+            return CompletableFuture.completedFuture(respond(sequence, json));
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Thread.sleep(0, 200000);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return respond(sequence, json);
+        }, server);
+    }
+
+    private PubSubResponse respond(long sequence, JSONObject json) {
+        String channel = json.getString("channel");
+        String action = json.getString("action");
+
+        try {
+            if(rejected.contains(channel)) {
+                JSONObject error = new JSONObject()
+                    .put("seq", sequence)
+                    .put("action", action)
+                    .put("code", 401)
+                    .put("message", "Not Authorized")
+                    .put("details", "Not authorized to subscribe to " + channel);
+
+                throw new PubSubErrorResponseException(PubSubErrorResponse.create(error));
+            }
+
+            JSONObject result;
+
+            synchronized(this) {
+                if(action.equals("subscribe")) {
+                    subscribed.add(channel);
+                }
+                else {
+                    subscribed.remove(channel);
+                }
+
+                result = new JSONObject()
+                    .put("seq", sequence)
+                    .put("action", action)
+                    .put("code", 200)
+                    .put("channels", new JSONArray(subscribed.toArray()));
+            }
+
+            return PubSubResponse.create(result);
+        }
+        catch(Throwable e) {
+            throw new CompletionException(e);
+        }
+        finally {
+            inFlight.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gambit.sdk.pubsub.handlers.PubSubMessageHandler;
+import com.gambit.sdk.pubsub.responses.successes.PubSubResponse;
+import com.gambit.sdk.pubsub.responses.successes.PubSubSubscribeResponse;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubHandleCache
+{
+    private static final int CALLERS = 20;
+
+    @Test
+    public void testConcurrentSessionUuidRequestsAreMerged() throws Exception {
+        TestPubSubSocketCounting socket = new TestPubSubSocketCounting();
+        PubSubHandle handle = new PubSubHandle(socket);
+        List<CompletableFuture<UUID>> results = new ArrayList<>();
+
+        for(int i = 0; i < CALLERS; ++i) {
+            results.add(handle.getSessionUuid());
+        }
+
+        for(CompletableFuture<UUID> result : results) {
+            assertEquals("Every caller should get the session UUID.", TestPubSubSocketSuccess.FAKE_UUID, result.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals("Concurrent calls should share one request.", 1, socket.requests("session-uuid"));
+
+        handle.getSessionUuid().get(5, TimeUnit.SECONDS);
+        assertEquals("A known session UUID should be answered locally.", 1, socket.requests("session-uuid"));
+
+        handle.getSessionUuid(true).get(5, TimeUnit.SECONDS);
+        assertEquals("A forced refresh should ask the server.", 2, socket.requests("session-uuid"));
+    }
+
+    @Test
+    public void testSubscriptionsAreKeptFromResponses() throws Exception {
+        TestPubSubSocketCounting socket = new TestPubSubSocketCounting();
+        PubSubHandle handle = new PubSubHandle(socket);
+
+        handle.subscribe("alpha", (record) -> {}).get(5, TimeUnit.SECONDS);
+        handle.subscribe("beta", (record) -> {}).get(5, TimeUnit.SECONDS);
+
+        assertEquals("The list should come from the subscribe responses.", Arrays.asList("alpha", "beta"), handle.listSubscriptions().get(5, TimeUnit.SECONDS));
+        assertEquals("No list request should be sent.", 0, socket.requests("subscriptions"));
+
+        handle.unsubscribe("alpha").get(5, TimeUnit.SECONDS);
+        assertEquals("The list should follow unsubscribe responses.", Collections.singletonList("beta"), handle.listSubscriptions().get(5, TimeUnit.SECONDS));
+
+        handle.unsubscribeAll().get(5, TimeUnit.SECONDS);
+        assertTrue("The list should be empty after unsubscribing from all.", handle.listSubscriptions().get(5, TimeUnit.SECONDS).isEmpty());
+        assertEquals("No list request should be sent.", 0, socket.requests("subscriptions"));
+
+        List<CompletableFuture<List<String>>> results = new ArrayList<>();
+
+        for(int i = 0; i < CALLERS; ++i) {
+            results.add(handle.listSubscriptions(true));
+        }
+
+        for(CompletableFuture<List<String>> result : results) {
+            assertTrue("Every caller should get the list.", result.get(5, TimeUnit.SECONDS).isEmpty());
+        }
+
+        assertEquals("Concurrent forced refreshes should share one request.", 1, socket.requests("subscriptions"));
+    }
+
+    @Test
+    public void testOlderResponseDoesNotReplaceNewerList() throws Exception {
+        TestPubSubSocketHeld socket = new TestPubSubSocketHeld();
+        PubSubHandle handle = new PubSubHandle(socket);
+
+        CompletableFuture<List<String>> first = handle.subscribe("alpha", (record) -> {});
+        CompletableFuture<List<String>> second = handle.subscribe("beta", (record) -> {});
+
+        socket.respond(1L, Arrays.asList("alpha", "beta"));
+        second.get(5, TimeUnit.SECONDS);
+
+        socket.respond(0L, Collections.singletonList("alpha"));
+        first.get(5, TimeUnit.SECONDS);
+
+        assertEquals("The list of the newest response should be kept.", Arrays.asList("alpha", "beta"), handle.listSubscriptions().get(5, TimeUnit.SECONDS));
+    }
+}
+
+/**
+ * Fake server that counts the requests it receives and answers them a little later, so concurrent calls overlap.
+ */
+class TestPubSubSocketCounting extends TestPubSubSocketSuccess
+{
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    public int requests(String action) {
+        return counts.computeIfAbsent(action, (key) -> new AtomicInteger()).get();
+    }
+
+    @Override
+    protected CompletableFuture<PubSubResponse> sendRequest(long sequence, JSONObject json) {
+        counts.computeIfAbsent(json.getString("action"), (key) -> new AtomicInteger()).incrementAndGet();
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Thread.sleep(50);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return null;
+        })
+        .thenCompose((ignored) -> super.sendRequest(sequence, json));
+    }
+}
+
+/**
+ * PubSubSocket that holds every request until the test answers it with a subscribe response.
+ */
+class TestPubSubSocketHeld extends PubSubSocket
+{
+    private final Map<Long, CompletableFuture<PubSubResponse>> requests = new ConcurrentHashMap<>();
+
+    public void respond(long sequence, List<String> channels) {
+        JSONObject response = new JSONObject()
+            .put("seq", sequence)
+            .put("action", "subscribe")
+            .put("code", 200)
+            .put("channels", new JSONArray(channels.toArray()));
+
+        requests.get(sequence).complete(new PubSubSubscribeResponse(response));
+    }
+
+    @Override
+    public void addMessageHandler(String channel, PubSubMessageHandler handler) {
+    }
+
+    @Override
+    protected CompletableFuture<PubSubResponse> sendRequest(long sequence, JSONObject json) {
+        return requests.computeIfAbsent(sequence, (key) -> new CompletableFuture<>());
+    }
+}
@@ -0,0 +1,129 @@
+package com.gambit.sdk.pubsub;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubHistory
+{
+    private static PubSubMessageRecord record(String channel, String message) {
+        return new PubSubMessageRecord(new JSONObject()
+            .put("id", UUID.randomUUID().toString())
+            .put("chan", channel)
+            .put("msg", message)
+            .put("time", Instant.now().toString()));
+    }
+
+    @Test
+    public void testReplaysRecentMessagesThenLive() throws Exception {
+        TestPubSubHandleUpstream handle = new TestPubSubHandleUpstream();
+        PubSubHistory history = new PubSubHistory.Builder().setMaxMessagesPerChannel(5).build();
+        PubSubBroker broker = new PubSubBroker(handle, history);
+
+        broker.subscribe("channel", (record) -> {}).get(1, TimeUnit.SECONDS);
+
+        for(int i = 0; i < 10; ++i) {
+            handle.deliver(record("channel", "message-" + i));
+        }
+
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        broker.subscribe("channel", (record) -> received.add(record.getMessage()), 3).get(1, TimeUnit.SECONDS);
+        handle.deliver(record("channel", "message-10"));
+
+        assertEquals("The last three messages should be replayed before the live one.",
+            "message-7,message-8,message-9,message-10", String.join(",", received));
+    }
+
+    @Test
+    public void testReplayHasNoGapsOrDuplicates() throws Exception {
+        TestPubSubHandleUpstream handle = new TestPubSubHandleUpstream();
+        PubSubHistory history = new PubSubHistory.Builder().setMaxMessagesPerChannel(100).build();
+        PubSubBroker broker = new PubSubBroker(handle, history);
+
+        broker.subscribe("channel", (record) -> {}).get(1, TimeUnit.SECONDS);
+
+        Thread publisher = new Thread(() -> {
+            for(int i = 0; i < 20000; ++i) {
+                handle.deliver(record("channel", Integer.toString(i)));
+            }
+        });
+
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+
+        publisher.start();
+        Thread.sleep(5);
+        broker.subscribe("channel", (record) -> received.add(Integer.parseInt(record.getMessage())), 100).get(1, TimeUnit.SECONDS);
+        publisher.join();
+
+        assertFalse("The late listener should receive messages.", received.isEmpty());
+        assertEquals("The last message should be received.", 19999, (int) received.get(received.size() - 1));
+
+        for(int i = 1; i < received.size(); ++i) {
+            assertEquals("Messages should follow on without gaps or duplicates.", received.get(i - 1) + 1, (int) received.get(i));
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedChannelFirst() {
+        String message = new String(new char[1000]);
+        PubSubHistory history = new PubSubHistory.Builder().setMaxBytes(15000).build();
+
+        for(int i = 0; i < 3; ++i) {
+            history.add(record("old", message));
+        }
+
+        for(int i = 0; i < 3; ++i) {
+            history.add(record("new", message));
+        }
+
+        assertEquals("Both channels should fit.", 2, history.getChannelCount());
+
+        for(int i = 0; i < 3; ++i) {
+            history.add(record("newest", message));
+        }
+
+        assertTrue("The history should stay within its budget.", history.getBytes() <= 15000);
+        assertTrue("The least recently used channel should lose its messages first.", history.recent("old", 10).size() < 3);
+        assertEquals("The most recent channel should be kept whole.", 3, history.recent("newest", 10).size());
+    }
+
+    @Test
+    public void testDropsExpiredMessages() throws Exception {
+        PubSubHistory history = new PubSubHistory.Builder().setMaxAge(Duration.ofMillis(20)).build();
+
+        history.add(record("channel", "stale"));
+        Thread.sleep(40);
+        history.add(record("channel", "fresh"));
+
+        List<PubSubMessageRecord> recent = history.recent("channel", 10);
+        assertEquals("Only the fresh message should be kept.", 1, recent.size());
+        assertEquals("Only the fresh message should be kept.", "fresh", recent.get(0).getMessage());
+    }
+
+    @Test
+    public void testUnsubscribeDropsHistory() throws Exception {
+        TestPubSubHandleUpstream handle = new TestPubSubHandleUpstream();
+        PubSubHistory history = new PubSubHistory.Builder().build();
+        PubSubBroker broker = new PubSubBroker(handle, history);
+
+        PubSubSubscription subscription = broker.subscribe("channel", (record) -> {}).get(1, TimeUnit.SECONDS);
+        handle.deliver(record("channel", "message"));
+        assertEquals("The message should be kept.", 1, history.getChannelCount());
+
+        subscription.close().get(1, TimeUnit.SECONDS);
+
+        assertEquals("The history of an unsubscribed channel should be dropped.", 0, history.getChannelCount());
+        assertEquals("No memory should be accounted for.", 0L, history.getBytes());
+    }
+}
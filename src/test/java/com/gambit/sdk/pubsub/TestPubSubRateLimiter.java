@@ -0,0 +1,220 @@
+package com.gambit.sdk.pubsub;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gambit.sdk.pubsub.exceptions.PubSubRateLimitException;
+import com.gambit.sdk.pubsub.handlers.PubSubErrorResponseHandler;
+
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubRateLimiter
+{
+    @Test
+    public void testBurstThenRefuses() {
+        PubSubRateLimiter limiter = new PubSubRateLimiter(1.0, 10);
+
+        for(int i = 0; i < 10; ++i) {
+            assertTrue("A full bucket should allow its burst.", limiter.tryAcquire());
+        }
+
+        assertFalse("An empty bucket should refuse.", limiter.tryAcquire());
+    }
+
+    @Test
+    public void testReservationsFollowTargetRate() {
+        PubSubRateLimiter limiter = new PubSubRateLimiter(1000.0, 1);
+
+        long started = System.nanoTime();
+        long wait = 0L;
+
+        for(int i = 0; i < 1001; ++i) {
+            wait = limiter.reserve();
+        }
+
+        // The last of 1001 permits may be used one second after the first
+        long due = System.nanoTime() + wait - started;
+        long expected = TimeUnit.SECONDS.toNanos(1);
+
+        assertTrue("Reservations should be spaced at the target rate, was " + due, Math.abs(due - expected) < expected / 100);
+    }
+
+    @Test
+    public void testConcurrentAcquiresStayWithinRate() throws Exception {
+        PubSubRateLimiter limiter = new PubSubRateLimiter(2000.0, 20);
+        AtomicInteger acquired = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(300);
+
+        for(int i = 0; i < 8; ++i) {
+            Thread thread = new Thread(() -> {
+                while(System.nanoTime() < deadline) {
+                    if(limiter.tryAcquire()) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        assertTrue("No more than the rate plus the burst should be allowed.", acquired.get() <= 2000.0 * seconds + 20 + 1);
+        assertTrue("The limiter should allow close to its rate.", acquired.get() >= 2000.0 * 0.3 * 0.5);
+    }
+
+    @Test
+    public void testHandleRejectsOverChannelLimit() throws Exception {
+        TestPubSubSocketPublishing socket = new TestPubSubSocketPublishing(new PubSubOptions.Builder()
+            .setChannelPublishRate(1.0, 2)
+            .setRateLimitMode(PubSubRateLimitMode.REJECT)
+            .build());
+
+        PubSubHandle handle = new PubSubHandle(socket);
+
+        handle.publish("busy", "one").get(1, TimeUnit.SECONDS);
+        handle.publish("busy", "two").get(1, TimeUnit.SECONDS);
+
+        try {
+            handle.publish("busy", "three").get(1, TimeUnit.SECONDS);
+            fail("The publish over the limit should be rejected.");
+        }
+        catch(ExecutionException e) {
+            assertTrue("The publish should fail with the rate limit.", e.getCause() instanceof PubSubRateLimitException);
+        }
+
+        handle.publish("quiet", "one").get(1, TimeUnit.SECONDS);
+        assertEquals("Rejected publishes should not be sent.", 3, socket.sent.get());
+    }
+
+    @Test
+    public void testRejectionGivesBackSharedPermits() throws Exception {
+        PubSubRateLimiter global = new PubSubRateLimiter(1.0, 5);
+        TestPubSubSocketPublishing socket = new TestPubSubSocketPublishing(new PubSubOptions.Builder()
+            .setGlobalPublishLimiter(global)
+            .setChannelPublishRate(1.0, 1)
+            .setRateLimitMode(PubSubRateLimitMode.REJECT)
+            .build());
+
+        PubSubHandle handle = new PubSubHandle(socket);
+
+        handle.publish("busy", "one").get(1, TimeUnit.SECONDS);
+        assertTrue(handle.publish("busy", "two").isCompletedExceptionally());
+        assertTrue(handle.publish("busy", "three").isCompletedExceptionally());
+
+        for(int i = 0; i < 4; ++i) {
+            handle.publish("channel-" + i, "message").get(1, TimeUnit.SECONDS);
+        }
+
+        assertEquals("Only rejected publishes should leave the shared permits.", 5, socket.sent.get());
+    }
+
+    @Test
+    public void testHandleDelaysOverHandleLimit() throws Exception {
+        TestPubSubSocketPublishing socket = new TestPubSubSocketPublishing(new PubSubOptions.Builder()
+            .setHandlePublishRate(100.0, 1)
+            .build());
+
+        PubSubHandle handle = new PubSubHandle(socket);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+
+        long started = System.nanoTime();
+        for(int i = 0; i < 11; ++i) {
+            futures.add(handle.publish("channel", "message-" + i));
+        }
+
+        assertTrue("Publishing should not block in delay mode.", System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(50));
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        assertTrue("The last publish should wait for the limit.", System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(95));
+        assertEquals("Every publish should be sent.", 11, socket.sent.get());
+    }
+
+    @Test
+    public void testHandleBlocksOverHandleLimit() throws Exception {
+        TestPubSubSocketPublishing socket = new TestPubSubSocketPublishing(new PubSubOptions.Builder()
+            .setHandlePublishRate(100.0, 1)
+            .setRateLimitMode(PubSubRateLimitMode.BLOCK)
+            .build());
+
+        PubSubHandle handle = new PubSubHandle(socket);
+
+        long started = System.nanoTime();
+        for(int i = 0; i < 11; ++i) {
+            handle.publish("channel", "message-" + i);
+        }
+
+        assertTrue("Publishing should block in block mode.", System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(95));
+        assertEquals("Every publish should be sent.", 11, socket.sent.get());
+    }
+
+    @Test
+    public void testThrottledChannelLeavesSharedLimitToOthers() throws Exception {
+        PubSubRateLimiter global = new PubSubRateLimiter(10.0, 2);
+        TestPubSubSocketPublishing socket = new TestPubSubSocketPublishing(new PubSubOptions.Builder()
+            .setGlobalPublishLimiter(global)
+            .setChannelPublishRate(5.0, 1)
+            .build());
+
+        PubSubHandle handle = new PubSubHandle(socket);
+        List<CompletableFuture<Long>> throttled = new ArrayList<>();
+
+        // Held back by its own channel limit for almost two seconds
+        for(int i = 0; i < 10; ++i) {
+            throttled.add(handle.publish("busy", "message-" + i));
+        }
+
+        long started = System.nanoTime();
+        handle.publish("quiet", "message").get(5, TimeUnit.SECONDS);
+
+        assertTrue("The other channel should get the shared rate the throttled one doesn't use.",
+            System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(400));
+        assertTrue("The throttled channel should still be waiting.", socket.sent.get() < 11);
+
+        CompletableFuture.allOf(throttled.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        assertTrue("The throttled channel should keep to its own rate.", System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals("Every publish should be sent.", 11, socket.sent.get());
+    }
+}
+
+/**
+ * PubSubSocket that counts publishes and reports every send as successful.
+ */
+class TestPubSubSocketPublishing extends PubSubSocket
+{
+    public final AtomicInteger sent = new AtomicInteger();
+    private final PubSubOptions options;
+
+    public TestPubSubSocketPublishing(PubSubOptions options) {
+        this.options = options;
+    }
+
+    @Override
+    PubSubOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    protected void sendPublish(long sequence, JSONObject json, PubSubErrorResponseHandler errorResponseHandler, SendHandler handler) {
+        sent.incrementAndGet();
+        handler.onResult(new SendResult());
+    }
+}
@@ -0,0 +1,96 @@
+package com.gambit.sdk.pubsub;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubReconnectCoordinator
+{
+    private static void await(String message, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertTrue(message, condition.getAsBoolean());
+    }
+
+    @Test
+    public void testNextDelayStaysWithinBounds() {
+        long previous = 100L;
+
+        for(int i = 0; i < 1000; ++i) {
+            long next = PubSubReconnectCoordinator.nextDelay(100L, 5000L, previous);
+
+            assertTrue("The delay should not be below the base delay.", next >= 100L);
+            assertTrue("The delay should not be above the max delay.", next <= 5000L);
+            assertTrue("The delay should not grow more than threefold.", next <= Math.max(100L, previous) * 3);
+
+            previous = next;
+        }
+    }
+
+    @Test
+    public void testLimitsConcurrentAttempts() throws Exception {
+        PubSubReconnectCoordinator coordinator = new PubSubReconnectCoordinator(3);
+        List<CompletableFuture<Void>> running = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger started = new AtomicInteger();
+
+        for(int i = 0; i < 10; ++i) {
+            coordinator.submit(false, 0L, () -> {
+                CompletableFuture<Void> attempt = new CompletableFuture<>();
+                started.incrementAndGet();
+                running.add(attempt);
+                return attempt;
+            });
+        }
+
+        await("Three attempts should start.", () -> started.get() == 3 && coordinator.getWaiting() == 7);
+        Thread.sleep(20);
+        assertEquals("No more than three attempts should run at once.", 3, started.get());
+
+        while(started.get() < 10) {
+            int count = started.get();
+            running.get(count - 1).complete(null);
+            await("Another attempt should start when one finishes.", () -> started.get() > count);
+            assertTrue("No more than three attempts should run at once.", coordinator.getInFlight() <= 3);
+        }
+
+        synchronized(running) {
+            running.forEach((attempt) -> attempt.complete(null));
+        }
+
+        await("All slots should be released.", () -> coordinator.getInFlight() == 0);
+    }
+
+    @Test
+    public void testPrioritizesSocketsWithSubscriptions() throws Exception {
+        PubSubReconnectCoordinator coordinator = new PubSubReconnectCoordinator(1);
+        CompletableFuture<Void> blocker = new CompletableFuture<>();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        coordinator.submit(false, 0L, () -> blocker);
+        await("The first attempt should hold the only slot.", () -> coordinator.getInFlight() == 1);
+
+        coordinator.submit(false, 0L, () -> { order.add("idle"); return CompletableFuture.completedFuture(null); });
+        await("The idle attempt should wait.", () -> coordinator.getWaiting() == 1);
+        coordinator.submit(true, 0L, () -> { order.add("subscribed"); return CompletableFuture.completedFuture(null); });
+        await("Both attempts should wait.", () -> coordinator.getWaiting() == 2);
+
+        blocker.complete(null);
+        await("Both attempts should run.", () -> order.size() == 2);
+
+        assertEquals("The socket with subscriptions should reconnect first.", "subscribed", order.get(0));
+        assertEquals("The socket without subscriptions should reconnect second.", "idle", order.get(1));
+    }
+}
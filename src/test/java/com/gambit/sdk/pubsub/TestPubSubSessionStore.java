@@ -0,0 +1,120 @@
+package com.gambit.sdk.pubsub;
+
+import javax.websocket.RemoteEndpoint;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestPubSubSessionStore
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static PubSubSessionState savedState(UUID uuid) {
+        return new PubSubSessionState(
+            uuid,
+            Arrays.asList("alpha", "beta"),
+            Collections.singletonList(new PubSubSessionState.PendingPublish("alpha", "not yet acknowledged"))
+        );
+    }
+
+    private static TestPubSubSocketSuccess restoringSocket(PubSubSessionState state) {
+        return new TestPubSubSocketSuccess() {
+            @Override
+            PubSubSessionState getRestoredState() {
+                return state;
+            }
+        };
+    }
+
+    @Test
+    public void testFileStoreRoundTrip() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        PubSubFileSessionStore store = new PubSubFileSessionStore(directory.resolve("session.json"));
+
+        assertNull("An empty store should have no state.", store.load());
+
+        UUID uuid = UUID.randomUUID();
+        store.save(savedState(UUID.randomUUID()));
+        store.save(savedState(uuid));
+
+        PubSubSessionState loaded = store.load();
+
+        assertEquals("The session UUID should be restored.", uuid, loaded.getSessionUuid());
+        assertEquals("The channels should be restored.", Arrays.asList("alpha", "beta"), loaded.getChannels());
+        assertEquals("The pending publishes should be restored.", 1, loaded.getPendingPublishes().size());
+        assertEquals("The pending message should be restored.", "not yet acknowledged", loaded.getPendingPublishes().get(0).getMessage());
+        assertFalse("No temporary file should be left behind.", Files.exists(directory.resolve("session.json.tmp")));
+    }
+
+    @Test
+    public void testRestoreResumedSessionWithoutResubscribing() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        PubSubHandle handle = new PubSubHandle(restoringSocket(savedState(TestPubSubSocketSuccess.FAKE_UUID)));
+
+        handle.restoreSession((record) -> received.add(record.getMessage())).get(5, TimeUnit.SECONDS);
+
+        assertTrue("No channel should be subscribed again.", TestPubSubSocketSuccess.subscriptions.isEmpty());
+        assertNotNull("The handler should be registered for the restored channels.", TestPubSubSocketSuccess.handlers.get("beta"));
+        assertEquals("The unacknowledged publish should be sent again.", Collections.singletonList("not yet acknowledged"), received);
+    }
+
+    @Test
+    public void testRestoreExpiredSessionResubscribes() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        PubSubHandle handle = new PubSubHandle(restoringSocket(savedState(UUID.randomUUID())));
+
+        List<String> channels = handle.restoreSession((record) -> received.add(record.getMessage())).get(5, TimeUnit.SECONDS);
+
+        assertEquals("Every saved channel should be subscribed again.", 2, channels.size());
+        assertTrue("Every saved channel should be subscribed again.", channels.containsAll(Arrays.asList("alpha", "beta")));
+        assertEquals("The unacknowledged publish should be sent again.", Collections.singletonList("not yet acknowledged"), received);
+    }
+
+    @Test
+    public void testSaveBeforeRestoreKeepsChannels() throws Exception {
+        PubSubFileSessionStore store = new PubSubFileSessionStore(folder.getRoot().toPath().resolve("session.json"));
+        PubSubOptions options = new PubSubOptions.Builder().setSessionStore(store).build();
+        PubSubSessionState state = savedState(UUID.randomUUID());
+
+        PubSubSocket socket = new PubSubSocket(mock(RemoteEndpoint.Async.class)) {
+            @Override
+            PubSubOptions getOptions() {
+                return options;
+            }
+
+            @Override
+            PubSubSessionState getRestoredState() {
+                return state;
+            }
+        };
+
+        new PubSubHandle(socket).publishWithAck("alpha", "sent before the restore");
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while(store.load() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        PubSubSessionState saved = store.load();
+
+        assertNotNull("The publish should be saved.", saved);
+        assertEquals("The restored channels should be kept.", Arrays.asList("alpha", "beta"), saved.getChannels());
+        assertEquals("The publish should be pending.", 1, saved.getPendingPublishes().size());
+    }
+}
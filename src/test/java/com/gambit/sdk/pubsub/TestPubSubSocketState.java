@@ -0,0 +1,169 @@
+package com.gambit.sdk.pubsub;
+
+import javax.websocket.*;
+
+import java.net.URI;
+
+import java.time.Duration;
+
+import java.util.Collections;
+import java.util.List;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gambit.sdk.pubsub.exceptions.PubSubException;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestPubSubSocketState
+{
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 50;
+
+    /**
+     * Waits until the socket reaches the given state, or fails the test after a few seconds.
+     */
+    private static void awaitState(PubSubSocket socket, PubSubSocketState expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(socket.getState() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertEquals("The socket should reach " + expected + ".", expected, socket.getState());
+    }
+
+    /**
+     * Calls {@code action} from many threads at once.
+     */
+    private static void race(Runnable action) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+
+        for(int i = 0; i < THREADS; ++i) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    action.run();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        start.countDown();
+        assertTrue("The racing threads should finish.", done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentDropsStartOneReconnect() throws Exception {
+        for(int round = 0; round < ROUNDS; ++round) {
+            TestPubSubSocketStateful socket = new TestPubSubSocketStateful();
+
+            socket.connect().get(5, TimeUnit.SECONDS);
+            assertEquals("The socket should be open.", PubSubSocketState.OPEN, socket.getState());
+
+            socket.closeCallsBack = false;
+            socket.dropConnection(new PubSubDropConnectionOptions(0L));
+            socket.closeCallsBack = true;
+
+            Session dropped = socket.current;
+            race(() -> socket.onClose(dropped, new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Dropped")));
+
+            awaitState(socket, PubSubSocketState.OPEN);
+            assertEquals("Exactly one reconnect should have been attempted.", 2, socket.attempts.get());
+
+            socket.close();
+            assertEquals("The socket should be closed.", PubSubSocketState.CLOSED, socket.getState());
+        }
+    }
+
+    @Test
+    public void testCloseDuringReconnectStopsReconnecting() throws Exception {
+        for(int round = 0; round < ROUNDS; ++round) {
+            TestPubSubSocketStateful socket = new TestPubSubSocketStateful();
+
+            socket.connect().get(5, TimeUnit.SECONDS);
+            socket.failConnections = true;
+
+            socket.dropConnection(new PubSubDropConnectionOptions(0L));
+            race(socket::close);
+
+            awaitState(socket, PubSubSocketState.CLOSED);
+
+            // An attempt that was already under way may still finish, but no new attempt may be scheduled
+            Thread.sleep(10);
+            int attempts = socket.attempts.get();
+            Thread.sleep(50);
+
+            assertEquals("The socket should stay closed.", PubSubSocketState.CLOSED, socket.getState());
+            assertEquals("No reconnect should be attempted after close.", attempts, socket.attempts.get());
+        }
+    }
+}
+
+/**
+ * PubSubSocket whose connections are mocked sessions that call back into the socket like a real container would.
+ */
+class TestPubSubSocketStateful extends PubSubSocket
+{
+    public final AtomicInteger attempts = new AtomicInteger();
+    public volatile boolean failConnections = false;
+    public volatile boolean closeCallsBack = true;
+    public volatile Session current;
+
+    public TestPubSubSocketStateful() throws DeploymentException, java.io.IOException, PubSubException {
+        super(keys(), options());
+    }
+
+    private static List<String> keys() {
+        return Collections.singletonList("R-0123456789abcdef0123456789abcdef-0123456789abcdef0123456789abcdef");
+    }
+
+    private static PubSubOptions options() {
+        return new PubSubOptions.Builder()
+            .setUrl("wss://localhost/test")
+            .setAutoReconnect(true)
+            .setConnectTimeout(Duration.ofMillis(0))
+            .build();
+    }
+
+    @Override
+    protected Session connectToServer(WebSocketContainer container, ClientEndpointConfig config, URI uri)
+        throws DeploymentException
+    {
+        attempts.incrementAndGet();
+
+        if(failConnections) {
+            throw new DeploymentException("Refused");
+        }
+
+        Session session = mock(Session.class);
+        when(session.getAsyncRemote()).thenReturn(mock(RemoteEndpoint.Async.class));
+
+        try {
+            doAnswer((invocation) -> {
+                if(closeCallsBack) {
+                    onClose(session, invocation.getArgument(0));
+                }
+                return null;
+            }).when(session).close(any(CloseReason.class));
+        }
+        catch(java.io.IOException e) {
+            throw new DeploymentException(e.getMessage());
+        }
+
+        current = session;
+        onOpen(session, config);
+
+        return session;
+    }
+}
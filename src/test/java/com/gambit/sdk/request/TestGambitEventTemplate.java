@@ -0,0 +1,96 @@
+package com.gambit.sdk.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.gambit.sdk.GambitRequest;
+
+import org.json.JSONObject;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestGambitEventTemplate
+{
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+    private static final String TIMESTAMP = "2016-05-01T12:00:00.000Z";
+
+    private static GambitRequestEvent.Builder builder(LinkedHashMap<String, Object> attributes) {
+        return new GambitRequestEvent.Builder("access-key", "client-salt", SECRET)
+            .setNamespace("test-namespace")
+            .setCampaignId(42)
+            .setTags(new ArrayList<>(Arrays.asList("a", "b")))
+            .setAttributes(attributes);
+    }
+
+    private static LinkedHashMap<String, Object> shared() {
+        LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("email", "someone@example.com");
+        attributes.put("count", 1);
+        attributes.put("quoted", "say \"hi\"\n");
+        return attributes;
+    }
+
+    @Test
+    public void testBodyMatchesBuilder() throws Exception {
+        GambitEventTemplate template = builder(shared()).buildTemplate();
+
+        GambitRequestEvent expected = builder(shared()).setEventName("opened").setTimestamp(TIMESTAMP).build();
+        GambitRequestEvent actual = template.event("opened", TIMESTAMP);
+
+        assertTrue("The template body should hold the same JSON as the builder body.",
+            new JSONObject(expected.getBody()).similar(new JSONObject(actual.getBody())));
+    }
+
+    @Test
+    public void testChangedAndAddedAttributes() throws Exception {
+        GambitEventTemplate template = builder(shared()).buildTemplate();
+
+        Map<String, Object> changed = new LinkedHashMap<>();
+        changed.put("count", 2);
+        changed.put("city", "Gr\u00fcnwald");
+        changed.put("email", null);
+
+        LinkedHashMap<String, Object> merged = shared();
+        merged.putAll(changed);
+
+        GambitRequestEvent expected = builder(merged).setEventName("clicked").setTimestamp(TIMESTAMP).build();
+        GambitRequestEvent actual = template.event("clicked", TIMESTAMP, changed);
+
+        assertTrue("Changed, added and removed attributes should be serialized like the builder does.",
+            new JSONObject(expected.getBody()).similar(new JSONObject(actual.getBody())));
+        assertEquals("The signature should cover the template body.",
+            GambitRequest.getHmac(actual.getBody(), SECRET), actual.getHeaders().get("Payload-HMAC"));
+
+        JSONObject unchanged = new JSONObject(template.event("clicked", TIMESTAMP).getBody());
+        assertEquals("Changes for one event should not leak into the next.", 1, unchanged.getJSONObject("attributes").getInt("count"));
+    }
+
+    @Test
+    public void testIgnoresLaterBuilderChanges() throws Exception {
+        LinkedHashMap<String, Object> attributes = shared();
+        GambitRequestEvent.Builder builder = builder(attributes);
+        GambitEventTemplate template = builder.buildTemplate();
+
+        attributes.put("count", 5);
+        builder.setNamespace("other-namespace");
+
+        JSONObject body = new JSONObject(template.event("opened", null).getBody());
+
+        assertEquals("test-namespace", body.getString("namespace"));
+        assertEquals(1, body.getJSONObject("attributes").getInt("count"));
+        assertTrue("A missing timestamp should be filled in.", body.has("timestamp"));
+    }
+
+    @Test(expected = Exception.class)
+    public void testRejectsMissingEventName() throws Exception {
+        builder(shared()).buildTemplate().event("", TIMESTAMP);
+    }
+
+    @Test(expected = Exception.class)
+    public void testRejectsInvalidTimestamp() throws Exception {
+        builder(shared()).buildTemplate().event("opened", "yesterday");
+    }
+}
@@ -0,0 +1,50 @@
+package com.gambit.sdk.request;
+
+import java.util.LinkedHashMap;
+
+import org.json.JSONObject;
+
+import com.gambit.sdk.attributes.GambitAttributes;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestGambitRequestEventTypedAttributes
+{
+    @GambitAttributes
+    public static class Signup
+    {
+        String email = "someone@example.com";
+        int age = 30;
+        Boolean newsletter;
+    }
+
+    private static GambitRequestEvent.Builder builder() {
+        return new GambitRequestEvent.Builder("access-key", "client-salt", "0123")
+            .setNamespace("test-namespace")
+            .setEventName("signed-up")
+            .setTimestamp("2016-05-01T12:00:00.000Z");
+    }
+
+    @Test
+    public void testBodyMatchesMapAttributes() throws Exception {
+        LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("email", "someone@example.com");
+        attributes.put("age", 30);
+
+        JSONObject typed = new JSONObject(builder().setTypedAttributes(new Signup()).build().getBody());
+        JSONObject mapped = new JSONObject(builder().setAttributes(attributes).build().getBody());
+
+        assertTrue("Typed and map attributes should give the same body.", typed.similar(mapped));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsClassWithoutWriter() throws Exception {
+        builder().setTypedAttributes(new Object()).build();
+    }
+
+    @Test(expected = Exception.class)
+    public void testTemplateRejectsTypedAttributes() throws Exception {
+        builder().setTypedAttributes(new Signup()).buildTemplate();
+    }
+}